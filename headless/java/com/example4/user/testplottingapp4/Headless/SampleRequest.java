@@ -0,0 +1,93 @@
+package com.example4.user.testplottingapp4.Headless;
+
+/**
+ * Запрос на построение графика: выражение, область определения и число точек.
+ * <p>
+ * В тексте поля разделяются точкой с запятой: "выражение; xMin; xMax; n", например "sin(x); -10; 10; 1000".
+ */
+public final class SampleRequest {
+    /**
+     * Наибольшее число точек в одном запросе.
+     */
+    public static final long MAX_POINTS = 10000000;
+
+    private final String expression;
+    private final double xMin;
+    private final double xMax;
+    private final int    count;
+
+    /**
+     * @param _expression Выражение с переменной "x".
+     * @param _xMin       Начало области определения.
+     * @param _xMax       Конец области определения (не включается).
+     * @param _count      Число точек.
+     * @throws IllegalArgumentException Если область определения или число точек некорректны.
+     */
+    public SampleRequest (String _expression, double _xMin, double _xMax, int _count) {
+        if (_expression.trim ().isEmpty ()) {
+            throw new IllegalArgumentException ("SampleRequest: Пустое выражение.");
+        }
+        if (!(_xMin < _xMax) || Double.isInfinite (_xMin) || Double.isInfinite (_xMax)) {
+            throw new IllegalArgumentException ("SampleRequest: Некорректная область определения [" + _xMin + ", " + _xMax + ").");
+        }
+        if (_count < 1 || _count > MAX_POINTS) {
+            throw new IllegalArgumentException ("SampleRequest: Число точек должно быть от 1 до " + MAX_POINTS + ", а не " + _count + ".");
+        }
+
+        this.expression = _expression.trim ();
+        this.xMin = _xMin;
+        this.xMax = _xMax;
+        this.count = _count;
+    }
+
+    /**
+     * Разобрать запрос из текстовых полей.
+     *
+     * @throws IllegalArgumentException Если поле не является числом или значения некорректны.
+     */
+    public static SampleRequest of (String _expression, String _xMin, String _xMax, String _count) {
+        if (null == _expression || null == _xMin || null == _xMax || null == _count) {
+            throw new IllegalArgumentException ("SampleRequest: Нужны выражение, начало и конец области определения и число точек.");
+        }
+        try {
+            return new SampleRequest (_expression, Double.parseDouble (_xMin.trim ()), Double.parseDouble (_xMax.trim ()),
+                    Integer.parseInt (_count.trim ()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException ("SampleRequest: Некорректное число: " + e.getMessage () + ".");
+        }
+    }
+
+    /**
+     * Разобрать запрос из строки "выражение; xMin; xMax; n".
+     *
+     * @throws IllegalArgumentException Если строка имеет другой формат.
+     */
+    public static SampleRequest parse (String _line) {
+        String[] fields = _line.split (";", -1);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException ("SampleRequest: Ожидается \"выражение; xMin; xMax; n\", а не \"" + _line + "\".");
+        }
+        return of (fields[0], fields[1], fields[2], fields[3]);
+    }
+
+    public String getExpression () {
+        return expression;
+    }
+
+    public double getXMin () {
+        return xMin;
+    }
+
+    public double getXMax () {
+        return xMax;
+    }
+
+    public int getCount () {
+        return count;
+    }
+
+    @Override
+    public String toString () {
+        return expression + "; " + xMin + "; " + xMax + "; " + count;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example4.user.testplottingapp4.Headless;
+
+import com.example4.user.testplottingapp4.Calculator.Calculator;
+import com.example4.user.testplottingapp4.Calculator.CsvSeriesWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Пакетный режим: запросы читаются из stdin по одному в строке в формате {@link SampleRequest#parse(String)},
+ * графики пишутся в stdout в CSV в том же порядке, каждый после строки "# запрос".
+ * <p>
+ * Запросы вычисляются параллельно в {@link SamplingService}. Первый по порядку запрос пишет точки прямо в вывод
+ * по мере вычисления; следующие копят в памяти не больше {@link #BUFFER_CHARS} символов и ждут своей очереди.
+ * Чтение stdin приостанавливается, пока заняты все места или ждут вывода слишком много запросов, поэтому
+ * память не зависит ни от длины входа, ни от числа точек в запросе.
+ * Ошибка в строке не прерывает пакет: вместо графика выводится строка "# ERROR: сообщение". Ошибка JVM
+ * (например, {@link OutOfMemoryError}) прерывает пакет: уже готовый вывод сбрасывается, а программа
+ * завершается с ошибкой.
+ * <p>
+ * Если первый запрос очереди не закончил вывод за время запроса и {@link SamplingService#WRITE_GRACE_MS}, вывод
+ * не принимает данные (читатель stdout остановился). Тогда все запросы отменяются, а пакет прерывается
+ * {@link IOException}, не дожидаясь вывода.
+ */
+public class SamplingCli {
+    /**
+     * Сколько символов вывода копит запрос, пока вывод занят предыдущими запросами.
+     */
+    public static final int BUFFER_CHARS = 1 << 14;
+
+    private static final Charset UTF_8 = Charset.forName ("UTF-8");
+
+    /**
+     * Аргументы: число одновременных запросов и ограничение времени запроса в миллисекундах.
+     */
+    public static void main (String[] _args) throws IOException, InterruptedException {
+        int  maxConcurrent = _args.length > 0 ? Integer.parseInt (_args[0]) : SamplingService.DEFAULT_MAX_CONCURRENT;
+        long timeLimitMs   = _args.length > 1 ? Long.parseLong (_args[1]) : SamplingService.DEFAULT_TIME_LIMIT_MS;
+
+        try (SamplingService service = new SamplingService (maxConcurrent, timeLimitMs, SamplingService.DEFAULT_WAIT_MS)) {
+            run (new BufferedReader (new InputStreamReader (System.in, UTF_8)),
+                    new BufferedWriter (new OutputStreamWriter (System.out, UTF_8), 1 << 16), service);
+        }
+    }
+
+    /**
+     * Выполнить пакет.
+     *
+     * @param _in      Запросы.
+     * @param _out     Куда писать графики. Сбрасывается, но не закрывается.
+     * @param _service Сервис вычисления.
+     * @throws IOException Ошибка записи, или вывод не принимает данные. Во втором случае вывод не сбрасывается.
+     * @throws Error Если вычисление запроса завершилось ошибкой JVM. Вывод к этому моменту сброшен.
+     */
+    public static void run (BufferedReader _in, Writer _out, final SamplingService _service) throws IOException, InterruptedException {
+        // Вычисляемые запросы в порядке строк входа. Первый из них пишет прямо в вывод.
+        ArrayDeque<Pending> pending    = new ArrayDeque<> ();
+        int                 maxPending = 2 * _service.getMaxConcurrent ();
+        long                timeoutMs  = _service.getTimeLimitMs () + SamplingService.WRITE_GRACE_MS;
+        boolean             flush      = true;
+
+        try {
+            for (String line; null != (line = _in.readLine ()); ) {
+                if (line.trim ().isEmpty ()) {
+                    continue;
+                }
+
+                while (pending.size () >= maxPending || (!pending.isEmpty () && pending.peek ().result.isDone ())) {
+                    finishHead (pending, _out, timeoutMs);
+                }
+
+                final String text   = line;
+                final Output output = new Output (_out, pending.isEmpty ());
+                // Место освобождается и тогда, когда задачу отменили до начала.
+                FutureTask<Void> task = new FutureTask<Void> (new Callable<Void> () {
+                    @Override
+                    public Void call () throws Exception {
+                        sample (text, _service, output);
+                        return null;
+                    }
+                }) {
+                    @Override
+                    protected void done () {
+                        _service.release ();
+                    }
+                };
+                _service.acquire ();
+                try {
+                    _service.getExecutor ().execute (task);
+                    pending.add (new Pending (output, task));
+                } catch (RuntimeException e) {
+                    _service.release ();
+                    throw e;
+                }
+            }
+
+            while (!pending.isEmpty ()) {
+                finishHead (pending, _out, timeoutMs);
+            }
+        } catch (StalledOutputException e) {
+            // Сброс вывода заблокировался бы так же, как запрос.
+            flush = false;
+            throw e;
+        } finally {
+            if (flush) {
+                _out.flush ();
+            }
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Вычислить график одной строки входа и записать его.
+     */
+    private static void sample (String _line, SamplingService _service, Writer _output) throws IOException {
+        try {
+            SampleRequest request = SampleRequest.parse (_line);
+            _output.write ("# " + request + "\n");
+
+            // Небольшой буфер, чтобы ожидающий очереди запрос не копил больше BUFFER_CHARS.
+            CsvSeriesWriter         csv     = new CsvSeriesWriter (new BufferedWriter (_output, 1 << 12));
+            SamplingService.Outcome outcome = _service.stream (Calculator.compileCached (request.getExpression ()), request, csv);
+            csv.close ();
+            if (outcome != SamplingService.Outcome.COMPLETED) {
+                _output.write ("# " + outcome + "\n");
+            }
+        } catch (IllegalArgumentException | Calculator.CalculatorErrorException e) {
+            _output.write ("# ERROR: " + e.getMessage () + "\n");
+        }
+    }
+
+    /**
+     * Дождаться первого запроса очереди и передать вывод следующему.
+     *
+     * @param _timeoutMs Сколько первый запрос может писать в вывод.
+     * @throws StalledOutputException Если запрос не закончил за это время. Все запросы очереди отменены.
+     */
+    private static void finishHead (ArrayDeque<Pending> _pending, Writer _out, long _timeoutMs) throws IOException, InterruptedException {
+        Pending head = _pending.poll ();
+        try {
+            head.result.get (Math.max (0, _timeoutMs - (System.nanoTime () - head.headSince) / 1000000), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause ();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            _out.write ("# ERROR: " + cause + "\n");
+        } catch (TimeoutException e) {
+            // Вычисление к этому времени закончено, значит запрос заблокирован записью. Отмена прерывает
+            // и его, и ожидающие очереди запросы, - места освобождаются.
+            head.result.cancel (true);
+            for (Pending pending : _pending) {
+                pending.result.cancel (true);
+            }
+            throw new StalledOutputException ("SamplingCli: Вывод не принимает данные дольше " + _timeoutMs + " мс.");
+        }
+
+        Pending next = _pending.peek ();
+        if (null != next) {
+            next.headSince = System.nanoTime ();
+            next.output.becomeHead ();
+        }
+    }
+
+    /**
+     * Запрос в очереди вывода.
+     */
+    private static class Pending {
+        private final Output       output;
+        private final Future<Void> result;
+
+        /**
+         * Когда запрос стал первым в очереди, по {@link System#nanoTime()}.
+         */
+        private long headSince = System.nanoTime ();
+
+        Pending (Output _output, Future<Void> _result) {
+            this.output = _output;
+            this.result = _result;
+        }
+    }
+
+    /**
+     * Вывод не принимает данные.
+     */
+    private static class StalledOutputException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        StalledOutputException (String _message) {
+            super (_message);
+        }
+    }
+
+    /**
+     * Вывод одного запроса. Пока запрос не первый в очереди, текст копится в буфере; переполненный буфер
+     * останавливает вычисление запроса до его очереди. Первый запрос пишет прямо в общий вывод -
+     * в каждый момент это делает только он.
+     */
+    private static class Output extends Writer {
+        private final Writer  out;
+        private StringBuilder buffer = new StringBuilder ();
+        private boolean       head;
+
+        Output (Writer _out, boolean _head) {
+            this.out = _out;
+            this.head = _head;
+        }
+
+        /**
+         * Запрос стал первым в очереди: выписать накопленное и дальше писать напрямую.
+         */
+        synchronized void becomeHead () throws IOException {
+            out.append (buffer);
+            buffer = null;
+            head = true;
+            notifyAll ();
+        }
+
+        @Override
+        public synchronized void write (char[] _chars, int _offset, int _length) throws IOException {
+            try {
+                while (!head && buffer.length () > 0 && buffer.length () + _length > BUFFER_CHARS) {
+                    wait ();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread ().interrupt ();
+                throw new InterruptedIOException ("SamplingCli: Ожидание вывода прервано.");
+            }
+
+            if (head) {
+                out.write (_chars, _offset, _length);
+            } else {
+                buffer.append (_chars, _offset, _length);
+            }
+        }
+
+        @Override
+        public void flush () {
+            // Общий вывод сбрасывается в конце пакета.
+        }
+
+        @Override
+        public void close () {
+        }
+    }
+}
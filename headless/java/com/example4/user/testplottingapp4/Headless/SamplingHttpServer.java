@@ -0,0 +1,292 @@
+package com.example4.user.testplottingapp4.Headless;
+
+import com.example4.user.testplottingapp4.Calculator.Calculator;
+import com.example4.user.testplottingapp4.Calculator.CompiledExpression;
+import com.example4.user.testplottingapp4.Calculator.CsvSeriesWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP-сервер построения графиков на встроенном {@link HttpServer}.
+ * <p>
+ * GET /sample?expr=sin(x)&amp;from=-10&amp;to=10&amp;n=1000 возвращает точки графика в CSV ("x,y"). Знак "+"
+ * в выражении нужно передавать как %2B. POST /sample принимает пакет запросов - по одному в строке в формате
+ * {@link SampleRequest#parse(String)} - и возвращает их графики подряд, каждый после строки "# запрос".
+ * <p>
+ * Пакет ограничен {@link #MAX_BATCH_SIZE} запросами и {@link #MAX_BODY_BYTES} байтами; больший пакет отклоняется
+ * с кодом 413 до компиляции выражений.
+ * <p>
+ * Ответ передается по частям (chunked) по мере вычисления. Если все места {@link SamplingService} заняты,
+ * сервер отвечает 503 с заголовком Retry-After. Если время запроса истекло, ответ заканчивается строкой
+ * "# DEADLINE_EXCEEDED" - заголовки к этому моменту уже отправлены. Если клиент перестал читать ответ,
+ * соединение закрывается сторожем {@link SamplingService.Guard}.
+ */
+public class SamplingHttpServer {
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Сколько запросов может быть в пакете POST.
+     */
+    public static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * Наибольший размер тела POST в байтах.
+     */
+    public static final int MAX_BODY_BYTES = 1 << 16;
+
+    /**
+     * Очередь соединений, ожидающих принятия.
+     */
+    private static final int BACKLOG = 4096;
+
+    /**
+     * Меньше скольких секунд не ограничивать передачу ответа.
+     */
+    private static final long MIN_RESPONSE_TIME_S = 30;
+
+    private static final Charset UTF_8 = Charset.forName ("UTF-8");
+
+    private final HttpServer      server;
+    private final SamplingService service;
+
+    /**
+     * @param _address Адрес и порт. Порт 0 - любой свободный.
+     * @param _service Сервис вычисления. Его исполнитель обслуживает и соединения.
+     */
+    public SamplingHttpServer (InetSocketAddress _address, SamplingService _service) throws IOException {
+        this.service = _service;
+        this.server = HttpServer.create (_address, BACKLOG);
+        server.createContext ("/sample", new SampleHandler ());
+        server.setExecutor (_service.getExecutor ());
+    }
+
+    /**
+     * Аргументы: порт (по умолчанию {@link #DEFAULT_PORT}), число одновременных запросов и ограничение времени
+     * запроса в миллисекундах. Сервер слушает только localhost.
+     */
+    public static void main (String[] _args) throws IOException {
+        int  port          = _args.length > 0 ? Integer.parseInt (_args[0]) : DEFAULT_PORT;
+        int  maxConcurrent = _args.length > 1 ? Integer.parseInt (_args[1]) : SamplingService.DEFAULT_MAX_CONCURRENT;
+        long timeLimitMs   = _args.length > 2 ? Long.parseLong (_args[2]) : SamplingService.DEFAULT_TIME_LIMIT_MS;
+
+        // Ответ ограничивает сторож запроса, а это ограничение - остальные ответы сервера (например, 503),
+        // которые места не занимают. Под нагрузкой ответ идет дольше времени вычисления, поэтому запас большой.
+        if (null == System.getProperty ("sun.net.httpserver.maxRspTime")) {
+            System.setProperty ("sun.net.httpserver.maxRspTime", Long.toString (Math.max (MIN_RESPONSE_TIME_S, 2 * timeLimitMs / 1000 + 1)));
+        }
+
+        SamplingService    service = new SamplingService (maxConcurrent, timeLimitMs, SamplingService.DEFAULT_WAIT_MS);
+        SamplingHttpServer server  = new SamplingHttpServer (new InetSocketAddress (InetAddress.getLoopbackAddress (), port), service);
+        server.start ();
+        System.err.println ("SamplingHttpServer: http://localhost:" + server.getPort () + "/sample, мест " + maxConcurrent
+                + (service.isVirtualThreads () ? ", виртуальные потоки." : ", обычные потоки."));
+    }
+
+    public void start () {
+        server.start ();
+    }
+
+    /**
+     * Остановить сервер, дав начатым запросам до _delaySeconds секунд.
+     */
+    public void stop (int _delaySeconds) {
+        server.stop (_delaySeconds);
+        service.close ();
+    }
+
+    public int getPort () {
+        return server.getAddress ().getPort ();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Обработчик /sample.
+     */
+    private class SampleHandler implements HttpHandler {
+        @Override
+        public void handle (HttpExchange _exchange) throws IOException {
+            try {
+                List<SampleRequest>      requests  = new ArrayList<> ();
+                List<CompiledExpression> functions = new ArrayList<> ();
+                try {
+                    parse (_exchange, requests);
+                    for (SampleRequest request : requests) {
+                        functions.add (Calculator.compileCached (request.getExpression ()));
+                    }
+                } catch (PayloadTooLargeException e) {
+                    sendText (_exchange, 413, e.getMessage ());
+                    return;
+                } catch (IllegalArgumentException | Calculator.CalculatorErrorException e) {
+                    sendText (_exchange, 400, e.getMessage ());
+                    return;
+                }
+
+                boolean acquired;
+                try {
+                    acquired = service.tryAcquire ();
+                } catch (InterruptedException e) {
+                    Thread.currentThread ().interrupt ();
+                    acquired = false;
+                }
+                if (!acquired) {
+                    _exchange.getResponseHeaders ().set ("Retry-After", "1");
+                    sendText (_exchange, 503, "SamplingHttpServer: Сервер перегружен.");
+                    return;
+                }
+
+                try (SamplingService.Guard guard = service.guard ()) {
+                    stream (_exchange, requests, functions, guard);
+                } finally {
+                    service.release ();
+                }
+            } finally {
+                _exchange.close ();
+            }
+        }
+
+        /**
+         * Прочитать запросы из параметров GET или строк тела POST.
+         */
+        private void parse (HttpExchange _exchange, List<SampleRequest> _requests) throws IOException {
+            if ("POST".equalsIgnoreCase (_exchange.getRequestMethod ())) {
+                BufferedReader reader = new BufferedReader (new StringReader (readBody (_exchange)));
+                for (String line; null != (line = reader.readLine ()); ) {
+                    if (line.trim ().isEmpty ()) {
+                        continue;
+                    }
+                    if (_requests.size () == MAX_BATCH_SIZE) {
+                        throw new PayloadTooLargeException ("SamplingHttpServer: В пакете больше " + MAX_BATCH_SIZE + " запросов.");
+                    }
+                    _requests.add (SampleRequest.parse (line));
+                }
+                if (_requests.isEmpty ()) {
+                    throw new IllegalArgumentException ("SamplingHttpServer: Пустой пакет запросов.");
+                }
+                return;
+            }
+
+            Map<String, String> query = parseQuery (_exchange.getRequestURI ().getRawQuery ());
+            _requests.add (SampleRequest.of (query.get ("expr"), query.get ("from"), query.get ("to"), query.get ("n")));
+        }
+
+        /**
+         * Прочитать тело POST, не больше {@link #MAX_BODY_BYTES} байт.
+         */
+        private String readBody (HttpExchange _exchange) throws IOException {
+            String length = _exchange.getRequestHeaders ().getFirst ("Content-Length");
+            if (null != length && Long.parseLong (length.trim ()) > MAX_BODY_BYTES) {
+                throw new PayloadTooLargeException ("SamplingHttpServer: Пакет больше " + MAX_BODY_BYTES + " байт.");
+            }
+
+            // Длины может не быть (chunked), поэтому ограничение проверяется и при чтении.
+            InputStream           in     = _exchange.getRequestBody ();
+            ByteArrayOutputStream body   = new ByteArrayOutputStream ();
+            byte[]                buffer = new byte[1 << 12];
+            for (int read; (read = in.read (buffer)) > 0; ) {
+                if (body.size () + read > MAX_BODY_BYTES) {
+                    throw new PayloadTooLargeException ("SamplingHttpServer: Пакет больше " + MAX_BODY_BYTES + " байт.");
+                }
+                body.write (buffer, 0, read);
+            }
+            return new String (body.toByteArray (), UTF_8);
+        }
+
+        /**
+         * Передать графики по частям. Отсчет сторожа начинается заново для каждого запроса пакета.
+         */
+        private void stream (HttpExchange _exchange, List<SampleRequest> _requests, List<CompiledExpression> _functions,
+                             SamplingService.Guard _guard) throws IOException {
+            boolean batch = "POST".equalsIgnoreCase (_exchange.getRequestMethod ());
+            _exchange.getResponseHeaders ().set ("Content-Type", "text/csv; charset=utf-8");
+            _exchange.sendResponseHeaders (200, 0);
+
+            Writer out = new BufferedWriter (new OutputStreamWriter (_exchange.getResponseBody (), UTF_8), 1 << 14);
+            for (int i = 0; i < _requests.size (); i++) {
+                if (i > 0) {
+                    _guard.restart ();
+                }
+                if (batch) {
+                    out.write ("# " + _requests.get (i) + "\n");
+                }
+                CsvSeriesWriter         csv     = new CsvSeriesWriter (new NonClosingWriter (out));
+                SamplingService.Outcome outcome = service.stream (_functions.get (i), _requests.get (i), csv);
+                csv.close ();
+                if (outcome != SamplingService.Outcome.COMPLETED) {
+                    out.write ("# " + outcome + "\n");
+                    break;
+                }
+            }
+            out.close ();
+        }
+    }
+
+    private static void sendText (HttpExchange _exchange, int _status, String _text) throws IOException {
+        byte[] bytes = (_text + "\n").getBytes (UTF_8);
+        _exchange.getResponseHeaders ().set ("Content-Type", "text/plain; charset=utf-8");
+        _exchange.sendResponseHeaders (_status, bytes.length);
+        OutputStream body = _exchange.getResponseBody ();
+        body.write (bytes);
+        body.close ();
+    }
+
+    private static Map<String, String> parseQuery (String _rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> result = new HashMap<> ();
+        if (null == _rawQuery) {
+            return result;
+        }
+        for (String pair : _rawQuery.split ("&")) {
+            int eq = pair.indexOf ('=');
+            if (eq > 0) {
+                result.put (URLDecoder.decode (pair.substring (0, eq), "UTF-8"), URLDecoder.decode (pair.substring (eq + 1), "UTF-8"));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Пакет больше допустимого.
+     */
+    private static class PayloadTooLargeException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        PayloadTooLargeException (String _message) {
+            super (_message);
+        }
+    }
+
+    /**
+     * Обертка, которая при закрытии только сбрасывает буфер, - чтобы графики пакета писались в один ответ.
+     */
+    private static class NonClosingWriter extends FilterWriter {
+        NonClosingWriter (Writer _out) {
+            super (_out);
+        }
+
+        @Override
+        public void close () throws IOException {
+            flush ();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example4.user.testplottingapp4.Headless;
+
+import com.example4.user.testplottingapp4.Calculator.CancellationToken;
+import com.example4.user.testplottingapp4.Calculator.CompiledExpression;
+import com.example4.user.testplottingapp4.Calculator.SamplingEngine;
+import com.example4.user.testplottingapp4.Calculator.SeriesSink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Вычисление графиков без интерфейса - общая часть HTTP-сервера и пакетного режима.
+ * <p>
+ * Каждый запрос выполняется в своем виртуальном потоке, если JVM их поддерживает (Java 21+), иначе в пуле
+ * обычных потоков. Число одновременно вычисляемых запросов ограничено семафором: запрос, не получивший
+ * места за отведенное время, отклоняется, а не копится в памяти. Точки передаются получателю кусками
+ * по {@link #CHUNK_SIZE}; медленный получатель тормозит вычисление своего запроса, не занимая память.
+ * Время каждого запроса ограничено, проверка выполняется после каждого куска. Запись, в которой запрос
+ * заблокирован переставшим читать получателем, прерывает {@link Guard}.
+ */
+public class SamplingService implements Closeable {
+    public static final int  DEFAULT_MAX_CONCURRENT = 256;
+    public static final long DEFAULT_TIME_LIMIT_MS  = 10000;
+    public static final long DEFAULT_WAIT_MS        = 1000;
+
+    /**
+     * Сколько точек вычисляется и передается получателю за раз.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Сколько ответ может дописываться после истечения времени запроса: остаток буфера и строка о том,
+     * чем закончилось вычисление.
+     */
+    public static final long WRITE_GRACE_MS = 1000;
+
+    /**
+     * Чем закончилось вычисление запроса.
+     */
+    public enum Outcome {
+        /**
+         * Переданы все точки.
+         */
+        COMPLETED,
+
+        /**
+         * Истекло время запроса. Получатель получил только начало графика.
+         */
+        DEADLINE_EXCEEDED
+    }
+
+    private final ExecutorService             executor;
+    private final boolean                     virtualThreads;
+    private final ScheduledThreadPoolExecutor watchdog;
+    private final Semaphore                   permits;
+    private final int                         maxConcurrent;
+    private final long                        timeLimitMs;
+    private final long                        waitMs;
+
+    public SamplingService () {
+        this (DEFAULT_MAX_CONCURRENT, DEFAULT_TIME_LIMIT_MS, DEFAULT_WAIT_MS);
+    }
+
+    /**
+     * @param _maxConcurrent Сколько запросов вычисляется одновременно.
+     * @param _timeLimitMs   Наибольшее время вычисления одного запроса.
+     * @param _waitMs        Сколько запрос ждет свободного места, прежде чем будет отклонен.
+     */
+    public SamplingService (int _maxConcurrent, long _timeLimitMs, long _waitMs) {
+        ExecutorService virtual = newVirtualThreadExecutor ();
+        this.virtualThreads = null != virtual;
+        this.maxConcurrent = Math.max (1, _maxConcurrent);
+        this.executor = virtualThreads ? virtual : newPlatformExecutor (maxConcurrent);
+        this.watchdog = newWatchdog ();
+        this.permits = new Semaphore (maxConcurrent, true);
+        this.timeLimitMs = _timeLimitMs;
+        this.waitMs = _waitMs;
+    }
+
+    /**
+     * @return Исполнитель запросов.
+     */
+    public ExecutorService getExecutor () {
+        return executor;
+    }
+
+    /**
+     * @return Выполняются ли запросы в виртуальных потоках.
+     */
+    public boolean isVirtualThreads () {
+        return virtualThreads;
+    }
+
+    public int getMaxConcurrent () {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return Наибольшее время вычисления одного запроса.
+     */
+    public long getTimeLimitMs () {
+        return timeLimitMs;
+    }
+
+    /**
+     * Занять место для запроса, подождав не дольше отведенного времени.
+     *
+     * @return false, если все места заняты - запрос нужно отклонить.
+     */
+    public boolean tryAcquire () throws InterruptedException {
+        return permits.tryAcquire (waitMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Занять место для запроса, ожидая сколько потребуется.
+     */
+    public void acquire () throws InterruptedException {
+        permits.acquire ();
+    }
+
+    /**
+     * Освободить место, занятое {@link #tryAcquire()} или {@link #acquire()}.
+     */
+    public void release () {
+        permits.release ();
+    }
+
+    /**
+     * Вычислить график и передать точки получателю кусками. Место для запроса должно быть занято.
+     *
+     * @param _function Скомпилированное выражение запроса.
+     * @param _request  Запрос.
+     * @param _sink     Получатель точек. Не закрывается.
+     * @return Чем закончилось вычисление.
+     * @throws IOException Ошибка записи.
+     */
+    public Outcome stream (CompiledExpression _function, SampleRequest _request, SeriesSink _sink) throws IOException {
+        CancellationToken token = CancellationToken.withTimeout (timeLimitMs, TimeUnit.MILLISECONDS);
+        int               n     = _request.getCount ();
+        double            delta = (_request.getXMax () - _request.getXMin ()) / n;
+        double[]          xs    = new double[Math.min (CHUNK_SIZE, n)];
+        double[]          ys    = new double[xs.length];
+
+        for (int done = 0; done < n; done += xs.length) {
+            if (token.isDeadlineExceeded ()) {
+                return Outcome.DEADLINE_EXCEEDED;
+            }
+
+            int count = Math.min (xs.length, n - done);
+            for (int j = 0; j < count; j++) {
+                xs[j] = SamplingEngine.gridX (_request.getXMin (), delta, done + j);
+            }
+            _function.evalBatch (xs, 0, count, ys, 0);
+            _sink.write (xs, ys, 0, count);
+        }
+        return Outcome.COMPLETED;
+    }
+
+    /**
+     * Поставить сторожа на запрос текущего потока. Сторож снимается {@link Guard#close()} в том же потоке.
+     *
+     * @return Сторож, отсчет которого уже начат.
+     */
+    public Guard guard () {
+        Guard guard = new Guard (Thread.currentThread ());
+        guard.restart ();
+        return guard;
+    }
+
+    /**
+     * Перестать принимать запросы. Начатые запросы завершаются.
+     */
+    @Override
+    public void close () {
+        executor.shutdown ();
+        watchdog.shutdown ();
+    }
+
+    /**
+     * Сторож записи ответа. Если запрос вместе с записью не завершился за время запроса и {@link #WRITE_GRACE_MS},
+     * поток запроса прерывается. Прерывание закрывает канал, запись в который заблокирована (например, сокет
+     * {@link com.sun.net.httpserver.HttpServer}), и запись завершается исключением, - поэтому клиент,
+     * переставший читать ответ, не держит место запроса дольше отведенного времени.
+     */
+    public final class Guard implements Closeable {
+        private final Thread       thread;
+        private ScheduledFuture<?> alarm;
+        private int                generation;
+        private boolean            closed;
+        private boolean            fired;
+
+        private Guard (Thread _thread) {
+            this.thread = _thread;
+        }
+
+        /**
+         * Начать отсчет заново - для следующего запроса пакета.
+         */
+        public synchronized void restart () {
+            if (null != alarm) {
+                alarm.cancel (false);
+            }
+
+            final int current = ++generation;
+            try {
+                alarm = watchdog.schedule (new Runnable () {
+                    @Override
+                    public void run () {
+                        expire (current);
+                    }
+                }, timeLimitMs + WRITE_GRACE_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Сервис закрыт - запрос дописывается без сторожа.
+                alarm = null;
+            }
+        }
+
+        /**
+         * Снять сторожа. Вызывается в потоке запроса; прерывание, выставленное сторожем, сбрасывается.
+         */
+        @Override
+        public void close () {
+            boolean interrupted;
+            synchronized (this) {
+                closed = true;
+                interrupted = fired;
+                if (null != alarm) {
+                    alarm.cancel (false);
+                }
+            }
+            if (interrupted) {
+                Thread.interrupted ();
+            }
+        }
+
+        private synchronized void expire (int _generation) {
+            if (!closed && _generation == generation) {
+                fired = true;
+                thread.interrupt ();
+            }
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Исполнитель с виртуальным потоком на задачу. Вызывается через отражение, чтобы код собирался
+     * и работал и на старых JVM.
+     *
+     * @return Исполнитель или null, если виртуальные потоки не поддерживаются.
+     */
+    private static ExecutorService newVirtualThreadExecutor () {
+        try {
+            Method factory = Executors.class.getMethod ("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke (null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Нет метода, или виртуальные потоки выключены (preview в Java 19-20).
+            return null;
+        }
+    }
+
+    /**
+     * Пул обычных потоков. Потоков столько же, сколько мест, - остальные запросы ждут в очереди исполнителя.
+     */
+    private static ExecutorService newPlatformExecutor (int _threads) {
+        final AtomicInteger number = new AtomicInteger ();
+        return Executors.newFixedThreadPool (_threads, new ThreadFactory () {
+            @Override
+            public Thread newThread (Runnable _runnable) {
+                Thread thread = new Thread (_runnable, "SamplingService-" + number.incrementAndGet ());
+                thread.setDaemon (true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Поток сторожей {@link Guard}. Снятые сторожа сразу удаляются из очереди.
+     */
+    private static ScheduledThreadPoolExecutor newWatchdog () {
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor (1, new ThreadFactory () {
+            @Override
+            public Thread newThread (Runnable _runnable) {
+                Thread thread = new Thread (_runnable, "SamplingService-watchdog");
+                thread.setDaemon (true);
+                return thread;
+            }
+        });
+        watchdog.setRemoveOnCancelPolicy (true);
+        return watchdog;
+    }
+}
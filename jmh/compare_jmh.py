@@ -0,0 +1,121 @@
+#!/usr/bin/env python3
+"""Compare two JMH JSON result files and flag regressions.
+
+Usage:
+    python3 jmh/compare_jmh.py BASELINE.json CURRENT.json [--threshold 0.10] [--alloc-threshold 0.10]
+
+A benchmark regresses when its score worsens by more than the threshold AND
+by more than the combined error of both runs. Allocation per operation
+(gc.alloc.rate.norm, from the GC profiler) is compared the same way. The
+exit code is 1 if any benchmark regressed, which lets CI fail the build.
+"""
+
+import argparse
+import json
+import math
+import sys
+
+ALLOC_METRIC = "gc.alloc.rate.norm"
+
+# Allocation differences below this many bytes per operation are noise
+# (JIT-dependent escape analysis).
+ALLOC_NOISE_BYTES = 16.0
+
+
+def key(entry):
+    params = entry.get("params") or {}
+    suffix = ",".join("%s=%s" % (k, params[k]) for k in sorted(params))
+    name = entry["benchmark"].rsplit(".", 2)
+    short = ".".join(name[-2:])
+    return "%s(%s)" % (short, suffix) if suffix else short
+
+
+def alloc(entry):
+    for name, metric in (entry.get("secondaryMetrics") or {}).items():
+        if name.lstrip("·") == ALLOC_METRIC:
+            return metric
+    return None
+
+
+def error(metric):
+    value = metric.get("scoreError")
+    if value is None or value == "NaN" or (isinstance(value, float) and math.isnan(value)):
+        return 0.0
+    return float(value)
+
+
+def load(path):
+    with open(path) as f:
+        return {key(entry): entry for entry in json.load(f)}
+
+
+def compare(base, cur, lower_is_better, threshold, noise):
+    """Return the relative change (positive = worse) and whether it is a regression."""
+    b = float(base["score"])
+    c = float(cur["score"])
+    if b == 0:
+        change = 0.0 if c == 0 else math.inf
+    else:
+        change = (c - b) / abs(b)
+    if not lower_is_better:
+        change = -change
+    margin = math.hypot(error(base), error(cur))
+    worse = (c - b) if lower_is_better else (b - c)
+    return change, change > threshold and worse > max(margin, noise)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("baseline")
+    parser.add_argument("current")
+    parser.add_argument("--threshold", type=float, default=0.10, help="allowed relative slowdown (default 0.10)")
+    parser.add_argument("--alloc-threshold", type=float, default=0.10, help="allowed relative allocation growth (default 0.10)")
+    args = parser.parse_args()
+
+    baseline = load(args.baseline)
+    current = load(args.current)
+
+    regressions = 0
+    print("%-70s %14s %14s %8s %10s" % ("benchmark", "baseline", "current", "change", "alloc"))
+    for name in sorted(set(baseline) | set(current)):
+        if name not in baseline or name not in current:
+            print("%-70s %s" % (name, "only in baseline" if name in baseline else "new"))
+            continue
+
+        base = baseline[name]
+        cur = current[name]
+        lower_is_better = base.get("mode") in ("avgt", "sample", "ss")
+        change, slower = compare(base["primaryMetric"], cur["primaryMetric"], lower_is_better, args.threshold, 0.0)
+
+        alloc_note = ""
+        alloc_worse = False
+        base_alloc = alloc(base)
+        cur_alloc = alloc(cur)
+        if base_alloc is not None and cur_alloc is not None:
+            alloc_change, alloc_worse = compare(base_alloc, cur_alloc, True, args.alloc_threshold, ALLOC_NOISE_BYTES)
+            alloc_note = "%+.0f B" % (float(cur_alloc["score"]) - float(base_alloc["score"]))
+
+        flag = ""
+        if slower:
+            flag += "  REGRESSION"
+        if alloc_worse:
+            flag += "  ALLOC REGRESSION"
+        if slower or alloc_worse:
+            regressions += 1
+
+        unit = base["primaryMetric"].get("scoreUnit", "")
+        print("%-70s %14s %14s %+7.1f%% %10s%s" % (
+            name,
+            "%.3f %s" % (float(base["primaryMetric"]["score"]), unit),
+            "%.3f %s" % (float(cur["primaryMetric"]["score"]), unit),
+            100 * change, alloc_note, flag))
+
+    if regressions:
+        print("\n%d benchmark(s) regressed." % regressions)
+        return 1
+    print("\nNo regressions.")
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,101 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+
+/**
+ * Отчет об экономии вычислений при адаптивном построении графика.
+ * <p>
+ * Для каждой эталонной функции строится равномерный график из 100000 точек и адаптивный график
+ * с допуском в один пиксель. Печатается число вычислений функции, экономия и максимальное отклонение
+ * адаптивного графика от эталонного в пикселях.
+ */
+public class AdaptiveSamplingReport {
+    private static final String[] FUNCTIONS = {
+            "sin(x)",
+            "x ^ 3 - 2 * x",
+            "1.1 ^ x + sin x",
+            "ln(x ^ 2 + 1) * sin(5 * x)",
+            "sin(x ^ 2)",
+            "tan(x)",
+            "ctg(x)",
+            "1 / x",
+    };
+
+    private static final double X_MIN         = -10;
+    private static final double X_MAX         = 10;
+    private static final int    UNIFORM_COUNT = 100000;
+    private static final int    HEIGHT_PX     = 1000;
+
+    public static void main (String[] _args) throws Exception {
+        AdaptiveSampler sampler = new AdaptiveSampler ();
+
+        System.out.println (String.format ("%-28s %10s %10s %8s %10s", "function", "uniform", "adaptive", "saved", "max err px"));
+        for (String text : FUNCTIONS) {
+            CompiledExpression function = Calculator.compile (text);
+
+            double[] xs = new double[UNIFORM_COUNT + 1];
+            double[] ys = new double[UNIFORM_COUNT + 1];
+            for (int i = 0; i <= UNIFORM_COUNT; i++) {
+                xs[i] = SamplingEngine.gridX (X_MIN, (X_MAX - X_MIN) / UNIFORM_COUNT, i);
+            }
+            xs[UNIFORM_COUNT] = X_MAX;
+            function.evalBatch (xs, ys);
+
+            // Видимая область по y - без 1% самых больших и самых маленьких значений, как у графика с полюсами.
+            double[] sorted = finiteSorted (ys);
+            double   yMin   = sorted[sorted.length / 100];
+            double   yMax   = sorted[sorted.length - 1 - sorted.length / 100];
+            double   pixel  = AdaptiveSampler.pixelTolerance (yMin, yMax, HEIGHT_PX);
+
+            AdaptiveSampler.Result result = sampler.sample (function, X_MIN, X_MAX, pixel);
+
+            System.out.println (String.format ("%-28s %10d %10d %7.1f%% %10.2f", text, UNIFORM_COUNT + 1, result.getEvaluations (),
+                    100.0 * (1 - (double) result.getEvaluations () / (UNIFORM_COUNT + 1)),
+                    maxError (result, xs, ys, yMin, yMax) / pixel));
+        }
+    }
+
+    /**
+     * Максимальное отклонение ломаной адаптивного графика от эталонных точек внутри видимой области.
+     */
+    private static double maxError (AdaptiveSampler.Result _result, double[] _xs, double[] _ys, double _yMin, double _yMax) {
+        double[] rx    = _result.getXs ();
+        double[] ry    = _result.getYs ();
+        double   max   = 0;
+        int      piece = 0;
+
+        for (int i = 0; i < _xs.length; i++) {
+            while (piece < _result.getCount () - 2 && rx[piece + 1] < _xs[i]) {
+                ++piece;
+            }
+
+            double y0 = ry[piece];
+            double y1 = ry[piece + 1];
+            if (!isVisible (_ys[i], _yMin, _yMax) || !isVisible (y0, _yMin, _yMax) || !isVisible (y1, _yMin, _yMax)) {
+                continue;
+            }
+
+            double t = (_xs[i] - rx[piece]) / (rx[piece + 1] - rx[piece]);
+            max = Math.max (max, Math.abs (y0 + t * (y1 - y0) - _ys[i]));
+        }
+
+        return max;
+    }
+
+    private static boolean isVisible (double _y, double _yMin, double _yMax) {
+        return _y >= _yMin && _y <= _yMax;
+    }
+
+    private static double[] finiteSorted (double[] _ys) {
+        double[] result = new double[_ys.length];
+        int      count  = 0;
+        for (double y : _ys) {
+            if (!Double.isNaN (y) && !Double.isInfinite (y)) {
+                result[count++] = y;
+            }
+        }
+        result = Arrays.copyOf (result, count);
+        Arrays.sort (result);
+        return result;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Набор эталонных формул для бенчмарков.
+ * <p>
+ * Формулы подобраны по видам нагрузки: многочлен (только арифметика), тригонометрия, вложенные ln и ^,
+ * глубокие скобки (нагрузка на разбор). Для методов, которые не принимают переменную, x заменяется числом.
+ */
+public enum BenchmarkCorpus {
+    POLYNOMIAL ("3 * x ^ 5 - 2 * x ^ 4 + 7 * x ^ 3 - x ^ 2 + 12 * x - 4"),
+    TRIG ("sin(x) * cos(2 * x) + tan(x / 3) - ctg(x + 1) + (sin(x))^2"),
+    NESTED ("ln(ln(x ^ 2 + 2) ^ 1.5 + 1) ^ (0.5 + ln(x ^ 2 + 3))"),
+    DEEP_PARENTHESES ("(((((((x + 1) * 2 - 3) / 4 + 5) * 6 - 7) / 8 + 9) * 10 - 11) / 12 + 13) * ((((x - 1) * (x + 2)) - 3) * 4)");
+
+    /**
+     * Значение, которым заменяется x.
+     */
+    public static final String X_VALUE = "(0.5)";
+
+    private final String formula;
+
+    BenchmarkCorpus (String _formula) {
+        this.formula = _formula;
+    }
+
+    /**
+     * @return Формула с переменной x.
+     */
+    public String getFormula () {
+        return formula;
+    }
+
+    /**
+     * @return Формула без переменной - x заменен числом {@link #X_VALUE}.
+     */
+    public String getConstantFormula () {
+        return formula.replace ("x", X_VALUE);
+    }
+}
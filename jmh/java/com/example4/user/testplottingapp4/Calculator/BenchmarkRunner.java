@@ -0,0 +1,32 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск всех бенчмарков калькулятора с профилировщиком выделения памяти и сохранением результатов в JSON.
+ * <p>
+ * Аргументы: путь к файлу результатов (по умолчанию jmh-result.json) и необязательное регулярное выражение
+ * для выбора бенчмарков. Результаты сравниваются скриптом jmh/compare_jmh.py с результатами такого же запуска
+ * на базовом коммите и той же машине (базовые результаты в репозитории не хранятся, см. README):
+ * <pre>
+ * python3 jmh/compare_jmh.py baseline.json jmh-result.json
+ * </pre>
+ */
+public class BenchmarkRunner {
+    public static void main (String[] _args) throws Exception {
+        String result  = _args.length > 0 ? _args[0] : "jmh-result.json";
+        String include = _args.length > 1 ? _args[1] : BenchmarkRunner.class.getPackage ().getName () + ".*Benchmark";
+
+        Options options = new OptionsBuilder ()
+                .include (include)
+                .addProfiler (GCProfiler.class)
+                .resultFormat (ResultFormatType.JSON)
+                .result (result)
+                .build ();
+        new Runner (options).run ();
+    }
+}
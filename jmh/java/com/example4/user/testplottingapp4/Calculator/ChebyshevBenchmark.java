@@ -0,0 +1,64 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки повторного вычисления видимой части графика: {@link ChebyshevProxy}, построенное один раз
+ * на всей области, против вычисления выражения. Построение приближения измеряется отдельно.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (2)
+public class ChebyshevBenchmark {
+    private static final double DOMAIN_MIN = -10;
+    private static final double DOMAIN_MAX = 10;
+    private static final double VIEW_MIN   = -3;
+    private static final double VIEW_MAX   = 4;
+    private static final int    POINTS     = 100000;
+
+    @Param ({"TRIG", "NESTED"})
+    public BenchmarkCorpus formula;
+
+    private CompiledExpression function;
+    private ChebyshevProxy     proxy;
+    private double[]           ys;
+
+    @Setup
+    public void setUp () throws Exception {
+        function = Calculator.compile (formula.getFormula ());
+        proxy = ChebyshevProxy.build (function, DOMAIN_MIN, DOMAIN_MAX);
+        ys = new double[POINTS];
+    }
+
+    @Benchmark
+    public double[] direct () {
+        function.evalRange (VIEW_MIN, VIEW_MAX, POINTS, ys);
+        return ys;
+    }
+
+    @Benchmark
+    public double[] proxy () {
+        proxy.evalRange (VIEW_MIN, VIEW_MAX, POINTS, ys);
+        return ys;
+    }
+
+    @Benchmark
+    public ChebyshevProxy build () {
+        return ChebyshevProxy.build (function, DOMAIN_MIN, DOMAIN_MAX);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Отчет об ускорении от вычисления общих подвыражений один раз.
+ * <p>
+ * Каждая функция компилируется дважды - с общими подвыражениями и без них - и вычисляется пакетом
+ * на одной и той же сетке. Печатается число исключенных узлов и лучшее время из нескольких повторов.
+ */
+public class CommonSubexpressionsReport {
+    private static final String[] FUNCTIONS = {
+            "(sin(x))^2 + (cos(x))^2 + sin(x) * cos(x)",
+            "(x^2 + 1) / (x^2 - 1)",
+            "sin(x / 2) * cos(x / 2) + tan(sin(x / 2))",
+            "ln(x^2 + 1) * sin(ln(x^2 + 1)) - ln(x^2 + 1)",
+            "sin(x) + cos(x)",
+    };
+
+    private static final double X_MIN   = -10;
+    private static final double X_MAX   = 10;
+    private static final int    POINTS  = 1 << 20;
+    private static final int    REPEATS = 15;
+
+    public static void main (String[] _args) throws Exception {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = SamplingEngine.gridX (X_MIN, (X_MAX - X_MIN) / POINTS, i);
+        }
+
+        System.out.println (String.format ("%-46s %6s %10s %10s %8s", "function", "elim", "plain ms", "cse ms", "speedup"));
+        for (String text : FUNCTIONS) {
+            Token[]        tokens = Lexer.tokenize (text);
+            ExpressionNode tree   = Optimizer.optimize (ExpressionNode.fromRPN (Calculator.convertTokensToRPN (tokens), text));
+
+            CompiledExpression plain  = new CompiledExpression (text, tree, false);
+            CompiledExpression shared = new CompiledExpression (text, tree, true);
+
+            double plainMs  = bestTimeMs (plain, xs, ys);
+            double sharedMs = bestTimeMs (shared, xs, ys);
+
+            System.out.println (String.format ("%-46s %6d %10.2f %10.2f %7.2fx", text, shared.getEliminatedNodeCount (),
+                    plainMs, sharedMs, plainMs / sharedMs));
+        }
+    }
+
+    /**
+     * Лучшее время пакетного вычисления из {@link #REPEATS} повторов. Первые повторы прогревают JIT.
+     */
+    private static double bestTimeMs (CompiledExpression _function, double[] _xs, double[] _ys) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < REPEATS; i++) {
+            long start = System.nanoTime ();
+            _function.evalBatch (_xs, _ys);
+            best = Math.min (best, System.nanoTime () - start);
+        }
+        return best / 1E6;
+    }
+}
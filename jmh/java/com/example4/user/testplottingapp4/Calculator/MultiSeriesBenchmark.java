@@ -0,0 +1,68 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки графика из нескольких родственных серий: одна программа {@link MultiExpression} против
+ * раздельного вычисления каждой формулы.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (2)
+public class MultiSeriesBenchmark {
+    private static final double X_MIN  = -10;
+    private static final double X_MAX  = 10;
+    private static final int    POINTS = 100000;
+
+    @Param ({"1", "5", "20"})
+    public int series;
+
+    private MultiExpression      multi;
+    private CompiledExpression[] separate;
+    private double[][]           ys;
+
+    @Setup
+    public void setUp () throws Exception {
+        String[] formulas = new String[series];
+        for (int k = 0; k < series; k++) {
+            // Общая часть у всех серий, отличается только последнее слагаемое.
+            formulas[k] = "(sin(x))^2 * cos(x) + ln(x^2 + 1) + " + (k + 1) + " * x";
+        }
+
+        multi = Calculator.compileAll (formulas);
+        separate = new CompiledExpression[series];
+        for (int k = 0; k < series; k++) {
+            separate[k] = Calculator.compile (formulas[k]);
+        }
+        ys = new double[series][POINTS];
+    }
+
+    @Benchmark
+    public double[][] multiExpression () {
+        multi.evalRange (X_MIN, X_MAX, POINTS, ys);
+        return ys;
+    }
+
+    @Benchmark
+    public double[][] separateExpressions () {
+        for (int k = 0; k < series; k++) {
+            separate[k].evalRange (X_MIN, X_MAX, POINTS, ys[k]);
+        }
+        return ys;
+    }
+}
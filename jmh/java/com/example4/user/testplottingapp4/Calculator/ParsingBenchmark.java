@@ -0,0 +1,71 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки разбора и вычисления одного выражения: публичные методы {@link Calculator}, через которые
+ * проходит каждая формула.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.NANOSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (2)
+public class ParsingBenchmark {
+    @Param ({"POLYNOMIAL", "TRIG", "NESTED", "DEEP_PARENTHESES"})
+    public BenchmarkCorpus corpus;
+
+    private String formula;
+    private String constantFormula;
+    private String rpn;
+
+    @Setup
+    public void setUp () throws Exception {
+        formula = corpus.getFormula ();
+        constantFormula = corpus.getConstantFormula ();
+        rpn = Calculator.convertInfixToRPN (constantFormula);
+    }
+
+    @Benchmark
+    public String formatExpToSystemView () throws Exception {
+        return Calculator.formatExpToSystemView (formula);
+    }
+
+    @Benchmark
+    public String convertInfixToRPN () throws Exception {
+        return Calculator.convertInfixToRPN (constantFormula);
+    }
+
+    @Benchmark
+    public double calculateReversePolishNotation () throws Exception {
+        return Calculator.calculateReversePolishNotation (rpn);
+    }
+
+    @Benchmark
+    public double calculateNormalEquation () throws Exception {
+        return Calculator.calculateNormalEquation (formula, 0.5);
+    }
+
+    @Benchmark
+    public CompiledExpression compile () throws Exception {
+        return Calculator.compile (formula);
+    }
+
+    @Benchmark
+    public CompiledExpression compileCached () throws Exception {
+        return Calculator.compileCached (formula);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки построения графика без отрисовки: вычисление функции на сетке и подготовка точек для GraphView.
+ */
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (2)
+public class SamplingBenchmark {
+    private static final double X_MIN      = -10;
+    private static final double X_MAX      = 10;
+    private static final int    MAX_POINTS = 2000;
+
+    @Param ({"POLYNOMIAL", "TRIG", "NESTED", "DEEP_PARENTHESES"})
+    public BenchmarkCorpus corpus;
+
+    @Param ({"10000", "1000000"})
+    public int points;
+
+    private CompiledExpression function;
+    private SamplingEngine     engine;
+    private AdaptiveSampler    adaptive;
+    private double[]           xs;
+    private double[]           ys;
+
+    @Setup
+    public void setUp () throws Exception {
+        function = Calculator.compile (corpus.getFormula ());
+        engine = new SamplingEngine ();
+        adaptive = new AdaptiveSampler ();
+        xs = new double[points];
+        ys = new double[points];
+        for (int i = 0; i < points; i++) {
+            xs[i] = SamplingEngine.gridX (X_MIN, (X_MAX - X_MIN) / points, i);
+        }
+    }
+
+    /**
+     * Весь путь от строки до прореженных участков графика, как при нажатии кнопки построения.
+     */
+    @Benchmark
+    public int fullPlot () throws Exception {
+        CompiledExpression compiled = Calculator.compileCached (corpus.getFormula ());
+        compiled.evalRange (X_MIN, X_MAX, points, ys);
+
+        Segmenter.Segments segments = Segmenter.split (ys, points);
+        int                total    = 0;
+        for (int k = 0; k < segments.getCount (); k++) {
+            total += Decimator.decimate (Decimator.Mode.MIN_MAX, xs, ys, segments.getStart (k), segments.getEnd (k),
+                    MAX_POINTS).getCount ();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double[] evalRange () {
+        function.evalRange (X_MIN, X_MAX, points, ys);
+        return ys;
+    }
+
+    @Benchmark
+    public double evalPointwise () {
+        double sum = 0;
+        for (int i = 0; i < points; i++) {
+            sum += function.evalRaw (xs[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double[] parallelSampling () {
+        engine.sample (function, X_MIN, X_MAX, points, xs, ys);
+        return ys;
+    }
+
+    @Benchmark
+    public int adaptiveSampling () {
+        return adaptive.sample (function, X_MIN, X_MAX, AdaptiveSampler.pixelTolerance (-10, 10, 1000)).getCount ();
+    }
+}
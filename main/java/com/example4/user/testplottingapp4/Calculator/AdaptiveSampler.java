@@ -0,0 +1,251 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+
+/**
+ * Адаптивное вычисление функции: точки ставятся там, где график искривлен.
+ * <p>
+ * Сначала функция вычисляется на грубой равномерной сетке. Затем за несколько проходов каждый интервал,
+ * у которого значение в середине отклоняется от линейной интерполяции больше допуска, делится пополам.
+ * На ровных участках точек остается мало, а на пиках и около особых точек (tan, ctg, 1/x) - много.
+ * Интервал, середина которого легла на прямую, делится еще раз для проверки: середина совпадает с прямой
+ * и тогда, когда посередине точка перегиба, а четверти отклоняются на несколько допусков.
+ * Середины всех интервалов одного прохода вычисляются одним пакетом. Интервалы грубой сетки, на которых
+ * интервальная оценка функции уже уже допуска, не делятся вовсе.
+ */
+public class AdaptiveSampler {
+    public static final int DEFAULT_INITIAL_POINTS = 64;
+    public static final int DEFAULT_MAX_DEPTH      = 16;
+    public static final int DEFAULT_MAX_POINTS     = 20000;
+
+    /**
+     * Оценка ошибки половины интервала, середина которого легла на прямую: половина делится еще раз,
+     * но с наименьшим приоритетом.
+     */
+    private static final double UNCONFIRMED = Double.MIN_VALUE;
+
+    /**
+     * Результат адаптивного вычисления.
+     */
+    public static class Result {
+        private final double[] xs;
+        private final double[] ys;
+        private final int      count;
+        private final int      evaluations;
+
+        Result (double[] _xs, double[] _ys, int _count, int _evaluations) {
+            this.xs = _xs;
+            this.ys = _ys;
+            this.count = _count;
+            this.evaluations = _evaluations;
+        }
+
+        /**
+         * @return Точки по возрастанию x. Используются первые {@link #getCount()} элементов.
+         */
+        public double[] getXs () {
+            return xs;
+        }
+
+        /**
+         * @return Значения функции. Могут быть равны NaN или бесконечности.
+         */
+        public double[] getYs () {
+            return ys;
+        }
+
+        public int getCount () {
+            return count;
+        }
+
+        /**
+         * @return Сколько раз вычислялась функция.
+         */
+        public int getEvaluations () {
+            return evaluations;
+        }
+    }
+
+    private final int initialPoints;
+    private final int maxDepth;
+    private final int maxPoints;
+
+    public AdaptiveSampler () {
+        this (DEFAULT_INITIAL_POINTS, DEFAULT_MAX_DEPTH, DEFAULT_MAX_POINTS);
+    }
+
+    /**
+     * @param _initialPoints Число интервалов грубой сетки.
+     * @param _maxDepth      Сколько раз можно делить пополам интервал грубой сетки.
+     * @param _maxPoints     Общий бюджет вычислений функции.
+     */
+    public AdaptiveSampler (int _initialPoints, int _maxDepth, int _maxPoints) {
+        this.initialPoints = Math.max (1, _initialPoints);
+        this.maxDepth = _maxDepth;
+        this.maxPoints = Math.max (_maxPoints, this.initialPoints + 1);
+    }
+
+    /**
+     * Допуск в единицах y, соответствующий одному пикселю по высоте.
+     *
+     * @param _yMin     Нижняя граница видимой области.
+     * @param _yMax     Верхняя граница видимой области.
+     * @param _heightPx Высота графика в пикселях.
+     * @return Размер одного пикселя по оси y.
+     */
+    public static double pixelTolerance (double _yMin, double _yMax, int _heightPx) {
+        return (_yMax - _yMin) / Math.max (1, _heightPx);
+    }
+
+    /**
+     * Вычислить функцию на отрезке [xMin, xMax] (оба конца включаются).
+     *
+     * @param _function  Функция.
+     * @param _xMin      Начало отрезка.
+     * @param _xMax      Конец отрезка.
+     * @param _tolerance Допустимое отклонение середины интервала от линейной интерполяции, в единицах y.
+     * @return Точки по возрастанию x и число вычислений функции.
+     */
+    public Result sample (CompiledExpression _function, double _xMin, double _xMax, double _tolerance) {
+        // Грубая сетка. Последняя точка - ровно xMax.
+        int      count = initialPoints + 1;
+        double[] xs    = new double[count];
+        double[] ys    = new double[count];
+        double   delta = (_xMax - _xMin) / initialPoints;
+        for (int i = 0; i < initialPoints; i++) {
+            xs[i] = SamplingEngine.gridX (_xMin, delta, i);
+        }
+        xs[initialPoints] = _xMax;
+        _function.evalBatch (xs, 0, count, ys, 0);
+        int evaluations = count;
+
+        // Оценка ошибки каждого интервала [i, i + 1]. 0 - интервал делить не нужно.
+        double[] errors = new double[count - 1];
+        Arrays.fill (errors, Double.POSITIVE_INFINITY);
+
+        // Интервал, на котором функция гарантированно определена и меняется меньше чем на допуск,
+        // делить незачем: никакие точки внутри не изменят график больше чем на пиксель.
+        for (int i = 0; i < count - 1; i++) {
+            Interval enclosure = _function.evalInterval (xs[i], xs[i + 1]);
+            if (!enclosure.mayBeInvalid () && enclosure.getWidth () <= _tolerance) {
+                errors[i] = 0;
+            }
+        }
+
+        double[]  midXs = new double[count];
+        double[]  midYs = new double[count];
+        boolean[] split = new boolean[count];
+
+        for (int depth = 0; depth < maxDepth; depth++) {
+            int budget = maxPoints - evaluations;
+            if (budget <= 0) {
+                break;
+            }
+
+            // Если интервалов к делению больше, чем позволяет бюджет, делим только самые неточные.
+            double threshold = selectThreshold (errors, count - 1, budget);
+            if (threshold <= 0) {
+                break;
+            }
+
+            // Середины выбранных интервалов.
+            int mids = 0;
+            for (int i = 0; i < count - 1; i++) {
+                split[i] = errors[i] >= threshold && mids < budget;
+                if (split[i]) {
+                    midXs[mids++] = 0.5 * (xs[i] + xs[i + 1]);
+                }
+            }
+            _function.evalBatch (midXs, 0, mids, midYs, 0);
+            evaluations += mids;
+
+            // Сливаем середины с имеющимися точками.
+            int      newCount  = count + mids;
+            double[] newXs     = new double[newCount];
+            double[] newYs     = new double[newCount];
+            double[] newErrors = new double[newCount - 1];
+            int      j         = 0;
+            int      m         = 0;
+            for (int i = 0; i < count - 1; i++) {
+                newXs[j] = xs[i];
+                newYs[j] = ys[i];
+
+                if (!split[i]) {
+                    // Интервал не делился - сохраняем его прежнюю оценку.
+                    newErrors[j++] = errors[i];
+                    continue;
+                }
+
+                // Середина на прямой - готовы половины проверенного интервала, а половины нового проверяются.
+                double error = deviation (ys[i], midYs[m], ys[i + 1]);
+                double next  = error > _tolerance ? error : errors[i] == UNCONFIRMED ? 0 : UNCONFIRMED;
+                newErrors[j++] = next;
+                newXs[j] = midXs[m];
+                newYs[j] = midYs[m++];
+                newErrors[j++] = next;
+            }
+            newXs[j] = xs[count - 1];
+            newYs[j] = ys[count - 1];
+
+            xs = newXs;
+            ys = newYs;
+            errors = newErrors;
+            count = newCount;
+            if (midXs.length < count) {
+                midXs = new double[count];
+                midYs = new double[count];
+                split = new boolean[count];
+            }
+        }
+
+        return new Result (xs, ys, count, evaluations);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Отклонение значения в середине интервала от линейной интерполяции по концам.
+     * Если часть значений не является конечным числом, интервал содержит разрыв или границу области определения
+     * и считается бесконечно неточным.
+     */
+    static double deviation (double _ya, double _ym, double _yb) {
+        boolean finiteA = !Double.isNaN (_ya) && !Double.isInfinite (_ya);
+        boolean finiteM = !Double.isNaN (_ym) && !Double.isInfinite (_ym);
+        boolean finiteB = !Double.isNaN (_yb) && !Double.isInfinite (_yb);
+
+        if (finiteA && finiteM && finiteB) {
+            return Math.abs (_ym - 0.5 * (_ya + _yb));
+        }
+        if (!finiteA && !finiteM && !finiteB) {
+            return 0;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Найти порог ошибки, при котором делится не больше _budget интервалов.
+     *
+     * @return Порог; 0 или меньше - делить нечего.
+     */
+    private static double selectThreshold (double[] _errors, int _count, int _budget) {
+        int    active = 0;
+        double min    = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < _count; i++) {
+            if (_errors[i] > 0) {
+                ++active;
+                min = Math.min (min, _errors[i]);
+            }
+        }
+
+        if (active == 0) {
+            return 0;
+        }
+        if (active <= _budget) {
+            return min;
+        }
+
+        double[] sorted = Arrays.copyOf (_errors, _count);
+        Arrays.sort (sorted);
+        return sorted[_count - _budget];
+    }
+}
@@ -0,0 +1,352 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Компиляция программы {@link Interpreter} в байткод JVM.
+ * <p>
+ * Для выражения генерируется класс, реализующий {@link DoubleUnaryOperator}, метод applyAsDouble которого -
+ * линейная последовательность инструкций без ветвлений: константы берутся инструкцией ldc2_w, x - из первого
+ * аргумента, временные ячейки общих подвыражений - из локальных переменных, функции вызываются через
+ * java.lang.Math, как и в интерпретаторе. Такой метод JIT-компилятор встраивает целиком.
+ * Ветвлений нет, поэтому таблица StackMapTable не нужна.
+ * <p>
+ * Класс загружается отдельным загрузчиком, поэтому выгружается вместе с выражением. На Android классы JVM
+ * загружать нельзя - там {@link #compile(CompiledExpression)} возвращает null.
+ */
+final class BytecodeCompiler {
+    private static final String CLASS_NAME = "com/example4/user/testplottingapp4/Calculator/GeneratedExpression";
+
+    // Используемые инструкции JVM.
+    private static final int DCONST_1      = 0x0f;
+    private static final int LDC2_W        = 0x14;
+    private static final int DLOAD         = 0x18;
+    private static final int DLOAD_1       = 0x27;
+    private static final int ALOAD_0       = 0x2a;
+    private static final int DSTORE        = 0x39;
+    private static final int POP2          = 0x58;
+    private static final int DUP2          = 0x5c;
+    private static final int DUP2_X2       = 0x5e;
+    private static final int DADD          = 0x63;
+    private static final int DSUB          = 0x67;
+    private static final int DMUL          = 0x6b;
+    private static final int DDIV          = 0x6f;
+    private static final int DNEG          = 0x77;
+    private static final int DRETURN       = 0xaf;
+    private static final int RETURN        = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC  = 0xb8;
+
+    /**
+     * Ограничение JVM на длину метода.
+     */
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private BytecodeCompiler () {
+    }
+
+    /**
+     * Скомпилировать выражение в класс JVM.
+     *
+     * @param _expression Скомпилированное выражение.
+     * @return Реализация выражения или null, если загрузка сгенерированных классов недоступна
+     * или выражение слишком велико.
+     */
+    static DoubleUnaryOperator compile (CompiledExpression _expression) {
+        byte[] classFile = generate (_expression);
+        if (null == classFile) {
+            return null;
+        }
+
+        try {
+            Class<?> type = new Loader (BytecodeCompiler.class.getClassLoader ()).define (CLASS_NAME.replace ('/', '.'), classFile);
+            return (DoubleUnaryOperator) type.getDeclaredConstructor ().newInstance ();
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Сгенерировать файл класса.
+     *
+     * @return Файл класса или null, если выражение не помещается в ограничения JVM.
+     */
+    static byte[] generate (CompiledExpression _expression) {
+        int[]        code      = _expression.getCode ();
+        double[]     constants = _expression.getConstants ();
+        int          tempBase  = _expression.getStackSize () - _expression.getTemporaryCount ();
+        ConstantPool pool      = new ConstantPool ();
+
+        // Локальные переменные: 0 - this, 1-2 - x, дальше по две ячейки на временную ячейку.
+        int maxLocals = 3 + 2 * _expression.getTemporaryCount ();
+        if (maxLocals > 255) {
+            return null;
+        }
+
+        ByteArrayOutputStream body  = new ByteArrayOutputStream (4 * code.length);
+        int                   depth = 0;
+        int                   max   = 0;
+        for (int pc = 0; pc < code.length; ) {
+            int opcode = code[pc++];
+            switch (opcode) {
+                case Interpreter.CONST:
+                    body.write (LDC2_W);
+                    writeShort (body, pool.doubleConstant (constants[code[pc++]]));
+                    ++depth;
+                    break;
+                case Interpreter.VAR:
+                    ++pc;
+                    body.write (DLOAD_1);
+                    ++depth;
+                    break;
+                case Interpreter.STORE:
+                    body.write (DUP2);
+                    body.write (DSTORE);
+                    body.write (3 + 2 * (code[pc++] - tempBase));
+                    max = Math.max (max, depth + 1);
+                    break;
+                case Interpreter.LOAD:
+                    body.write (DLOAD);
+                    body.write (3 + 2 * (code[pc++] - tempBase));
+                    ++depth;
+                    break;
+                case Interpreter.ADD:
+                    body.write (DADD);
+                    --depth;
+                    break;
+                case Interpreter.SUB:
+                    body.write (DSUB);
+                    --depth;
+                    break;
+                case Interpreter.MUL:
+                    body.write (DMUL);
+                    --depth;
+                    break;
+                case Interpreter.DIV:
+                    body.write (DDIV);
+                    --depth;
+                    break;
+                case Interpreter.POW:
+                    invokeMath (body, pool, "pow", "(DD)D");
+                    --depth;
+                    break;
+                case Interpreter.NEG:
+                    body.write (DNEG);
+                    break;
+                case Interpreter.SIN:
+                    invokeMath (body, pool, "sin", "(D)D");
+                    break;
+                case Interpreter.COS:
+                    invokeMath (body, pool, "cos", "(D)D");
+                    break;
+                case Interpreter.TAN:
+                    invokeMath (body, pool, "tan", "(D)D");
+                    break;
+                case Interpreter.CTG:
+                    // 1.0 / tan(a): [tan] -> [tan, 1] -> [1, tan, 1] -> [1, tan] -> [1 / tan].
+                    invokeMath (body, pool, "tan", "(D)D");
+                    body.write (DCONST_1);
+                    body.write (DUP2_X2);
+                    body.write (POP2);
+                    body.write (DDIV);
+                    max = Math.max (max, depth + 2);
+                    break;
+                case Interpreter.LN:
+                    invokeMath (body, pool, "log", "(D)D");
+                    break;
+                default:
+                    throw new IllegalStateException ("Bytecode: Неизвестный код операции: " + opcode + ".");
+            }
+            max = Math.max (max, depth);
+        }
+        body.write (DRETURN);
+
+        if (body.size () > MAX_CODE_LENGTH) {
+            return null;
+        }
+
+        try {
+            return writeClass (pool, body.toByteArray (), 2 * max, maxLocals);
+        } catch (IOException e) {
+            throw new IllegalStateException ("Bytecode: Ошибка записи класса.", e);
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static void invokeMath (ByteArrayOutputStream _body, ConstantPool _pool, String _name, String _descriptor) {
+        _body.write (INVOKESTATIC);
+        writeShort (_body, _pool.methodRef ("java/lang/Math", _name, _descriptor));
+    }
+
+    private static void writeShort (ByteArrayOutputStream _out, int _value) {
+        _out.write (_value >>> 8);
+        _out.write (_value);
+    }
+
+    /**
+     * Записать файл класса: конструктор по умолчанию и метод applyAsDouble.
+     */
+    private static byte[] writeClass (ConstantPool _pool, byte[] _body, int _maxStack, int _maxLocals) throws IOException {
+        int thisClass     = _pool.classRef (CLASS_NAME);
+        int superClass    = _pool.classRef ("java/lang/Object");
+        int interfaceType = _pool.classRef ("java/util/function/DoubleUnaryOperator");
+        int superInit     = _pool.methodRef ("java/lang/Object", "<init>", "()V");
+        int codeName      = _pool.utf8 ("Code");
+        int initName      = _pool.utf8 ("<init>");
+        int initType      = _pool.utf8 ("()V");
+        int applyName     = _pool.utf8 ("applyAsDouble");
+        int applyType     = _pool.utf8 ("(D)D");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream (256 + _body.length);
+        DataOutputStream      out   = new DataOutputStream (bytes);
+
+        out.writeInt (0xCAFEBABE);
+        out.writeShort (0);
+        out.writeShort (52); // Java 8.
+        _pool.writeTo (out);
+        out.writeShort (0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort (thisClass);
+        out.writeShort (superClass);
+        out.writeShort (1);
+        out.writeShort (interfaceType);
+        out.writeShort (0); // Полей нет.
+        out.writeShort (2);
+
+        byte[] init = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (superInit >>> 8), (byte) superInit, (byte) RETURN};
+        writeMethod (out, initName, initType, codeName, init, 1, 1);
+        writeMethod (out, applyName, applyType, codeName, _body, _maxStack, _maxLocals);
+
+        out.writeShort (0); // Атрибутов класса нет.
+        out.flush ();
+        return bytes.toByteArray ();
+    }
+
+    private static void writeMethod (DataOutputStream _out, int _name, int _type, int _codeName, byte[] _code,
+                                     int _maxStack, int _maxLocals) throws IOException {
+        _out.writeShort (0x0001); // public
+        _out.writeShort (_name);
+        _out.writeShort (_type);
+        _out.writeShort (1);
+        _out.writeShort (_codeName);
+        _out.writeInt (12 + _code.length);
+        _out.writeShort (_maxStack);
+        _out.writeShort (_maxLocals);
+        _out.writeInt (_code.length);
+        _out.write (_code);
+        _out.writeShort (0); // Таблица исключений.
+        _out.writeShort (0); // Атрибуты кода.
+    }
+
+    /**
+     * Пул констант файла класса. Одинаковые записи не дублируются.
+     */
+    private static class ConstantPool {
+        private final HashMap<String, Integer> indexes = new HashMap<> ();
+        private final ByteArrayOutputStream    bytes   = new ByteArrayOutputStream ();
+        private final DataOutputStream         out     = new DataOutputStream (bytes);
+
+        /**
+         * Номер следующей записи. Нумерация с 1, double занимает две записи.
+         */
+        private int next = 1;
+
+        int utf8 (String _value) {
+            Integer index = indexes.get ("U" + _value);
+            if (null != index) {
+                return index;
+            }
+            try {
+                out.writeByte (1);
+                out.writeUTF (_value);
+            } catch (IOException e) {
+                throw new IllegalStateException (e);
+            }
+            return register ("U" + _value, 1);
+        }
+
+        int classRef (String _internalName) {
+            Integer index = indexes.get ("C" + _internalName);
+            if (null != index) {
+                return index;
+            }
+            int name = utf8 (_internalName);
+            writeEntry (7, name);
+            return register ("C" + _internalName, 1);
+        }
+
+        int methodRef (String _owner, String _name, String _descriptor) {
+            String  key   = "M" + _owner + "." + _name + _descriptor;
+            Integer index = indexes.get (key);
+            if (null != index) {
+                return index;
+            }
+            int owner = classRef (_owner);
+            int name  = utf8 (_name);
+            int type  = utf8 (_descriptor);
+            writeEntry (12, name, type);
+            int nameAndType = register ("N" + _name + _descriptor, 1);
+            writeEntry (10, owner, nameAndType);
+            return register (key, 1);
+        }
+
+        /**
+         * Константа double. Ключ - биты числа, чтобы NaN и -0.0 сохранялись как есть.
+         */
+        int doubleConstant (double _value) {
+            long    bits  = Double.doubleToRawLongBits (_value);
+            Integer index = indexes.get ("D" + bits);
+            if (null != index) {
+                return index;
+            }
+            try {
+                out.writeByte (6);
+                out.writeLong (bits);
+            } catch (IOException e) {
+                throw new IllegalStateException (e);
+            }
+            return register ("D" + bits, 2);
+        }
+
+        void writeTo (DataOutputStream _out) throws IOException {
+            _out.writeShort (next);
+            out.flush ();
+            _out.write (bytes.toByteArray ());
+        }
+
+        private void writeEntry (int _tag, int... _indexes) {
+            try {
+                out.writeByte (_tag);
+                for (int index : _indexes) {
+                    out.writeShort (index);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException (e);
+            }
+        }
+
+        private int register (String _key, int _slots) {
+            int index = next;
+            indexes.put (_key, index);
+            next += _slots;
+            return index;
+        }
+    }
+
+    /**
+     * Загрузчик одного сгенерированного класса.
+     */
+    private static class Loader extends ClassLoader {
+        Loader (ClassLoader _parent) {
+            super (_parent);
+        }
+
+        Class<?> define (String _name, byte[] _classFile) {
+            return defineClass (_name, _classFile, 0, _classFile.length);
+        }
+    }
+}
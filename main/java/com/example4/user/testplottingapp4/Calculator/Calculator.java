@@ -2,19 +2,20 @@ package com.example4.user.testplottingapp4.Calculator;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.EmptyStackException;
-import java.util.Stack;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * Класс калькулятора. Калькулятор со скобками.
  * <p>
- * !!!ВНИМАНИЕ!! Операторы не должны содеражать части названий друг друга.
- * Например, не допускается делать операторы вида "tan" и "ctan". ctan содержит tan. Так нельзя.
+ * Выражение разбирается на лексемы классом {@link Lexer}, поэтому операторы могут содержать
+ * названия друг друга: при разборе выбирается самое длинное совпадение.
  * <p>
- * Чтобы добавить новый оператор, надо внести изменения в 4 места:
- * - REGEX_OPERATORS
- * - getPriority()
- * - isLeftAssociative()
+ * Чтобы добавить новый оператор, надо внести изменения в 2 места:
+ * - {@link Operator}
  * - calculateReversePolishNotation()
  */
 public class Calculator {
@@ -24,9 +25,27 @@ public class Calculator {
     public static final String REGEX_DOUBLE = "^-?(0|[1-9][0-9]*)(\\.[0-9]+)*(E-?[1-9][0-9]*)?$";
 
     /**
-     * Регулярка для определения операторов.
+     * Регулярка для определения переменной.
      */
-    protected static String REGEX_OPERATORS = "^(\\+|-|\\*|/|\\^|±|sin|cos|tan|ctg|ln)$";
+    protected static final String REGEX_VARIABLE = "^[xXyY]$";
+
+    /**
+     * Скомпилированные регулярки, чтобы не компилировать их при каждой проверке.
+     */
+    private static final Pattern PATTERN_DOUBLE     = Pattern.compile (REGEX_DOUBLE);
+    private static final Pattern PATTERN_VARIABLE   = Pattern.compile (REGEX_VARIABLE);
+    private static final Pattern PATTERN_WHITESPACE = Pattern.compile ("\\s");
+
+    /**
+     * Общий кэш скомпилированных выражений.
+     */
+    private static final ExpressionCache EXPRESSION_CACHE = new ExpressionCache ();
+
+    /**
+     * Получатель метрик или null, если метрики выключены.
+     */
+    private static volatile CalculatorListener listener;
+
     //------------------------------------------------------------------------------------------------------------------
 
     /**
@@ -70,9 +89,174 @@ public class Calculator {
      * @throws CalculatorErrorException
      */
     public static double calculateNormalEquation (String _expressionNormal, double _x) throws CalculatorErrorException, CalculatorNaNException {
-        _expressionNormal = _expressionNormal.replaceAll ("[xX]", "(" + _x + ")");
+        return compile (_expressionNormal).eval (_x);
+    }
+
+    /**
+     * Скомпилировать выражение с переменной "x" для многократного вычисления.
+     * Разбор строки выполняется один раз, после чего значение в каждой точке считается без работы со строками.
+     *
+     * @param _expressionNormal Строка с выражением. Может содержать символ "x".
+     * @return Скомпилированное выражение.
+     * @throws CalculatorErrorException Бросает исключения в случае синтаксических ошибок или неправильности скобочной структуры.
+     */
+    public static CompiledExpression compile (String _expressionNormal) throws CalculatorErrorException {
+        return requireOneVariable (compile2D (_expressionNormal));
+    }
+
+    /**
+     * Скомпилировать функцию двух переменных "x" и "y" - например, для неявной кривой x^2 + y^2 - 1 = 0.
+     * Вычисляется методами {@link CompiledExpression#evalRaw(double, double)} и {@link GridEvaluator}.
+     *
+     * @param _expressionNormal Строка с выражением. Может содержать символы "x" и "y".
+     * @return Скомпилированное выражение.
+     * @throws CalculatorErrorException Бросает исключения в случае синтаксических ошибок или неправильности скобочной структуры.
+     */
+    public static CompiledExpression compile2D (String _expressionNormal) throws CalculatorErrorException {
+        Token[] tokens = tokenize (_expressionNormal);
+
+        return compileTokens (tokens, Lexer.join (Arrays.asList (tokens)));
+    }
+
+    /**
+     * Скомпилировать несколько выражений с переменной "x" в одну программу для графика из нескольких серий.
+     * Подвыражения, общие для разных формул, вычисляются один раз на точку.
+     *
+     * @param _expressionsNormal Строки с выражениями - по одной на серию.
+     * @return Скомпилированные выражения.
+     * @throws CalculatorErrorException Если какое-то выражение некорректно или выражений нет.
+     */
+    public static MultiExpression compileAll (String... _expressionsNormal) throws CalculatorErrorException {
+        if (_expressionsNormal.length == 0) {
+            throw new CalculatorErrorException ("CompileAll: Не передано ни одного выражения.");
+        }
+
+        CompiledExpression[] expressions = new CompiledExpression[_expressionsNormal.length];
+        for (int i = 0; i < expressions.length; i++) {
+            expressions[i] = compile (_expressionsNormal[i]);
+        }
+        return new MultiExpression (expressions);
+    }
+
+    /**
+     * Скомпилировать выражение с переменной "x" через общий кэш {@link #getExpressionCache()}, как {@link #compile}.
+     * Повторная компиляция того же выражения не выполняет даже разбора.
+     *
+     * @param _expressionNormal Выражение в нормальной форме.
+     * @return Скомпилированное выражение.
+     * @throws CalculatorErrorException Если выражение некорректно или содержит "y".
+     */
+    public static CompiledExpression compileCached (String _expressionNormal) throws CalculatorErrorException {
+        // Кэш общий для функций одной и двух переменных, поэтому проверка - и при попадании в кэш.
+        return requireOneVariable (EXPRESSION_CACHE.get (_expressionNormal));
+    }
+
+    /**
+     * @return Общий кэш скомпилированных выражений.
+     */
+    public static ExpressionCache getExpressionCache () {
+        return EXPRESSION_CACHE;
+    }
+
+    /**
+     * Установить получатель метрик, например {@link CalculatorMetrics}. Без него время не измеряется
+     * и промежуточные формы не собираются.
+     *
+     * @param _listener Получатель или null, чтобы выключить метрики.
+     */
+    public static void setListener (CalculatorListener _listener) {
+        listener = _listener;
+    }
+
+    /**
+     * @return Получатель метрик или null, если метрики выключены.
+     */
+    public static CalculatorListener getListener () {
+        return listener;
+    }
+
+    /**
+     * Разобрать выражение на лексемы, сообщив получателю метрик о длительности.
+     *
+     * @param _exp Выражение в нормальной форме.
+     * @return Лексемы.
+     * @throws CalculatorErrorException Если выражение некорректно.
+     */
+    static Token[] tokenize (String _exp) throws CalculatorErrorException {
+        CalculatorListener listener = Calculator.listener;
+        if (null == listener) {
+            return Lexer.tokenize (_exp);
+        }
+
+        long    start  = System.nanoTime ();
+        Token[] tokens = Lexer.tokenize (_exp);
+        listener.onStage (CalculatorListener.Stage.TOKENIZE, System.nanoTime () - start);
+        if (listener.isTraceEnabled ()) {
+            listener.onTrace (CalculatorListener.Stage.TOKENIZE, Lexer.join (Arrays.asList (tokens)));
+        }
+        return tokens;
+    }
+
+    /**
+     * Скомпилировать лексемы инфиксного выражения: преобразовать в ОПН и передать в {@link #compileRPN}.
+     *
+     * @param _tokens Лексемы выражения.
+     * @param _source Выражение в системном виде.
+     * @return Скомпилированное выражение.
+     * @throws CalculatorErrorException Если выражение некорректно.
+     */
+    static CompiledExpression compileTokens (Token[] _tokens, String _source) throws CalculatorErrorException {
+        CalculatorListener listener = Calculator.listener;
+        if (null == listener) {
+            return compileRPN (convertTokensToRPN (_tokens), _source);
+        }
+
+        long             start = System.nanoTime ();
+        ArrayList<Token> rpn   = convertTokensToRPN (_tokens);
+        listener.onStage (CalculatorListener.Stage.TO_RPN, System.nanoTime () - start);
+        if (listener.isTraceEnabled ()) {
+            listener.onTrace (CalculatorListener.Stage.TO_RPN, joinRPN (rpn));
+        }
+        return compileRPN (rpn, _source);
+    }
+
+    /**
+     * Скомпилировать выражение в ОПН: построить дерево, оптимизировать его и сгенерировать программу.
+     *
+     * @param _rpn    Лексемы выражения в ОПН.
+     * @param _source Выражение в системном виде.
+     * @return Скомпилированное выражение.
+     * @throws CalculatorErrorException Если ОПН некорректна.
+     */
+    protected static CompiledExpression compileRPN (List<Token> _rpn, String _source) throws CalculatorErrorException {
+        CalculatorListener listener = Calculator.listener;
+        if (null == listener) {
+            return new CompiledExpression (_source, Optimizer.optimize (ExpressionNode.fromRPN (_rpn, _source)));
+        }
+
+        long           start = System.nanoTime ();
+        ExpressionNode tree  = Optimizer.optimize (ExpressionNode.fromRPN (_rpn, _source));
+        long           built = System.nanoTime ();
+        listener.onStage (CalculatorListener.Stage.OPTIMIZE, built - start);
+        if (listener.isTraceEnabled ()) {
+            listener.onTrace (CalculatorListener.Stage.OPTIMIZE, tree.toString ());
+        }
 
-        return calculateReversePolishNotation (convertInfixToRPN (_expressionNormal));
+        CompiledExpression expression = new CompiledExpression (_source, tree);
+        listener.onStage (CalculatorListener.Stage.CODEGEN, System.nanoTime () - built);
+        return expression;
+    }
+
+    /**
+     * @return Выражение, если оно зависит только от "x".
+     * @throws CalculatorErrorException Если выражение содержит "y".
+     */
+    private static CompiledExpression requireOneVariable (CompiledExpression _expression) throws CalculatorErrorException {
+        if (_expression.getVariableCount () > 1) {
+            throw new CalculatorErrorException ("Compile: Переменная \"y\" допустима только в функциях двух переменных. Выражение: \""
+                    + _expression.getSource () + "\".");
+        }
+        return _expression;
     }
 
     //------------------------------------------------------------------------------------------------------------------
@@ -86,66 +270,82 @@ public class Calculator {
      * @return Выражение в форме RPN.
      */
     public static String convertInfixToRPN (String _exp) throws CalculatorErrorException, CalculatorNaNException {
-        // Стек. На нем будем вычислять.
-        Stack<String> stack = new Stack<String> ();
-
-        // Итоговая строка
-        String result = "";
-
-        String exp = formatExpToSystemView (_exp);
-        System.out.println ("ToRPN: Выражение в инфиксной форме (User):   \"" + _exp + "\".");
-        System.out.println ("ToRPN: Выражение в инфиксной форме (System): \"" + exp + "\".");
-        if (!checkBracketsStructure (exp)) {
-            throw new CalculatorErrorException ("ToRPN: Структура скобок неверна!");
+        Token[]            tokens   = tokenize (_exp);
+        CalculatorListener listener = Calculator.listener;
+        long               start    = null == listener ? 0 : System.nanoTime ();
+        String             result   = joinRPN (convertTokensToRPN (tokens));
+        if (null != listener) {
+            listener.onStage (CalculatorListener.Stage.TO_RPN, System.nanoTime () - start);
+            if (listener.isTraceEnabled ()) {
+                listener.onTrace (CalculatorListener.Stage.TO_RPN, result);
+            }
         }
+        return result;
+    }
 
-        // Проходимся по символам.
-        String[] chars = exp.trim ().split ("\\s");
-        for (String token : chars) {
-            //----------------------------
-            if (isNumber (token)) {
-                result += token + " ";
-            } else if (token.equals ("(")) {
-                stack.push (token);
-            } else if (token.equals (")")) {
-                try {
-                    while (!stack.peek ().equals ("(")) {
-                        result += stack.pop () + " ";
+    /**
+     * Преобразовать лексемы инфиксного выражения в лексемы ОПН (алгоритм сортировочной станции).
+     *
+     * @param _tokens Лексемы выражения в инфиксной форме.
+     * @return Лексемы выражения в ОПН.
+     * @throws CalculatorErrorException Если структура скобок неверна.
+     */
+    protected static ArrayList<Token> convertTokensToRPN (Token[] _tokens) throws CalculatorErrorException {
+        // Стек операторов и скобок.
+        ArrayDeque<Token> stack = new ArrayDeque<> ();
+
+        // Итоговый список лексем.
+        ArrayList<Token> result = new ArrayList<> (_tokens.length);
+
+        for (Token token : _tokens) {
+            switch (token.getType ()) {
+                case NUMBER:
+                case VARIABLE:
+                    result.add (token);
+                    break;
+
+                case LEFT_BRACKET:
+                    stack.push (token);
+                    break;
+
+                case RIGHT_BRACKET:
+                    while (!stack.isEmpty () && stack.peek ().getType () != Token.Type.LEFT_BRACKET) {
+                        result.add (stack.pop ());
+                    }
+                    if (stack.isEmpty ()) {
+                        throw new CalculatorErrorException ("ToRPN: Структура скобок неверна!");
                     }
                     stack.pop ();// Извлекаем открывающую скобку, не добавляя ее в выходную строку.
-                } catch (EmptyStackException e) {
-                    throw new CalculatorErrorException ("ToRPN: Синтаксическая ошибка при конвертации в RPN: неверный разделитель. Выражение: \"" + exp + "\".");
-                }
-            } else {
-                while (!stack.isEmpty ()) {
-                    // Если на вершине стека оператор и приоритет текущего оператора меньше чем топового
-                    // - кладем топовый в вывод.
-                    if (isOperator (stack.peek ()) &&
-                            ((isLeftAssociative (token) && (getPriority (token) <= getPriority (stack.peek ())))
-                                    || (!isLeftAssociative (token) && (getPriority (token) < getPriority (stack.peek ()))))) {
-                        // Кладем топовый оператор в вывод.
-                        result += stack.pop () + " ";
-                    } else {
-                        break;
+                    break;
+
+                case OPERATOR:
+                    Operator op = token.getOperator ();
+                    // Префиксный унарный оператор еще не имеет операнда, поэтому ничего не выталкивает.
+                    while (op.getArity () == 2 && !stack.isEmpty () && stack.peek ().getType () == Token.Type.OPERATOR) {
+                        // Если приоритет текущего оператора меньше чем топового - кладем топовый в вывод.
+                        Operator top = stack.peek ().getOperator ();
+                        if ((op.isLeftAssociative () && (op.getPriority () <= top.getPriority ()))
+                                || (!op.isLeftAssociative () && (op.getPriority () < top.getPriority ()))) {
+                            result.add (stack.pop ());
+                        } else {
+                            break;
+                        }
                     }
-                }
 
-                // Помещаем текущий оператор в стек.
-                stack.push (token);
+                    // Помещаем текущий оператор в стек.
+                    stack.push (token);
+                    break;
             }
         }
 
         // Выталкиваем оставшиеся элементы из стека.
-        String stackLost = "";
         while (!stack.isEmpty ()) {
-            stackLost += stack.pop () + " ";
+            Token token = stack.pop ();
+            if (token.getType () == Token.Type.LEFT_BRACKET) {
+                throw new CalculatorErrorException ("ToRPN: Структура скобок неверна!");
+            }
+            result.add (token);
         }
-        result += stackLost;
-
-//        System.out.println ("ToRPN: Проверка. Стек:                       \"" + stackLost + "\".");
-        System.out.println ("ToRPN: Результат в ОПН:                      \"" + result + "\".");
-        System.out.println ("ToRPN: Результат вычисления ОПН:             \"" + calculateReversePolishNotation (result) + "\".");
-//        System.out.println ();
 
         return result;
     }
@@ -157,87 +357,26 @@ public class Calculator {
      * @return Результат вычисления.
      */
     public static double calculateReversePolishNotation (String _exp) throws CalculatorErrorException, CalculatorNaNException {
-        // Стек. На нем будем вычислять.
-        Stack<Double> stack = new Stack<Double> ();
-
-        // Грузим символы.
-        String[] chars = _exp.split ("\\s");
-
-        for (String ch : chars) {
-            double op1;
-            double op2;
-
-            try {
-                switch (ch) {
-                    // Бинарные операторы:
-                    case "+":
-                        op1 = stack.pop ();
-                        op2 = stack.pop ();
-                        stack.push (op2 + op1);
-                        break;
-                    case "-":
-                        op1 = stack.pop ();
-                        op2 = stack.pop ();
-                        stack.push (op2 - op1);
-                        break;
-                    case "*":
-                        op1 = stack.pop ();
-                        op2 = stack.pop ();
-                        stack.push (op1 * op2);
-                        break;
-                    case "/":
-                        op1 = stack.pop ();
-                        op2 = stack.pop ();
-                        stack.push (op2 / op1);
-                        break;
-
-                    // Унарные операторы:
-                    case "^":
-                        op1 = stack.pop ();
-                        op2 = stack.pop ();
-                        stack.push (Math.pow (op2, op1));
-                        break;
-                    case "±":
-                        op1 = stack.pop ();
-                        stack.push (-1 * op1);
-                        break;
-                    case "sin":
-                        op1 = stack.pop ();
-                        stack.push (Math.sin (op1));
-                        break;
-                    case "cos":
-                        op1 = stack.pop ();
-                        stack.push (Math.cos (op1));
-                        break;
-                    case "tan":
-                        op1 = stack.pop ();
-                        stack.push (Math.tan (op1));
-                        break;
-                    case "ctg":
-                        op1 = stack.pop ();
-                        stack.push (1.0 / Math.tan (op1));
-                        break;
-                    case "ln":
-                        op1 = stack.pop ();
-                        stack.push (Math.log (op1));
-                        break;
-
-                    default:
-                        if (!isNumber (ch)) {
-                            throw new CalculatorErrorException ("CalculateRPN: \"" + ch + "\" - неверный формат операнда!");
-                        } else {
-                            stack.push (Double.valueOf (ch));
-                        }
-                        break;
-                }
-            } catch (EmptyStackException e) {
-                throw new CalculatorErrorException ("CalculateRPN: Синтаксическая ошибка при вычислении RPN: неверный разделитель. Выражение: \"" + _exp + "\".");
+        // Разбираем строку на лексемы ОПН.
+        ArrayList<Token> tokens = new ArrayList<> ();
+        for (String ch : PATTERN_WHITESPACE.split (_exp)) {
+            if (ch.isEmpty ()) {
+                continue;
+            }
+
+            Operator op = Operator.fromSymbol (ch);
+            if (null != op) {
+                tokens.add (Token.operator (op));
+            } else if (isNumber (ch)) {
+                tokens.add (Token.number (ch, Double.parseDouble (ch)));
+            } else {
+                throw new CalculatorErrorException ("CalculateRPN: \"" + ch + "\" - неверный формат операнда!");
             }
         }
 
-        double result = stack.pop ();
+        double result = compileRPN (tokens, _exp).evaluate (0);
 
-        if (String.valueOf (result).equals ("NaN") || String.valueOf (result).equals ("Infinity") || String.valueOf (result).equals ("-Infinity")) {
+        if (Double.isNaN (result) || Double.isInfinite (result)) {
             throw new CalculatorNaNException ("CalculateRPN: Математическая ошибка. Результат равен \"NaN/Infinity/-Infinity \".");
         }
 
@@ -246,97 +385,23 @@ public class Calculator {
     //------------------------------------------------------------------------------------------------------------------
 
     /**
-     * Получить приоритет оператора.
-     * <p>
-     * Операторы:
-     * Приоритет Оператор Ассоциативность
-     * 4 ! правая
-     * 3 * / % левая
-     * 2 + - левая
-     * 1 = левая
-     *
-     * @param _op
-     * @return
-     */
-    protected static int getPriority (String _op) {
-        switch (_op) {
-            case "±":
-                return 5;
-            case "!":
-            case "^":
-            case "sin":
-            case "cos":
-            case "tan":
-            case "ctg":
-            case "ln":
-                return 4;
-            case "*":
-            case "/":
-                return 3;
-            case "+":
-            case "-":
-                return 2;
-            case "(":
-            case ")":
-                return 1;
-            default:
-                return -1;
-        }
-    }
-
-    protected static boolean isLeftAssociative (String _op) {
-        switch (_op) {
-            case "±":
-            case "!":
-            case "^":
-            case "sin":
-            case "cos":
-            case "tan":
-            case "ctg":
-            case "ln":
-                return false;
-            default:
-            case "*":
-            case "/":
-            case "+":
-            case "-":
-                return true;
-        }
-    }
-
-    /**
-     * Проверить правильность скобочной структуры.
+     * Является ли эта строка числом? Точнее, является ли она допустимым оператором.
      *
-     * @param _exp Выражение со скобками.
+     * @param _str
      * @return
      */
-    protected static boolean checkBracketsStructure (String _exp) {
-        int number = -1;
-        int a = 0;
-
-        while (++number < _exp.length ()) {
-            String ch = String.valueOf (_exp.charAt (number));
-            if (ch.equals ("(")) {
-                ++a;
-            } else if (ch.equals (")") && --a < 0) {
-                break;
-            }
-        }
-
-        return (a == 0);
+    protected static boolean isNumber (String _str) {
+        return PATTERN_DOUBLE.matcher (_str).matches ();
     }
 
-
-    //------------------------------------------------------------------------------------------------------------------
-
     /**
-     * Является ли эта строка числом? Точнее, является ли она допустимым оператором.
+     * Является ли эта строка переменной "x" или "y"?
      *
      * @param _str
      * @return
      */
-    protected static boolean isNumber (String _str) {
-        return _str.matches (REGEX_DOUBLE);
+    protected static boolean isVariable (String _str) {
+        return PATTERN_VARIABLE.matcher (_str).matches ();
     }
 
     /**
@@ -346,7 +411,7 @@ public class Calculator {
      * @return
      */
     protected static boolean isOperator (String _str) {
-        return _str.matches (REGEX_OPERATORS);
+        return null != Operator.fromSymbol (_str);
     }
 
     /**
@@ -368,39 +433,20 @@ public class Calculator {
      *
      * @param _exp
      * @return
+     * @throws CalculatorErrorException Если в выражении встретился неизвестный символ.
      */
-    public static String formatExpToSystemView (String _exp) {
-        return prepareOperatorsInString (_exp)
-                .replaceAll ("([0-9]+)\\s*E\\s*-\\s*([0-9]+)", "$1E-$2")
-
-                .replaceAll ("\\s*([^ 0-9E\\)]+)\\s*-", " $1 ± ")
-                .replaceAll ("^\\s*-\\s*([^-]+)", " ± $1 ")
-
-                .replaceAll ("\\s*\\(\\s*", " ( ")
-                .replaceAll ("\\s*\\)\\s*", " ) ")
-                .replaceAll ("\\s+", " ")
-                .replaceAll ("E\\s*-", "E-")
-                .trim ();
+    public static String formatExpToSystemView (String _exp) throws CalculatorErrorException {
+        return Lexer.join (Arrays.asList (Lexer.tokenize (_exp)));
     }
 
     /**
-     * Расставить пробелы вокруг всех встреченных в строке операторов.
+     * Форматировать выражение для показа пользователю.
      *
      * @param _exp
      * @return
+     * @throws CalculatorErrorException Если в выражении встретился неизвестный символ.
      */
-    protected static String prepareOperatorsInString (String _exp) {
-        String result = _exp;
-        String[] ops = REGEX_OPERATORS.substring (2, REGEX_OPERATORS.length () - 2).split ("\\|");
-
-        for (String op : ops) {
-            result = result.replaceAll ("\\s*" + op + "\\s*", " " + op + " ");
-        }
-
-        return result;
-    }
-
-    public static String formatExpToBeautifulView (String _exp) {
+    public static String formatExpToBeautifulView (String _exp) throws CalculatorErrorException {
         return formatExpToSystemView (_exp)
                 .replaceAll ("\\s*\\(\\s*", " (")
                 .replaceAll ("\\s*\\)\\s*", ") ")
@@ -410,4 +456,15 @@ public class Calculator {
 
                 .replaceAll ("±\\s*", "-");
     }
+
+    /**
+     * Записать лексемы ОПН через пробел, как их принимает {@link #calculateReversePolishNotation(String)}.
+     */
+    private static String joinRPN (List<Token> _rpn) {
+        StringBuilder sb = new StringBuilder ();
+        for (Token token : _rpn) {
+            sb.append (token.getText ()).append (' ');
+        }
+        return sb.toString ();
+    }
 }
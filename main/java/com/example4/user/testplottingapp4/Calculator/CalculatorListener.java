@@ -0,0 +1,78 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Получатель событий калькулятора: время этапов компиляции, пакетные вычисления, обращения к кэшу
+ * и промежуточные формы выражения.
+ * <p>
+ * Устанавливается через {@link Calculator#setListener(CalculatorListener)}. Пока получатель не установлен,
+ * калькулятор не измеряет время и не собирает строки - выключенные метрики ничего не стоят.
+ * Методы могут вызываться из нескольких потоков одновременно и должны быть быстрыми.
+ */
+public interface CalculatorListener {
+    /**
+     * Этап обработки выражения.
+     */
+    enum Stage {
+        /**
+         * Разбор строки на лексемы.
+         */
+        TOKENIZE,
+
+        /**
+         * Преобразование в обратную польскую нотацию.
+         */
+        TO_RPN,
+
+        /**
+         * Построение и оптимизация дерева выражения.
+         */
+        OPTIMIZE,
+
+        /**
+         * Генерация программы {@link Interpreter}.
+         */
+        CODEGEN,
+
+        /**
+         * Пакетное вычисление.
+         */
+        EVAL
+    }
+
+    /**
+     * Этап завершен.
+     *
+     * @param _stage Этап.
+     * @param _nanos Длительность в наносекундах.
+     */
+    void onStage (Stage _stage, long _nanos);
+
+    /**
+     * Завершено пакетное вычисление. Вычисления в одной точке не сообщаются, чтобы не замедлять их.
+     *
+     * @param _points  Число точек.
+     * @param _invalid Сколько результатов равны NaN или бесконечности.
+     * @param _nanos   Длительность в наносекундах.
+     */
+    void onEvaluation (long _points, long _invalid, long _nanos);
+
+    /**
+     * Обращение к кэшу скомпилированных выражений.
+     *
+     * @param _hit Найдено ли выражение в кэше.
+     */
+    void onCacheLookup (boolean _hit);
+
+    /**
+     * @return Нужны ли промежуточные формы выражения. Если нет, строки для {@link #onTrace} не собираются.
+     */
+    boolean isTraceEnabled ();
+
+    /**
+     * Промежуточная форма выражения после этапа - для отладки.
+     *
+     * @param _stage Этап.
+     * @param _form  Выражение в системном виде, в ОПН или оптимизированное дерево.
+     */
+    void onTrace (Stage _stage, String _form);
+}
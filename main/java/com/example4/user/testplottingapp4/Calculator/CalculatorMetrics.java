@@ -0,0 +1,180 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики калькулятора: счетчики и гистограммы длительности этапов, доля попаданий в кэш, число
+ * недопустимых результатов и скорость вычисления в точках в секунду.
+ * <p>
+ * Гистограмма длительности логарифмическая: корзина k содержит длительности от 2^(k-1) до 2^k - 1 нс, поэтому
+ * процентили оцениваются с точностью до двух раз, а запись - несколько атомарных сложений без выделения памяти.
+ * Промежуточные формы выражения не собираются; чтобы получать их, переопределите
+ * {@link #isTraceEnabled()} и {@link #onTrace}.
+ */
+public class CalculatorMetrics implements CalculatorListener {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[]       counts     = new LongAdder[Stage.values ().length];
+    private final LongAdder[]       totalNanos = new LongAdder[Stage.values ().length];
+    private final AtomicLongArray[] histograms = new AtomicLongArray[Stage.values ().length];
+
+    private final LongAdder cacheHits     = new LongAdder ();
+    private final LongAdder cacheMisses   = new LongAdder ();
+    private final LongAdder points        = new LongAdder ();
+    private final LongAdder invalidPoints = new LongAdder ();
+
+    public CalculatorMetrics () {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder ();
+            totalNanos[i] = new LongAdder ();
+            histograms[i] = new AtomicLongArray (BUCKETS);
+        }
+    }
+
+    @Override
+    public void onStage (Stage _stage, long _nanos) {
+        int stage = _stage.ordinal ();
+        counts[stage].increment ();
+        totalNanos[stage].add (_nanos);
+        histograms[stage].incrementAndGet (bucket (_nanos));
+    }
+
+    @Override
+    public void onEvaluation (long _points, long _invalid, long _nanos) {
+        onStage (Stage.EVAL, _nanos);
+        points.add (_points);
+        invalidPoints.add (_invalid);
+    }
+
+    @Override
+    public void onCacheLookup (boolean _hit) {
+        (_hit ? cacheHits : cacheMisses).increment ();
+    }
+
+    @Override
+    public boolean isTraceEnabled () {
+        return false;
+    }
+
+    @Override
+    public void onTrace (Stage _stage, String _form) {
+    }
+
+    /**
+     * @return Сколько раз выполнялся этап.
+     */
+    public long getCount (Stage _stage) {
+        return counts[_stage.ordinal ()].sum ();
+    }
+
+    /**
+     * @return Суммарная длительность этапа в наносекундах.
+     */
+    public long getTotalNanos (Stage _stage) {
+        return totalNanos[_stage.ordinal ()].sum ();
+    }
+
+    /**
+     * Оценка процентиля длительности этапа сверху - граница корзины гистограммы.
+     *
+     * @param _stage    Этап.
+     * @param _quantile Доля от 0 до 1, например 0.99.
+     * @return Длительность в наносекундах; 0, если этап не выполнялся.
+     */
+    public long getPercentileNanos (Stage _stage, double _quantile) {
+        AtomicLongArray histogram = histograms[_stage.ordinal ()];
+        long            total     = 0;
+        for (int k = 0; k < BUCKETS; k++) {
+            total += histogram.get (k);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil (Math.min (1, Math.max (0, _quantile)) * total);
+        long seen = 0;
+        for (int k = 0; k < BUCKETS; k++) {
+            seen += histogram.get (k);
+            if (seen >= Math.max (1, rank)) {
+                return k == 0 ? 0 : (k == BUCKETS - 1 ? Long.MAX_VALUE : (1L << k) - 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public long getCacheHitCount () {
+        return cacheHits.sum ();
+    }
+
+    public long getCacheMissCount () {
+        return cacheMisses.sum ();
+    }
+
+    /**
+     * @return Доля попаданий в кэш; 0, если обращений не было.
+     */
+    public double getCacheHitRate () {
+        long hits  = cacheHits.sum ();
+        long total = hits + cacheMisses.sum ();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return Сколько точек вычислено пакетно.
+     */
+    public long getPointCount () {
+        return points.sum ();
+    }
+
+    /**
+     * @return Сколько из них дали NaN или бесконечность.
+     */
+    public long getInvalidPointCount () {
+        return invalidPoints.sum ();
+    }
+
+    /**
+     * @return Скорость пакетного вычисления в точках в секунду; 0, если вычислений не было.
+     */
+    public double getPointsPerSecond () {
+        long nanos = getTotalNanos (Stage.EVAL);
+        return nanos == 0 ? 0 : points.sum () * 1E9 / nanos;
+    }
+
+    /**
+     * Сбросить все метрики.
+     */
+    public void reset () {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i].reset ();
+            totalNanos[i].reset ();
+            for (int k = 0; k < BUCKETS; k++) {
+                histograms[i].set (k, 0);
+            }
+        }
+        cacheHits.reset ();
+        cacheMisses.reset ();
+        points.reset ();
+        invalidPoints.reset ();
+    }
+
+    @Override
+    public String toString () {
+        StringBuilder sb = new StringBuilder ("CalculatorMetrics{");
+        for (Stage stage : Stage.values ()) {
+            sb.append (stage).append ("=").append (getCount (stage)).append ("x/").append (getTotalNanos (stage)).append ("ns, ");
+        }
+        return sb.append ("cacheHitRate=").append (getCacheHitRate ()).append (", points=").append (getPointCount ())
+                .append (", invalid=").append (getInvalidPointCount ()).append ("}").toString ();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Номер корзины: число значащих бит длительности.
+     */
+    private static int bucket (long _nanos) {
+        return _nanos <= 0 ? 0 : Math.min (BUCKETS - 1, 64 - Long.numberOfLeadingZeros (_nanos));
+    }
+}
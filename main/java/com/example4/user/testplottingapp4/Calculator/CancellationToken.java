@@ -0,0 +1,65 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Признак отмены долгой операции и ее крайний срок.
+ * <p>
+ * Операция периодически проверяет {@link #isCancelled()} и {@link #isDeadlineExceeded()} и завершается,
+ * как только работа стала не нужна. Отменить операцию можно из любого потока.
+ */
+public class CancellationToken {
+    private final boolean hasDeadline;
+    private final long    deadlineNanos;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Признак без крайнего срока.
+     */
+    public CancellationToken () {
+        this.hasDeadline = false;
+        this.deadlineNanos = 0;
+    }
+
+    private CancellationToken (long _deadlineNanos) {
+        this.hasDeadline = true;
+        this.deadlineNanos = _deadlineNanos;
+    }
+
+    /**
+     * Признак с крайним сроком, отсчитываемым от текущего момента.
+     *
+     * @param _timeout Время до крайнего срока.
+     * @param _unit    Единица времени.
+     */
+    public static CancellationToken withTimeout (long _timeout, TimeUnit _unit) {
+        return new CancellationToken (System.nanoTime () + _unit.toNanos (_timeout));
+    }
+
+    /**
+     * Отменить операцию.
+     */
+    public void cancel () {
+        cancelled = true;
+    }
+
+    public boolean isCancelled () {
+        return cancelled;
+    }
+
+    /**
+     * @return Истек ли крайний срок.
+     */
+    public boolean isDeadlineExceeded () {
+        // Сравнение через разность корректно и при переполнении nanoTime.
+        return hasDeadline && System.nanoTime () - deadlineNanos >= 0;
+    }
+
+    /**
+     * @return Время до крайнего срока в наносекундах; Long.MAX_VALUE, если срока нет.
+     */
+    public long getRemainingNanos () {
+        return hasDeadline ? Math.max (0, deadlineNanos - System.nanoTime ()) : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,671 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Кусочное чебышёвское приближение скомпилированного выражения на отрезке (в духе chebfun) - для быстрого
+ * повторного вычисления при сдвиге и масштабировании графика.
+ * <p>
+ * Отрезок делится на куски. На каждом куске функция интерполируется в точках Чебышёва второго рода, степень
+ * удваивается от {@link #MIN_DEGREE}, пока коэффициенты не убывают ниже допуска относительно масштаба функции
+ * на куске. Хвост малых коэффициентов отбрасывается, а сумма отброшенных служит оценкой погрешности.
+ * Кусок, на котором ряд не сходится до {@link #MAX_DEGREE}, делится пополам. Участки возможных полюсов
+ * находятся заранее интервальной арифметикой ({@link IntervalAnalyzer#findSuspects}) и становятся границами
+ * кусков. Куски, где функция не определена, слишком узкие куски и точки вне отрезка вычисляются
+ * самим выражением.
+ * <p>
+ * Значения вычисляются схемой Кленшоу - несколько умножений и сложений на коэффициент, без вызовов sin или ln.
+ * Производная - ряд из продифференцированных коэффициентов. Объект неизменяем и потокобезопасен.
+ */
+public final class ChebyshevProxy implements DoubleUnaryOperator {
+    /**
+     * Допуск по умолчанию - относительно наибольшего значения функции на куске.
+     */
+    public static final double DEFAULT_TOLERANCE = 1E-13;
+
+    /**
+     * Начальная степень на куске.
+     */
+    public static final int MIN_DEGREE = 8;
+
+    /**
+     * Наибольшая степень на куске. Невысокая степень делает вычисление дешевым за счет большего числа кусков.
+     */
+    public static final int MAX_DEGREE = 32;
+
+    /**
+     * Наибольшее число кусков.
+     */
+    public static final int MAX_PIECES = 1024;
+
+    /**
+     * Наибольший относительный уровень шума в коэффициентах, при котором кусок еще принимается.
+     */
+    private static final double PLATEAU_TOLERANCE = 1E-8;
+
+    /**
+     * Куски уже этой доли отрезка не делятся, а вычисляются выражением.
+     */
+    private static final double MIN_PIECE_FRACTION = 1E-9;
+
+    private final CompiledExpression function;
+    private final double             tolerance;
+
+    /**
+     * Границы кусков: кусок k - [breaks[k], breaks[k + 1]).
+     */
+    private final double[] breaks;
+
+    /**
+     * Коэффициенты ряда на каждом куске; null - кусок вычисляется выражением.
+     */
+    private final double[][] coefficients;
+
+    /**
+     * Коэффициенты производной с учетом длины куска.
+     */
+    private final double[][] derivatives;
+
+    /**
+     * Оценка погрешности на каждом куске.
+     */
+    private final double[] errors;
+
+    /**
+     * Сколько раз вычислялось выражение при построении.
+     */
+    private final int buildEvaluations;
+
+    private ChebyshevProxy (CompiledExpression _function, double _tolerance, List<Piece> _pieces, int _buildEvaluations) {
+        int count = _pieces.size ();
+
+        this.function = _function;
+        this.tolerance = _tolerance;
+        this.breaks = new double[count + 1];
+        this.coefficients = new double[count][];
+        this.derivatives = new double[count][];
+        this.errors = new double[count];
+        this.buildEvaluations = _buildEvaluations;
+
+        for (int k = 0; k < count; k++) {
+            Piece piece = _pieces.get (k);
+            breaks[k] = piece.a;
+            breaks[k + 1] = piece.b;
+            coefficients[k] = piece.coefficients;
+            derivatives[k] = null == piece.coefficients ? null : differentiate (piece.coefficients, piece.b - piece.a);
+            errors[k] = piece.error;
+        }
+    }
+
+    /**
+     * Построить приближение с допуском {@link #DEFAULT_TOLERANCE}.
+     *
+     * @see #build(CompiledExpression, double, double, double)
+     */
+    public static ChebyshevProxy build (CompiledExpression _function, double _xMin, double _xMax) {
+        return build (_function, _xMin, _xMax, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Построить приближение функции на отрезке.
+     *
+     * @param _function  Функция одной переменной.
+     * @param _xMin      Начало отрезка.
+     * @param _xMax      Конец отрезка.
+     * @param _tolerance Допуск относительно наибольшего значения функции на куске.
+     * @return Приближение.
+     */
+    public static ChebyshevProxy build (CompiledExpression _function, double _xMin, double _xMax, double _tolerance) {
+        return build (_function, _xMin, _xMax, _tolerance, 0);
+    }
+
+    /**
+     * Построить приближение функции на отрезке, если оно покроет хотя бы заданную долю отрезка.
+     * <p>
+     * Построение прекращается, как только доля становится недостижимой: куски, которые вычисляются выражением,
+     * заняли больше остатка, или даже оставшиеся до {@link #MAX_PIECES} куски, будь они не уже самого широкого
+     * из построенных, не покроют нужную долю. Последнее - оценка: после узкого трудного участка функция может
+     * стать проще, но тогда график просто рисуется выражением.
+     *
+     * @param _minCoverage Наименьшая доля отрезка с приближением, от 0 до 1.
+     * @return Приближение или null, если доля недостижима.
+     * @see #build(CompiledExpression, double, double, double)
+     */
+    public static ChebyshevProxy build (CompiledExpression _function, double _xMin, double _xMax, double _tolerance,
+                                        double _minCoverage) {
+        if (!(_xMin < _xMax)) {
+            throw new IllegalArgumentException ("ChebyshevProxy: Пустой отрезок [" + _xMin + ", " + _xMax + "].");
+        }
+
+        Builder builder = new Builder (_function, _tolerance, _xMin, _xMax, _minCoverage);
+
+        // Участки возможных полюсов - отдельные куски, которые вычисляются выражением.
+        // Когда кусков набралось MAX_PIECES, остаток отрезка целиком вычисляется выражением.
+        double start = _xMin;
+        for (Interval suspect : IntervalAnalyzer.findSuspects (_function, _xMin, _xMax, (_xMax - _xMin) * 1E-6)) {
+            if (builder.isFull () || builder.isStopped ()) {
+                break;
+            }
+            if (suspect.getLo () > start) {
+                builder.fit (start, suspect.getLo ());
+            }
+            builder.direct (Math.max (start, suspect.getLo ()), suspect.getHi ());
+            start = Math.max (start, suspect.getHi ());
+        }
+        if (start < _xMax && !builder.isStopped ()) {
+            builder.fit (start, _xMax);
+        }
+        if (builder.isStopped ()) {
+            return null;
+        }
+
+        return new ChebyshevProxy (_function, _tolerance, builder.pieces, builder.evaluations);
+    }
+
+    /**
+     * Значение приближения в точке.
+     *
+     * @param _x Значение переменной "x".
+     * @return Значение. Может быть равно NaN или бесконечности там, где вычисляется само выражение.
+     */
+    public double evalRaw (double _x) {
+        int piece = pieceOf (_x);
+        if (piece < 0 || null == coefficients[piece]) {
+            return function.evalRaw (_x);
+        }
+        return clenshaw (coefficients[piece], toUnit (_x, piece));
+    }
+
+    @Override
+    public double applyAsDouble (double _x) {
+        return evalRaw (_x);
+    }
+
+    /**
+     * Производная приближения в точке.
+     */
+    public double evalDerivative (double _x) {
+        int piece = pieceOf (_x);
+        if (piece < 0 || null == derivatives[piece]) {
+            return function.evalDerivative (_x);
+        }
+        return clenshaw (derivatives[piece], toUnit (_x, piece));
+    }
+
+    /**
+     * Вычислить приближение для части массива значений "x". Быстрее всего для x по возрастанию:
+     * соседние точки одного куска вычисляются одним циклом, а точки кусков без приближения - пакетом выражения.
+     *
+     * @param _xs        Значения переменной "x".
+     * @param _offset    Индекс первого значения в _xs.
+     * @param _length    Число значений.
+     * @param _out       Массив для результатов.
+     * @param _outOffset Индекс в _out, куда записать первый результат.
+     */
+    public void evalBatch (double[] _xs, int _offset, int _length, double[] _out, int _outOffset) {
+        for (int i = 0; i < _length; ) {
+            int piece = pieceOf (_xs[_offset + i]);
+            int end   = runEnd (_xs, _offset, _length, i, piece);
+            if (piece < 0 || null == coefficients[piece]) {
+                function.evalBatch (_xs, _offset + i, end - i, _out, _outOffset + i);
+            } else {
+                evalPiece (coefficients[piece], piece, _xs, _offset + i, end - i, _out, _outOffset + i);
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * Вычислить приближение и его производную для части массива значений "x".
+     *
+     * @see CompiledExpression#evalBatchDerivatives(double[], int, int, double[], double[], int)
+     */
+    public void evalBatchDerivatives (double[] _xs, int _offset, int _length, double[] _values, double[] _derivatives,
+                                      int _outOffset) {
+        for (int i = 0; i < _length; ) {
+            int piece = pieceOf (_xs[_offset + i]);
+            int end   = runEnd (_xs, _offset, _length, i, piece);
+            if (piece < 0 || null == coefficients[piece]) {
+                function.evalBatchDerivatives (_xs, _offset + i, end - i, _values, _derivatives, _outOffset + i);
+            } else {
+                for (int j = i; j < end; j++) {
+                    double t = toUnit (_xs[_offset + j], piece);
+                    _values[_outOffset + j] = clenshaw (coefficients[piece], t);
+                    _derivatives[_outOffset + j] = clenshaw (derivatives[piece], t);
+                }
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * Вычислить приближение на равномерной сетке: x[i] = xMin + i * ((xMax - xMin) / n), i = 0..n-1 -
+     * та же сетка, что у {@link CompiledExpression#evalRange}.
+     */
+    public void evalRange (double _xMin, double _xMax, int _n, double[] _out) {
+        double   delta = (_xMax - _xMin) / _n;
+        double[] xs    = new double[Math.min (_n, Interpreter.BLOCK_SIZE * 16)];
+        for (int done = 0; done < _n; done += xs.length) {
+            int block = Math.min (xs.length, _n - done);
+            for (int j = 0; j < block; j++) {
+                xs[j] = _xMin + (done + j) * delta;
+            }
+            evalBatch (xs, 0, block, _out, done);
+        }
+    }
+
+    /**
+     * @return Приближаемое выражение.
+     */
+    public CompiledExpression getFunction () {
+        return function;
+    }
+
+    public double getXMin () {
+        return breaks[0];
+    }
+
+    public double getXMax () {
+        return breaks[breaks.length - 1];
+    }
+
+    public double getTolerance () {
+        return tolerance;
+    }
+
+    public int getPieceCount () {
+        return coefficients.length;
+    }
+
+    /**
+     * @return Число кусков, которые вычисляются самим выражением.
+     */
+    public int getDirectPieceCount () {
+        int count = 0;
+        for (double[] c : coefficients) {
+            if (null == c) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Наибольшая степень на кусках с приближением; -1, если таких нет.
+     */
+    public int getMaxDegree () {
+        int degree = -1;
+        for (double[] c : coefficients) {
+            if (null != c) {
+                degree = Math.max (degree, c.length - 1);
+            }
+        }
+        return degree;
+    }
+
+    /**
+     * @return Оценка абсолютной погрешности - наибольшая по кускам с приближением. На кусках, которые
+     * вычисляются выражением, погрешности нет.
+     */
+    public double getErrorEstimate () {
+        double error = 0;
+        for (double e : errors) {
+            error = Math.max (error, e);
+        }
+        return error;
+    }
+
+    /**
+     * @return Доля отрезка, покрытая приближением, от 0 до 1.
+     */
+    public double getCoverage () {
+        double covered = 0;
+        for (int k = 0; k < coefficients.length; k++) {
+            if (null != coefficients[k]) {
+                covered += breaks[k + 1] - breaks[k];
+            }
+        }
+        return covered / (getXMax () - getXMin ());
+    }
+
+    /**
+     * @return Сколько раз вычислялось выражение при построении.
+     */
+    public int getBuildEvaluations () {
+        return buildEvaluations;
+    }
+
+    @Override
+    public String toString () {
+        return "ChebyshevProxy{" + function.getSource () + ", pieces=" + getPieceCount () + ", direct=" + getDirectPieceCount ()
+                + ", maxDegree=" + getMaxDegree () + ", error=" + getErrorEstimate () + "}";
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return Номер куска, содержащего x; -1 вне отрезка. Правый конец отрезка относится к последнему куску.
+     */
+    private int pieceOf (double _x) {
+        if (!(_x >= breaks[0] && _x <= breaks[breaks.length - 1])) {
+            return -1;
+        }
+        int index = Arrays.binarySearch (breaks, _x);
+        int piece = index >= 0 ? index : -index - 2;
+        return Math.min (piece, coefficients.length - 1);
+    }
+
+    /**
+     * @return Индекс после последней точки, начиная с _from, которая лежит в том же куске.
+     */
+    private int runEnd (double[] _xs, int _offset, int _length, int _from, int _piece) {
+        int end = _from + 1;
+        if (_piece < 0) {
+            while (end < _length && pieceOf (_xs[_offset + end]) < 0) {
+                ++end;
+            }
+            return end;
+        }
+
+        double lo = breaks[_piece];
+        double hi = _piece + 1 == coefficients.length ? Math.nextUp (breaks[_piece + 1]) : breaks[_piece + 1];
+        while (end < _length && _xs[_offset + end] >= lo && _xs[_offset + end] < hi) {
+            ++end;
+        }
+        return end;
+    }
+
+    /**
+     * Вычислить ряд куска для точек подряд схемой Кленшоу по столбцам: каждый шаг проходит по блоку точек,
+     * как {@link Interpreter#executeBlock}, поэтому точки не ждут друг друга, а цикл векторизуется.
+     */
+    private void evalPiece (double[] _c, int _piece, double[] _xs, int _offset, int _length, double[] _out, int _outOffset) {
+        double[][] columns = Interpreter.threadColumns (3);
+        double[]   t2      = columns[0];
+        double     scale   = 2 / (breaks[_piece + 1] - breaks[_piece]);
+        double     shift   = breaks[_piece] + breaks[_piece + 1];
+        int        m       = _c.length - 1;
+
+        for (int done = 0; done < _length; done += Interpreter.BLOCK_SIZE) {
+            int      block = Math.min (Interpreter.BLOCK_SIZE, _length - done);
+            double[] b1    = columns[1];
+            double[] b2    = columns[2];
+            for (int j = 0; j < block; j++) {
+                // 2t, где t - точка в [-1, 1].
+                t2[j] = (2 * _xs[_offset + done + j] - shift) * scale;
+                b1[j] = 0;
+                b2[j] = 0;
+            }
+            for (int k = m; k >= 1; k--) {
+                double ck = _c[k];
+                for (int j = 0; j < block; j++) {
+                    b2[j] = ck + t2[j] * b1[j] - b2[j];
+                }
+                double[] swap = b1;
+                b1 = b2;
+                b2 = swap;
+            }
+            double c0 = _c[0];
+            for (int j = 0; j < block; j++) {
+                _out[_outOffset + done + j] = c0 + 0.5 * t2[j] * b1[j] - b2[j];
+            }
+        }
+    }
+
+    /**
+     * Перевести x в [-1, 1] для куска.
+     */
+    private double toUnit (double _x, int _piece) {
+        return (2 * _x - breaks[_piece] - breaks[_piece + 1]) / (breaks[_piece + 1] - breaks[_piece]);
+    }
+
+    /**
+     * Сумма ряда Чебышёва c[0] T0(t) + c[1] T1(t) + ... схемой Кленшоу.
+     */
+    static double clenshaw (double[] _c, double _t) {
+        double b1 = 0;
+        double b2 = 0;
+        double t2 = 2 * _t;
+        for (int k = _c.length - 1; k >= 1; k--) {
+            double b = _c[k] + t2 * b1 - b2;
+            b2 = b1;
+            b1 = b;
+        }
+        return _c[0] + _t * b1 - b2;
+    }
+
+    /**
+     * Коэффициенты производной ряда на отрезке длиной _width.
+     */
+    static double[] differentiate (double[] _c, double _width) {
+        int      m = _c.length - 1;
+        double[] d = new double[Math.max (1, m)];
+        if (m == 0) {
+            return d;
+        }
+
+        // d[k-1] = d[k+1] + 2k c[k], начиная со старшего.
+        double next  = 0;
+        double after = 0;
+        for (int k = m; k >= 1; k--) {
+            double value = after + 2 * k * _c[k];
+            d[k - 1] = value;
+            after = next;
+            next = value;
+        }
+        d[0] /= 2;
+
+        double scale = 2 / _width;
+        for (int k = 0; k < d.length; k++) {
+            d[k] *= scale;
+        }
+        return d;
+    }
+
+    /**
+     * Интерполяционные коэффициенты по значениям в точках cos(pi j / n), j = 0..n.
+     */
+    static double[] coefficients (double[] _values, int _n) {
+        double[] cosines = new double[2 * _n];
+        for (int i = 0; i < cosines.length; i++) {
+            cosines[i] = Math.cos (Math.PI * i / _n);
+        }
+
+        double[] c = new double[_n + 1];
+        for (int k = 0; k <= _n; k++) {
+            double sum = 0.5 * (_values[0] + ((k & 1) == 0 ? _values[_n] : -_values[_n]));
+            for (int j = 1; j < _n; j++) {
+                sum += _values[j] * cosines[(j * k) % (2 * _n)];
+            }
+            c[k] = 2.0 / _n * sum;
+        }
+        c[0] /= 2;
+        c[_n] /= 2;
+        return c;
+    }
+
+    /**
+     * Кусок приближения.
+     */
+    private static class Piece {
+        private final double   a;
+        private final double   b;
+        private final double[] coefficients;
+        private final double   error;
+
+        Piece (double _a, double _b, double[] _coefficients, double _error) {
+            this.a = _a;
+            this.b = _b;
+            this.coefficients = _coefficients;
+            this.error = _error;
+        }
+    }
+
+    /**
+     * Построение кусков слева направо.
+     */
+    private static class Builder {
+        /**
+         * После скольких кусков с приближением по ним оценивается, достижима ли нужная доля.
+         */
+        private static final int ESTIMATE_AFTER = MAX_PIECES / 8;
+
+        private final CompiledExpression function;
+        private final double             tolerance;
+        private final double             xMax;
+        private final double             minWidth;
+        private final List<Piece>        pieces = new ArrayList<> ();
+        private int                      evaluations;
+
+        /**
+         * Сколько отрезка должно быть покрыто приближением и сколько может вычисляться выражением.
+         */
+        private final double required;
+        private final double allowedDirect;
+
+        private double  covered;
+        private double  direct;
+        private double  widest;
+        private int     fitted;
+        private boolean stopped;
+
+        Builder (CompiledExpression _function, double _tolerance, double _xMin, double _xMax, double _minCoverage) {
+            this.function = _function;
+            this.tolerance = _tolerance;
+            this.xMax = _xMax;
+            this.minWidth = (_xMax - _xMin) * MIN_PIECE_FRACTION;
+            this.required = _minCoverage * (_xMax - _xMin);
+            this.allowedDirect = (_xMax - _xMin) - required;
+        }
+
+        /**
+         * Прекращено ли построение, потому что нужная доля покрытия недостижима.
+         */
+        boolean isStopped () {
+            return stopped;
+        }
+
+        /**
+         * Набрано ли столько кусков, что новый кусок с приближением не поместится: после него нужен еще
+         * хотя бы один кусок выражения для остатка отрезка.
+         */
+        boolean isFull () {
+            return pieces.size () + 1 >= MAX_PIECES;
+        }
+
+        /**
+         * Кусок, который вычисляется выражением. Сливается с предыдущим таким же куском, если они соприкасаются,
+         * поэтому не увеличивает число кусков после {@link #isFull()}.
+         */
+        void direct (double _a, double _b) {
+            if (!(_b > _a)) {
+                return;
+            }
+            int last = pieces.size () - 1;
+            if (last >= 0 && null == pieces.get (last).coefficients && pieces.get (last).b >= _a) {
+                pieces.set (last, new Piece (pieces.get (last).a, _b, null, 0));
+            } else {
+                pieces.add (new Piece (_a, _b, null, 0));
+            }
+            direct += _b - _a;
+            stopped |= direct > allowedDirect;
+        }
+
+        /**
+         * Приблизить функцию на [a, b], деля отрезок пополам, пока ряд не сойдется. Когда кусков набралось
+         * {@link #MAX_PIECES}, деление прекращается, и остаток вычисляется выражением.
+         */
+        void fit (double _a, double _b) {
+            if (stopped) {
+                return;
+            }
+            if (isFull ()) {
+                direct (_a, _b);
+                return;
+            }
+            Piece piece = tryFit (_a, _b);
+            if (null != piece) {
+                pieces.add (piece);
+                covered += _b - _a;
+                widest = Math.max (widest, _b - _a);
+                // Оставшиеся куски не шире самого широкого: хватит ли их на нужную долю.
+                if (++fitted >= ESTIMATE_AFTER) {
+                    double reachable = Math.min (xMax - _b, (MAX_PIECES - 1 - pieces.size ()) * widest);
+                    stopped = covered + reachable < required;
+                }
+                return;
+            }
+
+            double middle = 0.5 * (_a + _b);
+            if (_b - _a < minWidth || !(middle > _a && middle < _b)) {
+                direct (_a, _b);
+                return;
+            }
+            fit (_a, middle);
+            fit (middle, _b);
+        }
+
+        /**
+         * @return Кусок с приближением или null, если ряд не сходится до {@link #MAX_DEGREE}.
+         */
+        private Piece tryFit (double _a, double _b) {
+            double middle = 0.5 * (_a + _b);
+            double half   = 0.5 * (_b - _a);
+            double last   = Double.POSITIVE_INFINITY;
+
+            for (int n = MIN_DEGREE; n <= MAX_DEGREE; n *= 2) {
+                double[] xs     = new double[n + 1];
+                double[] values = new double[n + 1];
+                for (int j = 0; j <= n; j++) {
+                    xs[j] = middle + half * Math.cos (Math.PI * j / n);
+                }
+                // Концы - ровно границы куска, без погрешности округления косинуса.
+                xs[0] = _b;
+                xs[n] = _a;
+                function.evalBatch (xs, 0, n + 1, values, 0);
+                evaluations += n + 1;
+
+                double scale = 0;
+                for (double value : values) {
+                    if (Double.isNaN (value) || Double.isInfinite (value)) {
+                        return null;
+                    }
+                    scale = Math.max (scale, Math.abs (value));
+                }
+
+                double[] c         = coefficients (values, n);
+                double   threshold = tolerance * Math.max (scale, Double.MIN_NORMAL);
+
+                // Ряд сошелся, если последняя восьмая часть коэффициентов (не меньше трех) ниже порога.
+                int    tail    = Math.max (3, (n + 1) / 8);
+                double tailMax = 0;
+                for (int k = n + 1 - tail; k <= n; k++) {
+                    tailMax = Math.max (tailMax, Math.abs (c[k]));
+                }
+                if (tailMax > threshold) {
+                    // Хвост не убывает при удвоении степени - это шум округления в самих значениях
+                    // (например, рядом с полюсом). Точнее кусок не приблизить, и деление его не уточнит.
+                    boolean plateau = tailMax <= PLATEAU_TOLERANCE * scale && tailMax > last / 4;
+                    last = tailMax;
+                    if (!plateau) {
+                        continue;
+                    }
+                    threshold = 2 * tailMax;
+                }
+
+                // Отбрасываем хвост ниже порога; его сумма - оценка погрешности.
+                int    degree = n;
+                double error  = 0;
+                while (degree > 0 && Math.abs (c[degree]) <= threshold) {
+                    error += Math.abs (c[degree]);
+                    --degree;
+                }
+                return new Piece (_a, _b, Arrays.copyOf (c, degree + 1), error);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Поиск общих подвыражений.
+ * <p>
+ * Одинаковые по структуре поддеревья сводятся к одному экземпляру (hash-consing), так что дерево превращается
+ * в граф. Для каждого узла графа считается, сколько раз на него ссылаются. Узел, на который ссылаются больше
+ * одного раза, вычисляется один раз и сохраняется во временную ячейку. Все операторы калькулятора чистые,
+ * поэтому повторное использование значения дает побитово тот же результат, что и повторное вычисление.
+ */
+final class CommonSubexpressions {
+    /**
+     * Канонический экземпляр для каждого встреченного поддерева.
+     */
+    private final HashMap<ExpressionNode, ExpressionNode> canonical = new HashMap<> ();
+
+    /**
+     * Число ссылок на канонический экземпляр.
+     */
+    private final IdentityHashMap<ExpressionNode, Integer> uses = new IdentityHashMap<> ();
+
+    /**
+     * Число общих подвыражений, то есть будущих временных ячеек.
+     */
+    private int sharedCount;
+
+    /**
+     * Свести одинаковые поддеревья к общим экземплярам и подсчитать ссылки.
+     * Оба прохода идут по явному стеку ({@link ExpressionNode#walk}), поэтому глубина дерева не ограничена стеком потока.
+     *
+     * @param _node Поддерево.
+     * @return Канонический экземпляр поддерева.
+     */
+    ExpressionNode intern (ExpressionNode _node) {
+        // Снизу вверх: узел с уже каноническими операндами ищется в словаре за одно сравнение операндов по ссылке.
+        // Экземпляр, на который дерево ссылается несколько раз (например, в собранном вручную), обрабатывается
+        // один раз.
+        final IdentityHashMap<ExpressionNode, ExpressionNode> resolved = new IdentityHashMap<> ();
+        final ArrayDeque<ExpressionNode>                      interned = new ArrayDeque<> ();
+
+        ExpressionNode.walk (_node, new ExpressionNode.Visitor () {
+            @Override
+            public boolean enter (ExpressionNode _node) {
+                ExpressionNode known = resolved.get (_node);
+                if (null != known) {
+                    interned.push (known);
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public void leave (ExpressionNode _node) {
+                ExpressionNode node = _node;
+                if (_node instanceof ExpressionNode.Unary) {
+                    ExpressionNode.Unary unary   = (ExpressionNode.Unary) _node;
+                    ExpressionNode       operand = interned.pop ();
+                    if (operand != unary.getOperand ()) {
+                        node = new ExpressionNode.Unary (unary.getOperator (), operand);
+                    }
+                } else if (_node instanceof ExpressionNode.Binary) {
+                    ExpressionNode.Binary binary = (ExpressionNode.Binary) _node;
+                    ExpressionNode        right  = interned.pop ();
+                    ExpressionNode        left   = interned.pop ();
+                    if (left != binary.getLeft () || right != binary.getRight ()) {
+                        node = new ExpressionNode.Binary (binary.getOperator (), left, right);
+                    }
+                }
+
+                ExpressionNode known = canonical.get (node);
+                if (null == known) {
+                    canonical.put (node, node);
+                    known = node;
+                }
+                resolved.put (_node, known);
+                interned.push (known);
+            }
+        });
+        ExpressionNode root = interned.pop ();
+
+        // Сверху вниз: в уже встреченный узел не заходим - его поддерево вычисляется один раз,
+        // и ссылки из него второй раз не считаются.
+        ExpressionNode.walk (root, new ExpressionNode.Visitor () {
+            @Override
+            public boolean enter (ExpressionNode _node) {
+                Integer known = uses.get (_node);
+                int     count = null == known ? 1 : known + 1;
+                uses.put (_node, count);
+                if (count == 2 && isComputed (_node)) {
+                    ++sharedCount;
+                }
+                return count == 1;
+            }
+
+            @Override
+            public void leave (ExpressionNode _node) {
+            }
+        });
+        return root;
+    }
+
+    /**
+     * Нужно ли сохранять значение узла во временную ячейку?
+     *
+     * @param _node Канонический экземпляр.
+     */
+    boolean isShared (ExpressionNode _node) {
+        Integer count = uses.get (_node);
+        return null != count && count > 1 && isComputed (_node);
+    }
+
+    /**
+     * @return Число общих подвыражений.
+     */
+    int getSharedCount () {
+        return sharedCount;
+    }
+
+    /**
+     * Числа и переменные дешевле загрузить заново, чем хранить во временной ячейке.
+     */
+    private static boolean isComputed (ExpressionNode _node) {
+        return _node instanceof ExpressionNode.Unary || _node instanceof ExpressionNode.Binary;
+    }
+}
@@ -0,0 +1,589 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Скомпилированное выражение.
+ * <p>
+ * Хранит оптимизированное дерево выражения и сгенерированную по нему программу {@link Interpreter}:
+ * массив кодов операций, пул констант и слоты переменных "x" и "y". Глубина стека вычисляется при компиляции.
+ * Методы с одной переменной считают "y" равным 0; функции двух переменных вычисляются методами с "x" и "y".
+ * Одинаковые подвыражения (например, sin(x) в (sin(x))^2 + sin(x)) вычисляются один раз за вычисление и
+ * хранятся во временных ячейках.
+ * Объект неизменяем и потокобезопасен: одно выражение можно вычислять из нескольких потоков одновременно.
+ * Метод {@link #eval(double)} не выполняет ни разбора, ни работы со строками и не выделяет память.
+ */
+public final class CompiledExpression {
+    /**
+     * Значение выражения и его производные в точке.
+     */
+    public static final class Derivatives {
+        private final double value;
+        private final double first;
+        private final double second;
+
+        Derivatives (double _value, double _first, double _second) {
+            this.value = _value;
+            this.first = _first;
+            this.second = _second;
+        }
+
+        /**
+         * @return Значение f(x). Совпадает с {@link CompiledExpression#evalRaw(double)}.
+         */
+        public double getValue () {
+            return value;
+        }
+
+        /**
+         * @return Первая производная f'(x).
+         */
+        public double getFirst () {
+            return first;
+        }
+
+        /**
+         * @return Вторая производная f''(x).
+         */
+        public double getSecond () {
+            return second;
+        }
+    }
+
+    /**
+     * Выражение в системном виде, из которого получена программа.
+     */
+    private final String source;
+
+    /**
+     * Дерево выражения, по которому сгенерирована программа.
+     */
+    private final ExpressionNode tree;
+
+    /**
+     * Коды операций программы.
+     */
+    private final int[] code;
+
+    /**
+     * Пул констант программы.
+     */
+    private final double[] constants;
+
+    /**
+     * Размер стека вместе с временными ячейками.
+     */
+    private final int stackSize;
+
+    /**
+     * Сколько узлов дерева не вычисляется благодаря общим подвыражениям.
+     */
+    private final int eliminatedNodeCount;
+
+    /**
+     * Число временных ячеек для общих подвыражений.
+     */
+    private final int temporaryCount;
+
+    /**
+     * Число переменных: 1 - только "x", 2 - "x" и "y".
+     */
+    private final int variableCount;
+
+    /**
+     * @param _source Выражение в системном виде.
+     * @param _tree   Дерево выражения.
+     */
+    CompiledExpression (String _source, ExpressionNode _tree) {
+        this (_source, _tree, true);
+    }
+
+    /**
+     * @param _source              Выражение в системном виде.
+     * @param _tree                Дерево выражения.
+     * @param _shareSubexpressions Вычислять ли одинаковые подвыражения один раз.
+     */
+    CompiledExpression (String _source, ExpressionNode _tree, boolean _shareSubexpressions) {
+        CommonSubexpressions subexpressions = new CommonSubexpressions ();
+        ExpressionNode       root           = _shareSubexpressions ? subexpressions.intern (_tree) : _tree;
+
+        Generator generator = new Generator (_tree.getSize (), subexpressions);
+        generator.generate (root);
+        generator.relocateTemporaries ();
+
+        this.source = _source;
+        this.tree = _tree;
+        this.code = generator.getCode ();
+        this.constants = generator.getConstants ();
+        this.stackSize = generator.getStackSize ();
+        this.eliminatedNodeCount = _tree.getSize () - generator.getEmittedNodes ();
+        this.temporaryCount = generator.getTemporaries ();
+        this.variableCount = generator.getVariableCount ();
+    }
+
+    /**
+     * Вычислить значение выражения в точке.
+     *
+     * @param _x Значение переменной "x".
+     * @return Результат вычисления.
+     * @throws Calculator.CalculatorNaNException Если результат равен NaN или бесконечности.
+     */
+    public double eval (double _x) throws Calculator.CalculatorNaNException {
+        double result = evaluate (_x);
+
+        if (Double.isNaN (result) || Double.isInfinite (result)) {
+            throw new Calculator.CalculatorNaNException ("Eval: Математическая ошибка. Результат равен \"NaN/Infinity/-Infinity \" при x = " + _x + ".");
+        }
+
+        return result;
+    }
+
+    /**
+     * Вычислить значение выражения в точке без проверки результата и без исключений.
+     * Результат - как есть по IEEE 754: деление на ноль дает бесконечность, ln(-1) - NaN.
+     *
+     * @param _x Значение переменной "x".
+     * @return Результат вычисления. Может быть равен NaN или бесконечности.
+     */
+    public double evalRaw (double _x) {
+        return evaluate (_x);
+    }
+
+    /**
+     * Вычислить значение выражения в точке без проверки результата.
+     *
+     * @param _x Значение переменной "x".
+     * @return Результат вычисления. Может быть равен NaN или бесконечности.
+     */
+    double evaluate (double _x) {
+        return Interpreter.run (code, constants, Interpreter.threadStack (stackSize), _x);
+    }
+
+    /**
+     * Вычислить значение выражения в точке без проверки результата на собственном стеке вызывающего.
+     *
+     * @param _x     Значение переменной "x".
+     * @param _stack Стек размером не меньше {@link #getStackSize()}.
+     * @return Результат вычисления. Может быть равен NaN или бесконечности.
+     */
+    public double evaluate (double _x, double[] _stack) {
+        return Interpreter.run (code, constants, _stack, _x);
+    }
+
+    /**
+     * Вычислить выражение сразу для массива значений "x".
+     * Результаты побитово совпадают с поточечным вычислением, но программа проходится один раз на блок точек.
+     *
+     * @param _xs  Значения переменной "x".
+     * @param _out Массив для результатов, не короче _xs. Результаты могут быть равны NaN или бесконечности.
+     */
+    public void evalBatch (double[] _xs, double[] _out) {
+        evalBatch (_xs, 0, _xs.length, _out, 0);
+    }
+
+    /**
+     * Вычислить выражение для части массива значений "x".
+     *
+     * @param _xs        Значения переменной "x".
+     * @param _offset    Индекс первого значения в _xs.
+     * @param _length    Число значений.
+     * @param _out       Массив для результатов. Результаты могут быть равны NaN или бесконечности.
+     * @param _outOffset Индекс в _out, куда записать первый результат.
+     */
+    public void evalBatch (double[] _xs, int _offset, int _length, double[] _out, int _outOffset) {
+        CalculatorListener listener = Calculator.getListener ();
+        long               start    = null == listener ? 0 : System.nanoTime ();
+        double[][]         columns  = Interpreter.threadColumns (stackSize);
+
+        for (int done = 0; done < _length; done += Interpreter.BLOCK_SIZE) {
+            int block = Math.min (Interpreter.BLOCK_SIZE, _length - done);
+            Interpreter.runBlock (code, constants, columns, _xs, _offset + done, block, _out, _outOffset + done);
+        }
+        if (null != listener) {
+            report (listener, start, _out, _outOffset, _length);
+        }
+    }
+
+    /**
+     * Вычислить значение функции двух переменных в точке без проверки результата.
+     *
+     * @param _x Значение переменной "x".
+     * @param _y Значение переменной "y".
+     * @return Результат вычисления. Может быть равен NaN или бесконечности.
+     */
+    public double evalRaw (double _x, double _y) {
+        return Interpreter.run (code, constants, Interpreter.threadStack (stackSize), _x, _y);
+    }
+
+    /**
+     * Вычислить функцию двух переменных для части массива значений "x" при одном значении "y" - например,
+     * для строки двумерной сетки. Память не выделяется.
+     *
+     * @param _xs        Значения переменной "x".
+     * @param _offset    Индекс первого значения в _xs.
+     * @param _length    Число значений.
+     * @param _y         Значение переменной "y".
+     * @param _out       Массив для результатов. Результаты могут быть равны NaN или бесконечности.
+     * @param _outOffset Индекс в _out, куда записать первый результат.
+     */
+    public void evalRow (double[] _xs, int _offset, int _length, double _y, double[] _out, int _outOffset) {
+        CalculatorListener listener = Calculator.getListener ();
+        long               start    = null == listener ? 0 : System.nanoTime ();
+        double[][]         columns  = Interpreter.threadColumns (stackSize);
+
+        for (int done = 0; done < _length; done += Interpreter.BLOCK_SIZE) {
+            int block = Math.min (Interpreter.BLOCK_SIZE, _length - done);
+            Interpreter.runBlock (code, constants, columns, _xs, _offset + done, block, _y, _out, _outOffset + done);
+        }
+        if (null != listener) {
+            report (listener, start, _out, _outOffset, _length);
+        }
+    }
+
+    /**
+     * Вычислить выражение на равномерной сетке: x[i] = xMin + i * ((xMax - xMin) / n), i = 0..n-1.
+     *
+     * @param _xMin Начало области определения.
+     * @param _xMax Конец области определения (не включается).
+     * @param _n    Число точек.
+     * @param _out  Массив для результатов, не короче _n. Результаты могут быть равны NaN или бесконечности.
+     */
+    public void evalRange (double _xMin, double _xMax, int _n, double[] _out) {
+        CalculatorListener listener = Calculator.getListener ();
+        long               start    = null == listener ? 0 : System.nanoTime ();
+        double             delta    = (_xMax - _xMin) / _n;
+        double[][]         columns  = Interpreter.threadColumns (stackSize + 1);
+        // Последний столбец используем как буфер для значений "x" текущего блока.
+        double[]           xs       = columns[columns.length - 1];
+
+        for (int done = 0; done < _n; done += Interpreter.BLOCK_SIZE) {
+            int block = Math.min (Interpreter.BLOCK_SIZE, _n - done);
+            for (int j = 0; j < block; j++) {
+                xs[j] = _xMin + (done + j) * delta;
+            }
+            Interpreter.runBlock (code, constants, columns, xs, 0, block, _out, done);
+        }
+        if (null != listener) {
+            report (listener, start, _out, 0, _n);
+        }
+    }
+
+    /**
+     * Вычислить значение выражения и его первую и вторую производные в точке за один проход программы.
+     * Производные точные (автоматическое дифференцирование), а не конечные разности.
+     *
+     * @param _x Значение переменной "x".
+     * @return Значение и производные. Могут быть равны NaN или бесконечности.
+     */
+    public Derivatives evalDerivatives (double _x) {
+        double[] out = new double[3];
+        DualEvaluator.run (code, constants, stackSize, Interpreter.threadStack (3 * stackSize), _x, out);
+        return new Derivatives (out[0], out[1], out[2]);
+    }
+
+    /**
+     * Вычислить первую производную выражения в точке.
+     *
+     * @param _x Значение переменной "x".
+     * @return f'(x). Может быть равна NaN или бесконечности.
+     */
+    public double evalDerivative (double _x) {
+        return evalDerivatives (_x).getFirst ();
+    }
+
+    /**
+     * Вычислить значения и первые производные выражения для массива значений "x" за один проход по каждому блоку.
+     * Стоит примерно как два пакетных вычисления, а не три, как центральные разности.
+     *
+     * @param _xs          Значения переменной "x".
+     * @param _offset      Индекс первого значения в _xs.
+     * @param _length      Число значений.
+     * @param _values      Массив для значений. Совпадают с {@link #evalBatch(double[], double[])}.
+     * @param _derivatives Массив для производных.
+     * @param _outOffset   Индекс в выходных массивах, куда записать первый результат.
+     */
+    public void evalBatchDerivatives (double[] _xs, int _offset, int _length, double[] _values, double[] _derivatives,
+                                      int _outOffset) {
+        double[][] columns = Interpreter.threadColumns (2 * stackSize);
+
+        for (int done = 0; done < _length; done += Interpreter.BLOCK_SIZE) {
+            int block = Math.min (Interpreter.BLOCK_SIZE, _length - done);
+            DualEvaluator.runBlock (code, constants, stackSize, columns, _xs, _offset + done, block, _values, _derivatives,
+                    _outOffset + done);
+        }
+    }
+
+    /**
+     * Оценить значения выражения на отрезке в интервальной арифметике.
+     * Оценка гарантированная: все конечные значения функции на отрезке лежат в результате. Флаг
+     * {@link Interval#mayBeInvalid()} показывает, что на отрезке может быть полюс или точка вне области определения.
+     *
+     * @param _xMin Начало отрезка.
+     * @param _xMax Конец отрезка (включается).
+     * @return Оценка значений выражения.
+     */
+    public Interval evalInterval (double _xMin, double _xMax) {
+        return IntervalEvaluator.run (code, constants, stackSize, new Interval (_xMin, _xMax, false));
+    }
+
+    /**
+     * @return Размер стека для вычисления вместе с временными ячейками, известный после компиляции.
+     */
+    public int getStackSize () {
+        return stackSize;
+    }
+
+    /**
+     * @return Сколько узлов дерева выражения не вычисляется благодаря общим подвыражениям.
+     */
+    public int getEliminatedNodeCount () {
+        return eliminatedNodeCount;
+    }
+
+    /**
+     * @return Число временных ячеек для общих подвыражений.
+     */
+    public int getTemporaryCount () {
+        return temporaryCount;
+    }
+
+    /**
+     * @return Число переменных: 1 - только "x", 2 - "x" и "y".
+     */
+    public int getVariableCount () {
+        return variableCount;
+    }
+
+    /**
+     * @return Коды операций программы. Массив не копируется и не должен изменяться.
+     */
+    int[] getCode () {
+        return code;
+    }
+
+    /**
+     * @return Пул констант программы. Массив не копируется и не должен изменяться.
+     */
+    double[] getConstants () {
+        return constants;
+    }
+
+    /**
+     * @return Выражение в системном виде, из которого получена программа.
+     */
+    public String getSource () {
+        return source;
+    }
+
+    /**
+     * @return Оптимизированное дерево выражения.
+     */
+    public ExpressionNode getTree () {
+        return tree;
+    }
+
+    /**
+     * Оптимизированная форма выражения - для отладки.
+     *
+     * @return Выражение после свертки констант и упрощений, в инфиксной форме со скобками. Не длиннее
+     * {@link ExpressionNode#MAX_TEXT_LENGTH} символов и "...".
+     */
+    public String toOptimizedString () {
+        return tree.toString ();
+    }
+
+    @Override
+    public String toString () {
+        return source;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Сообщить получателю метрик о пакетном вычислении.
+     */
+    private static void report (CalculatorListener _listener, long _start, double[] _out, int _offset, int _length) {
+        long nanos   = System.nanoTime () - _start;
+        long invalid = 0;
+        for (int i = _offset, end = _offset + _length; i < end; i++) {
+            if (Double.isNaN (_out[i]) || Double.isInfinite (_out[i])) {
+                invalid++;
+            }
+        }
+        _listener.onEvaluation (_length, invalid, nanos);
+    }
+
+    /**
+     * Генератор программы по дереву (графу) выражения. Используется и для программы нескольких выражений
+     * {@link MultiExpression}: каждое следующее выражение генерируется поверх значений предыдущих.
+     */
+    static class Generator {
+        /**
+         * Наибольшая начальная емкость в узлах.
+         */
+        private static final int INITIAL_CAPACITY = 1 << 12;
+
+        private int[]                                          code;
+        private double[]                                       constants;
+        private final CommonSubexpressions                     subexpressions;
+        private final IdentityHashMap<ExpressionNode, Integer> temporarySlots = new IdentityHashMap<> ();
+        private int                                            codeSize;
+        private int                                            constSize;
+
+        /**
+         * Текущая и максимальная глубина стека.
+         */
+        private int depth;
+        private int maxDepth;
+
+        /**
+         * Число временных ячеек и позиции их номеров в программе.
+         */
+        private int   temporaries;
+        private int[] temporaryOperands = new int[8];
+        private int   temporaryOperandCount;
+
+        /**
+         * Сколько узлов дерева действительно вычисляется программой.
+         */
+        private int emittedNodes;
+
+        /**
+         * Число переменных: наибольший номер слота + 1.
+         */
+        private int variableCount = 1;
+
+        /**
+         * @param _nodes          Оценка числа узлов - начальная емкость. Массивы растут по мере генерации,
+         *                        поэтому для графа с общими подвыражениями можно передать размер дерева.
+         * @param _subexpressions Общие подвыражения.
+         */
+        Generator (int _nodes, CommonSubexpressions _subexpressions) {
+            int nodes = Math.max (1, Math.min (_nodes, INITIAL_CAPACITY));
+            // На узел приходится не больше двух int, и еще два на сохранение во временную ячейку.
+            this.code = new int[4 * nodes];
+            this.constants = new double[nodes];
+            this.subexpressions = _subexpressions;
+        }
+
+        /**
+         * Сгенерировать программу для поддерева обходом в обратном порядке по явному стеку ({@link ExpressionNode#walk}).
+         * Общее подвыражение вычисляется при первой встрече, а дальше загружается из временной ячейки.
+         */
+        void generate (ExpressionNode _root) {
+            ExpressionNode.walk (_root, new ExpressionNode.Visitor () {
+                @Override
+                public boolean enter (ExpressionNode _node) {
+                    Integer slot = temporarySlots.get (_node);
+                    if (null == slot) {
+                        return true;
+                    }
+                    ensureCapacity ();
+                    code[codeSize++] = Interpreter.LOAD;
+                    emitTemporary (slot);
+                    push ();
+                    ++emittedNodes;
+                    return false;
+                }
+
+                @Override
+                public void leave (ExpressionNode _node) {
+                    emit (_node);
+                }
+            });
+        }
+
+        /**
+         * Временные ячейки лежат сразу за стеком, размер которого известен только в конце генерации.
+         * Сдвинуть номера ячеек на максимальную глубину стека.
+         */
+        void relocateTemporaries () {
+            for (int i = 0; i < temporaryOperandCount; i++) {
+                code[temporaryOperands[i]] += maxDepth;
+            }
+        }
+
+        int[] getCode () {
+            return Arrays.copyOf (code, codeSize);
+        }
+
+        double[] getConstants () {
+            return Arrays.copyOf (constants, constSize);
+        }
+
+        /**
+         * @return Размер стека вместе с временными ячейками.
+         */
+        int getStackSize () {
+            return maxDepth + temporaries;
+        }
+
+        int getEmittedNodes () {
+            return emittedNodes;
+        }
+
+        int getTemporaries () {
+            return temporaries;
+        }
+
+        int getVariableCount () {
+            return variableCount;
+        }
+
+        /**
+         * Сгенерировать узел, операнды которого уже сгенерированы.
+         */
+        private void emit (ExpressionNode _node) {
+            ensureCapacity ();
+            if (_node instanceof ExpressionNode.Constant) {
+                constants[constSize] = ((ExpressionNode.Constant) _node).getValue ();
+                code[codeSize++] = Interpreter.CONST;
+                code[codeSize++] = constSize++;
+                push ();
+            } else if (_node instanceof ExpressionNode.Variable) {
+                int variable = ((ExpressionNode.Variable) _node).getSlot ();
+                code[codeSize++] = Interpreter.VAR;
+                code[codeSize++] = variable;
+                variableCount = Math.max (variableCount, variable + 1);
+                push ();
+            } else if (_node instanceof ExpressionNode.Unary) {
+                code[codeSize++] = ((ExpressionNode.Unary) _node).getOperator ().getOpcode ();
+            } else {
+                code[codeSize++] = ((ExpressionNode.Binary) _node).getOperator ().getOpcode ();
+                --depth;
+            }
+            ++emittedNodes;
+
+            if (subexpressions.isShared (_node)) {
+                temporarySlots.put (_node, temporaries);
+                code[codeSize++] = Interpreter.STORE;
+                emitTemporary (temporaries++);
+            }
+        }
+
+        /**
+         * Обеспечить место для одного узла: до четырех int программы и одной константы.
+         */
+        private void ensureCapacity () {
+            if (codeSize + 4 > code.length) {
+                code = Arrays.copyOf (code, 2 * code.length);
+            }
+            if (constSize == constants.length) {
+                constants = Arrays.copyOf (constants, 2 * constants.length);
+            }
+        }
+
+        private void emitTemporary (int _slot) {
+            if (temporaryOperandCount == temporaryOperands.length) {
+                temporaryOperands = Arrays.copyOf (temporaryOperands, 2 * temporaryOperandCount);
+            }
+            temporaryOperands[temporaryOperandCount++] = codeSize;
+            code[codeSize++] = _slot;
+        }
+
+        private void push () {
+            maxDepth = Math.max (maxDepth, ++depth);
+        }
+    }
+}
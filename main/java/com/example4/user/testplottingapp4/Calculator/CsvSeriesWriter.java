@@ -0,0 +1,38 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Выгрузка точек графика в CSV с колонками "x,y". Медленнее двоичного {@link SeriesFileWriter}, зато читается
+ * любыми программами. Числа записываются без учета локали; в точках, где функция не определена, значение
+ * функции равно NaN, Infinity или -Infinity.
+ */
+public class CsvSeriesWriter implements SeriesSink {
+    private final Writer        writer;
+    private final StringBuilder line = new StringBuilder (64);
+
+    /**
+     * @param _writer Куда писать. Закрывается вместе с этим объектом.
+     * @throws IOException Ошибка записи заголовка.
+     */
+    public CsvSeriesWriter (Writer _writer) throws IOException {
+        this.writer = _writer instanceof BufferedWriter ? _writer : new BufferedWriter (_writer, 1 << 16);
+        writer.write ("x,y\n");
+    }
+
+    @Override
+    public void write (double[] _xs, double[] _ys, int _offset, int _length) throws IOException {
+        for (int i = _offset, end = _offset + _length; i < end; i++) {
+            line.setLength (0);
+            line.append (_xs[i]).append (',').append (_ys[i]).append ('\n');
+            writer.append (line);
+        }
+    }
+
+    @Override
+    public void close () throws IOException {
+        writer.close ();
+    }
+}
@@ -0,0 +1,398 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+
+/**
+ * Прореживание графика до заданного числа точек перед отрисовкой.
+ * <p>
+ * Вычислять функцию имеет смысл густо, чтобы не потерять узкие пики, но рисовать больше точек, чем пикселей
+ * по горизонтали, бессмысленно. Прореживатель получает точки по одной в порядке возрастания x, делит их на
+ * корзины и из каждой корзины оставляет несколько точек. Работает за O(n). В режиме {@link Mode#MIN_MAX} корзина
+ * не хранится - запоминаются только ее минимум, максимум и первая некорректная точка; LTTB держит в памяти
+ * не больше двух корзин.
+ * <p>
+ * Режимы:
+ * - {@link Mode#MIN_MAX} - из каждой корзины минимум и максимум. Сохраняет все экстремумы.
+ * - {@link Mode#LTTB} - Largest-Triangle-Three-Buckets: из каждой корзины точка, образующая треугольник наибольшей
+ * площади с выбранной точкой предыдущей корзины и средней точкой следующей. Лучше сохраняет форму кривой.
+ * <p>
+ * Точки, где значение равно NaN или бесконечности, не выбрасываются: из корзины с такими точками кроме минимума
+ * и максимума выводится первая из них, чтобы разрыв остался на своем месте.
+ */
+public class Decimator {
+    /**
+     * Режим прореживания.
+     */
+    public enum Mode {
+        MIN_MAX,
+        LTTB
+    }
+
+    private final Mode    mode;
+    private final long    inputCount;
+    private final long    buckets;
+
+    /**
+     * Точек меньше, чем нужно оставить, - выводим все как есть.
+     */
+    private final boolean passThrough;
+
+    /**
+     * Число уже полученных точек.
+     */
+    private long received;
+
+    // Результат.
+    private double[] outXs;
+    private double[] outYs;
+    private int      outCount;
+
+    private long currentBucket = -1;
+
+    // Текущая корзина MIN_MAX: номера точек в корзине и их значения. -1 - такой точки пока нет.
+    private int    bucketSize;
+    private int    minIndex     = -1;
+    private double minX;
+    private double minY;
+    private int    maxIndex     = -1;
+    private double maxX;
+    private double maxY;
+    private int    invalidIndex = -1;
+    private double invalidX;
+    private double invalidY;
+
+    // Текущая корзина LTTB.
+    private double[] currentXs     = new double[16];
+    private double[] currentYs     = new double[16];
+    private int      currentCount;
+
+    // Следующая корзина - только для LTTB.
+    private double[] nextXs = new double[16];
+    private double[] nextYs = new double[16];
+    private int      nextCount;
+
+    /**
+     * Последняя выведенная конечная точка - вершина треугольника для LTTB.
+     */
+    private double lastX = Double.NaN;
+    private double lastY = Double.NaN;
+
+    /**
+     * @param _mode        Режим прореживания.
+     * @param _inputCount  Сколько точек будет передано.
+     * @param _targetCount Сколько точек примерно должно остаться.
+     */
+    public Decimator (Mode _mode, long _inputCount, int _targetCount) {
+        this.mode = _mode;
+        this.inputCount = _inputCount;
+
+        // В MIN_MAX из корзины выходит до двух точек, в LTTB - одна, плюс первая и последняя точки.
+        long target = Math.max (3, _targetCount);
+        this.passThrough = _inputCount <= target;
+        this.buckets = Math.max (1, Math.min (_inputCount, Mode.MIN_MAX == _mode ? target / 2 : target - 2));
+
+        int capacity = (int) Math.min (3 * buckets + 2, Math.max (2, _inputCount));
+        this.outXs = new double[capacity];
+        this.outYs = new double[capacity];
+    }
+
+    /**
+     * Проредить массив точек.
+     *
+     * @param _mode        Режим прореживания.
+     * @param _xs          Значения x по возрастанию.
+     * @param _ys          Значения y.
+     * @param _from        Индекс первой точки.
+     * @param _to          Индекс после последней точки.
+     * @param _targetCount Сколько точек примерно должно остаться.
+     * @return Прореживатель с результатом.
+     */
+    public static Decimator decimate (Mode _mode, double[] _xs, double[] _ys, int _from, int _to, int _targetCount) {
+        Decimator decimator = new Decimator (_mode, _to - _from, _targetCount);
+        decimator.addAll (_xs, _ys, _from, _to);
+        decimator.finish ();
+        return decimator;
+    }
+
+    /**
+     * Передать следующую точку.
+     *
+     * @param _x Значение x, не меньше предыдущего.
+     * @param _y Значение y. Может быть равно NaN или бесконечности.
+     */
+    public void add (double _x, double _y) {
+        long index = received++;
+
+        if (passThrough) {
+            emit (_x, _y);
+            return;
+        }
+        if (Mode.LTTB == mode) {
+            addLttb (index, _x, _y);
+            return;
+        }
+
+        long bucket = index * buckets / inputCount;
+        if (bucket != currentBucket) {
+            flushExtremes ();
+            currentBucket = bucket;
+        }
+        track (_x, _y);
+    }
+
+    /**
+     * Передать часть массива точек.
+     */
+    public void addAll (double[] _xs, double[] _ys, int _from, int _to) {
+        for (int i = _from; i < _to; i++) {
+            add (_xs[i], _ys[i]);
+        }
+    }
+
+    /**
+     * Завершить прореживание после передачи всех точек.
+     */
+    public void finish () {
+        if (passThrough) {
+            return;
+        }
+        if (Mode.MIN_MAX == mode) {
+            flushExtremes ();
+            return;
+        }
+
+        // LTTB: последняя точка выводится сама по себе.
+        if (nextCount > 0) {
+            double x = nextXs[--nextCount];
+            double y = nextYs[nextCount];
+
+            if (nextCount > 0) {
+                flushLttb (average (nextXs, nextCount), average (nextYs, nextCount));
+            } else {
+                flushLttb (x, y);
+            }
+            swapBuckets ();
+            flushLttb (x, y);
+            emit (x, y);
+        } else if (currentCount > 0) {
+            double x = currentXs[--currentCount];
+            double y = currentYs[currentCount];
+
+            flushLttb (x, y);
+            emit (x, y);
+        }
+        currentCount = 0;
+        nextCount = 0;
+    }
+
+    /**
+     * @return Значения x оставшихся точек. Используются первые {@link #getCount()} элементов.
+     */
+    public double[] getXs () {
+        return outXs;
+    }
+
+    /**
+     * @return Значения y оставшихся точек.
+     */
+    public double[] getYs () {
+        return outYs;
+    }
+
+    public int getCount () {
+        return outCount;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private void addLttb (long _index, double _x, double _y) {
+        // Первая точка выводится как есть, остальные делятся на корзины.
+        if (_index == 0) {
+            emit (_x, _y);
+            return;
+        }
+
+        long bucket = (_index - 1) * buckets / Math.max (1, inputCount - 1);
+        if (currentBucket < 0) {
+            currentBucket = bucket;
+        }
+
+        if (bucket == currentBucket) {
+            appendCurrent (_x, _y);
+            return;
+        }
+
+        if (bucket > currentBucket + 1) {
+            // Следующая корзина заполнена - выбираем точку из текущей.
+            flushLttb (average (nextXs, nextCount), average (nextYs, nextCount));
+            swapBuckets ();
+            currentBucket++;
+        }
+
+        if (nextCount == nextXs.length) {
+            nextXs = Arrays.copyOf (nextXs, 2 * nextCount);
+            nextYs = Arrays.copyOf (nextYs, 2 * nextCount);
+        }
+        nextXs[nextCount] = _x;
+        nextYs[nextCount++] = _y;
+    }
+
+    /**
+     * Выбрать точку текущей корзины по LTTB.
+     *
+     * @param _nextX Вершина треугольника в следующей корзине.
+     * @param _nextY Вершина треугольника в следующей корзине.
+     */
+    private void flushLttb (double _nextX, double _nextY) {
+        if (currentCount == 0) {
+            return;
+        }
+        if (hasInvalid (currentYs, currentCount) || Double.isNaN (lastY)) {
+            flushMinMax (currentXs, currentYs, currentCount);
+            currentCount = 0;
+            return;
+        }
+
+        int    best     = 0;
+        double bestArea = -1;
+        for (int i = 0; i < currentCount; i++) {
+            double area = Math.abs ((lastX - _nextX) * (currentYs[i] - lastY) - (lastX - currentXs[i]) * (_nextY - lastY));
+            if (area > bestArea) {
+                bestArea = area;
+                best = i;
+            }
+        }
+        emit (currentXs[best], currentYs[best]);
+        currentCount = 0;
+    }
+
+    /**
+     * Вывести минимум, максимум и первую некорректную точку корзины из массивов.
+     */
+    private void flushMinMax (double[] _xs, double[] _ys, int _count) {
+        for (int i = 0; i < _count; i++) {
+            track (_xs[i], _ys[i]);
+        }
+        flushExtremes ();
+    }
+
+    /**
+     * Учесть следующую точку корзины в ее минимуме, максимуме и первой некорректной точке.
+     */
+    private void track (double _x, double _y) {
+        int index = bucketSize++;
+        if (Double.isNaN (_y) || Double.isInfinite (_y)) {
+            if (invalidIndex < 0) {
+                invalidIndex = index;
+                invalidX = _x;
+                invalidY = _y;
+            }
+            return;
+        }
+        if (minIndex < 0 || _y < minY) {
+            minIndex = index;
+            minX = _x;
+            minY = _y;
+        }
+        if (maxIndex < 0 || _y > maxY) {
+            maxIndex = index;
+            maxX = _x;
+            maxY = _y;
+        }
+    }
+
+    /**
+     * Вывести минимум, максимум и первую некорректную точку корзины в порядке возрастания x и начать новую корзину.
+     */
+    private void flushExtremes () {
+        // Минимум и максимум либо оба есть, либо обоих нет.
+        boolean minFirst     = minIndex <= maxIndex;
+        int     first        = minFirst ? minIndex : maxIndex;
+        int     second       = minFirst ? maxIndex : minIndex;
+        boolean invalidShown = invalidIndex < 0;
+
+        if (!invalidShown && (first < 0 || invalidIndex < first)) {
+            emit (invalidX, invalidY);
+            invalidShown = true;
+        }
+        if (first >= 0) {
+            emit (minFirst ? minX : maxX, minFirst ? minY : maxY);
+        }
+        if (!invalidShown && invalidIndex < second) {
+            emit (invalidX, invalidY);
+            invalidShown = true;
+        }
+        if (second >= 0 && second != first) {
+            emit (minFirst ? maxX : minX, minFirst ? maxY : minY);
+        }
+        if (!invalidShown) {
+            emit (invalidX, invalidY);
+        }
+
+        bucketSize = 0;
+        minIndex = -1;
+        maxIndex = -1;
+        invalidIndex = -1;
+    }
+
+    private void appendCurrent (double _x, double _y) {
+        if (currentCount == currentXs.length) {
+            currentXs = Arrays.copyOf (currentXs, 2 * currentCount);
+            currentYs = Arrays.copyOf (currentYs, 2 * currentCount);
+        }
+        currentXs[currentCount] = _x;
+        currentYs[currentCount++] = _y;
+    }
+
+    private void swapBuckets () {
+        double[] xs = currentXs;
+        double[] ys = currentYs;
+        currentXs = nextXs;
+        currentYs = nextYs;
+        currentCount = nextCount;
+        nextXs = xs;
+        nextYs = ys;
+        nextCount = 0;
+    }
+
+    private void emit (double _x, double _y) {
+        if (outCount == outXs.length) {
+            outXs = Arrays.copyOf (outXs, 2 * outCount);
+            outYs = Arrays.copyOf (outYs, 2 * outCount);
+        }
+        outXs[outCount] = _x;
+        outYs[outCount++] = _y;
+
+        if (!Double.isNaN (_y) && !Double.isInfinite (_y)) {
+            lastX = _x;
+            lastY = _y;
+        } else {
+            lastX = Double.NaN;
+            lastY = Double.NaN;
+        }
+    }
+
+    private static boolean hasInvalid (double[] _ys, int _count) {
+        for (int i = 0; i < _count; i++) {
+            if (Double.isNaN (_ys[i]) || Double.isInfinite (_ys[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Среднее конечных значений. NaN и бесконечности пропускаются.
+     */
+    private static double average (double[] _values, int _count) {
+        double sum    = 0;
+        int    finite = 0;
+        for (int i = 0; i < _count; i++) {
+            if (!Double.isNaN (_values[i]) && !Double.isInfinite (_values[i])) {
+                sum += _values[i];
+                ++finite;
+            }
+        }
+        return sum / finite;
+    }
+}
@@ -0,0 +1,345 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+
+/**
+ * Вычисление программы {@link Interpreter} вместе с производными по x (прямой режим автоматического
+ * дифференцирования).
+ * <p>
+ * Каждая ячейка стека хранит значение, первую и вторую производную подвыражения (гипердуальное число
+ * с одной переменной). Производные точные - без погрешности метода конечных разностей - и вычисляются
+ * за один проход программы. Значения совпадают с {@link Interpreter#run} побитово.
+ * <p>
+ * Пакетный вариант {@link #runBlock} считает только значение и первую производную и обходится примерно
+ * вдвое дороже обычного пакетного вычисления.
+ */
+final class DualEvaluator {
+    private DualEvaluator () {
+    }
+
+    /**
+     * Выполнить программу для одной точки.
+     *
+     * @param _code      Коды операций.
+     * @param _constants Пул констант.
+     * @param _stackSize Размер стека вместе с временными ячейками.
+     * @param _stack     Стек размером не меньше 3 * _stackSize: значения, первые и вторые производные.
+     * @param _x         Значение переменной "x".
+     * @param _out       Массив из трех элементов: значение, первая и вторая производная.
+     */
+    static void run (int[] _code, double[] _constants, int _stackSize, double[] _stack, double _x, double[] _out) {
+        int top = -1;
+        int pc  = 0;
+        int d1  = _stackSize;
+        int d2  = 2 * _stackSize;
+
+        while (pc < _code.length) {
+            int opcode = _code[pc++];
+            if (opcode == Interpreter.CONST || opcode == Interpreter.VAR || opcode == Interpreter.LOAD) {
+                ++top;
+                if (opcode == Interpreter.CONST) {
+                    _stack[top] = _constants[_code[pc++]];
+                    _stack[d1 + top] = 0;
+                } else if (opcode == Interpreter.VAR) {
+                    // Производная берется по x; остальные переменные равны 0, как в Interpreter.run (code, x).
+                    boolean x = 0 == _code[pc++];
+                    _stack[top] = x ? _x : 0;
+                    _stack[d1 + top] = x ? 1 : 0;
+                } else {
+                    int slot = _code[pc++];
+                    _stack[top] = _stack[slot];
+                    _stack[d1 + top] = _stack[d1 + slot];
+                    _stack[d2 + top] = _stack[d2 + slot];
+                    continue;
+                }
+                _stack[d2 + top] = 0;
+                continue;
+            }
+            if (opcode == Interpreter.STORE) {
+                int slot = _code[pc++];
+                _stack[slot] = _stack[top];
+                _stack[d1 + slot] = _stack[d1 + top];
+                _stack[d2 + slot] = _stack[d2 + top];
+                continue;
+            }
+
+            // Правый операнд (для бинарных операций) и левый - он же результат.
+            // Коды бинарных операций - от ADD до POW.
+            double b = 0, db = 0, ddb = 0;
+            if (opcode <= Interpreter.POW) {
+                b = _stack[top];
+                db = _stack[d1 + top];
+                ddb = _stack[d2 + top];
+                --top;
+            }
+            double a   = _stack[top];
+            double da  = _stack[d1 + top];
+            double dda = _stack[d2 + top];
+            double v;
+            double d;
+            double dd;
+
+            switch (opcode) {
+                case Interpreter.ADD:
+                    v = a + b;
+                    d = da + db;
+                    dd = dda + ddb;
+                    break;
+                case Interpreter.SUB:
+                    v = a - b;
+                    d = da - db;
+                    dd = dda - ddb;
+                    break;
+                case Interpreter.MUL:
+                    v = a * b;
+                    d = da * b + a * db;
+                    dd = dda * b + 2 * da * db + a * ddb;
+                    break;
+                case Interpreter.DIV:
+                    v = a / b;
+                    d = (da - v * db) / b;
+                    dd = (dda - 2 * d * db - v * ddb) / b;
+                    break;
+                case Interpreter.POW: {
+                    v = Math.pow (a, b);
+                    // (a^b)' = b a^(b-1) a' + a^b ln(a) b'. Слагаемые с нулевыми множителями пропускаются,
+                    // чтобы x^2 в нуле и 2^x не давали 0 * бесконечность.
+                    double lnA = db == 0 && ddb == 0 ? 0 : Math.log (a);
+                    double p1  = b == 0 ? 0 : b * Math.pow (a, b - 1);
+                    double p2  = b == 0 || b == 1 ? 0 : b * (b - 1) * Math.pow (a, b - 2);
+                    d = (da == 0 ? 0 : p1 * da) + (db == 0 ? 0 : v * lnA * db);
+                    dd = (da == 0 ? 0 : p2 * da * da) + (dda == 0 ? 0 : p1 * dda)
+                            + (da == 0 || db == 0 ? 0 : 2 * Math.pow (a, b - 1) * (1 + b * lnA) * da * db)
+                            + (db == 0 ? 0 : v * lnA * lnA * db * db) + (ddb == 0 ? 0 : v * lnA * ddb);
+                    break;
+                }
+
+                case Interpreter.NEG:
+                    v = -a;
+                    d = -da;
+                    dd = -dda;
+                    break;
+                case Interpreter.SIN: {
+                    double cos = Math.cos (a);
+                    v = Math.sin (a);
+                    d = cos * da;
+                    dd = cos * dda - v * da * da;
+                    break;
+                }
+                case Interpreter.COS: {
+                    double sin = Math.sin (a);
+                    v = Math.cos (a);
+                    d = -sin * da;
+                    dd = -sin * dda - v * da * da;
+                    break;
+                }
+                case Interpreter.TAN: {
+                    v = Math.tan (a);
+                    double slope = 1 + v * v;
+                    d = slope * da;
+                    dd = slope * dda + 2 * v * slope * da * da;
+                    break;
+                }
+                case Interpreter.CTG: {
+                    v = 1.0 / Math.tan (a);
+                    double slope = -(1 + v * v);
+                    d = slope * da;
+                    dd = slope * dda - 2 * v * slope * da * da;
+                    break;
+                }
+                case Interpreter.LN:
+                    v = Math.log (a);
+                    d = da / a;
+                    dd = dda / a - d * d;
+                    break;
+
+                default:
+                    throw new IllegalStateException ("Неизвестный код операции: " + opcode);
+            }
+
+            _stack[top] = v;
+            _stack[d1 + top] = d;
+            _stack[d2 + top] = dd;
+        }
+
+        _out[0] = _stack[0];
+        _out[1] = _stack[d1];
+        _out[2] = _stack[d2];
+    }
+
+    /**
+     * Выполнить программу для блока точек: значения и первые производные.
+     *
+     * @param _code        Коды операций.
+     * @param _constants   Пул констант.
+     * @param _stackSize   Размер стека вместе с временными ячейками.
+     * @param _columns     Стек столбцов глубиной не меньше 2 * _stackSize: сначала значения, затем производные.
+     * @param _xs          Значения переменной "x".
+     * @param _xsOffset    Индекс первой точки блока в _xs.
+     * @param _length      Число точек в блоке, не больше {@link Interpreter#BLOCK_SIZE}.
+     * @param _values      Массив для значений.
+     * @param _derivatives Массив для производных.
+     * @param _outOffset   Индекс в выходных массивах, куда записать результат для первой точки.
+     */
+    static void runBlock (int[] _code, double[] _constants, int _stackSize, double[][] _columns, double[] _xs, int _xsOffset,
+                          int _length, double[] _values, double[] _derivatives, int _outOffset) {
+        int top = -1;
+        int pc  = 0;
+
+        while (pc < _code.length) {
+            int      opcode = _code[pc++];
+            double[] a;
+            double[] da;
+            double[] b;
+            double[] db;
+
+            switch (opcode) {
+                case Interpreter.CONST: {
+                    a = _columns[++top];
+                    da = _columns[_stackSize + top];
+                    double c = _constants[_code[pc++]];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = c;
+                        da[j] = 0;
+                    }
+                    break;
+                }
+                case Interpreter.VAR:
+                    a = _columns[++top];
+                    da = _columns[_stackSize + top];
+                    if (0 == _code[pc++]) {
+                        System.arraycopy (_xs, _xsOffset, a, 0, _length);
+                        Arrays.fill (da, 0, _length, 1);
+                    } else {
+                        Arrays.fill (a, 0, _length, 0);
+                        Arrays.fill (da, 0, _length, 0);
+                    }
+                    break;
+                case Interpreter.STORE: {
+                    int slot = _code[pc++];
+                    System.arraycopy (_columns[top], 0, _columns[slot], 0, _length);
+                    System.arraycopy (_columns[_stackSize + top], 0, _columns[_stackSize + slot], 0, _length);
+                    break;
+                }
+                case Interpreter.LOAD: {
+                    int slot = _code[pc++];
+                    ++top;
+                    System.arraycopy (_columns[slot], 0, _columns[top], 0, _length);
+                    System.arraycopy (_columns[_stackSize + slot], 0, _columns[_stackSize + top], 0, _length);
+                    break;
+                }
+
+                case Interpreter.ADD:
+                    b = _columns[top];
+                    db = _columns[_stackSize + top--];
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = a[j] + b[j];
+                        da[j] = da[j] + db[j];
+                    }
+                    break;
+                case Interpreter.SUB:
+                    b = _columns[top];
+                    db = _columns[_stackSize + top--];
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = a[j] - b[j];
+                        da[j] = da[j] - db[j];
+                    }
+                    break;
+                case Interpreter.MUL:
+                    b = _columns[top];
+                    db = _columns[_stackSize + top--];
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        da[j] = da[j] * b[j] + a[j] * db[j];
+                        a[j] = a[j] * b[j];
+                    }
+                    break;
+                case Interpreter.DIV:
+                    b = _columns[top];
+                    db = _columns[_stackSize + top--];
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = a[j] / b[j];
+                        da[j] = (da[j] - a[j] * db[j]) / b[j];
+                    }
+                    break;
+                case Interpreter.POW:
+                    b = _columns[top];
+                    db = _columns[_stackSize + top--];
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        double v = Math.pow (a[j], b[j]);
+                        double d = da[j] == 0 || b[j] == 0 ? 0 : b[j] * Math.pow (a[j], b[j] - 1) * da[j];
+                        if (db[j] != 0) {
+                            d += v * Math.log (a[j]) * db[j];
+                        }
+                        a[j] = v;
+                        da[j] = d;
+                    }
+                    break;
+
+                case Interpreter.NEG:
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = -a[j];
+                        da[j] = -da[j];
+                    }
+                    break;
+                case Interpreter.SIN:
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        da[j] = Math.cos (a[j]) * da[j];
+                        a[j] = Math.sin (a[j]);
+                    }
+                    break;
+                case Interpreter.COS:
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        da[j] = -Math.sin (a[j]) * da[j];
+                        a[j] = Math.cos (a[j]);
+                    }
+                    break;
+                case Interpreter.TAN:
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = Math.tan (a[j]);
+                        da[j] = (1 + a[j] * a[j]) * da[j];
+                    }
+                    break;
+                case Interpreter.CTG:
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = 1.0 / Math.tan (a[j]);
+                        da[j] = -(1 + a[j] * a[j]) * da[j];
+                    }
+                    break;
+                case Interpreter.LN:
+                    a = _columns[top];
+                    da = _columns[_stackSize + top];
+                    for (int j = 0; j < _length; j++) {
+                        da[j] = da[j] / a[j];
+                        a[j] = Math.log (a[j]);
+                    }
+                    break;
+
+                default:
+                    throw new IllegalStateException ("Неизвестный код операции: " + opcode);
+            }
+        }
+
+        System.arraycopy (_columns[0], 0, _values, _outOffset, _length);
+        System.arraycopy (_columns[_stackSize], 0, _derivatives, _outOffset, _length);
+    }
+}
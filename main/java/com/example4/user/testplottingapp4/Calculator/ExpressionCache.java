@@ -0,0 +1,254 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш скомпилированных выражений ограниченного размера.
+ * <p>
+ * Выражение ищется сначала по исходному тексту - при повторном построении графика разбор не выполняется вовсе.
+ * Если исходный текст новый, он разбирается лексером и ищется по системному виду, так что "2*x" и "2 * x"
+ * используют одну программу. Компилируется только выражение, которого нет в кэше.
+ * <p>
+ * Исходных текстов у записи не больше {@link #MAX_ALIASES}: иначе одно выражение с пробелами в разных местах
+ * растило бы словарь текстов без предела. Остальные тексты находятся через лексер - тоже без компиляции.
+ * <p>
+ * Размер кэша ограничен суммарным весом записей: весом 1 на выражение или размером программы. При превышении
+ * вытесняются записи, к которым дольше всего не обращались (приблизительный LRU по логическим часам).
+ * Поиск не блокирует потоки; вытеснение выполняет один поток, остальные его не ждут.
+ */
+public class ExpressionCache {
+    /**
+     * Максимальное число выражений в кэше по умолчанию.
+     */
+    public static final int DEFAULT_MAX_WEIGHT = 256;
+
+    /**
+     * Сколько исходных текстов запоминается для одной записи.
+     */
+    public static final int MAX_ALIASES = 8;
+
+    /**
+     * Записи по системному виду выражения.
+     */
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<> ();
+
+    /**
+     * Записи по исходному тексту выражения.
+     */
+    private final ConcurrentHashMap<String, Entry> aliases = new ConcurrentHashMap<> ();
+
+    private final long    maxWeight;
+    private final boolean weighByProgramSize;
+
+    /**
+     * Логические часы для порядка обращений.
+     */
+    private final AtomicLong    clock        = new AtomicLong ();
+    private final AtomicLong    totalWeight  = new AtomicLong ();
+    private final ReentrantLock evictionLock = new ReentrantLock ();
+
+    // Счетчики.
+    private final AtomicLong hits      = new AtomicLong ();
+    private final AtomicLong misses    = new AtomicLong ();
+    private final AtomicLong evictions = new AtomicLong ();
+
+    /**
+     * Кэш на {@link #DEFAULT_MAX_WEIGHT} выражений.
+     */
+    public ExpressionCache () {
+        this (DEFAULT_MAX_WEIGHT, false);
+    }
+
+    /**
+     * @param _maxWeight          Максимальный суммарный вес записей.
+     * @param _weighByProgramSize true - вес записи равен длине программы, false - 1 на выражение.
+     */
+    public ExpressionCache (long _maxWeight, boolean _weighByProgramSize) {
+        this.maxWeight = Math.max (1, _maxWeight);
+        this.weighByProgramSize = _weighByProgramSize;
+    }
+
+    /**
+     * Получить скомпилированное выражение, скомпилировав его при необходимости.
+     * Кэш не различает функции одной и двух переменных: выражение может содержать "y", как у
+     * {@link Calculator#compile2D}. Только "x" требует {@link Calculator#compileCached}.
+     *
+     * @param _expressionNormal Выражение в нормальной форме.
+     * @return Скомпилированное выражение.
+     * @throws Calculator.CalculatorErrorException Если выражение некорректно. Ошибки не кэшируются.
+     */
+    public CompiledExpression get (String _expressionNormal) throws Calculator.CalculatorErrorException {
+        Entry entry = aliases.get (_expressionNormal);
+        if (null != entry && !entry.evicted) {
+            hits.incrementAndGet ();
+            report (true);
+            entry.lastAccess = clock.incrementAndGet ();
+            return entry.expression;
+        }
+
+        Token[] tokens = Calculator.tokenize (_expressionNormal);
+        String  key    = Lexer.join (Arrays.asList (tokens));
+
+        entry = entries.get (key);
+        if (null != entry && !entry.evicted) {
+            hits.incrementAndGet ();
+            report (true);
+        } else {
+            misses.incrementAndGet ();
+            report (false);
+            CompiledExpression expression = Calculator.compileTokens (tokens, key);
+            Entry              created    = new Entry (key, expression, weighByProgramSize ? expression.getCode ().length : 1);
+            entry = entries.putIfAbsent (key, created);
+            if (null == entry) {
+                entry = created;
+                totalWeight.addAndGet (entry.weight);
+            }
+        }
+
+        entry.lastAccess = clock.incrementAndGet ();
+        // Место под текст занимается заранее, чтобы параллельные потоки не превысили предел.
+        if (entry.aliasCount.incrementAndGet () <= MAX_ALIASES && aliases.put (_expressionNormal, entry) != entry) {
+            entry.texts.add (_expressionNormal);
+        } else {
+            entry.aliasCount.decrementAndGet ();
+        }
+        if (entry.evicted) {
+            // Запись вытеснили параллельно - ссылку на нее не оставляем.
+            aliases.remove (_expressionNormal, entry);
+        }
+        evictIfNeeded ();
+        return entry.expression;
+    }
+
+    /**
+     * Удалить все записи. Счетчики не сбрасываются.
+     */
+    public void clear () {
+        evictionLock.lock ();
+        try {
+            for (Entry entry : entries.values ()) {
+                remove (entry);
+            }
+        } finally {
+            evictionLock.unlock ();
+        }
+    }
+
+    public long getHitCount () {
+        return hits.get ();
+    }
+
+    public long getMissCount () {
+        return misses.get ();
+    }
+
+    public long getEvictionCount () {
+        return evictions.get ();
+    }
+
+    /**
+     * @return Число выражений в кэше.
+     */
+    public int getSize () {
+        return entries.size ();
+    }
+
+    /**
+     * @return Число исходных текстов, по которым выражения находятся без лексера.
+     */
+    public int getAliasCount () {
+        return aliases.size ();
+    }
+
+    /**
+     * @return Суммарный вес записей.
+     */
+    public long getWeight () {
+        return totalWeight.get ();
+    }
+
+    public long getMaxWeight () {
+        return maxWeight;
+    }
+
+    @Override
+    public String toString () {
+        return "ExpressionCache{size=" + getSize () + ", weight=" + getWeight () + "/" + maxWeight + ", hits=" + getHitCount ()
+                + ", misses=" + getMissCount () + ", evictions=" + getEvictionCount () + "}";
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Вытеснять самые давние записи, пока вес превышает предел. Если вытеснением уже занят другой поток,
+     * текущий поток не ждет.
+     */
+    private void evictIfNeeded () {
+        // Повторная проверка после снятия блокировки: запись могла добавиться, пока вытеснял другой поток.
+        while (totalWeight.get () > maxWeight && entries.size () > 1 && evictionLock.tryLock ()) {
+            try {
+                while (totalWeight.get () > maxWeight && entries.size () > 1) {
+                    Entry oldest = null;
+                    for (Entry entry : entries.values ()) {
+                        if (null == oldest || entry.lastAccess < oldest.lastAccess) {
+                            oldest = entry;
+                        }
+                    }
+                    remove (oldest);
+                    evictions.incrementAndGet ();
+                }
+            } finally {
+                evictionLock.unlock ();
+            }
+        }
+    }
+
+    private void remove (Entry _entry) {
+        _entry.evicted = true;
+        if (entries.remove (_entry.key, _entry)) {
+            totalWeight.addAndGet (-_entry.weight);
+        }
+        for (String text : _entry.texts) {
+            aliases.remove (text, _entry);
+        }
+    }
+
+    /**
+     * Сообщить об обращении к кэшу получателю метрик калькулятора.
+     */
+    private static void report (boolean _hit) {
+        CalculatorListener listener = Calculator.getListener ();
+        if (null != listener) {
+            listener.onCacheLookup (_hit);
+        }
+    }
+
+    /**
+     * Запись кэша.
+     */
+    private static class Entry {
+        private final String             key;
+        private final CompiledExpression expression;
+        private final int                weight;
+
+        /**
+         * Исходные тексты, по которым запись доступна в {@link ExpressionCache#aliases}.
+         */
+        private final ConcurrentLinkedQueue<String> texts      = new ConcurrentLinkedQueue<> ();
+        private final AtomicInteger                 aliasCount = new AtomicInteger ();
+
+        private volatile long    lastAccess;
+        private volatile boolean evicted;
+
+        Entry (String _key, CompiledExpression _expression, int _weight) {
+            this.key = _key;
+            this.expression = _expression;
+            this.weight = _weight;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Узел дерева выражения.
+ * <p>
+ * Дерево строится из ОПН и используется оптимизатором ({@link Optimizer}) и генератором программы
+ * {@link CompiledExpression}. Узлы неизменяемы и сравниваются по структуре.
+ */
+public abstract class ExpressionNode {
+    /**
+     * Наибольшая длина текста {@link #toString()}: общий операнд выписывается столько раз, сколько на него
+     * ссылаются, и текст графа из 24 вложенных квадратов занял бы 2^24 копий.
+     */
+    public static final int MAX_TEXT_LENGTH = 1 << 16;
+
+    /**
+     * Построить дерево из лексем ОПН.
+     *
+     * @param _rpn    Лексемы выражения в ОПН.
+     * @param _source Выражение - для сообщений об ошибках.
+     * @return Корень дерева.
+     * @throws Calculator.CalculatorErrorException Если ОПН некорректна.
+     */
+    public static ExpressionNode fromRPN (List<Token> _rpn, String _source) throws Calculator.CalculatorErrorException {
+        ArrayDeque<ExpressionNode> stack = new ArrayDeque<> ();
+
+        for (Token token : _rpn) {
+            switch (token.getType ()) {
+                case NUMBER:
+                    stack.push (new Constant (token.getValue ()));
+                    break;
+                case VARIABLE:
+                    stack.push (new Variable (Variable.slotOf (token.getText ())));
+                    break;
+                case OPERATOR:
+                    Operator op = token.getOperator ();
+                    if (stack.size () < op.getArity ()) {
+                        throw new Calculator.CalculatorErrorException ("Compile: Синтаксическая ошибка: неверный разделитель. Выражение: \"" + _source + "\".");
+                    }
+
+                    if (op.getArity () == 1) {
+                        stack.push (new Unary (op, stack.pop ()));
+                    } else {
+                        ExpressionNode right = stack.pop ();
+                        stack.push (new Binary (op, stack.pop (), right));
+                    }
+                    break;
+                default:
+                    throw new Calculator.CalculatorErrorException ("Compile: \"" + token + "\" - неверный формат операнда!");
+            }
+        }
+
+        if (stack.size () != 1) {
+            throw new Calculator.CalculatorErrorException ("Compile: Синтаксическая ошибка: неверное число операндов. Выражение: \"" + _source + "\".");
+        }
+
+        return stack.pop ();
+    }
+
+    /**
+     * Обойти поддерево в обратном порядке - операнды раньше оператора, левый операнд раньше правого.
+     * Обход идет по явному стеку, поэтому глубина дерева ограничена памятью, а не стеком потока:
+     * формула из сотен тысяч слагаемых дает дерево такой же глубины.
+     *
+     * @param _root    Корень поддерева.
+     * @param _visitor Обработчик узлов.
+     */
+    static void walk (ExpressionNode _root, Visitor _visitor) {
+        ArrayDeque<ExpressionNode> nodes   = new ArrayDeque<> ();
+        ArrayDeque<Boolean>        entered = new ArrayDeque<> ();
+        nodes.push (_root);
+        entered.push (false);
+
+        while (!nodes.isEmpty ()) {
+            ExpressionNode node = nodes.pop ();
+            if (entered.pop ()) {
+                _visitor.leave (node);
+                continue;
+            }
+            if (!_visitor.enter (node)) {
+                continue;
+            }
+
+            nodes.push (node);
+            entered.push (true);
+            if (node instanceof Binary) {
+                nodes.push (((Binary) node).right);
+                entered.push (false);
+                nodes.push (((Binary) node).left);
+                entered.push (false);
+            } else if (node instanceof Unary) {
+                nodes.push (((Unary) node).operand);
+                entered.push (false);
+            }
+        }
+    }
+
+    /**
+     * Записать поддерево в инфиксной форме со скобками. Обход идет через {@link #walk}, без рекурсии.
+     * Если текст длиннее _maxLength символов, он обрезается, а в конце ставится "...".
+     *
+     * @param _root      Корень поддерева.
+     * @param _maxLength Наибольшая длина текста без "...".
+     * @return Текст поддерева.
+     */
+    static String render (ExpressionNode _root, final int _maxLength) {
+        final StringBuilder              text    = new StringBuilder ();
+        final ArrayDeque<ExpressionNode> path    = new ArrayDeque<> ();
+        final ArrayDeque<Boolean>        between = new ArrayDeque<> ();
+
+        walk (_root, new Visitor () {
+            @Override
+            public boolean enter (ExpressionNode _node) {
+                // Остаток текста все равно будет обрезан - операнды не обходим.
+                if (text.length () > _maxLength) {
+                    return false;
+                }
+
+                if (_node instanceof Binary) {
+                    text.append ('(');
+                } else if (_node instanceof Unary) {
+                    Unary unary = (Unary) _node;
+                    if (Operator.NEGATE == unary.operator) {
+                        text.append ('-');
+                    } else {
+                        text.append (unary.operator);
+                        if (!opensWithBracket (unary.operand)) {
+                            text.append ('(');
+                        }
+                    }
+                } else {
+                    text.append (_node);
+                }
+                path.push (_node);
+                between.push (false);
+                return true;
+            }
+
+            @Override
+            public void leave (ExpressionNode _node) {
+                if (_node instanceof Binary) {
+                    text.append (')');
+                } else if (_node instanceof Unary) {
+                    Unary unary = (Unary) _node;
+                    if (Operator.NEGATE != unary.operator && !opensWithBracket (unary.operand)) {
+                        text.append (')');
+                    }
+                }
+                path.pop ();
+                between.pop ();
+
+                // Левый операнд записан - дальше знак бинарного оператора.
+                if (path.peek () instanceof Binary && !between.peek ()) {
+                    text.append (' ').append (((Binary) path.peek ()).operator).append (' ');
+                    between.pop ();
+                    between.push (true);
+                }
+            }
+        });
+
+        if (text.length () > _maxLength) {
+            text.setLength (_maxLength);
+            text.append ("...");
+        }
+        return text.toString ();
+    }
+
+    /**
+     * Вычислить поддерево обходом дерева. Используется для свертки констант и проверок.
+     * Все переменные считаются равными _x.
+     *
+     * @param _x Значение переменной "x".
+     * @return Результат с той же семантикой NaN/Infinity, что и у {@link Interpreter}.
+     */
+    public abstract double evaluate (double _x);
+
+    /**
+     * @return Глубина стека, нужная для вычисления поддерева.
+     */
+    public abstract int getStackDepth ();
+
+    /**
+     * @return Число узлов в поддереве; общий операнд (как в дереве после {@link CommonSubexpressions}) считается
+     * столько раз, сколько на него ссылаются. Не больше {@link Integer#MAX_VALUE}.
+     */
+    public abstract int getSize ();
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Размер поддерева с насыщением: при общих операндах размер дерева растет экспоненциально с глубиной.
+     * Размер и глубина считаются один раз в конструкторе узла, без обхода поддерева при каждом вызове.
+     */
+    private static int sizeOf (long _size) {
+        return (int) Math.min (Integer.MAX_VALUE, _size);
+    }
+
+    /**
+     * Начинается ли текст узла со скобки - тогда аргумент функции не оборачивается еще раз.
+     */
+    private static boolean opensWithBracket (ExpressionNode _node) {
+        if (_node instanceof Binary) {
+            return true;
+        }
+        if (_node instanceof Constant) {
+            Constant constant = (Constant) _node;
+            return constant.value < 0 || constant.is (-0.0);
+        }
+        return false;
+    }
+
+    /**
+     * Обработчик узлов для {@link #walk}.
+     */
+    interface Visitor {
+        /**
+         * Узел встречен, его операнды еще не обойдены.
+         *
+         * @return Обходить ли операнды. Если нет, {@link #leave} для узла не вызывается.
+         */
+        boolean enter (ExpressionNode _node);
+
+        /**
+         * Операнды узла обойдены.
+         */
+        void leave (ExpressionNode _node);
+    }
+
+    /**
+     * Число.
+     */
+    public static final class Constant extends ExpressionNode {
+        private final double value;
+
+        public Constant (double _value) {
+            this.value = _value;
+        }
+
+        public double getValue () {
+            return value;
+        }
+
+        /**
+         * Равна ли константа заданному числу побитово (0.0 и -0.0 различаются).
+         */
+        public boolean is (double _value) {
+            return Double.doubleToLongBits (value) == Double.doubleToLongBits (_value);
+        }
+
+        @Override
+        public double evaluate (double _x) {
+            return value;
+        }
+
+        @Override
+        public int getStackDepth () {
+            return 1;
+        }
+
+        @Override
+        public int getSize () {
+            return 1;
+        }
+
+        @Override
+        public boolean equals (Object _o) {
+            return _o instanceof Constant && ((Constant) _o).is (value);
+        }
+
+        @Override
+        public int hashCode () {
+            long bits = Double.doubleToLongBits (value);
+            return (int) (bits ^ (bits >>> 32));
+        }
+
+        @Override
+        public String toString () {
+            String text = (value == Math.rint (value) && Math.abs (value) < 1E15) ? String.valueOf ((long) value) : String.valueOf (value);
+            return (value < 0 || is (-0.0)) ? "(" + (is (-0.0) ? "-0" : text) + ")" : text;
+        }
+    }
+
+    /**
+     * Переменная.
+     */
+    public static final class Variable extends ExpressionNode {
+        private final int slot;
+
+        /**
+         * @param _slot Номер слота переменной (0 - "x", 1 - "y").
+         */
+        public Variable (int _slot) {
+            this.slot = _slot;
+        }
+
+        /**
+         * @param _name Имя переменной.
+         * @return Номер слота переменной.
+         */
+        static int slotOf (String _name) {
+            return _name.equalsIgnoreCase ("y") ? 1 : 0;
+        }
+
+        public int getSlot () {
+            return slot;
+        }
+
+        @Override
+        public double evaluate (double _x) {
+            return _x;
+        }
+
+        @Override
+        public int getStackDepth () {
+            return 1;
+        }
+
+        @Override
+        public int getSize () {
+            return 1;
+        }
+
+        @Override
+        public boolean equals (Object _o) {
+            return _o instanceof Variable && ((Variable) _o).slot == slot;
+        }
+
+        @Override
+        public int hashCode () {
+            return 31 + slot;
+        }
+
+        @Override
+        public String toString () {
+            return 0 == slot ? "x" : "y";
+        }
+    }
+
+    /**
+     * Унарный оператор.
+     */
+    public static final class Unary extends ExpressionNode {
+        private final Operator       operator;
+        private final ExpressionNode operand;
+        private final int            hash;
+        private final int            size;
+        private final int            stackDepth;
+
+        public Unary (Operator _operator, ExpressionNode _operand) {
+            this.operator = _operator;
+            this.operand = _operand;
+            this.hash = 31 * _operator.ordinal () + _operand.hashCode ();
+            this.size = sizeOf (1L + _operand.getSize ());
+            this.stackDepth = _operand.getStackDepth ();
+        }
+
+        public Operator getOperator () {
+            return operator;
+        }
+
+        public ExpressionNode getOperand () {
+            return operand;
+        }
+
+        @Override
+        public double evaluate (double _x) {
+            return operator.apply (operand.evaluate (_x), 0);
+        }
+
+        @Override
+        public int getStackDepth () {
+            return stackDepth;
+        }
+
+        @Override
+        public int getSize () {
+            return size;
+        }
+
+        @Override
+        public boolean equals (Object _o) {
+            if (this == _o) {
+                return true;
+            }
+            if (!(_o instanceof Unary) || ((Unary) _o).hash != hash) {
+                return false;
+            }
+            Unary other = (Unary) _o;
+            return other.operator == operator && other.operand.equals (operand);
+        }
+
+        @Override
+        public int hashCode () {
+            return hash;
+        }
+
+        @Override
+        public String toString () {
+            return render (this, MAX_TEXT_LENGTH);
+        }
+    }
+
+    /**
+     * Бинарный оператор.
+     */
+    public static final class Binary extends ExpressionNode {
+        private final Operator       operator;
+        private final ExpressionNode left;
+        private final ExpressionNode right;
+        private final int            hash;
+        private final int            size;
+        private final int            stackDepth;
+
+        public Binary (Operator _operator, ExpressionNode _left, ExpressionNode _right) {
+            this.operator = _operator;
+            this.left = _left;
+            this.right = _right;
+            this.hash = (31 * _operator.ordinal () + _left.hashCode ()) * 31 + _right.hashCode ();
+            this.size = sizeOf (1L + _left.getSize () + _right.getSize ());
+            this.stackDepth = Math.max (_left.getStackDepth (), _right.getStackDepth () + 1);
+        }
+
+        public Operator getOperator () {
+            return operator;
+        }
+
+        public ExpressionNode getLeft () {
+            return left;
+        }
+
+        public ExpressionNode getRight () {
+            return right;
+        }
+
+        @Override
+        public double evaluate (double _x) {
+            return operator.apply (left.evaluate (_x), right.evaluate (_x));
+        }
+
+        @Override
+        public int getStackDepth () {
+            return stackDepth;
+        }
+
+        @Override
+        public int getSize () {
+            return size;
+        }
+
+        @Override
+        public boolean equals (Object _o) {
+            if (this == _o) {
+                return true;
+            }
+            if (!(_o instanceof Binary) || ((Binary) _o).hash != hash) {
+                return false;
+            }
+            Binary other = (Binary) _o;
+            return other.operator == operator && other.left.equals (left) && other.right.equals (right);
+        }
+
+        @Override
+        public int hashCode () {
+            return hash;
+        }
+
+        @Override
+        public String toString () {
+            return render (this, MAX_TEXT_LENGTH);
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Поиск нулей, экстремумов и точек пересечения функций.
+ * <p>
+ * Функция и ее производная вычисляются на равномерной сетке за один проход
+ * ({@link CompiledExpression#evalBatchDerivatives}). Смена знака функции между соседними точками дает отрезок
+ * с нулем, смена знака производной - отрезок с экстремумом. Отрезки уточняются методом Брента параллельно
+ * в {@link ForkJoinPool}. Смена знака бывает и на полюсе (1/x, tan): такие точки отбрасываются, потому что
+ * в найденной точке значение по модулю больше, чем на концах отрезка.
+ * <p>
+ * Находятся только корни, на которых функция меняет знак, и только если между соседними точками сетки
+ * их не больше одного: касание нуля (x^2) видно как экстремум со значением 0.
+ */
+public class FunctionAnalyzer {
+    /**
+     * Сколько отрезков уточняется одной задачей.
+     */
+    public static final int BRACKETS_PER_TASK = 64;
+
+    /**
+     * Наибольшее число итераций метода Брента.
+     */
+    public static final int MAX_ITERATIONS = 100;
+
+    /**
+     * Вид особой точки.
+     */
+    public enum Kind {
+        ROOT,
+        MINIMUM,
+        MAXIMUM,
+        INTERSECTION
+    }
+
+    /**
+     * Найденная точка.
+     */
+    public static class Feature {
+        private final Kind   kind;
+        private final double x;
+        private final double y;
+        private final int    evaluations;
+
+        Feature (Kind _kind, double _x, double _y, int _evaluations) {
+            this.kind = _kind;
+            this.x = _x;
+            this.y = _y;
+            this.evaluations = _evaluations;
+        }
+
+        public Kind getKind () {
+            return kind;
+        }
+
+        public double getX () {
+            return x;
+        }
+
+        public double getY () {
+            return y;
+        }
+
+        /**
+         * @return Сколько раз вычислялась функция (или производная) при уточнении этой точки.
+         */
+        public int getEvaluations () {
+            return evaluations;
+        }
+
+        @Override
+        public String toString () {
+            return kind + " (" + x + ", " + y + ")";
+        }
+    }
+
+    /**
+     * Результат анализа функции на отрезке.
+     */
+    public static class Result {
+        private final List<Feature> roots;
+        private final List<Feature> extrema;
+        private final int           sampleEvaluations;
+
+        Result (List<Feature> _roots, List<Feature> _extrema, int _sampleEvaluations) {
+            this.roots = _roots;
+            this.extrema = _extrema;
+            this.sampleEvaluations = _sampleEvaluations;
+        }
+
+        /**
+         * @return Нули функции по возрастанию x.
+         */
+        public List<Feature> getRoots () {
+            return roots;
+        }
+
+        /**
+         * @return Локальные минимумы и максимумы по возрастанию x.
+         */
+        public List<Feature> getExtrema () {
+            return extrema;
+        }
+
+        /**
+         * @return Сколько точек сетки вычислено до уточнения.
+         */
+        public int getSampleEvaluations () {
+            return sampleEvaluations;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Анализатор на общем пуле {@link ForkJoinPool#commonPool()}.
+     */
+    public FunctionAnalyzer () {
+        this (ForkJoinPool.commonPool ());
+    }
+
+    /**
+     * @param _pool Пул, в котором уточнять отрезки.
+     */
+    public FunctionAnalyzer (ForkJoinPool _pool) {
+        this.pool = _pool;
+    }
+
+    /**
+     * Найти нули и экстремумы функции на отрезке [xMin, xMax].
+     *
+     * @param _function  Функция.
+     * @param _xMin      Начало отрезка.
+     * @param _xMax      Конец отрезка.
+     * @param _n         Число интервалов сетки. Между соседними точками должно быть не больше одного нуля и экстремума.
+     * @param _tolerance Точность по x.
+     * @return Нули и экстремумы.
+     */
+    public Result analyze (final CompiledExpression _function, double _xMin, double _xMax, int _n, double _tolerance) {
+        double[] xs = grid (_xMin, _xMax, _n);
+        double[] ys = new double[xs.length];
+        double[] ds = new double[xs.length];
+        _function.evalBatchDerivatives (xs, 0, xs.length, ys, ds, 0);
+
+        DoubleUnaryOperator value = new DoubleUnaryOperator () {
+            @Override
+            public double applyAsDouble (double _x) {
+                return _function.evalRaw (_x);
+            }
+        };
+        DoubleUnaryOperator slope = new DoubleUnaryOperator () {
+            @Override
+            public double applyAsDouble (double _x) {
+                return _function.evalDerivative (_x);
+            }
+        };
+        return analyze (xs, ys, ds, value, slope, _tolerance);
+    }
+
+    /**
+     * Найти нули и экстремумы по чебышёвскому приближению на всем его отрезке. Значения и производные на сетке
+     * и при уточнении вычисляются по приближению, поэтому повторный анализ после сдвига графика почти
+     * не вычисляет само выражение. Точность значений ограничена {@link ChebyshevProxy#getErrorEstimate()}.
+     *
+     * @param _proxy     Приближение функции.
+     * @param _n         Число интервалов сетки.
+     * @param _tolerance Точность по x.
+     * @return Нули и экстремумы.
+     */
+    public Result analyze (final ChebyshevProxy _proxy, int _n, double _tolerance) {
+        double[] xs = grid (_proxy.getXMin (), _proxy.getXMax (), _n);
+        double[] ys = new double[xs.length];
+        double[] ds = new double[xs.length];
+        _proxy.evalBatchDerivatives (xs, 0, xs.length, ys, ds, 0);
+
+        DoubleUnaryOperator slope = new DoubleUnaryOperator () {
+            @Override
+            public double applyAsDouble (double _x) {
+                return _proxy.evalDerivative (_x);
+            }
+        };
+        return analyze (xs, ys, ds, _proxy, slope, _tolerance);
+    }
+
+    /**
+     * Найти точки пересечения графиков двух функций на отрезке [xMin, xMax].
+     *
+     * @param _first     Первая функция.
+     * @param _second    Вторая функция.
+     * @param _xMin      Начало отрезка.
+     * @param _xMax      Конец отрезка.
+     * @param _n         Число интервалов сетки.
+     * @param _tolerance Точность по x.
+     * @return Точки пересечения по возрастанию x. y - значение первой функции; вычисления считаются парами.
+     */
+    public List<Feature> findIntersections (final CompiledExpression _first, final CompiledExpression _second, double _xMin,
+                                            double _xMax, int _n, final double _tolerance) {
+        final double[] xs = grid (_xMin, _xMax, _n);
+        final double[] hs = new double[xs.length];
+        double[]       gs = new double[xs.length];
+        _first.evalBatch (xs, hs);
+        _second.evalBatch (xs, gs);
+        for (int i = 0; i < xs.length; i++) {
+            hs[i] -= gs[i];
+        }
+
+        final DoubleUnaryOperator difference = new DoubleUnaryOperator () {
+            @Override
+            public double applyAsDouble (double _x) {
+                return _first.evalRaw (_x) - _second.evalRaw (_x);
+            }
+        };
+        return refineAll (signChanges (hs, hs), new Refiner () {
+            @Override
+            Feature refine (int _i) {
+                Feature root = findRoot (difference, Kind.INTERSECTION, xs[_i], xs[_i + 1], hs[_i], hs[_i + 1], _tolerance);
+                return null == root ? null : new Feature (Kind.INTERSECTION, root.getX (), _first.evalRaw (root.getX ()),
+                        root.getEvaluations ());
+            }
+        });
+    }
+
+    /**
+     * Найти нуль функции на отрезке со сменой знака методом Брента: обратная квадратичная интерполяция
+     * и метод секущих с переходом на деление пополам, если они сходятся медленно.
+     *
+     * @param _function    Функция.
+     * @param _a           Начало отрезка.
+     * @param _b           Конец отрезка.
+     * @param _fa          Значение в начале отрезка.
+     * @param _fb          Значение в конце отрезка. Знак должен отличаться от _fa.
+     * @param _tolerance   Точность по x.
+     * @param _evaluations Счетчик вычислений функции - увеличивается на число вычислений.
+     * @return Нуль функции; NaN, если функция не определена в одной из промежуточных точек.
+     */
+    public static double brent (DoubleUnaryOperator _function, double _a, double _b, double _fa, double _fb, double _tolerance,
+                                int[] _evaluations) {
+        double a  = _a;
+        double b  = _b;
+        double fa = _fa;
+        double fb = _fb;
+        double c  = b;
+        double fc = fb;
+        double d  = b - a;
+        double e  = d;
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            if ((fb > 0) == (fc > 0)) {
+                c = a;
+                fc = fa;
+                d = b - a;
+                e = d;
+            }
+            if (Math.abs (fc) < Math.abs (fb)) {
+                a = b;
+                b = c;
+                c = a;
+                fa = fb;
+                fb = fc;
+                fc = fa;
+            }
+
+            double tolerance = 2 * Math.ulp (b) + 0.5 * _tolerance;
+            double middle    = 0.5 * (c - b);
+            if (Math.abs (middle) <= tolerance || fb == 0) {
+                return b;
+            }
+
+            if (Math.abs (e) >= tolerance && Math.abs (fa) > Math.abs (fb)) {
+                // Интерполяция: секущая, если точек две, иначе обратная квадратичная.
+                double s = fb / fa;
+                double p;
+                double q;
+                if (a == c) {
+                    p = 2 * middle * s;
+                    q = 1 - s;
+                } else {
+                    double r = fb / fc;
+                    q = fa / fc;
+                    p = s * (2 * middle * q * (q - r) - (b - a) * (r - 1));
+                    q = (q - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0) {
+                    q = -q;
+                }
+                p = Math.abs (p);
+
+                if (2 * p < Math.min (3 * middle * q - Math.abs (tolerance * q), Math.abs (e * q))) {
+                    e = d;
+                    d = p / q;
+                } else {
+                    d = middle;
+                    e = d;
+                }
+            } else {
+                d = middle;
+                e = d;
+            }
+
+            a = b;
+            fa = fb;
+            b += Math.abs (d) > tolerance ? d : Math.copySign (tolerance, middle);
+            fb = _function.applyAsDouble (b);
+            ++_evaluations[0];
+            if (Double.isNaN (fb)) {
+                return Double.NaN;
+            }
+        }
+        return b;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Найти нули и экстремумы по значениям и производным на сетке.
+     *
+     * @param _xs    Сетка.
+     * @param _ys    Значения на сетке.
+     * @param _ds    Производные на сетке.
+     * @param _value Функция - для уточнения нулей.
+     * @param _slope Производная - для уточнения экстремумов.
+     */
+    private Result analyze (final double[] _xs, final double[] _ys, final double[] _ds, final DoubleUnaryOperator _value,
+                            final DoubleUnaryOperator _slope, final double _tolerance) {
+        List<Feature> roots = refineAll (signChanges (_ys, _ys), new Refiner () {
+            @Override
+            Feature refine (int _i) {
+                return findRoot (_value, Kind.ROOT, _xs[_i], _xs[_i + 1], _ys[_i], _ys[_i + 1], _tolerance);
+            }
+        });
+        List<Feature> extrema = refineAll (signChanges (_ds, _ys), new Refiner () {
+            @Override
+            Feature refine (int _i) {
+                Feature critical = findRoot (_slope, Kind.ROOT, _xs[_i], _xs[_i + 1], _ds[_i], _ds[_i + 1], _tolerance);
+                if (null == critical) {
+                    return null;
+                }
+                double y = _value.applyAsDouble (critical.getX ());
+                if (Double.isNaN (y) || Double.isInfinite (y)) {
+                    return null;
+                }
+                // Производная слева от экстремума: положительна перед максимумом.
+                double left = _ds[_i] != 0 ? _ds[_i] : _ds[_i - 1];
+                return new Feature (left > 0 ? Kind.MAXIMUM : Kind.MINIMUM, critical.getX (), y, critical.getEvaluations () + 1);
+            }
+        });
+        return new Result (roots, extrema, _xs.length);
+    }
+
+    /**
+     * Уточнение одного отрезка.
+     */
+    private abstract static class Refiner {
+        /**
+         * @param _i Номер отрезка [x[i], x[i + 1]].
+         * @return Найденная точка или null, если точка отброшена.
+         */
+        abstract Feature refine (int _i);
+    }
+
+    /**
+     * Задача ForkJoin: делит свой диапазон отрезков пополам, пока он больше {@link #BRACKETS_PER_TASK}.
+     */
+    private static class RefineTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Refiner   refiner;
+        private final int[]     brackets;
+        private final Feature[] features;
+        private final int       from;
+        private final int       to;
+
+        RefineTask (Refiner _refiner, int[] _brackets, Feature[] _features, int _from, int _to) {
+            this.refiner = _refiner;
+            this.brackets = _brackets;
+            this.features = _features;
+            this.from = _from;
+            this.to = _to;
+        }
+
+        @Override
+        protected void compute () {
+            if (to - from <= BRACKETS_PER_TASK) {
+                for (int k = from; k < to; k++) {
+                    features[k] = refiner.refine (brackets[k]);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll (new RefineTask (refiner, brackets, features, from, middle),
+                    new RefineTask (refiner, brackets, features, middle, to));
+        }
+    }
+
+    private List<Feature> refineAll (int[] _brackets, Refiner _refiner) {
+        Feature[] features = new Feature[_brackets.length];
+        if (_brackets.length <= BRACKETS_PER_TASK) {
+            new RefineTask (_refiner, _brackets, features, 0, _brackets.length).compute ();
+        } else {
+            pool.invoke (new RefineTask (_refiner, _brackets, features, 0, _brackets.length));
+        }
+
+        List<Feature> result = new ArrayList<> ();
+        for (Feature feature : features) {
+            if (null != feature) {
+                result.add (feature);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Уточнить нуль на отрезке и отбросить полюс: в настоящем нуле значение по модулю не больше, чем на концах.
+     */
+    private static Feature findRoot (DoubleUnaryOperator _function, Kind _kind, double _a, double _b, double _fa, double _fb,
+                                     double _tolerance) {
+        if (_fa == 0) {
+            // Нуль точно в узле сетки.
+            return new Feature (_kind, _a, 0, 0);
+        }
+
+        int[]  evaluations = new int[1];
+        double x           = brent (_function, _a, _b, _fa, _fb, _tolerance, evaluations);
+        if (Double.isNaN (x)) {
+            return null;
+        }
+
+        double fx = _function.applyAsDouble (x);
+        ++evaluations[0];
+        if (Double.isNaN (fx) || Math.abs (fx) > Math.min (Math.abs (_fa), Math.abs (_fb))) {
+            return null;
+        }
+        return new Feature (_kind, x, fx, evaluations[0]);
+    }
+
+    /**
+     * Номера отрезков [x[i], x[i + 1]], на которых значения меняют знак, а функция определена на обоих концах.
+     * Нулевое значение в узле считается сменой знака, если соседние значения разных знаков.
+     */
+    private static int[] signChanges (double[] _values, double[] _ys) {
+        int[] brackets = new int[16];
+        int   count    = 0;
+        for (int i = 0; i + 1 < _values.length; i++) {
+            if (!isFinite (_values[i]) || !isFinite (_values[i + 1]) || !isFinite (_ys[i]) || !isFinite (_ys[i + 1])) {
+                continue;
+            }
+            boolean change = _values[i] * _values[i + 1] < 0
+                    || (_values[i] == 0 && i > 0 && _values[i - 1] * _values[i + 1] < 0);
+            if (change) {
+                if (count == brackets.length) {
+                    brackets = Arrays.copyOf (brackets, 2 * count);
+                }
+                brackets[count++] = i;
+            }
+        }
+        return Arrays.copyOf (brackets, count);
+    }
+
+    private static boolean isFinite (double _value) {
+        return !Double.isNaN (_value) && !Double.isInfinite (_value);
+    }
+
+    /**
+     * Сетка из n + 1 точки: оба конца отрезка включаются.
+     */
+    private static double[] grid (double _xMin, double _xMax, int _n) {
+        int      n     = Math.max (1, _n);
+        double[] xs    = new double[n + 1];
+        double   delta = (_xMax - _xMin) / n;
+        for (int i = 0; i < n; i++) {
+            xs[i] = SamplingEngine.gridX (_xMin, delta, i);
+        }
+        xs[n] = _xMax;
+        return xs;
+    }
+}
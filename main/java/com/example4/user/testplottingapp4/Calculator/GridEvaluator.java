@@ -0,0 +1,130 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельное вычисление функции двух переменных на двумерной сетке.
+ * <p>
+ * Сетка - nx узлов по x и ny узлов по y, оба конца отрезков включаются. Результат пишется в плоский массив
+ * по строкам: значение в узле (i, j) лежит в out[j * nx + i]. Строки делятся на блоки, которые вычисляются
+ * параллельно в {@link ForkJoinPool}. Узлы по x вычисляются один раз и общие для всех строк, а строка
+ * вычисляется пакетно ({@link CompiledExpression#evalRow}), поэтому на узел память не выделяется.
+ */
+public class GridEvaluator {
+    /**
+     * Минимальное число узлов в задаче. Меньшие задачи не окупают накладные расходы.
+     */
+    public static final int MIN_CELLS_PER_TASK = 16384;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Вычислитель на общем пуле {@link ForkJoinPool#commonPool()}.
+     */
+    public GridEvaluator () {
+        this (ForkJoinPool.commonPool ());
+    }
+
+    /**
+     * @param _pool Пул, в котором выполнять вычисления.
+     */
+    public GridEvaluator (ForkJoinPool _pool) {
+        this.pool = _pool;
+    }
+
+    /**
+     * Вычислить функцию на сетке.
+     *
+     * @param _function Функция двух переменных.
+     * @param _xMin     Начало отрезка по x.
+     * @param _xMax     Конец отрезка по x.
+     * @param _nx       Число узлов по x, не меньше 2.
+     * @param _yMin     Начало отрезка по y.
+     * @param _yMax     Конец отрезка по y.
+     * @param _ny       Число узлов по y, не меньше 2.
+     * @param _out      Массив для значений, не короче nx * ny. Значения могут быть равны NaN или бесконечности.
+     */
+    public void evaluate (CompiledExpression _function, double _xMin, double _xMax, int _nx, double _yMin, double _yMax, int _ny,
+                          double[] _out) {
+        if (_nx < 2 || _ny < 2) {
+            throw new IllegalArgumentException ("Grid: Сетка должна содержать не меньше двух узлов по каждой оси.");
+        }
+
+        double[] xs          = nodes (_xMin, _xMax, _nx);
+        int      rowsPerTask = Math.max (1, MIN_CELLS_PER_TASK / _nx);
+        RowTask  task        = new RowTask (_function, xs, _yMin, _yMax, _ny, 0, _ny, rowsPerTask, _out);
+
+        if (_ny <= rowsPerTask) {
+            task.compute ();
+        } else {
+            pool.invoke (task);
+        }
+    }
+
+    /**
+     * Узлы отрезка: n точек, первая - ровно min, последняя - ровно max.
+     */
+    public static double[] nodes (double _min, double _max, int _n) {
+        double[] nodes = new double[_n];
+        double   delta = (_max - _min) / (_n - 1);
+        for (int i = 0; i < _n - 1; i++) {
+            nodes[i] = SamplingEngine.gridX (_min, delta, i);
+        }
+        nodes[_n - 1] = _max;
+        return nodes;
+    }
+
+    /**
+     * Узел отрезка с номером i из n - то же значение, что в {@link #nodes}.
+     */
+    static double node (double _min, double _max, int _n, int _i) {
+        return _i == _n - 1 ? _max : SamplingEngine.gridX (_min, (_max - _min) / (_n - 1), _i);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Задача ForkJoin: делит свой диапазон строк пополам, пока он больше заданного.
+     */
+    private static class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final CompiledExpression function;
+        private final double[]           xs;
+        private final double             yMin;
+        private final double             yMax;
+        private final int                ny;
+        private final int                from;
+        private final int                to;
+        private final int                rowsPerTask;
+        private final double[]           out;
+
+        RowTask (CompiledExpression _function, double[] _xs, double _yMin, double _yMax, int _ny, int _from, int _to,
+                 int _rowsPerTask, double[] _out) {
+            this.function = _function;
+            this.xs = _xs;
+            this.yMin = _yMin;
+            this.yMax = _yMax;
+            this.ny = _ny;
+            this.from = _from;
+            this.to = _to;
+            this.rowsPerTask = _rowsPerTask;
+            this.out = _out;
+        }
+
+        @Override
+        protected void compute () {
+            if (to - from <= rowsPerTask) {
+                for (int j = from; j < to; j++) {
+                    function.evalRow (xs, 0, xs.length, node (yMin, yMax, ny, j), out, j * xs.length);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll (new RowTask (function, xs, yMin, yMax, ny, from, middle, rowsPerTask, out),
+                    new RowTask (function, xs, yMin, yMax, ny, middle, to, rowsPerTask, out));
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Интерпретатор скомпилированных программ.
+ * <p>
+ * Программа - это массив int-кодов операций, константы лежат в отдельном пуле double[].
+ * Значения общих подвыражений хранятся во временных ячейках в том же массиве, что и стек.
+ * Вычисление идет на заранее выделенном стеке double[], без упаковки чисел и без работы со строками.
+ * Глубина стека известна на этапе компиляции, поэтому при вычислении ничего не выделяется.
+ */
+final class Interpreter {
+    /**
+     * Положить на стек константу. Следующий int - индекс в пуле констант.
+     */
+    static final int CONST = 0;
+
+    /**
+     * Положить на стек значение переменной. Следующий int - номер слота переменной (0 - "x", 1 - "y").
+     */
+    static final int VAR = 1;
+
+    // Бинарные операторы:
+    static final int ADD = 2;
+    static final int SUB = 3;
+    static final int MUL = 4;
+    static final int DIV = 5;
+    static final int POW = 6;
+
+    // Унарные операторы:
+    static final int NEG = 7;
+    static final int SIN = 8;
+    static final int COS = 9;
+    static final int TAN = 10;
+    static final int CTG = 11;
+    static final int LN  = 12;
+
+    /**
+     * Сохранить вершину стека во временную ячейку, не снимая ее. Следующий int - индекс ячейки в стеке.
+     * Временные ячейки лежат в том же массиве сразу за стеком.
+     */
+    static final int STORE = 13;
+
+    /**
+     * Положить на стек значение временной ячейки. Следующий int - индекс ячейки в стеке.
+     */
+    static final int LOAD = 14;
+
+    /**
+     * Размер блока при пакетном вычислении: столько точек обрабатывает каждая операция за один проход.
+     */
+    static final int BLOCK_SIZE = 256;
+
+    /**
+     * Стек для вычислений, свой у каждого потока.
+     */
+    private static final ThreadLocal<double[]> STACK = new ThreadLocal<> ();
+
+    /**
+     * Стек столбцов для пакетного вычисления, свой у каждого потока.
+     */
+    private static final ThreadLocal<double[][]> COLUMNS = new ThreadLocal<> ();
+
+    private Interpreter () {
+    }
+
+    /**
+     * Получить стек текущего потока размером не меньше заданного.
+     * Новый массив выделяется, только если имеющийся слишком мал.
+     *
+     * @param _size Требуемый размер стека.
+     * @return Стек.
+     */
+    static double[] threadStack (int _size) {
+        double[] stack = STACK.get ();
+        if (null == stack || stack.length < _size) {
+            stack = new double[Math.max (_size, 16)];
+            STACK.set (stack);
+        }
+        return stack;
+    }
+
+    /**
+     * Получить стек столбцов текущего потока глубиной не меньше заданной.
+     * Каждый столбец имеет размер {@link #BLOCK_SIZE}.
+     *
+     * @param _depth Требуемая глубина стека.
+     * @return Стек столбцов.
+     */
+    static double[][] threadColumns (int _depth) {
+        double[][] columns = COLUMNS.get ();
+        if (null == columns || columns.length < _depth) {
+            columns = new double[Math.max (_depth, 16)][BLOCK_SIZE];
+            COLUMNS.set (columns);
+        }
+        return columns;
+    }
+
+    /**
+     * Выполнить программу.
+     *
+     * @param _code      Коды операций.
+     * @param _constants Пул констант.
+     * @param _stack     Стек достаточного размера.
+     * @param _x         Значение переменной "x".
+     * @return Значение на вершине стека после выполнения. Может быть равно NaN или бесконечности.
+     */
+    static double run (int[] _code, double[] _constants, double[] _stack, double _x) {
+        return run (_code, _constants, _stack, _x, 0);
+    }
+
+    /**
+     * Выполнить программу с двумя переменными.
+     *
+     * @param _code      Коды операций.
+     * @param _constants Пул констант.
+     * @param _stack     Стек достаточного размера.
+     * @param _x         Значение переменной "x".
+     * @param _y         Значение переменной "y".
+     * @return Значение на вершине стека после выполнения. Может быть равно NaN или бесконечности.
+     */
+    static double run (int[] _code, double[] _constants, double[] _stack, double _x, double _y) {
+        int top = -1;
+        int pc  = 0;
+
+        while (pc < _code.length) {
+            switch (_code[pc++]) {
+                case CONST:
+                    _stack[++top] = _constants[_code[pc++]];
+                    break;
+                case VAR:
+                    _stack[++top] = 0 == _code[pc++] ? _x : _y;
+                    break;
+                case STORE:
+                    _stack[_code[pc++]] = _stack[top];
+                    break;
+                case LOAD:
+                    _stack[++top] = _stack[_code[pc++]];
+                    break;
+
+                case ADD:
+                    --top;
+                    _stack[top] = _stack[top] + _stack[top + 1];
+                    break;
+                case SUB:
+                    --top;
+                    _stack[top] = _stack[top] - _stack[top + 1];
+                    break;
+                case MUL:
+                    --top;
+                    _stack[top] = _stack[top] * _stack[top + 1];
+                    break;
+                case DIV:
+                    --top;
+                    _stack[top] = _stack[top] / _stack[top + 1];
+                    break;
+                case POW:
+                    --top;
+                    _stack[top] = Math.pow (_stack[top], _stack[top + 1]);
+                    break;
+
+                case NEG:
+                    _stack[top] = -_stack[top];
+                    break;
+                case SIN:
+                    _stack[top] = Math.sin (_stack[top]);
+                    break;
+                case COS:
+                    _stack[top] = Math.cos (_stack[top]);
+                    break;
+                case TAN:
+                    _stack[top] = Math.tan (_stack[top]);
+                    break;
+                case CTG:
+                    _stack[top] = 1.0 / Math.tan (_stack[top]);
+                    break;
+                case LN:
+                    _stack[top] = Math.log (_stack[top]);
+                    break;
+
+                default:
+                    throw new IllegalStateException ("Неизвестный код операции: " + _code[pc - 1]);
+            }
+        }
+
+        return _stack[0];
+    }
+
+    /**
+     * Выполнить программу сразу для блока точек.
+     * <p>
+     * Программа проходится один раз, а каждая операция применяется ко всему блоку в простом цикле
+     * по примитивным массивам, который JIT может развернуть и векторизовать.
+     * Операции и их порядок те же, что в {@link #run}, поэтому результаты побитово совпадают.
+     *
+     * @param _code      Коды операций.
+     * @param _constants Пул констант.
+     * @param _columns   Стек столбцов размером не меньше {@link #BLOCK_SIZE} каждый.
+     * @param _xs        Значения переменной "x".
+     * @param _xsOffset  Индекс первой точки блока в _xs.
+     * @param _length    Число точек в блоке, не больше {@link #BLOCK_SIZE}.
+     * @param _out       Массив для результатов.
+     * @param _outOffset Индекс в _out, куда записать результат для первой точки.
+     */
+    static void runBlock (int[] _code, double[] _constants, double[][] _columns,
+                          double[] _xs, int _xsOffset, int _length, double[] _out, int _outOffset) {
+        runBlock (_code, _constants, _columns, _xs, _xsOffset, _length, 0, _out, _outOffset);
+    }
+
+    /**
+     * Выполнить программу с двумя переменными для блока точек с общим значением "y" - например, для части
+     * строки двумерной сетки.
+     *
+     * @param _y Значение переменной "y" для всех точек блока.
+     * @see #runBlock(int[], double[], double[][], double[], int, int, double[], int)
+     */
+    static void runBlock (int[] _code, double[] _constants, double[][] _columns,
+                          double[] _xs, int _xsOffset, int _length, double _y, double[] _out, int _outOffset) {
+        executeBlock (_code, _constants, _columns, _xs, _xsOffset, _length, _y);
+        System.arraycopy (_columns[0], 0, _out, _outOffset, _length);
+    }
+
+    /**
+     * Выполнить программу для блока точек, оставив результаты в стеке столбцов. Программа нескольких выражений
+     * ({@link MultiExpression}) оставляет значение i-го выражения в столбце i.
+     *
+     * @see #runBlock(int[], double[], double[][], double[], int, int, double, double[], int)
+     */
+    static void executeBlock (int[] _code, double[] _constants, double[][] _columns,
+                              double[] _xs, int _xsOffset, int _length, double _y) {
+        int top = -1;
+        int pc  = 0;
+
+        while (pc < _code.length) {
+            int      opcode = _code[pc++];
+            double[] a;
+            double[] b;
+
+            switch (opcode) {
+                case CONST:
+                    a = _columns[++top];
+                    double c = _constants[_code[pc++]];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = c;
+                    }
+                    break;
+                case VAR:
+                    if (0 == _code[pc++]) {
+                        System.arraycopy (_xs, _xsOffset, _columns[++top], 0, _length);
+                    } else {
+                        a = _columns[++top];
+                        for (int j = 0; j < _length; j++) {
+                            a[j] = _y;
+                        }
+                    }
+                    break;
+                case STORE:
+                    System.arraycopy (_columns[top], 0, _columns[_code[pc++]], 0, _length);
+                    break;
+                case LOAD:
+                    System.arraycopy (_columns[_code[pc++]], 0, _columns[++top], 0, _length);
+                    break;
+
+                case ADD:
+                    b = _columns[top--];
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = a[j] + b[j];
+                    }
+                    break;
+                case SUB:
+                    b = _columns[top--];
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = a[j] - b[j];
+                    }
+                    break;
+                case MUL:
+                    b = _columns[top--];
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = a[j] * b[j];
+                    }
+                    break;
+                case DIV:
+                    b = _columns[top--];
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = a[j] / b[j];
+                    }
+                    break;
+                case POW:
+                    b = _columns[top--];
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = Math.pow (a[j], b[j]);
+                    }
+                    break;
+
+                case NEG:
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = -a[j];
+                    }
+                    break;
+                case SIN:
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = Math.sin (a[j]);
+                    }
+                    break;
+                case COS:
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = Math.cos (a[j]);
+                    }
+                    break;
+                case TAN:
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = Math.tan (a[j]);
+                    }
+                    break;
+                case CTG:
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = 1.0 / Math.tan (a[j]);
+                    }
+                    break;
+                case LN:
+                    a = _columns[top];
+                    for (int j = 0; j < _length; j++) {
+                        a[j] = Math.log (a[j]);
+                    }
+                    break;
+
+                default:
+                    throw new IllegalStateException ("Неизвестный код операции: " + opcode);
+            }
+        }
+    }
+}
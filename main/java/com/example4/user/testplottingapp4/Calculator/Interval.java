@@ -0,0 +1,362 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Интервал значений функции - гарантированная оценка множества ее значений на отрезке.
+ * <p>
+ * [lo, hi] содержит все конечные значения функции на отрезке; границы округлены наружу, поэтому оценка
+ * верна с учетом ошибок округления. Бесконечная граница означает, что значения не ограничены (например,
+ * около полюса tan). Пустой интервал (lo &gt; hi) - на отрезке нет ни одного конечного значения.
+ * Флаг {@link #mayBeInvalid()} означает, что на отрезке функция может быть не определена или равна
+ * бесконечности: деление на интервал с нулем, полюс tan/ctg, ln неположительного числа, дробная степень
+ * отрицательного числа.
+ */
+public final class Interval {
+    /**
+     * Пустой интервал: нет ни одного конечного значения.
+     */
+    public static final Interval EMPTY = new Interval (Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, true);
+
+    /**
+     * Вся числовая прямая.
+     */
+    public static final Interval ENTIRE = new Interval (Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, false);
+
+    private static final double TWO_PI  = 2 * Math.PI;
+    private static final double HALF_PI = Math.PI / 2;
+
+    /**
+     * Относительная погрешность приведения аргумента тригонометрических функций. С запасом: при сравнении
+     * с экстремумами и полюсами граница расширяется на эту долю, что может только расширить оценку.
+     */
+    private static final double TRIG_SLACK = 1E-12;
+
+    private final double  lo;
+    private final double  hi;
+    private final boolean invalid;
+
+    /**
+     * @param _lo      Нижняя граница.
+     * @param _hi      Верхняя граница.
+     * @param _invalid Может ли функция быть не определена на отрезке.
+     */
+    public Interval (double _lo, double _hi, boolean _invalid) {
+        this.lo = _lo;
+        this.hi = _hi;
+        this.invalid = _invalid;
+    }
+
+    /**
+     * Интервал из одной точки. NaN и бесконечность дают пустой интервал.
+     */
+    public static Interval point (double _value) {
+        return Double.isNaN (_value) || Double.isInfinite (_value) ? EMPTY : new Interval (_value, _value, false);
+    }
+
+    public double getLo () {
+        return lo;
+    }
+
+    public double getHi () {
+        return hi;
+    }
+
+    /**
+     * @return Ширина интервала; 0 для пустого.
+     */
+    public double getWidth () {
+        return isEmpty () ? 0 : hi - lo;
+    }
+
+    /**
+     * @return Нет ни одного конечного значения.
+     */
+    public boolean isEmpty () {
+        return lo > hi;
+    }
+
+    /**
+     * @return Может ли функция быть не определена или бесконечна на отрезке.
+     */
+    public boolean mayBeInvalid () {
+        return invalid;
+    }
+
+    /**
+     * @return Ограничены ли значения: интервал не пуст и обе границы конечны.
+     */
+    public boolean isBounded () {
+        return !isEmpty () && !Double.isInfinite (lo) && !Double.isInfinite (hi);
+    }
+
+    public boolean contains (double _value) {
+        return _value >= lo && _value <= hi;
+    }
+
+    /**
+     * Наименьший интервал, содержащий оба.
+     */
+    public Interval union (Interval _other) {
+        if (isEmpty ()) {
+            return new Interval (_other.lo, _other.hi, invalid || _other.invalid);
+        }
+        if (_other.isEmpty ()) {
+            return new Interval (lo, hi, invalid || _other.invalid);
+        }
+        return new Interval (Math.min (lo, _other.lo), Math.max (hi, _other.hi), invalid || _other.invalid);
+    }
+
+    @Override
+    public String toString () {
+        return (isEmpty () ? "[]" : "[" + lo + ", " + hi + "]") + (invalid ? "?" : "");
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Арифметика с округлением наружу. Результаты +, -, *, / округлены верно, поэтому хватает одного ulp;
+    // функции Math ошибаются не больше чем на 1 ulp, для них границы сдвигаются на два.
+
+    static Interval add (Interval _a, Interval _b) {
+        if (_a.isEmpty () || _b.isEmpty ()) {
+            return EMPTY;
+        }
+        return make (down (_a.lo + _b.lo), up (_a.hi + _b.hi), _a.invalid || _b.invalid);
+    }
+
+    static Interval sub (Interval _a, Interval _b) {
+        if (_a.isEmpty () || _b.isEmpty ()) {
+            return EMPTY;
+        }
+        return make (down (_a.lo - _b.hi), up (_a.hi - _b.lo), _a.invalid || _b.invalid);
+    }
+
+    static Interval mul (Interval _a, Interval _b) {
+        if (_a.isEmpty () || _b.isEmpty ()) {
+            return EMPTY;
+        }
+        double p1 = times (_a.lo, _b.lo);
+        double p2 = times (_a.lo, _b.hi);
+        double p3 = times (_a.hi, _b.lo);
+        double p4 = times (_a.hi, _b.hi);
+        return make (down (Math.min (Math.min (p1, p2), Math.min (p3, p4))), up (Math.max (Math.max (p1, p2), Math.max (p3, p4))),
+                _a.invalid || _b.invalid);
+    }
+
+    /**
+     * Квадрат. В отличие от mul (a, a) учитывает, что множители равны, поэтому оценка неотрицательна:
+     * для [-1, 1] - [0, 1], а не [-1, 1].
+     */
+    static Interval sqr (Interval _a) {
+        if (_a.isEmpty ()) {
+            return EMPTY;
+        }
+        double lo = times (_a.lo, _a.lo);
+        double hi = times (_a.hi, _a.hi);
+        if (_a.lo <= 0 && _a.hi >= 0) {
+            return make (0, up (Math.max (lo, hi)), _a.invalid);
+        }
+        return make (Math.max (0, down (Math.min (lo, hi))), up (Math.max (lo, hi)), _a.invalid);
+    }
+
+    static Interval div (Interval _a, Interval _b) {
+        if (_a.isEmpty () || _b.isEmpty ()) {
+            return EMPTY;
+        }
+        boolean invalid = _a.invalid || _b.invalid;
+
+        if (_b.lo > 0 || _b.hi < 0) {
+            return mul (_a, new Interval (down (1 / _b.hi), up (1 / _b.lo), invalid));
+        }
+
+        // Делитель содержит ноль: в нуле результат - бесконечность или NaN.
+        if (_b.lo == 0 && _b.hi == 0) {
+            return EMPTY;
+        }
+        if (_b.lo == 0) {
+            return mark (mul (_a, new Interval (down (1 / _b.hi), Double.POSITIVE_INFINITY, false)));
+        }
+        if (_b.hi == 0) {
+            return mark (mul (_a, new Interval (Double.NEGATIVE_INFINITY, up (1 / _b.lo), false)));
+        }
+        return new Interval (Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true);
+    }
+
+    static Interval pow (Interval _a, Interval _b) {
+        if (_a.isEmpty () || _b.isEmpty ()) {
+            return EMPTY;
+        }
+        boolean invalid = _a.invalid || _b.invalid;
+
+        if (_b.lo == _b.hi) {
+            double n = _b.lo;
+            if (n == 0) {
+                return new Interval (1, 1, invalid);
+            }
+            if (n == Math.rint (n)) {
+                return powInteger (_a, n, invalid);
+            }
+        } else if (_a.lo < 0) {
+            // При отрицательном основании и показателе-интервале значения есть только в целых показателях.
+            return new Interval (Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true);
+        }
+
+        // Степень с дробным показателем определена только для x >= 0.
+        boolean  negative = _a.lo < 0;
+        Interval base     = new Interval (Math.max (0, _a.lo), _a.hi, invalid || negative);
+        if (base.isEmpty ()) {
+            return EMPTY;
+        }
+        if (base.lo == 0 && _b.lo <= 0) {
+            // 0 в неположительной степени - бесконечность или 1: оценка не ограничена.
+            return new Interval (0, Double.POSITIVE_INFINITY, true);
+        }
+
+        // При x >= 0 степень монотонна по каждому аргументу - экстремумы в углах.
+        double p1 = Math.pow (base.lo, _b.lo);
+        double p2 = Math.pow (base.lo, _b.hi);
+        double p3 = Math.pow (base.hi, _b.lo);
+        double p4 = Math.pow (base.hi, _b.hi);
+        return make (Math.max (0, down2 (Math.min (Math.min (p1, p2), Math.min (p3, p4)))),
+                up2 (Math.max (Math.max (p1, p2), Math.max (p3, p4))), base.invalid);
+    }
+
+    static Interval neg (Interval _a) {
+        return _a.isEmpty () ? EMPTY : new Interval (-_a.hi, -_a.lo, _a.invalid);
+    }
+
+    static Interval sin (Interval _a) {
+        return trig (_a, false);
+    }
+
+    static Interval cos (Interval _a) {
+        return trig (_a, true);
+    }
+
+    static Interval tan (Interval _a) {
+        if (_a.isEmpty ()) {
+            return EMPTY;
+        }
+        // Полюса tan - pi/2 + k*pi. Между полюсами tan возрастает.
+        if (containsPeriodic (_a, HALF_PI, Math.PI)) {
+            return new Interval (Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true);
+        }
+        return make (down2 (Math.tan (_a.lo)), up2 (Math.tan (_a.hi)), _a.invalid);
+    }
+
+    static Interval ctg (Interval _a) {
+        if (_a.isEmpty ()) {
+            return EMPTY;
+        }
+        // Полюса ctg - k*pi. Между полюсами ctg убывает.
+        if (containsPeriodic (_a, 0, Math.PI)) {
+            return new Interval (Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true);
+        }
+        return make (down2 (down (1.0 / Math.tan (_a.hi))), up2 (up (1.0 / Math.tan (_a.lo))), _a.invalid);
+    }
+
+    static Interval ln (Interval _a) {
+        if (_a.isEmpty () || _a.hi <= 0) {
+            return EMPTY;
+        }
+        if (_a.lo <= 0) {
+            return new Interval (Double.NEGATIVE_INFINITY, up2 (Math.log (_a.hi)), true);
+        }
+        return make (down2 (Math.log (_a.lo)), up2 (Math.log (_a.hi)), _a.invalid);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Целая степень: четная - через модуль, нечетная монотонна, отрицательная - через 1 / x^|n|.
+     */
+    private static Interval powInteger (Interval _a, double _n, boolean _invalid) {
+        if (_n < 0) {
+            Interval positive = powInteger (_a, -_n, _invalid);
+            return div (new Interval (1, 1, _invalid), positive);
+        }
+
+        double lo = Math.pow (_a.lo, _n);
+        double hi = Math.pow (_a.hi, _n);
+        if (_n % 2 != 0) {
+            return make (down2 (lo), up2 (hi), _invalid);
+        }
+        if (_a.lo <= 0 && _a.hi >= 0) {
+            return make (0, up2 (Math.max (lo, hi)), _invalid);
+        }
+        return make (Math.max (0, down2 (Math.min (lo, hi))), up2 (Math.max (lo, hi)), _invalid);
+    }
+
+    /**
+     * sin или cos: значения на концах плюс экстремумы ±1, если они попадают в отрезок.
+     */
+    private static Interval trig (Interval _a, boolean _cos) {
+        if (_a.isEmpty ()) {
+            return EMPTY;
+        }
+        if (!(_a.hi - _a.lo < TWO_PI) || Math.abs (_a.lo) > 1E15 || Math.abs (_a.hi) > 1E15) {
+            return new Interval (-1, 1, _a.invalid);
+        }
+
+        double f1 = _cos ? Math.cos (_a.lo) : Math.sin (_a.lo);
+        double f2 = _cos ? Math.cos (_a.hi) : Math.sin (_a.hi);
+        double lo = Math.max (-1, down2 (Math.min (f1, f2)));
+        double hi = Math.min (1, up2 (Math.max (f1, f2)));
+
+        // Максимумы sin - pi/2 + 2k*pi, минимумы - 3pi/2 + 2k*pi; у cos - 0 и pi.
+        double maxPhase = _cos ? 0 : HALF_PI;
+        if (containsPeriodic (_a, maxPhase, TWO_PI)) {
+            hi = 1;
+        }
+        if (containsPeriodic (_a, maxPhase + Math.PI, TWO_PI)) {
+            lo = -1;
+        }
+        return new Interval (lo, hi, _a.invalid);
+    }
+
+    /**
+     * Попадает ли в отрезок (с запасом на погрешность) точка вида _phase + k * _period.
+     */
+    private static boolean containsPeriodic (Interval _a, double _phase, double _period) {
+        if (!(_a.hi - _a.lo < _period) || Double.isInfinite (_a.lo) || Double.isInfinite (_a.hi)) {
+            return true;
+        }
+        double slack = TRIG_SLACK * Math.max (1, Math.max (Math.abs (_a.lo), Math.abs (_a.hi)));
+        double k     = Math.ceil ((_a.lo - slack - _phase) / _period);
+        return _phase + k * _period <= _a.hi + slack;
+    }
+
+    /**
+     * Произведение границ: 0 * бесконечность = 0, так как бесконечная граница означает лишь неограниченность.
+     */
+    private static double times (double _x, double _y) {
+        return _x == 0 || _y == 0 ? 0 : _x * _y;
+    }
+
+    private static Interval make (double _lo, double _hi, boolean _invalid) {
+        if (Double.isNaN (_lo)) {
+            _lo = Double.NEGATIVE_INFINITY;
+        }
+        if (Double.isNaN (_hi)) {
+            _hi = Double.POSITIVE_INFINITY;
+        }
+        return new Interval (_lo, _hi, _invalid);
+    }
+
+    private static Interval mark (Interval _a) {
+        return new Interval (_a.lo, _a.hi, true);
+    }
+
+    private static double down (double _x) {
+        return Math.nextDown (_x);
+    }
+
+    private static double up (double _x) {
+        return Math.nextUp (_x);
+    }
+
+    private static double down2 (double _x) {
+        return Math.nextDown (Math.nextDown (_x));
+    }
+
+    private static double up2 (double _x) {
+        return Math.nextUp (Math.nextUp (_x));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Анализ функции на отрезке с помощью интервальной арифметики.
+ * <p>
+ * Оценка {@link CompiledExpression#evalInterval(double, double)} тем точнее, чем короче отрезок, поэтому отрезок
+ * делится на части. Оба метода не вычисляют функцию в точках и дают гарантированный результат: границы по y
+ * содержат все значения на частях без особых точек, а среди найденных подозрительных участков есть все
+ * полюса и разрывы области определения.
+ */
+public class IntervalAnalyzer {
+    /**
+     * Сколько частей по умолчанию используется для оценки границ по y.
+     */
+    public static final int DEFAULT_PIECES = 256;
+
+    /**
+     * Сколько подозрительных участков ищется максимум.
+     */
+    public static final int MAX_SUSPECTS = 1024;
+
+    /**
+     * Сколько интервальных вычислений допускается при поиске подозрительных участков.
+     */
+    public static final int MAX_EVALUATIONS = 1 << 16;
+
+    private IntervalAnalyzer () {
+    }
+
+    /**
+     * Границы оси y: объединение оценок на частях отрезка, где функция ограничена. Части с полюсами
+     * пропускаются, иначе границы были бы бесконечными.
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало отрезка.
+     * @param _xMax     Конец отрезка.
+     * @param _pieces   На сколько частей делить отрезок.
+     * @return Границы по y. Пустой интервал - ни на одной части функция не ограничена.
+     * Флаг {@link Interval#mayBeInvalid()} - на отрезке могут быть особые точки.
+     */
+    public static Interval bounds (CompiledExpression _function, double _xMin, double _xMax, int _pieces) {
+        int      pieces = Math.max (1, _pieces);
+        double   delta  = (_xMax - _xMin) / pieces;
+        Interval result = Interval.EMPTY;
+        boolean  valid  = true;
+
+        for (int i = 0; i < pieces; i++) {
+            double   lo    = SamplingEngine.gridX (_xMin, delta, i);
+            double   hi    = i == pieces - 1 ? _xMax : SamplingEngine.gridX (_xMin, delta, i + 1);
+            Interval piece = _function.evalInterval (lo, hi);
+
+            valid &= !piece.mayBeInvalid ();
+            if (piece.isBounded ()) {
+                result = result.union (piece);
+            }
+        }
+        return new Interval (result.getLo (), result.getHi (), !valid);
+    }
+
+    /**
+     * Найти участки, на которых функция может быть не определена или иметь полюс.
+     * Отрезок делится пополам, пока на половине возможна особая точка и половина длиннее _minWidth.
+     * Соседние участки сливаются.
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало отрезка.
+     * @param _xMax     Конец отрезка.
+     * @param _minWidth Длина, до которой уточняются участки, например ширина пикселя по x.
+     * @return Подозрительные участки по возрастанию x. Интервалы здесь - отрезки по оси x.
+     */
+    public static List<Interval> findSuspects (CompiledExpression _function, double _xMin, double _xMax, double _minWidth) {
+        List<Interval> suspects = new ArrayList<> ();
+        collect (_function, _xMin, _xMax, Math.max (_minWidth, 0), suspects, new int[] {MAX_EVALUATIONS});
+        return suspects;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param _budget Оставшееся число интервальных вычислений. Когда оно исчерпано, участки больше не уточняются.
+     */
+    private static void collect (CompiledExpression _function, double _lo, double _hi, double _minWidth, List<Interval> _suspects,
+                                 int[] _budget) {
+        if (_suspects.size () >= MAX_SUSPECTS) {
+            return;
+        }
+        --_budget[0];
+        Interval enclosure = _function.evalInterval (_lo, _hi);
+        if (!enclosure.mayBeInvalid ()) {
+            return;
+        }
+
+        // Пустая оценка - функция не определена на всем участке, уточнять нечего.
+        double mid = 0.5 * (_lo + _hi);
+        if (enclosure.isEmpty () || _hi - _lo <= _minWidth || _budget[0] <= 0 || !(mid > _lo && mid < _hi)) {
+            // Сливаем с предыдущим участком, если они соприкасаются.
+            int last = _suspects.size () - 1;
+            if (last >= 0 && _suspects.get (last).getHi () >= _lo) {
+                _suspects.set (last, new Interval (_suspects.get (last).getLo (), _hi, false));
+            } else {
+                _suspects.add (new Interval (_lo, _hi, false));
+            }
+            return;
+        }
+        collect (_function, _lo, mid, _minWidth, _suspects, _budget);
+        collect (_function, mid, _hi, _minWidth, _suspects, _budget);
+    }
+}
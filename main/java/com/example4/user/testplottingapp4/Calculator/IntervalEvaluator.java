@@ -0,0 +1,120 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Вычисление программы {@link Interpreter} в интервальной арифметике.
+ * <p>
+ * Вместо числа каждая ячейка стека хранит {@link Interval}. Результат - гарантированная оценка значений
+ * выражения при x из заданного отрезка. Оценка может быть шире точного множества значений (например, x - x
+ * на [0, 1] дает [-1, 1]), но никогда не уже.
+ * <p>
+ * Для каждой ячейки стека запоминается, откуда взято значение: переменная или временная ячейка
+ * ({@link Interpreter#LOAD}). Произведение двух значений из одного источника - квадрат, и его оценка неотрицательна ({@link Interval#sqr}).
+ * Каждая запись во временную ячейку получает новый номер источника, поэтому переиспользованная ячейка
+ * не считается тем же значением.
+ */
+final class IntervalEvaluator {
+    /**
+     * Источник значения неизвестен: результат операции или константа.
+     */
+    private static final int UNKNOWN = -1;
+
+    private IntervalEvaluator () {
+    }
+
+    /**
+     * Выполнить программу.
+     *
+     * @param _code      Коды операций.
+     * @param _constants Пул констант.
+     * @param _stackSize Размер стека вместе с временными ячейками.
+     * @param _x         Отрезок значений переменной "x".
+     * @return Оценка значений выражения.
+     */
+    static Interval run (int[] _code, double[] _constants, int _stackSize, Interval _x) {
+        Interval[] stack   = new Interval[_stackSize];
+        int[]      sources = new int[_stackSize];
+        int        stores  = 0;
+        int        top     = -1;
+        int        pc      = 0;
+
+        while (pc < _code.length) {
+            int op = _code[pc++];
+            switch (op) {
+                case Interpreter.CONST:
+                    stack[++top] = Interval.point (_constants[_code[pc++]]);
+                    break;
+                case Interpreter.VAR: {
+                    // Остальные переменные равны 0, как в Interpreter.run (code, x).
+                    int variable = _code[pc++];
+                    stack[++top] = 0 == variable ? _x : Interval.point (0);
+                    sources[top] = -2 - variable;
+                    break;
+                }
+                case Interpreter.STORE: {
+                    // Номер источника временной ячейки хранится в ней самой: ячейки лежат после стека операндов.
+                    // Значение на вершине стека - то же, что записано в ячейку.
+                    int slot = _code[pc++];
+                    stack[slot] = stack[top];
+                    sources[slot] = ++stores;
+                    sources[top] = stores;
+                    break;
+                }
+                case Interpreter.LOAD: {
+                    int slot = _code[pc++];
+                    stack[++top] = stack[slot];
+                    sources[top] = sources[slot];
+                    break;
+                }
+
+                case Interpreter.ADD:
+                    --top;
+                    stack[top] = Interval.add (stack[top], stack[top + 1]);
+                    break;
+                case Interpreter.SUB:
+                    --top;
+                    stack[top] = Interval.sub (stack[top], stack[top + 1]);
+                    break;
+                case Interpreter.MUL:
+                    --top;
+                    stack[top] = UNKNOWN != sources[top] && sources[top] == sources[top + 1]
+                            ? Interval.sqr (stack[top]) : Interval.mul (stack[top], stack[top + 1]);
+                    break;
+                case Interpreter.DIV:
+                    --top;
+                    stack[top] = Interval.div (stack[top], stack[top + 1]);
+                    break;
+                case Interpreter.POW:
+                    --top;
+                    stack[top] = Interval.pow (stack[top], stack[top + 1]);
+                    break;
+
+                case Interpreter.NEG:
+                    stack[top] = Interval.neg (stack[top]);
+                    break;
+                case Interpreter.SIN:
+                    stack[top] = Interval.sin (stack[top]);
+                    break;
+                case Interpreter.COS:
+                    stack[top] = Interval.cos (stack[top]);
+                    break;
+                case Interpreter.TAN:
+                    stack[top] = Interval.tan (stack[top]);
+                    break;
+                case Interpreter.CTG:
+                    stack[top] = Interval.ctg (stack[top]);
+                    break;
+                case Interpreter.LN:
+                    stack[top] = Interval.ln (stack[top]);
+                    break;
+
+                default:
+                    throw new IllegalStateException ("Неизвестный код операции: " + op);
+            }
+            if (Interpreter.VAR != op && Interpreter.LOAD != op && Interpreter.STORE != op) {
+                sources[top] = UNKNOWN;
+            }
+        }
+
+        return stack[0];
+    }
+}
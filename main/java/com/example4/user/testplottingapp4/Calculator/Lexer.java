@@ -0,0 +1,210 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayList;
+
+/**
+ * Лексический анализатор выражений.
+ * <p>
+ * Разбирает строку за один линейный проход по символам, без регулярных выражений.
+ * Сам различает бинарный минус и унарный (±), а также отрицательную экспоненту вида "1E-5".
+ * Имена операторов сопоставляются по самому длинному совпадению, поэтому операторы могут содержать
+ * названия друг друга (например, "tan" и "ctan"). Переменные - "x" и "y".
+ */
+public final class Lexer {
+    /**
+     * Операторы, отсортированные по убыванию длины обозначения - для поиска самого длинного совпадения.
+     */
+    private static final Operator[] OPERATORS_BY_LENGTH = sortByLength (Operator.values ());
+
+    private Lexer () {
+    }
+
+    /**
+     * Разобрать выражение на лексемы.
+     *
+     * @param _exp Выражение в обычной инфиксной скобочной форме.
+     * @return Массив лексем.
+     * @throws Calculator.CalculatorErrorException Если в выражении встретился неизвестный символ.
+     */
+    public static Token[] tokenize (String _exp) throws Calculator.CalculatorErrorException {
+        ArrayList<Token> tokens = new ArrayList<> ();
+        Token            prev   = null;
+        int              length = _exp.length ();
+        int              pos    = 0;
+
+        while (pos < length) {
+            char ch = _exp.charAt (pos);
+
+            if (Character.isWhitespace (ch)) {
+                ++pos;
+                continue;
+            }
+
+            Token token;
+            if (isDigit (ch) || (ch == '.' && pos + 1 < length && isDigit (_exp.charAt (pos + 1)))) {
+                pos = scanNumber (_exp, pos, tokens);
+                prev = tokens.get (tokens.size () - 1);
+                continue;
+            } else if (ch == '(') {
+                token = Token.LEFT_BRACKET;
+                ++pos;
+            } else if (ch == ')') {
+                token = Token.RIGHT_BRACKET;
+                ++pos;
+            } else if (ch == '-' && isUnaryPosition (prev)) {
+                // Минус в начале выражения, после оператора или открывающей скобки - унарный.
+                token = Token.operator (Operator.NEGATE);
+                ++pos;
+            } else {
+                Operator op = matchOperator (_exp, pos);
+                if (null != op) {
+                    token = Token.operator (op);
+                    pos += op.getSymbol ().length ();
+                } else if (ch == 'x' || ch == 'X' || ch == 'y' || ch == 'Y') {
+                    token = Token.variable (String.valueOf (ch));
+                    ++pos;
+                } else {
+                    throw new Calculator.CalculatorErrorException ("Lexer: Неизвестный символ \"" + ch + "\" в позиции " + pos + ". Выражение: \"" + _exp + "\".");
+                }
+            }
+
+            tokens.add (token);
+            prev = token;
+        }
+
+        return tokens.toArray (new Token[0]);
+    }
+
+    /**
+     * Собрать системный вид выражения - лексемы, разделенные одним пробелом.
+     *
+     * @param _tokens Лексемы.
+     * @return Строка в системном виде.
+     */
+    public static String join (Iterable<Token> _tokens) {
+        StringBuilder sb = new StringBuilder ();
+        for (Token token : _tokens) {
+            if (sb.length () > 0) {
+                sb.append (' ');
+            }
+            sb.append (token.getText ());
+        }
+
+        return sb.toString ();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Считать число, начинающееся с позиции _pos, и добавить его в список лексем.
+     * Допускается экспонента вида "1E5", "1E-5", в том числе с пробелами вокруг "E" и "-".
+     * <p>
+     * Текст лексемы - каноническая запись того же числа, которую принимает {@link Calculator#REGEX_DOUBLE}:
+     * без ведущих нулей, с нулем перед точкой, без пустой дробной части и без нулевой экспоненты
+     * (".5" - "0.5", "007." - "7", "1E05" - "1E5", "2E-0" - "2"). Поэтому системный вид и ОПН, собранные
+     * из лексем, снова разбираются и вычисляются.
+     *
+     * @return Позиция после числа.
+     */
+    private static int scanNumber (String _exp, int _pos, ArrayList<Token> _tokens) {
+        int           length = _exp.length ();
+        int           pos    = skipDigits (_exp, _pos);
+        StringBuilder text   = new StringBuilder (withoutLeadingZeros (_exp.substring (_pos, pos)));
+
+        if (pos < length && _exp.charAt (pos) == '.') {
+            int fraction = pos + 1;
+            pos = skipDigits (_exp, fraction);
+            if (pos > fraction) {
+                text.append ('.').append (_exp, fraction, pos);
+            }
+        }
+
+        // Экспонента. Считываем ее, только если после "E" действительно идут цифры.
+        int e = skipSpaces (_exp, pos);
+        if (e < length && _exp.charAt (e) == 'E') {
+            int     digits   = skipSpaces (_exp, e + 1);
+            boolean negative = false;
+            if (digits < length && _exp.charAt (digits) == '-') {
+                negative = true;
+                digits = skipSpaces (_exp, digits + 1);
+            }
+
+            if (digits < length && isDigit (_exp.charAt (digits))) {
+                pos = skipDigits (_exp, digits);
+                String exponent = withoutLeadingZeros (_exp.substring (digits, pos));
+                if (!"0".equals (exponent)) {
+                    text.append (negative ? "E-" : "E").append (exponent);
+                }
+            }
+        }
+
+        _tokens.add (Token.number (text.toString (), Double.parseDouble (text.toString ())));
+
+        return pos;
+    }
+
+    /**
+     * @return Цифры без ведущих нулей; "0" для пустой строки и одних нулей.
+     */
+    private static String withoutLeadingZeros (String _digits) {
+        int start = 0;
+        while (start < _digits.length () - 1 && _digits.charAt (start) == '0') {
+            ++start;
+        }
+        return _digits.isEmpty () ? "0" : _digits.substring (start);
+    }
+
+    /**
+     * Найти оператор, обозначение которого начинается в позиции _pos. Выбирается самое длинное совпадение.
+     */
+    private static Operator matchOperator (String _exp, int _pos) {
+        for (Operator op : OPERATORS_BY_LENGTH) {
+            String symbol = op.getSymbol ();
+            if (_exp.startsWith (symbol, _pos)) {
+                return op;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Является ли минус после лексемы _prev унарным?
+     */
+    private static boolean isUnaryPosition (Token _prev) {
+        return null == _prev || _prev.getType () == Token.Type.OPERATOR || _prev.getType () == Token.Type.LEFT_BRACKET;
+    }
+
+    private static boolean isDigit (char _ch) {
+        return _ch >= '0' && _ch <= '9';
+    }
+
+    private static int skipDigits (String _exp, int _pos) {
+        while (_pos < _exp.length () && isDigit (_exp.charAt (_pos))) {
+            ++_pos;
+        }
+        return _pos;
+    }
+
+    private static int skipSpaces (String _exp, int _pos) {
+        while (_pos < _exp.length () && Character.isWhitespace (_exp.charAt (_pos))) {
+            ++_pos;
+        }
+        return _pos;
+    }
+
+    private static Operator[] sortByLength (Operator[] _ops) {
+        Operator[] result = _ops.clone ();
+        // Операторов немного, сортировка вставками.
+        for (int i = 1; i < result.length; i++) {
+            Operator op = result[i];
+            int      j  = i - 1;
+            while (j >= 0 && result[j].getSymbol ().length () < op.getSymbol ().length ()) {
+                result[j + 1] = result[j];
+                --j;
+            }
+            result[j + 1] = op;
+        }
+        return result;
+    }
+}
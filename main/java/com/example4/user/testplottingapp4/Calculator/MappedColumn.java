@@ -0,0 +1,126 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Столбец 8-байтовых значений в файле, доступный через отображение в память окнами.
+ * <p>
+ * Один {@link MappedByteBuffer} не может быть больше 2 ГБ, поэтому столбец отображается окнами
+ * по windowBytes байт, и текущее окно заменяется при выходе за его границы. Порядок байтов - little-endian.
+ */
+final class MappedColumn {
+    private final FileChannel          channel;
+    private final FileChannel.MapMode mode;
+    private final long                 offset;
+    private final long                 length;
+    private final int                  windowElements;
+
+    private MappedByteBuffer window;
+    private long             windowStart;
+    private long             windowEnd;
+
+    /**
+     * @param _channel     Канал файла.
+     * @param _mode        Режим отображения.
+     * @param _offset      Смещение столбца в файле в байтах.
+     * @param _length      Число значений.
+     * @param _windowBytes Размер окна в байтах, кратный 8.
+     */
+    MappedColumn (FileChannel _channel, FileChannel.MapMode _mode, long _offset, long _length, int _windowBytes) {
+        this.channel = _channel;
+        this.mode = _mode;
+        this.offset = _offset;
+        this.length = _length;
+        this.windowElements = Math.max (1, _windowBytes >>> 3);
+    }
+
+    double getDouble (long _index) throws IOException {
+        return window (_index).getDouble ((int) (_index - windowStart) << 3);
+    }
+
+    long getLong (long _index) throws IOException {
+        return window (_index).getLong ((int) (_index - windowStart) << 3);
+    }
+
+    void putLong (long _index, long _value) throws IOException {
+        window (_index).putLong ((int) (_index - windowStart) << 3, _value);
+    }
+
+    /**
+     * Записать значения, начиная с _index, через столько окон, сколько понадобится.
+     */
+    void put (long _index, double[] _src, int _offset, int _count) throws IOException {
+        while (_count > 0) {
+            DoubleBuffer doubles = window (_index).asDoubleBuffer ();
+            int          count   = (int) Math.min (_count, windowEnd - _index);
+            doubles.position ((int) (_index - windowStart));
+            doubles.put (_src, _offset, count);
+            _index += count;
+            _offset += count;
+            _count -= count;
+        }
+    }
+
+    /**
+     * Прочитать значения, начиная с _index.
+     */
+    void get (long _index, double[] _dst, int _offset, int _count) throws IOException {
+        while (_count > 0) {
+            DoubleBuffer doubles = window (_index).asDoubleBuffer ();
+            int          count   = (int) Math.min (_count, windowEnd - _index);
+            doubles.position ((int) (_index - windowStart));
+            doubles.get (_dst, _offset, count);
+            _index += count;
+            _offset += count;
+            _count -= count;
+        }
+    }
+
+    /**
+     * Отобразить участок столбца отдельно от окон - без копирования.
+     *
+     * @param _from  Индекс первого значения.
+     * @param _count Число значений.
+     * @return Значения участка.
+     */
+    DoubleBuffer slice (long _from, int _count) throws IOException {
+        if (_from < 0 || _count < 0 || _from + _count > length) {
+            throw new IndexOutOfBoundsException ("MappedColumn: Участок [" + _from + ", " + (_from + _count)
+                    + ") вне столбца длиной " + length + ".");
+        }
+        return channel.map (mode, offset + (_from << 3), (long) _count << 3).order (ByteOrder.LITTLE_ENDIAN).asDoubleBuffer ();
+    }
+
+    /**
+     * Сбросить измененное окно на диск.
+     */
+    void force () {
+        if (null != window && mode == FileChannel.MapMode.READ_WRITE) {
+            window.force ();
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return Окно, содержащее значение _index.
+     */
+    private ByteBuffer window (long _index) throws IOException {
+        if (_index < 0 || _index >= length) {
+            throw new IndexOutOfBoundsException ("MappedColumn: Индекс " + _index + " вне столбца длиной " + length + ".");
+        }
+        if (null == window || _index < windowStart || _index >= windowEnd) {
+            force ();
+            windowStart = _index / windowElements * windowElements;
+            windowEnd = Math.min (length, windowStart + windowElements);
+            window = channel.map (mode, offset + (windowStart << 3), (windowEnd - windowStart) << 3);
+            window.order (ByteOrder.LITTLE_ENDIAN);
+        }
+        return window;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Построение линий уровня f(x, y) = level по значениям на сетке (алгоритм marching squares).
+ * <p>
+ * Каждая клетка сетки классифицируется по тому, какие из четырех углов лежат не ниже уровня, и дает ноль,
+ * один или два отрезка линии; концы отрезков находятся линейной интерполяцией по ребрам клетки. Седловая
+ * клетка (углы выше уровня лежат по диагонали) разрешается по среднему значению углов. Клетки, в углах
+ * которых функция не определена, пропускаются.
+ * <p>
+ * Строки клеток делятся на блоки, которые обрабатываются параллельно в {@link ForkJoinPool}; каждый блок
+ * пишет в свой буфер, буферы склеиваются в порядке строк, поэтому результат не зависит от числа потоков.
+ */
+public class MarchingSquares {
+    /**
+     * Минимальное число клеток в задаче.
+     */
+    public static final int MIN_CELLS_PER_TASK = 16384;
+
+    /**
+     * Отрезки линии для каждого из 16 видов клетки: пары номеров ребер. Ребра: 0 - нижнее, 1 - правое,
+     * 2 - верхнее, 3 - левое. Седловые виды 5 и 10 обрабатываются отдельно.
+     */
+    private static final int[][] EDGES = {
+            {}, {3, 0}, {0, 1}, {3, 1}, {1, 2}, {}, {0, 2}, {3, 2},
+            {3, 2}, {0, 2}, {}, {1, 2}, {3, 1}, {0, 1}, {3, 0}, {}
+    };
+
+    /**
+     * Линия уровня - набор отрезков.
+     */
+    public static class Contour {
+        private final double[] coordinates;
+        private final int      segmentCount;
+
+        Contour (double[] _coordinates, int _segmentCount) {
+            this.coordinates = _coordinates;
+            this.segmentCount = _segmentCount;
+        }
+
+        public int getSegmentCount () {
+            return segmentCount;
+        }
+
+        /**
+         * @return Координаты отрезков: x1, y1, x2, y2 для каждого отрезка подряд.
+         */
+        public double[] getCoordinates () {
+            return coordinates;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Построитель на общем пуле {@link ForkJoinPool#commonPool()}.
+     */
+    public MarchingSquares () {
+        this (ForkJoinPool.commonPool ());
+    }
+
+    /**
+     * @param _pool Пул, в котором выполнять вычисления.
+     */
+    public MarchingSquares (ForkJoinPool _pool) {
+        this.pool = _pool;
+    }
+
+    /**
+     * Построить линию уровня по значениям на сетке {@link GridEvaluator}.
+     *
+     * @param _values Значения в узлах по строкам: (i, j) -> values[j * nx + i].
+     * @param _nx     Число узлов по x.
+     * @param _ny     Число узлов по y.
+     * @param _xMin   Начало отрезка по x.
+     * @param _xMax   Конец отрезка по x.
+     * @param _yMin   Начало отрезка по y.
+     * @param _yMax   Конец отрезка по y.
+     * @param _level  Уровень.
+     * @return Отрезки линии уровня.
+     */
+    public Contour extract (double[] _values, int _nx, int _ny, double _xMin, double _xMax, double _yMin, double _yMax,
+                            double _level) {
+        double[] xs          = GridEvaluator.nodes (_xMin, _xMax, _nx);
+        double[] ys          = GridEvaluator.nodes (_yMin, _yMax, _ny);
+        int      rows        = _ny - 1;
+        int      rowsPerTask = Math.max (1, MIN_CELLS_PER_TASK / Math.max (1, _nx - 1));
+
+        final List<BlockTask> tasks = new ArrayList<> ();
+        for (int from = 0; from < rows; from += rowsPerTask) {
+            tasks.add (new BlockTask (_values, xs, ys, _level, from, Math.min (rows, from + rowsPerTask)));
+        }
+        if (tasks.size () == 1) {
+            tasks.get (0).compute ();
+        } else if (tasks.size () > 1) {
+            pool.invoke (new RecursiveAction () {
+                @Override
+                protected void compute () {
+                    ForkJoinTask.invokeAll (tasks);
+                }
+            });
+        }
+
+        int length = 0;
+        for (BlockTask task : tasks) {
+            length += task.size;
+        }
+        double[] coordinates = new double[length];
+        int      offset      = 0;
+        for (BlockTask task : tasks) {
+            System.arraycopy (task.buffer, 0, coordinates, offset, task.size);
+            offset += task.size;
+        }
+        return new Contour (coordinates, length / 4);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Обработка блока строк клеток [from, to) в собственный буфер.
+     */
+    private static class BlockTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final double[] xs;
+        private final double[] ys;
+        private final double   level;
+        private final int      from;
+        private final int      to;
+        private double[]       buffer = new double[64];
+        private int            size;
+
+        BlockTask (double[] _values, double[] _xs, double[] _ys, double _level, int _from, int _to) {
+            this.values = _values;
+            this.xs = _xs;
+            this.ys = _ys;
+            this.level = _level;
+            this.from = _from;
+            this.to = _to;
+        }
+
+        @Override
+        protected void compute () {
+            int nx = xs.length;
+            for (int j = from; j < to; j++) {
+                for (int i = 0; i + 1 < nx; i++) {
+                    double v0 = values[j * nx + i];
+                    double v1 = values[j * nx + i + 1];
+                    double v2 = values[(j + 1) * nx + i + 1];
+                    double v3 = values[(j + 1) * nx + i];
+                    if (!isFinite (v0) || !isFinite (v1) || !isFinite (v2) || !isFinite (v3)) {
+                        continue;
+                    }
+
+                    int kind = (v0 >= level ? 1 : 0) | (v1 >= level ? 2 : 0) | (v2 >= level ? 4 : 0) | (v3 >= level ? 8 : 0);
+                    if (kind == 5 || kind == 10) {
+                        // Седловая клетка: если центр выше уровня, углы выше уровня соединены через центр.
+                        boolean centerAbove = 0.25 * (v0 + v1 + v2 + v3) >= level;
+                        if ((kind == 5) == centerAbove) {
+                            addSegment (i, j, 0, 1, v0, v1, v2, v3);
+                            addSegment (i, j, 3, 2, v0, v1, v2, v3);
+                        } else {
+                            addSegment (i, j, 3, 0, v0, v1, v2, v3);
+                            addSegment (i, j, 1, 2, v0, v1, v2, v3);
+                        }
+                    } else if (EDGES[kind].length > 0) {
+                        addSegment (i, j, EDGES[kind][0], EDGES[kind][1], v0, v1, v2, v3);
+                    }
+                }
+            }
+        }
+
+        private void addSegment (int _i, int _j, int _edgeA, int _edgeB, double _v0, double _v1, double _v2, double _v3) {
+            if (size + 4 > buffer.length) {
+                buffer = Arrays.copyOf (buffer, 2 * buffer.length);
+            }
+            edgePoint (_i, _j, _edgeA, _v0, _v1, _v2, _v3);
+            edgePoint (_i, _j, _edgeB, _v0, _v1, _v2, _v3);
+        }
+
+        /**
+         * Записать в буфер точку уровня на ребре клетки (i, j).
+         */
+        private void edgePoint (int _i, int _j, int _edge, double _v0, double _v1, double _v2, double _v3) {
+            double x0 = xs[_i];
+            double x1 = xs[_i + 1];
+            double y0 = ys[_j];
+            double y1 = ys[_j + 1];
+
+            switch (_edge) {
+                case 0:
+                    buffer[size++] = interpolate (x0, x1, _v0, _v1);
+                    buffer[size++] = y0;
+                    break;
+                case 1:
+                    buffer[size++] = x1;
+                    buffer[size++] = interpolate (y0, y1, _v1, _v2);
+                    break;
+                case 2:
+                    buffer[size++] = interpolate (x0, x1, _v3, _v2);
+                    buffer[size++] = y1;
+                    break;
+                default:
+                    buffer[size++] = x0;
+                    buffer[size++] = interpolate (y0, y1, _v0, _v3);
+                    break;
+            }
+        }
+
+        /**
+         * Точка между a и b, в которой линейная интерполяция значений va и vb равна уровню.
+         */
+        private double interpolate (double _a, double _b, double _va, double _vb) {
+            double t = (level - _va) / (_vb - _va);
+            return _a + t * (_b - _a);
+        }
+    }
+
+    private static boolean isFinite (double _value) {
+        return !Double.isNaN (_value) && !Double.isInfinite (_value);
+    }
+}
@@ -0,0 +1,245 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Компиляция программы {@link Interpreter} в дерево комбинаторов {@link MethodHandle}.
+ * <p>
+ * Запасной путь для сред, где нельзя загрузить сгенерированный класс: каждый узел выражения становится
+ * MethodHandle, бинарные операторы собираются через collectArguments и permuteArguments.
+ * <p>
+ * Временные ячейки общих подвыражений становятся параметрами: узлы собираются с типом
+ * (t<sub>k-1</sub>, ..., t<sub>0</sub>, x)double, где загрузка ячейки возвращает свой параметр, а готовое дерево
+ * связывается через foldArguments - каждое общее подвыражение вычисляется один раз, до основного выражения.
+ * Поэтому число ячеек ограничено {@link #MAX_TEMPORARIES} (у MethodHandle не больше 255 слотов параметров),
+ * а глубина дерева - {@link #MAX_DEPTH} (вызов комбинаторов рекурсивен). Для выражений сверх ограничений
+ * {@link #compile(CompiledExpression)} возвращает null, и выражение остается в интерпретаторе.
+ * На Android MethodHandle появились в API 26 - на более старых версиях {@link #compile(CompiledExpression)}
+ * возвращает null.
+ */
+final class MethodHandleCompiler {
+    /**
+     * Наибольшее число временных ячеек: у бинарного оператора до permuteArguments вдвое больше параметров,
+     * а каждый double занимает два слота из 255.
+     */
+    static final int MAX_TEMPORARIES = 48;
+
+    /**
+     * Наибольшая глубина дерева MethodHandle.
+     */
+    static final int MAX_DEPTH = 256;
+
+    private MethodHandleCompiler () {
+    }
+
+    /**
+     * Скомпилировать выражение в дерево MethodHandle.
+     *
+     * @param _expression Скомпилированное выражение.
+     * @return Реализация выражения или null, если MethodHandle недоступны или выражение не помещается
+     * в ограничения.
+     */
+    static DoubleUnaryOperator compile (CompiledExpression _expression) {
+        final MethodHandle handle;
+        try {
+            handle = build (_expression);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return null;
+        }
+
+        return new DoubleUnaryOperator () {
+            @Override
+            public double applyAsDouble (double _x) {
+                try {
+                    return (double) handle.invokeExact (_x);
+                } catch (Throwable e) {
+                    throw new IllegalStateException ("MethodHandle: Ошибка вычисления.", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Собрать MethodHandle типа (double)double, выполняя программу над стеком MethodHandle.
+     *
+     * @throws IllegalStateException Если выражение не помещается в ограничения.
+     */
+    static MethodHandle build (CompiledExpression _expression) throws ReflectiveOperationException {
+        int temporaryCount = _expression.getTemporaryCount ();
+        if (temporaryCount > MAX_TEMPORARIES) {
+            throw new IllegalStateException ("MethodHandle: Слишком много общих подвыражений: " + temporaryCount + ".");
+        }
+
+        MethodHandles.Lookup lookup     = MethodHandles.lookup ();
+        MethodType           unary      = MethodType.methodType (double.class, double.class);
+        MethodType           binary     = MethodType.methodType (double.class, double.class, double.class);
+        int                  parameters = temporaryCount + 1;
+        Class<?>[]           doubles    = new Class<?>[parameters];
+        int[]                code       = _expression.getCode ();
+        double[]             constants  = _expression.getConstants ();
+        MethodHandle[]       stack      = new MethodHandle[_expression.getStackSize ()];
+        int[]                depths     = new int[stack.length];
+        MethodHandle[]       temporary  = new MethodHandle[temporaryCount];
+        int                  base       = stack.length - temporaryCount;
+        int                  top        = -1;
+
+        Arrays.fill (doubles, double.class);
+        MethodType type = MethodType.methodType (double.class, doubles);
+
+        // Перестановка (a..., b...) -> (p..., p...) для бинарных операторов.
+        int[] twice = new int[2 * parameters];
+        for (int i = 0; i < twice.length; i++) {
+            twice[i] = i % parameters;
+        }
+
+        for (int pc = 0; pc < code.length; ) {
+            int opcode = code[pc++];
+            switch (opcode) {
+                case Interpreter.CONST:
+                    stack[++top] = MethodHandles.dropArguments (
+                            MethodHandles.constant (double.class, constants[code[pc++]]), 0, type.parameterList ());
+                    depths[top] = 1;
+                    break;
+                case Interpreter.VAR:
+                    ++pc;
+                    stack[++top] = parameter (type, temporaryCount);
+                    depths[top] = 1;
+                    break;
+                case Interpreter.STORE:
+                    // Значение вычисляется один раз при связывании, а здесь и дальше читается из параметра.
+                    int slot = code[pc++] - base;
+                    temporary[slot] = stack[top];
+                    stack[top] = parameter (type, temporaryCount - 1 - slot);
+                    depths[top] = 1;
+                    break;
+                case Interpreter.LOAD:
+                    stack[++top] = parameter (type, temporaryCount - 1 - (code[pc++] - base));
+                    depths[top] = 1;
+                    break;
+                case Interpreter.NEG:
+                case Interpreter.SIN:
+                case Interpreter.COS:
+                case Interpreter.TAN:
+                case Interpreter.CTG:
+                case Interpreter.LN:
+                    MethodHandle function = lookup.findStatic (MethodHandleCompiler.class, name (opcode), unary);
+                    stack[top] = MethodHandles.filterReturnValue (stack[top], function);
+                    depths[top] = checkDepth (depths[top] + 1);
+                    break;
+                default:
+                    // op(a(p), b(p)): (p1, p2) -> op(a(p1), b(p2)), затем p1 = p2 = p.
+                    MethodHandle operator = lookup.findStatic (MethodHandleCompiler.class, name (opcode), binary);
+                    MethodHandle right    = stack[top--];
+                    MethodHandle both     = MethodHandles.collectArguments (
+                            MethodHandles.collectArguments (operator, 1, right), 0, stack[top]);
+                    stack[top] = MethodHandles.permuteArguments (both, type, twice);
+                    depths[top] = checkDepth (Math.max (depths[top], depths[top + 1]) + 1);
+                    break;
+            }
+        }
+
+        // Связать ячейки с последней по первую: ячейка зависит только от x и более ранних ячеек.
+        MethodHandle result = stack[0];
+        for (int slot = temporaryCount - 1; slot >= 0; slot--) {
+            Object[] unused = new Object[temporaryCount - slot];
+            Arrays.fill (unused, 0.0);
+            result = MethodHandles.foldArguments (result, MethodHandles.insertArguments (temporary[slot], 0, unused));
+        }
+        return result;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * MethodHandle, возвращающий параметр _index типа _type.
+     */
+    private static MethodHandle parameter (MethodType _type, int _index) {
+        return MethodHandles.permuteArguments (MethodHandles.identity (double.class), _type, _index);
+    }
+
+    private static int checkDepth (int _depth) {
+        if (_depth > MAX_DEPTH) {
+            throw new IllegalStateException ("MethodHandle: Выражение глубже " + MAX_DEPTH + " уровней.");
+        }
+        return _depth;
+    }
+
+    private static String name (int _opcode) {
+        switch (_opcode) {
+            case Interpreter.ADD:
+                return "add";
+            case Interpreter.SUB:
+                return "sub";
+            case Interpreter.MUL:
+                return "mul";
+            case Interpreter.DIV:
+                return "div";
+            case Interpreter.POW:
+                return "pow";
+            case Interpreter.NEG:
+                return "neg";
+            case Interpreter.SIN:
+                return "sin";
+            case Interpreter.COS:
+                return "cos";
+            case Interpreter.TAN:
+                return "tan";
+            case Interpreter.CTG:
+                return "ctg";
+            case Interpreter.LN:
+                return "ln";
+            default:
+                throw new IllegalStateException ("MethodHandle: Неизвестный код операции: " + _opcode + ".");
+        }
+    }
+
+    // Операции с той же семантикой, что и в интерпретаторе.
+
+    private static double add (double _a, double _b) {
+        return _a + _b;
+    }
+
+    private static double sub (double _a, double _b) {
+        return _a - _b;
+    }
+
+    private static double mul (double _a, double _b) {
+        return _a * _b;
+    }
+
+    private static double div (double _a, double _b) {
+        return _a / _b;
+    }
+
+    private static double pow (double _a, double _b) {
+        return Math.pow (_a, _b);
+    }
+
+    private static double neg (double _a) {
+        return -_a;
+    }
+
+    private static double sin (double _a) {
+        return Math.sin (_a);
+    }
+
+    private static double cos (double _a) {
+        return Math.cos (_a);
+    }
+
+    private static double tan (double _a) {
+        return Math.tan (_a);
+    }
+
+    private static double ctg (double _a) {
+        return 1.0 / Math.tan (_a);
+    }
+
+    private static double ln (double _a) {
+        return Math.log (_a);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Несколько выражений, скомпилированных в одну программу - для графиков из нескольких серий
+ * (семейство sin(k*x), формула и ее варианты, слагаемые суммы).
+ * <p>
+ * Деревья всех выражений сводятся к одному графу {@link CommonSubexpressions}, поэтому подвыражение,
+ * общее для разных формул, вычисляется один раз на точку. Выражения генерируются подряд: значение i-го
+ * остается в i-й ячейке стека, и за один проход программы по блоку точек вычисляются все серии.
+ * Результаты побитово совпадают с раздельным вычислением каждого выражения.
+ * Объект неизменяем и потокобезопасен.
+ */
+public final class MultiExpression {
+    /**
+     * Выражения, из которых собрана программа.
+     */
+    private final CompiledExpression[] expressions;
+
+    /**
+     * Коды операций программы.
+     */
+    private final int[] code;
+
+    /**
+     * Пул констант программы.
+     */
+    private final double[] constants;
+
+    /**
+     * Размер стека вместе с временными ячейками.
+     */
+    private final int stackSize;
+
+    /**
+     * Сколько узлов всех деревьев не вычисляется благодаря общим подвыражениям.
+     */
+    private final int eliminatedNodeCount;
+
+    /**
+     * Число временных ячеек для общих подвыражений.
+     */
+    private final int temporaryCount;
+
+    /**
+     * @param _expressions Выражения с одной переменной "x" - по одному на серию.
+     * @throws IllegalArgumentException Если выражений нет или какое-то из них содержит "y".
+     */
+    public MultiExpression (CompiledExpression... _expressions) {
+        if (_expressions.length == 0) {
+            throw new IllegalArgumentException ("MultiExpression: Нужно хотя бы одно выражение.");
+        }
+
+        CommonSubexpressions subexpressions = new CommonSubexpressions ();
+        ExpressionNode[]     roots          = new ExpressionNode[_expressions.length];
+        int                  nodes          = 0;
+        for (int i = 0; i < _expressions.length; i++) {
+            if (_expressions[i].getVariableCount () > 1) {
+                throw new IllegalArgumentException ("MultiExpression: Выражение \"" + _expressions[i].getSource ()
+                        + "\" зависит от \"y\".");
+            }
+            roots[i] = subexpressions.intern (_expressions[i].getTree ());
+            nodes += _expressions[i].getTree ().getSize ();
+        }
+
+        CompiledExpression.Generator generator = new CompiledExpression.Generator (nodes, subexpressions);
+        for (ExpressionNode root : roots) {
+            generator.generate (root);
+        }
+        generator.relocateTemporaries ();
+
+        this.expressions = _expressions.clone ();
+        this.code = generator.getCode ();
+        this.constants = generator.getConstants ();
+        this.stackSize = generator.getStackSize ();
+        this.eliminatedNodeCount = nodes - generator.getEmittedNodes ();
+        this.temporaryCount = generator.getTemporaries ();
+    }
+
+    /**
+     * Вычислить все выражения в точке.
+     *
+     * @param _x   Значение переменной "x".
+     * @param _out Массив для результатов, не короче {@link #getSeriesCount()}. Результаты могут быть равны NaN
+     *             или бесконечности.
+     */
+    public void evalRaw (double _x, double[] _out) {
+        double[] stack = Interpreter.threadStack (stackSize);
+        Interpreter.run (code, constants, stack, _x);
+        System.arraycopy (stack, 0, _out, 0, expressions.length);
+    }
+
+    /**
+     * Вычислить все выражения для части массива значений "x". Память не выделяется.
+     *
+     * @param _xs        Значения переменной "x".
+     * @param _offset    Индекс первого значения в _xs.
+     * @param _length    Число значений.
+     * @param _out       Столбцы для результатов - по одному на серию. Результаты могут быть равны NaN
+     *                   или бесконечности.
+     * @param _outOffset Индекс в каждом столбце, куда записать первый результат.
+     */
+    public void evalBatch (double[] _xs, int _offset, int _length, double[][] _out, int _outOffset) {
+        CalculatorListener listener = Calculator.getListener ();
+        long               start    = null == listener ? 0 : System.nanoTime ();
+        double[][]         columns  = Interpreter.threadColumns (stackSize);
+
+        for (int done = 0; done < _length; done += Interpreter.BLOCK_SIZE) {
+            int block = Math.min (Interpreter.BLOCK_SIZE, _length - done);
+            Interpreter.executeBlock (code, constants, columns, _xs, _offset + done, block, 0);
+            copyResults (columns, block, _out, _outOffset + done);
+        }
+        if (null != listener) {
+            report (listener, start, _out, _outOffset, _length);
+        }
+    }
+
+    /**
+     * Вычислить все выражения на равномерной сетке: x[i] = xMin + i * ((xMax - xMin) / n), i = 0..n-1.
+     * Сетка строится один раз для всех серий.
+     *
+     * @param _xMin Начало области определения.
+     * @param _xMax Конец области определения (не включается).
+     * @param _n    Число точек.
+     * @param _out  Столбцы для результатов - по одному на серию, каждый не короче _n.
+     */
+    public void evalRange (double _xMin, double _xMax, int _n, double[][] _out) {
+        CalculatorListener listener = Calculator.getListener ();
+        long               start    = null == listener ? 0 : System.nanoTime ();
+        double             delta    = (_xMax - _xMin) / _n;
+        double[][]         columns  = Interpreter.threadColumns (stackSize + 1);
+        // Последний столбец используем как буфер для значений "x" текущего блока.
+        double[]           xs       = columns[columns.length - 1];
+
+        for (int done = 0; done < _n; done += Interpreter.BLOCK_SIZE) {
+            int block = Math.min (Interpreter.BLOCK_SIZE, _n - done);
+            for (int j = 0; j < block; j++) {
+                xs[j] = _xMin + (done + j) * delta;
+            }
+            Interpreter.executeBlock (code, constants, columns, xs, 0, block, 0);
+            copyResults (columns, block, _out, done);
+        }
+        if (null != listener) {
+            report (listener, start, _out, 0, _n);
+        }
+    }
+
+    /**
+     * @return Число серий.
+     */
+    public int getSeriesCount () {
+        return expressions.length;
+    }
+
+    /**
+     * @return Выражение i-й серии.
+     */
+    public CompiledExpression getExpression (int _index) {
+        return expressions[_index];
+    }
+
+    /**
+     * @return Размер стека для вычисления вместе с временными ячейками.
+     */
+    public int getStackSize () {
+        return stackSize;
+    }
+
+    /**
+     * @return Сколько узлов всех деревьев не вычисляется благодаря общим подвыражениям - внутри формул и между ними.
+     */
+    public int getEliminatedNodeCount () {
+        return eliminatedNodeCount;
+    }
+
+    /**
+     * @return Число временных ячеек для общих подвыражений.
+     */
+    public int getTemporaryCount () {
+        return temporaryCount;
+    }
+
+    /**
+     * @return Коды операций программы. Массив не копируется и не должен изменяться.
+     */
+    int[] getCode () {
+        return code;
+    }
+
+    @Override
+    public String toString () {
+        StringBuilder sb = new StringBuilder ();
+        for (CompiledExpression expression : expressions) {
+            sb.append (sb.length () == 0 ? "" : "; ").append (expression.getSource ());
+        }
+        return sb.toString ();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Скопировать значения серий из стека столбцов в столбцы результатов.
+     */
+    private void copyResults (double[][] _columns, int _length, double[][] _out, int _outOffset) {
+        for (int i = 0; i < expressions.length; i++) {
+            System.arraycopy (_columns[i], 0, _out[i], _outOffset, _length);
+        }
+    }
+
+    /**
+     * Сообщить получателю метрик о пакетном вычислении. Точкой считается одно значение одной серии.
+     */
+    private void report (CalculatorListener _listener, long _start, double[][] _out, int _offset, int _length) {
+        long nanos   = System.nanoTime () - _start;
+        long invalid = 0;
+        for (int i = 0; i < expressions.length; i++) {
+            double[] column = _out[i];
+            for (int j = _offset, end = _offset + _length; j < end; j++) {
+                if (Double.isNaN (column[j]) || Double.isInfinite (column[j])) {
+                    invalid++;
+                }
+            }
+        }
+        _listener.onEvaluation ((long) _length * expressions.length, invalid, nanos);
+    }
+}
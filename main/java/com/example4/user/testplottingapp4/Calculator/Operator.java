@@ -0,0 +1,128 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.HashMap;
+
+/**
+ * Операторы калькулятора.
+ * <p>
+ * Приоритет Оператор Ассоциативность
+ * 5 ± правая
+ * 4 ^ sin cos tan ctg ln правая
+ * 3 * / левая
+ * 2 + - левая
+ */
+public enum Operator {
+    PLUS ("+", 2, 2, true, Interpreter.ADD),
+    MINUS ("-", 2, 2, true, Interpreter.SUB),
+    MULTIPLY ("*", 3, 2, true, Interpreter.MUL),
+    DIVIDE ("/", 3, 2, true, Interpreter.DIV),
+    POWER ("^", 4, 2, false, Interpreter.POW),
+    NEGATE ("±", 5, 1, false, Interpreter.NEG),
+    SIN ("sin", 4, 1, false, Interpreter.SIN),
+    COS ("cos", 4, 1, false, Interpreter.COS),
+    TAN ("tan", 4, 1, false, Interpreter.TAN),
+    CTG ("ctg", 4, 1, false, Interpreter.CTG),
+    LN ("ln", 4, 1, false, Interpreter.LN);
+
+    /**
+     * Операторы по их обозначениям.
+     */
+    private static final HashMap<String, Operator> BY_SYMBOL = new HashMap<> ();
+
+    static {
+        for (Operator op : values ()) {
+            BY_SYMBOL.put (op.symbol, op);
+        }
+    }
+
+    private final String  symbol;
+    private final int     priority;
+    private final int     arity;
+    private final boolean leftAssociative;
+    private final int     opcode;
+
+    Operator (String _symbol, int _priority, int _arity, boolean _leftAssociative, int _opcode) {
+        this.symbol = _symbol;
+        this.priority = _priority;
+        this.arity = _arity;
+        this.leftAssociative = _leftAssociative;
+        this.opcode = _opcode;
+    }
+
+    /**
+     * Найти оператор по его текстовому обозначению.
+     *
+     * @param _symbol Обозначение оператора, например "sin".
+     * @return Оператор или null, если такого оператора нет.
+     */
+    public static Operator fromSymbol (String _symbol) {
+        return BY_SYMBOL.get (_symbol);
+    }
+
+    public String getSymbol () {
+        return symbol;
+    }
+
+    public int getPriority () {
+        return priority;
+    }
+
+    /**
+     * @return Число операндов оператора: 1 для унарных, 2 для бинарных.
+     */
+    public int getArity () {
+        return arity;
+    }
+
+    public boolean isLeftAssociative () {
+        return leftAssociative;
+    }
+
+    /**
+     * @return Код операции в программе {@link Interpreter}.
+     */
+    int getOpcode () {
+        return opcode;
+    }
+
+    /**
+     * Применить оператор к операндам.
+     *
+     * @param _op1 Левый операнд бинарного оператора либо единственный операнд унарного.
+     * @param _op2 Правый операнд бинарного оператора. Для унарных игнорируется.
+     * @return Результат вычисления. Может быть равен NaN или бесконечности.
+     */
+    public double apply (double _op1, double _op2) {
+        switch (this) {
+            case PLUS:
+                return _op1 + _op2;
+            case MINUS:
+                return _op1 - _op2;
+            case MULTIPLY:
+                return _op1 * _op2;
+            case DIVIDE:
+                return _op1 / _op2;
+            case POWER:
+                return Math.pow (_op1, _op2);
+            case NEGATE:
+                return -_op1;
+            case SIN:
+                return Math.sin (_op1);
+            case COS:
+                return Math.cos (_op1);
+            case TAN:
+                return Math.tan (_op1);
+            case CTG:
+                return 1.0 / Math.tan (_op1);
+            case LN:
+                return Math.log (_op1);
+            default:
+                throw new IllegalStateException ("Неизвестный оператор: \"" + symbol + "\".");
+        }
+    }
+
+    @Override
+    public String toString () {
+        return symbol;
+    }
+}
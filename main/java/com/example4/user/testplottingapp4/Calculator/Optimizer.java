@@ -0,0 +1,126 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayDeque;
+
+/**
+ * Оптимизатор дерева выражения.
+ * <p>
+ * Сворачивает константные поддеревья и применяет алгебраические тождества. Применяются только тождества,
+ * которые дают побитово тот же результат для любого x, включая NaN, бесконечности и знак нуля:
+ * <p>
+ * - x * 1, 1 * x, x / 1, x - 0, x + (-0), x ^ 1 -> x
+ * - x ^ 0 -> 1 (Math.pow возвращает 1 для любого основания, даже NaN)
+ * - --x -> x, x - (-y) -> x + y, x + (-y) -> x - y
+ * <p>
+ * Поэтому, например, x + 0 не сворачивается (для x = -0 результат +0), а 0 * x - тоже (для x = Infinity результат NaN).
+ * x ^ 2 остается степенью: Math.pow не обязан совпадать с x * x побитово, а интервальная оценка x * x
+ * не знает, что множители равны, и для x из [-1, 1] дает [-1, 1] вместо [0, 1].
+ */
+public final class Optimizer {
+    private Optimizer () {
+    }
+
+    /**
+     * Оптимизировать дерево.
+     *
+     * @param _node Корень дерева.
+     * @return Корень оптимизированного дерева.
+     */
+    public static ExpressionNode optimize (ExpressionNode _node) {
+        // Оптимизированные операнды копятся на стеке и снимаются оператором, как при построении дерева из ОПН.
+        final ArrayDeque<ExpressionNode> optimized = new ArrayDeque<> ();
+
+        ExpressionNode.walk (_node, new ExpressionNode.Visitor () {
+            @Override
+            public boolean enter (ExpressionNode _node) {
+                return true;
+            }
+
+            @Override
+            public void leave (ExpressionNode _node) {
+                if (_node instanceof ExpressionNode.Unary) {
+                    optimized.push (optimizeUnary (((ExpressionNode.Unary) _node).getOperator (), optimized.pop ()));
+                } else if (_node instanceof ExpressionNode.Binary) {
+                    ExpressionNode right = optimized.pop ();
+                    optimized.push (optimizeBinary (((ExpressionNode.Binary) _node).getOperator (), optimized.pop (), right));
+                } else {
+                    optimized.push (_node);
+                }
+            }
+        });
+        return optimized.pop ();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static ExpressionNode optimizeUnary (Operator _op, ExpressionNode _operand) {
+        // Свертка константы, в том числе унарного минуса перед числом.
+        if (_operand instanceof ExpressionNode.Constant) {
+            return new ExpressionNode.Constant (_op.apply (((ExpressionNode.Constant) _operand).getValue (), 0));
+        }
+
+        // --x -> x
+        if (Operator.NEGATE == _op && isNegation (_operand)) {
+            return ((ExpressionNode.Unary) _operand).getOperand ();
+        }
+
+        return new ExpressionNode.Unary (_op, _operand);
+    }
+
+    private static ExpressionNode optimizeBinary (Operator _op, ExpressionNode _left, ExpressionNode _right) {
+        if (_left instanceof ExpressionNode.Constant && _right instanceof ExpressionNode.Constant) {
+            return new ExpressionNode.Constant (_op.apply (((ExpressionNode.Constant) _left).getValue (),
+                    ((ExpressionNode.Constant) _right).getValue ()));
+        }
+
+        switch (_op) {
+            case PLUS:
+                if (isConstant (_right, -0.0)) {
+                    return _left;
+                }
+                if (isNegation (_right)) {
+                    return optimizeBinary (Operator.MINUS, _left, ((ExpressionNode.Unary) _right).getOperand ());
+                }
+                break;
+            case MINUS:
+                if (isConstant (_right, 0.0)) {
+                    return _left;
+                }
+                if (isNegation (_right)) {
+                    return optimizeBinary (Operator.PLUS, _left, ((ExpressionNode.Unary) _right).getOperand ());
+                }
+                break;
+            case MULTIPLY:
+                if (isConstant (_right, 1.0)) {
+                    return _left;
+                }
+                if (isConstant (_left, 1.0)) {
+                    return _right;
+                }
+                break;
+            case DIVIDE:
+                if (isConstant (_right, 1.0)) {
+                    return _left;
+                }
+                break;
+            case POWER:
+                if (isConstant (_right, 1.0)) {
+                    return _left;
+                }
+                if (isConstant (_right, 0.0) || isConstant (_right, -0.0)) {
+                    return new ExpressionNode.Constant (1.0);
+                }
+                break;
+        }
+
+        return new ExpressionNode.Binary (_op, _left, _right);
+    }
+
+    private static boolean isConstant (ExpressionNode _node, double _value) {
+        return _node instanceof ExpressionNode.Constant && ((ExpressionNode.Constant) _node).is (_value);
+    }
+
+    private static boolean isNegation (ExpressionNode _node) {
+        return _node instanceof ExpressionNode.Unary && Operator.NEGATE == ((ExpressionNode.Unary) _node).getOperator ();
+    }
+}
@@ -0,0 +1,326 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Постепенное вычисление функции в фоне: сначала грубый график, затем уточнения.
+ * <p>
+ * Сетка та же, что у {@link SamplingEngine}: x[i] = xMin + i * ((xMax - xMin) / n). Первый проход вычисляет
+ * каждую stride-ю точку, где stride - степень двойки, при которой точек не больше {@link #DEFAULT_COARSE_POINTS}.
+ * Каждый следующий проход вычисляет середины между уже вычисленными точками (порядок обратных битов индекса),
+ * так что число точек удваивается, пока не будут вычислены все n. После каждого прохода слушатель получает
+ * все вычисленные точки по возрастанию x. Первый проход не зависит от n, поэтому первый кадр появляется
+ * за одно и то же время при любом числе точек.
+ * <p>
+ * Новый запрос отменяет предыдущий. Вычисление проверяет отмену и крайний срок после каждого куска
+ * в {@link #CHUNK_SIZE} точек и сразу прекращается, если работа больше не нужна.
+ */
+public class ProgressiveSampler {
+    /**
+     * Сколько точек примерно вычисляет первый проход по умолчанию.
+     */
+    public static final int DEFAULT_COARSE_POINTS = 256;
+
+    /**
+     * Сколько точек вычисляется между проверками отмены.
+     */
+    public static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Чем закончилось вычисление.
+     */
+    public enum Outcome {
+        /**
+         * Вычислены все точки.
+         */
+        COMPLETED,
+
+        /**
+         * Истек крайний срок. Последний переданный проход - лучший результат.
+         */
+        DEADLINE_EXCEEDED,
+
+        /**
+         * Запрос отменен или заменен новым.
+         */
+        CANCELLED,
+
+        /**
+         * Ошибка при вычислении.
+         */
+        FAILED
+    }
+
+    /**
+     * Получатель результатов. Вызывается в потоке вычисления.
+     */
+    public interface Listener {
+        /**
+         * Очередной проход завершен.
+         */
+        void onPass (Pass _pass);
+
+        /**
+         * Вычисление завершено. Вызывается ровно один раз.
+         *
+         * @param _outcome Чем закончилось вычисление.
+         * @param _error   Ошибка для {@link Outcome#FAILED}, иначе null.
+         */
+        void onFinished (Outcome _outcome, Throwable _error);
+    }
+
+    /**
+     * Результат прохода: все вычисленные к этому моменту точки по возрастанию x.
+     * Массивы принадлежат получателю и больше не изменяются.
+     */
+    public static class Pass {
+        private final CancellationToken token;
+        private final double[]          xs;
+        private final double[]          ys;
+        private final int               count;
+        private final int               number;
+        private final boolean           last;
+
+        Pass (CancellationToken _token, double[] _xs, double[] _ys, int _count, int _number, boolean _last) {
+            this.token = _token;
+            this.xs = _xs;
+            this.ys = _ys;
+            this.count = _count;
+            this.number = _number;
+            this.last = _last;
+        }
+
+        /**
+         * @return Признак отмены запроса, к которому относится проход.
+         */
+        public CancellationToken getToken () {
+            return token;
+        }
+
+        /**
+         * @return Значения x. Используются первые {@link #getCount()} элементов.
+         */
+        public double[] getXs () {
+            return xs;
+        }
+
+        /**
+         * @return Значения функции. Могут быть равны NaN или бесконечности.
+         */
+        public double[] getYs () {
+            return ys;
+        }
+
+        public int getCount () {
+            return count;
+        }
+
+        /**
+         * @return Номер прохода, начиная с 0.
+         */
+        public int getNumber () {
+            return number;
+        }
+
+        /**
+         * @return Вычислены ли все точки.
+         */
+        public boolean isLast () {
+            return last;
+        }
+    }
+
+    private final Executor executor;
+    private final int      coarsePoints;
+
+    /**
+     * Текущий запрос.
+     */
+    private final AtomicReference<CancellationToken> current = new AtomicReference<> ();
+
+    /**
+     * Сэмплер со своим фоновым потоком.
+     */
+    public ProgressiveSampler () {
+        this (newBackgroundExecutor (), DEFAULT_COARSE_POINTS);
+    }
+
+    /**
+     * @param _executor     Исполнитель, в котором выполнять вычисления.
+     * @param _coarsePoints Сколько точек примерно вычисляет первый проход.
+     */
+    public ProgressiveSampler (Executor _executor, int _coarsePoints) {
+        this.executor = _executor;
+        this.coarsePoints = Math.max (2, _coarsePoints);
+    }
+
+    /**
+     * Начать вычисление функции в n точках сетки. Предыдущий запрос отменяется.
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало области определения.
+     * @param _xMax     Конец области определения (не включается).
+     * @param _n        Число точек.
+     * @param _token    Признак отмены и крайний срок запроса.
+     * @param _listener Получатель результатов.
+     * @return Тот же признак отмены.
+     */
+    public CancellationToken submit (final CompiledExpression _function, final double _xMin, final double _xMax, final int _n,
+                                     final CancellationToken _token, final Listener _listener) {
+        CancellationToken previous = current.getAndSet (_token);
+        if (null != previous) {
+            previous.cancel ();
+        }
+
+        executor.execute (new Runnable () {
+            @Override
+            public void run () {
+                Outcome outcome;
+                try {
+                    outcome = sample (_function, _xMin, _xMax, _n, _token, _listener);
+                } catch (RuntimeException e) {
+                    _listener.onFinished (Outcome.FAILED, e);
+                    return;
+                }
+                _listener.onFinished (outcome, null);
+            }
+        });
+        return _token;
+    }
+
+    /**
+     * Выполнить задачу в фоновом потоке после уже поставленных вычислений. Новый запрос задачу не отменяет:
+     * нужна ли она еще, задача проверяет сама.
+     *
+     * @param _task Задача.
+     */
+    public void execute (Runnable _task) {
+        executor.execute (_task);
+    }
+
+    /**
+     * Отменить текущий запрос.
+     */
+    public void cancel () {
+        CancellationToken previous = current.getAndSet (null);
+        if (null != previous) {
+            previous.cancel ();
+        }
+    }
+
+    /**
+     * @return Является ли запрос текущим, то есть не замененным новым и не отмененным через {@link #cancel()}.
+     * Запрос остается текущим и после завершения вычисления.
+     */
+    public boolean isCurrent (CancellationToken _token) {
+        return current.get () == _token;
+    }
+
+    /**
+     * Шаг сетки первого прохода: наименьшая степень двойки, при которой точек не больше _coarsePoints.
+     */
+    static int coarseStride (int _n, int _coarsePoints) {
+        int stride = 1;
+        while ((_n - 1) / stride + 1 > _coarsePoints) {
+            stride <<= 1;
+        }
+        return stride;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Выполнить проходы в текущем потоке.
+     */
+    private Outcome sample (CompiledExpression _function, double _xMin, double _xMax, int _n, CancellationToken _token,
+                            Listener _listener) {
+        double   delta   = (_xMax - _xMin) / _n;
+        double[] xs      = new double[_n];
+        double[] ys      = new double[_n];
+        double[] chunkXs = new double[CHUNK_SIZE];
+        double[] chunkYs = new double[CHUNK_SIZE];
+
+        int stride = coarseStride (_n, coarsePoints);
+        for (int pass = 0; ; pass++, stride >>= 1) {
+            if (_token.isCancelled ()) {
+                return Outcome.CANCELLED;
+            }
+
+            // Первый проход - каждая stride-я точка, следующие - середины между вычисленными.
+            int     from     = pass == 0 ? 0 : stride;
+            int     step     = pass == 0 ? stride : 2 * stride;
+            boolean complete = evaluate (_function, _xMin, delta, from, step, _n, xs, ys, chunkXs, chunkYs, _token, pass > 0);
+            if (_token.isCancelled ()) {
+                return Outcome.CANCELLED;
+            }
+            if (!complete) {
+                return Outcome.DEADLINE_EXCEEDED;
+            }
+
+            boolean last = stride == 1;
+            _listener.onPass (last ? new Pass (_token, xs, ys, _n, pass, true) : snapshot (_token, xs, ys, _n, stride, pass));
+            if (last) {
+                return Outcome.COMPLETED;
+            }
+            if (_token.isDeadlineExceeded ()) {
+                return Outcome.DEADLINE_EXCEEDED;
+            }
+        }
+    }
+
+    /**
+     * Вычислить точки from, from + step, ... кусками, проверяя отмену после каждого куска.
+     *
+     * @param _checkDeadline Прерывать ли проход по крайнему сроку. Первый проход выполняется всегда.
+     * @return false, если проход прерван.
+     */
+    private static boolean evaluate (CompiledExpression _function, double _xMin, double _delta, int _from, int _step, int _n,
+                                     double[] _xs, double[] _ys, double[] _chunkXs, double[] _chunkYs,
+                                     CancellationToken _token, boolean _checkDeadline) {
+        for (int i = _from; i < _n; ) {
+            int count = 0;
+            for (int j = i; j < _n && count < CHUNK_SIZE; j += _step) {
+                _chunkXs[count++] = SamplingEngine.gridX (_xMin, _delta, j);
+            }
+            _function.evalBatch (_chunkXs, 0, count, _chunkYs, 0);
+            for (int k = 0; k < count; k++, i += _step) {
+                _xs[i] = _chunkXs[k];
+                _ys[i] = _chunkYs[k];
+            }
+
+            if (_token.isCancelled () || (_checkDeadline && _token.isDeadlineExceeded ())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Скопировать каждую stride-ю точку.
+     */
+    private static Pass snapshot (CancellationToken _token, double[] _xs, double[] _ys, int _n, int _stride, int _pass) {
+        int      count = (_n - 1) / _stride + 1;
+        double[] xs    = new double[count];
+        double[] ys    = new double[count];
+        for (int k = 0, i = 0; k < count; k++, i += _stride) {
+            xs[k] = _xs[i];
+            ys[k] = _ys[i];
+        }
+        return new Pass (_token, xs, ys, count, _pass, false);
+    }
+
+    private static ExecutorService newBackgroundExecutor () {
+        return Executors.newSingleThreadExecutor (new ThreadFactory () {
+            @Override
+            public Thread newThread (Runnable _runnable) {
+                Thread thread = new Thread (_runnable, "ProgressiveSampler");
+                thread.setDaemon (true);
+                return thread;
+            }
+        });
+    }
+}
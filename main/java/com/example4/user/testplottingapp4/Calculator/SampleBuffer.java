@@ -0,0 +1,287 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+
+/**
+ * Буфер точек графика без объекта на точку: значения x и y хранятся в параллельных массивах double,
+ * а признак корректности - в битовой маске того же формата, что у {@link ValidityMask}.
+ * <p>
+ * Буфер растет удвоением и переиспользуется между перерисовками: {@link #clear()} не освобождает массивы.
+ * Участки буфера доступны через легкие представления {@link View} без копирования.
+ * Буфер не потокобезопасен: заполнять его и читать представления нужно в одном потоке
+ * или передавать между потоками через безопасную публикацию.
+ */
+public final class SampleBuffer {
+    /**
+     * Емкость по умолчанию.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private double[] xs;
+    private double[] ys;
+    private long[]   validity;
+    private int      size;
+
+    public SampleBuffer () {
+        this (DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param _capacity Начальная емкость.
+     */
+    public SampleBuffer (int _capacity) {
+        int capacity = Math.max (1, _capacity);
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.validity = new long[(capacity + 63) >>> 6];
+    }
+
+    /**
+     * Удалить все точки, сохранив массивы. Ранее полученные представления становятся недействительными.
+     */
+    public void clear () {
+        Arrays.fill (validity, 0, (size + 63) >>> 6, 0L);
+        size = 0;
+    }
+
+    /**
+     * Увеличить емкость не меньше чем до заданной.
+     */
+    public void ensureCapacity (int _capacity) {
+        if (_capacity <= xs.length) {
+            return;
+        }
+
+        int capacity = Math.max (_capacity, 2 * xs.length);
+        xs = Arrays.copyOf (xs, capacity);
+        ys = Arrays.copyOf (ys, capacity);
+        validity = Arrays.copyOf (validity, (capacity + 63) >>> 6);
+    }
+
+    /**
+     * Добавить точку.
+     *
+     * @param _x Значение x.
+     * @param _y Значение функции. Может быть равно NaN или бесконечности.
+     */
+    public void add (double _x, double _y) {
+        ensureCapacity (size + 1);
+        xs[size] = _x;
+        ys[size] = _y;
+        setValidity (size, _y);
+        ++size;
+    }
+
+    /**
+     * Добавить точки одним копированием массивов.
+     *
+     * @param _xs    Значения x.
+     * @param _ys    Значения функции. Могут быть равны NaN или бесконечности.
+     * @param _from  Индекс первой точки.
+     * @param _count Число точек.
+     */
+    public void addAll (double[] _xs, double[] _ys, int _from, int _count) {
+        ensureCapacity (size + _count);
+        System.arraycopy (_xs, _from, xs, size, _count);
+        System.arraycopy (_ys, _from, ys, size, _count);
+        for (int i = 0; i < _count; i++) {
+            setValidity (size + i, ys[size + i]);
+        }
+        size += _count;
+    }
+
+    /**
+     * Заменить содержимое значениями функции на сетке x[i] = xMin + i * ((xMax - xMin) / n), i = 0..n-1.
+     * При достаточной емкости память не выделяется.
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало области определения.
+     * @param _xMax     Конец области определения (не включается).
+     * @param _n        Число точек.
+     */
+    public void sample (CompiledExpression _function, double _xMin, double _xMax, int _n) {
+        clear ();
+        ensureCapacity (_n);
+
+        double delta = (_xMax - _xMin) / _n;
+        for (int i = 0; i < _n; i++) {
+            xs[i] = SamplingEngine.gridX (_xMin, delta, i);
+        }
+        _function.evalBatch (xs, 0, _n, ys, 0);
+        for (int i = 0; i < _n; i++) {
+            setValidity (i, ys[i]);
+        }
+        size = _n;
+    }
+
+    public int getSize () {
+        return size;
+    }
+
+    public int getCapacity () {
+        return xs.length;
+    }
+
+    public double getX (int _i) {
+        return xs[_i];
+    }
+
+    public double getY (int _i) {
+        return ys[_i];
+    }
+
+    /**
+     * @return Является ли значение в точке конечным числом.
+     */
+    public boolean isValid (int _i) {
+        return (validity[_i >>> 6] & (1L << _i)) != 0;
+    }
+
+    /**
+     * @return Значения x. Массив не копируется; используются первые {@link #getSize()} элементов.
+     * После роста буфера это другой массив.
+     */
+    public double[] getXs () {
+        return xs;
+    }
+
+    /**
+     * @return Значения функции. Массив не копируется; используются первые {@link #getSize()} элементов.
+     */
+    public double[] getYs () {
+        return ys;
+    }
+
+    /**
+     * @return Маска корректных точек поверх битов буфера, без копирования. Действительна до изменения буфера.
+     */
+    public ValidityMask getValidity () {
+        return new ValidityMask (validity, size);
+    }
+
+    /**
+     * @return Представление всего буфера.
+     */
+    public View view () {
+        return view (0, size);
+    }
+
+    /**
+     * @param _from Индекс первой точки.
+     * @param _to   Индекс после последней точки.
+     * @return Представление точек [from, to) без копирования.
+     */
+    public View view (int _from, int _to) {
+        if (_from < 0 || _to > size || _from > _to) {
+            throw new IndexOutOfBoundsException ("SampleBuffer: Участок [" + _from + ", " + _to + ") вне буфера размером " + size + ".");
+        }
+        return new View (this, _from, _to);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private void setValidity (int _i, double _y) {
+        // y - y == 0 только для конечных y: для NaN и бесконечностей получается NaN.
+        if (_y - _y == 0) {
+            validity[_i >>> 6] |= 1L << _i;
+        } else {
+            validity[_i >>> 6] &= ~(1L << _i);
+        }
+    }
+
+    /**
+     * Участок буфера без копирования. Индексы отсчитываются от начала участка.
+     * Для участков с x по возрастанию доступен поиск по x.
+     */
+    public static final class View {
+        private final SampleBuffer buffer;
+        private final int          from;
+        private final int          to;
+
+        View (SampleBuffer _buffer, int _from, int _to) {
+            this.buffer = _buffer;
+            this.from = _from;
+            this.to = _to;
+        }
+
+        public int getSize () {
+            return to - from;
+        }
+
+        public boolean isEmpty () {
+            return to == from;
+        }
+
+        public double getX (int _i) {
+            return buffer.xs[from + _i];
+        }
+
+        public double getY (int _i) {
+            return buffer.ys[from + _i];
+        }
+
+        public boolean isValid (int _i) {
+            return buffer.isValid (from + _i);
+        }
+
+        /**
+         * @return Индекс первой точки с x не меньше заданного или {@link #getSize()}, если таких нет.
+         * Точки должны идти по возрастанию x.
+         */
+        public int indexOfX (double _x) {
+            int lo = from;
+            int hi = to;
+            while (lo < hi) {
+                int middle = (lo + hi) >>> 1;
+                if (buffer.xs[middle] < _x) {
+                    lo = middle + 1;
+                } else {
+                    hi = middle;
+                }
+            }
+            return lo - from;
+        }
+
+        /**
+         * @return Наименьшее значение x среди корректных точек или NaN, если их нет.
+         */
+        public double getMinX () {
+            return extreme (buffer.xs, false);
+        }
+
+        /**
+         * @return Наибольшее значение x среди корректных точек или NaN, если их нет.
+         */
+        public double getMaxX () {
+            return extreme (buffer.xs, true);
+        }
+
+        /**
+         * @return Наименьшее значение функции среди корректных точек или NaN, если их нет.
+         */
+        public double getMinY () {
+            return extreme (buffer.ys, false);
+        }
+
+        /**
+         * @return Наибольшее значение функции среди корректных точек или NaN, если их нет.
+         */
+        public double getMaxY () {
+            return extreme (buffer.ys, true);
+        }
+
+        private double extreme (double[] _values, boolean _max) {
+            double result = Double.NaN;
+            for (int i = from; i < to; i++) {
+                if (!buffer.isValid (i)) {
+                    continue;
+                }
+                double value = _values[i];
+                if (Double.isNaN (result) || (_max ? value > result : value < result)) {
+                    result = value;
+                }
+            }
+            return result;
+        }
+    }
+}
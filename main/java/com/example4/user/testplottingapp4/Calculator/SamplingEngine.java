@@ -0,0 +1,217 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Параллельное вычисление функции на равномерной сетке.
+ * <p>
+ * Отрезок [xMin, xMax) делится на куски, которые вычисляются параллельно в {@link ForkJoinPool}
+ * или в переданном {@link Executor}. Все куски пишут в общие заранее выделенные массивы.
+ * Точки сетки считаются как xMin + i * delta, а не накоплением x += delta, поэтому результат не зависит
+ * от разбиения на куски и воспроизводим.
+ */
+public class SamplingEngine {
+    /**
+     * Минимальный размер куска. Меньшие куски не окупают накладные расходы на задачу.
+     */
+    public static final int MIN_CHUNK_SIZE = 4096;
+
+    /**
+     * На сколько кусков в расчете на один поток делить работу - для балансировки нагрузки.
+     */
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    private final ForkJoinPool pool;
+    private final Executor     executor;
+    private final int          parallelism;
+
+    /**
+     * Движок на общем пуле {@link ForkJoinPool#commonPool()}.
+     */
+    public SamplingEngine () {
+        this (ForkJoinPool.commonPool ());
+    }
+
+    /**
+     * @param _pool Пул, в котором выполнять вычисления.
+     */
+    public SamplingEngine (ForkJoinPool _pool) {
+        this.pool = _pool;
+        this.executor = null;
+        this.parallelism = _pool.getParallelism ();
+    }
+
+    /**
+     * @param _executor    Исполнитель, в котором выполнять вычисления.
+     * @param _parallelism Число потоков исполнителя.
+     */
+    public SamplingEngine (Executor _executor, int _parallelism) {
+        this.pool = null;
+        this.executor = _executor;
+        this.parallelism = Math.max (1, _parallelism);
+    }
+
+    /**
+     * Получить точку равномерной сетки.
+     *
+     * @param _xMin  Начало сетки.
+     * @param _delta Шаг сетки.
+     * @param _i     Номер точки.
+     * @return xMin + i * delta.
+     */
+    public static double gridX (double _xMin, double _delta, long _i) {
+        return _xMin + _i * _delta;
+    }
+
+    /**
+     * Вычислить функцию в n точках сетки x[i] = xMin + i * ((xMax - xMin) / n).
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало области определения.
+     * @param _xMax     Конец области определения (не включается).
+     * @param _n        Число точек.
+     * @param _xs       Массив для точек сетки, не короче _n.
+     * @param _ys       Массив для значений функции, не короче _n. Значения могут быть равны NaN или бесконечности.
+     */
+    public void sample (final CompiledExpression _function, final double _xMin, double _xMax, int _n,
+                        final double[] _xs, final double[] _ys) {
+        final double delta = (_xMax - _xMin) / _n;
+        run (new Chunk () {
+            @Override
+            public void sample (int _from, int _to) {
+                sampleChunk (_function, _xMin, delta, _from, _to, _xs, _ys);
+            }
+        }, _n);
+    }
+
+    /**
+     * Вычислить несколько функций в n точках общей сетки x[i] = xMin + i * ((xMax - xMin) / n).
+     * Сетка строится один раз, и все серии вычисляются за один проход программы по каждому куску.
+     *
+     * @param _functions Функции.
+     * @param _xMin      Начало области определения.
+     * @param _xMax      Конец области определения (не включается).
+     * @param _n         Число точек.
+     * @param _xs        Массив для точек сетки, не короче _n.
+     * @param _ys        Столбцы для значений - по одному на функцию, каждый не короче _n.
+     */
+    public void sample (final MultiExpression _functions, final double _xMin, double _xMax, int _n,
+                        final double[] _xs, final double[][] _ys) {
+        final double delta = (_xMax - _xMin) / _n;
+        run (new Chunk () {
+            @Override
+            public void sample (int _from, int _to) {
+                for (int i = _from; i < _to; i++) {
+                    _xs[i] = gridX (_xMin, delta, i);
+                }
+                _functions.evalBatch (_xs, _from, _to - _from, _ys, _from);
+            }
+        }, _n);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Кусок работы: вычисление точек сетки [from, to).
+     */
+    private interface Chunk {
+        void sample (int _from, int _to);
+    }
+
+    /**
+     * Разбить n точек на куски и выполнить их параллельно.
+     */
+    private void run (Chunk _chunk, int _n) {
+        int chunkSize = Math.max (MIN_CHUNK_SIZE, _n / (parallelism * CHUNKS_PER_THREAD) + 1);
+
+        if (_n <= chunkSize) {
+            _chunk.sample (0, _n);
+        } else if (null != pool) {
+            pool.invoke (new SampleTask (_chunk, 0, _n, chunkSize));
+        } else {
+            sampleWithExecutor (_chunk, _n, chunkSize);
+        }
+    }
+
+    /**
+     * Вычислить кусок сетки [from, to) в текущем потоке.
+     */
+    static void sampleChunk (CompiledExpression _function, double _xMin, double _delta, int _from, int _to,
+                             double[] _xs, double[] _ys) {
+        for (int i = _from; i < _to; i++) {
+            _xs[i] = gridX (_xMin, _delta, i);
+        }
+        _function.evalBatch (_xs, _from, _to - _from, _ys, _from);
+    }
+
+    /**
+     * Разбить сетку на куски и дождаться их вычисления в стороннем исполнителе.
+     */
+    private void sampleWithExecutor (final Chunk _chunk, int _n, int _chunkSize) {
+        int                              chunks = (_n + _chunkSize - 1) / _chunkSize;
+        final CountDownLatch             latch  = new CountDownLatch (chunks);
+        final AtomicReference<Throwable> error  = new AtomicReference<> ();
+
+        for (int from = 0; from < _n; from += _chunkSize) {
+            final int chunkFrom = from;
+            final int chunkTo   = Math.min (_n, from + _chunkSize);
+            executor.execute (new Runnable () {
+                @Override
+                public void run () {
+                    try {
+                        _chunk.sample (chunkFrom, chunkTo);
+                    } catch (Throwable e) {
+                        error.compareAndSet (null, e);
+                    } finally {
+                        latch.countDown ();
+                    }
+                }
+            });
+        }
+
+        try {
+            latch.await ();
+        } catch (InterruptedException e) {
+            Thread.currentThread ().interrupt ();
+            throw new IllegalStateException ("Sampling: Вычисление прервано.", e);
+        }
+
+        if (null != error.get ()) {
+            throw new IllegalStateException ("Sampling: Ошибка при вычислении куска сетки.", error.get ());
+        }
+    }
+
+    /**
+     * Задача ForkJoin: делит свой диапазон пополам, пока он больше размера куска.
+     */
+    private static class SampleTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int   from;
+        private final int   to;
+        private final int   chunkSize;
+
+        SampleTask (Chunk _chunk, int _from, int _to, int _chunkSize) {
+            this.chunk = _chunk;
+            this.from = _from;
+            this.to = _to;
+            this.chunkSize = _chunkSize;
+        }
+
+        @Override
+        protected void compute () {
+            if (to - from <= chunkSize) {
+                chunk.sample (from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll (new SampleTask (chunk, from, middle, chunkSize), new SampleTask (chunk, middle, to, chunkSize));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+
+/**
+ * Разбиение графика на непрерывные участки.
+ * <p>
+ * График рвется в точках, где значение - NaN или бесконечность (например, ln(x) при x &lt; 0), и между соседними
+ * точками, где обнаружена вертикальная асимптота со сменой знака (1/x при x = 0, tan(x) при x = pi/2).
+ * Асимптота определяется по скачку: значения соседних точек имеют разные знаки, а скачок направлен против
+ * хода графика с обеих сторон и больше соседних приращений. У гладкой функции при переходе через ноль
+ * все три приращения одного знака, поэтому такой скачок не считается разрывом. Около полюса значения по обе
+ * стороны растут по модулю, так что скачок |a| + |b| всегда больше приращения перед ним и после него.
+ * <p>
+ * Смены знака мало: так же выглядит быстрое колебание, вычисленное редкой сеткой (sin(1000x) с шагом 0.002).
+ * Поэтому оба значения у полюса должны быть по модулю больше {@link #POLE_RATIO} раз наибольшего из
+ * {@link #POLE_WINDOW} соседних значений со своей стороны. Для простого полюса ближайшая точка с каждой
+ * стороны удалена от него не больше чем на шаг h, а следующая - на расстояние d + h, поэтому отношение
+ * не меньше (d + h) / d &gt;= 2. Значения колебания ограничены, и такое отношение у них случайно и редко.
+ */
+public final class Segmenter {
+    /**
+     * Во сколько раз значение у полюса должно превосходить по модулю соседние значения со своей стороны.
+     */
+    static final double POLE_RATIO = 1.5;
+
+    /**
+     * Сколько соседних значений с каждой стороны сравнивается со значением у полюса.
+     */
+    static final int POLE_WINDOW = 4;
+
+    /**
+     * Участки графика: полуинтервалы индексов [start, end).
+     */
+    public static final class Segments {
+        private final int[] bounds;
+        private final int   count;
+
+        Segments (int[] _bounds, int _count) {
+            this.bounds = _bounds;
+            this.count = _count;
+        }
+
+        /**
+         * @return Число участков.
+         */
+        public int getCount () {
+            return count;
+        }
+
+        /**
+         * @return Индекс первой точки участка.
+         */
+        public int getStart (int _segment) {
+            return bounds[2 * _segment];
+        }
+
+        /**
+         * @return Индекс после последней точки участка.
+         */
+        public int getEnd (int _segment) {
+            return bounds[2 * _segment + 1];
+        }
+
+        /**
+         * @return Число точек участка.
+         */
+        public int getLength (int _segment) {
+            return getEnd (_segment) - getStart (_segment);
+        }
+    }
+
+    private Segmenter () {
+    }
+
+    /**
+     * Разбить точки на непрерывные участки.
+     *
+     * @param _ys   Значения функции.
+     * @param _mask Маска корректных точек для тех же индексов.
+     * @return Участки, в которых все точки корректны и нет асимптот.
+     */
+    public static Segments split (double[] _ys, ValidityMask _mask) {
+        int[] bounds = new int[16];
+        int   count  = 0;
+        int   size   = _mask.getSize ();
+
+        for (int start = _mask.nextValid (0); start < size; ) {
+            int end = _mask.nextInvalid (start);
+
+            // Внутри отрезка корректных точек режем по асимптотам.
+            int from = start;
+            for (int i = start; i + 1 < end; i++) {
+                if (isAsymptote (_ys, start, end, i)) {
+                    if (2 * count + 2 > bounds.length) {
+                        bounds = Arrays.copyOf (bounds, 2 * bounds.length);
+                    }
+                    bounds[2 * count] = from;
+                    bounds[2 * count++ + 1] = i + 1;
+                    from = i + 1;
+                }
+            }
+
+            if (2 * count + 2 > bounds.length) {
+                bounds = Arrays.copyOf (bounds, 2 * bounds.length);
+            }
+            bounds[2 * count] = from;
+            bounds[2 * count++ + 1] = end;
+
+            start = _mask.nextValid (end);
+        }
+
+        return new Segments (bounds, count);
+    }
+
+    /**
+     * Разбить точки на непрерывные участки.
+     *
+     * @param _ys    Значения функции.
+     * @param _count Число точек.
+     */
+    public static Segments split (double[] _ys, int _count) {
+        return split (_ys, ValidityMask.of (_ys, 0, _count));
+    }
+
+    /**
+     * Разбить точки на непрерывные участки и проредить их до общего бюджета в один буфер.
+     * <p>
+     * Участки не прореживаются по отдельности: все точки проходят через один {@link Decimator} в режиме
+     * {@link Decimator.Mode#MIN_MAX}, а на месте асимптоты между участками вставляется точка со значением NaN.
+     * Некорректные точки прореживатель сохраняет, поэтому разрывы остаются на месте, а число точек не зависит
+     * от числа участков. Участки, которые уже одной корзины прореживания, сливаются с соседними - их
+     * разрывы меньше пикселя.
+     *
+     * @param _xs        Значения x по возрастанию.
+     * @param _ys        Значения функции. Могут быть равны NaN или бесконечности.
+     * @param _count     Число точек.
+     * @param _maxPoints Сколько точек оставить не больше, включая точки разрывов.
+     * @param _out       Буфер результата. Очищается.
+     */
+    public static void decimate (double[] _xs, double[] _ys, int _count, int _maxPoints, SampleBuffer _out) {
+        Segments segments = split (_ys, _count);
+
+        // Асимптоты - участки, между которыми нет некорректной точки.
+        int poles = 0;
+        for (int k = 1; k < segments.getCount (); k++) {
+            if (segments.getStart (k) == segments.getEnd (k - 1)) {
+                ++poles;
+            }
+        }
+
+        // Из корзины MIN_MAX выходит до трех точек: минимум, максимум и первая некорректная.
+        Decimator decimator = new Decimator (Decimator.Mode.MIN_MAX, _count + poles, Math.max (3, 2 * _maxPoints / 3));
+        int       segment   = 1;
+        for (int i = 0; i < _count; i++) {
+            if (segment < segments.getCount () && i == segments.getStart (segment)) {
+                if (i == segments.getEnd (segment - 1)) {
+                    decimator.add (0.5 * (_xs[i - 1] + _xs[i]), Double.NaN);
+                }
+                ++segment;
+            }
+            decimator.add (_xs[i], _ys[i]);
+        }
+        decimator.finish ();
+
+        _out.clear ();
+        _out.addAll (decimator.getXs (), decimator.getYs (), 0, decimator.getCount ());
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Есть ли асимптота между точками i и i + 1 отрезка корректных точек [_start, _end).
+     */
+    static boolean isAsymptote (double[] _ys, int _start, int _end, int _i) {
+        double a = _ys[_i];
+        double b = _ys[_i + 1];
+        if (!(a < 0 && b > 0 || a > 0 && b < 0)) {
+            return false;
+        }
+
+        double  jump    = b - a;
+        boolean hasPrev = _i - 1 >= _start;
+        boolean hasNext = _i + 2 < _end;
+        if (!hasPrev && !hasNext) {
+            return false;
+        }
+
+        // Скачок против хода графика и больше соседних приращений.
+        if (hasPrev) {
+            double prev = a - _ys[_i - 1];
+            if (prev * jump > 0 || Math.abs (jump) <= Math.abs (prev)) {
+                return false;
+            }
+        }
+        if (hasNext) {
+            double next = _ys[_i + 2] - b;
+            if (next * jump > 0 || Math.abs (jump) <= Math.abs (next)) {
+                return false;
+            }
+        }
+
+        // Оба значения у полюса намного больше соседних со своей стороны.
+        return Math.abs (a) > POLE_RATIO * maxAbs (_ys, Math.max (_start, _i - POLE_WINDOW), _i)
+                && Math.abs (b) > POLE_RATIO * maxAbs (_ys, _i + 2, Math.min (_end, _i + 2 + POLE_WINDOW));
+    }
+
+    /**
+     * Наибольшее по модулю значение на [_from, _to); 0 для пустого отрезка.
+     */
+    private static double maxAbs (double[] _ys, int _from, int _to) {
+        double max = 0;
+        for (int i = _from; i < _to; i++) {
+            max = Math.max (max, Math.abs (_ys[i]));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Двоичный столбцовый формат для очень больших графиков (до 10^8 точек и больше).
+ * <p>
+ * Все числа little-endian. Заголовок:
+ * <pre>
+ *  0  int    магическое число {@link #MAGIC}
+ *  4  int    версия формата {@link #VERSION}
+ *  8  int    флаги, например {@link #FLAG_UNIFORM_GRID}
+ * 12  int    длина выражения в байтах UTF-8
+ * 16  long   число точек n
+ * 24  double xMin
+ * 32  double xMax
+ * 40  байты выражения, дополненные нулями до кратного 8
+ * </pre>
+ * Затем идут столбцы: n значений x, n значений y и битовая маска корректных точек из (n + 63) / 64 слов long
+ * в формате {@link ValidityMask}. Столбцы выровнены по 8 байт, поэтому их можно отображать в память
+ * и читать участками без копирования.
+ */
+public final class SeriesFile {
+    /**
+     * Байты "GRPS".
+     */
+    public static final int MAGIC = 0x53505247;
+
+    public static final int VERSION = 1;
+
+    /**
+     * Точки лежат на равномерной сетке x[i] = xMin + i * ((xMax - xMin) / n).
+     */
+    public static final int FLAG_UNIFORM_GRID = 1;
+
+    /**
+     * Сколько точек вычисляется за один кусок при потоковой записи.
+     */
+    public static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Размер окна отображения по умолчанию.
+     */
+    static final int WINDOW_BYTES = 1 << 26;
+
+    static final int     HEADER_SIZE = 40;
+    static final Charset UTF_8       = Charset.forName ("UTF-8");
+
+    private SeriesFile () {
+    }
+
+    /**
+     * Вычислить функцию на равномерной сетке x[i] = xMin + i * ((xMax - xMin) / n) и передать точки получателю
+     * кусками по {@link #CHUNK_SIZE}. Память не зависит от n. Получатель не закрывается.
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало области определения.
+     * @param _xMax     Конец области определения (не включается).
+     * @param _n        Число точек.
+     * @param _sink     Получатель точек.
+     * @throws IOException Ошибка записи.
+     */
+    public static void sample (CompiledExpression _function, double _xMin, double _xMax, long _n, SeriesSink _sink) throws IOException {
+        double   delta = (_xMax - _xMin) / _n;
+        double[] xs    = new double[(int) Math.min (CHUNK_SIZE, Math.max (1, _n))];
+        double[] ys    = new double[xs.length];
+
+        for (long done = 0; done < _n; done += xs.length) {
+            int count = (int) Math.min (xs.length, _n - done);
+            for (int j = 0; j < count; j++) {
+                xs[j] = SamplingEngine.gridX (_xMin, delta, done + j);
+            }
+            _function.evalBatch (xs, 0, count, ys, 0);
+            _sink.write (xs, ys, 0, count);
+        }
+    }
+
+    /**
+     * Смещение первого столбца: заголовок и выражение, выровненные по 8 байт.
+     */
+    static long dataOffset (int _expressionBytes) {
+        return (HEADER_SIZE + _expressionBytes + 7) & ~7L;
+    }
+
+    /**
+     * Число слов битовой маски для n точек.
+     */
+    static long validityWords (long _count) {
+        return (_count + 63) >>> 6;
+    }
+}
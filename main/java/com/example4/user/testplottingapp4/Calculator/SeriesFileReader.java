@@ -0,0 +1,182 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Чтение файла формата {@link SeriesFile}.
+ * <p>
+ * Столбцы отображаются в память только для чтения, поэтому доступ к любой точке не требует чтения файла
+ * целиком, а участки столбцов ({@link #sliceXs}, {@link #sliceYs}) возвращаются без копирования.
+ * Читатель не потокобезопасен.
+ */
+public class SeriesFileReader implements Closeable {
+    private final RandomAccessFile file;
+    private final String           expression;
+    private final int              flags;
+    private final long             count;
+    private final double           xMin;
+    private final double           xMax;
+    private final MappedColumn     xs;
+    private final MappedColumn     ys;
+    private final MappedColumn     validity;
+
+    /**
+     * @param _file Файл.
+     * @throws IOException Если файл поврежден, имеет другой формат или не читается.
+     */
+    public SeriesFileReader (File _file) throws IOException {
+        this (_file, SeriesFile.WINDOW_BYTES);
+    }
+
+    /**
+     * @param _windowBytes Размер окна отображения в байтах.
+     */
+    SeriesFileReader (File _file, int _windowBytes) throws IOException {
+        this.file = new RandomAccessFile (_file, "r");
+        try {
+            FileChannel channel = file.getChannel ();
+            ByteBuffer  header  = read (channel, 0, SeriesFile.HEADER_SIZE);
+            if (header.getInt () != SeriesFile.MAGIC) {
+                throw new IOException ("SeriesFile: Файл \"" + _file + "\" не является файлом графика.");
+            }
+            int version = header.getInt ();
+            if (version != SeriesFile.VERSION) {
+                throw new IOException ("SeriesFile: Неподдерживаемая версия формата " + version + ".");
+            }
+            this.flags = header.getInt ();
+            int expressionBytes = header.getInt ();
+            this.count = header.getLong ();
+            this.xMin = header.getDouble ();
+            this.xMax = header.getDouble ();
+
+            long data = SeriesFile.dataOffset (expressionBytes);
+            if (expressionBytes < 0 || count < 0
+                    || channel.size () < data + 16 * count + 8 * SeriesFile.validityWords (count)) {
+                throw new IOException ("SeriesFile: Файл \"" + _file + "\" поврежден или обрезан.");
+            }
+            this.expression = new String (read (channel, SeriesFile.HEADER_SIZE, expressionBytes).array (), SeriesFile.UTF_8);
+
+            FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+            this.xs = new MappedColumn (channel, mode, data, count, _windowBytes);
+            this.ys = new MappedColumn (channel, mode, data + 8 * count, count, _windowBytes);
+            this.validity = new MappedColumn (channel, mode, data + 16 * count, SeriesFile.validityWords (count), _windowBytes);
+        } catch (IOException | RuntimeException e) {
+            file.close ();
+            throw e;
+        }
+    }
+
+    public String getExpression () {
+        return expression;
+    }
+
+    public int getFlags () {
+        return flags;
+    }
+
+    /**
+     * @return Лежат ли точки на равномерной сетке.
+     */
+    public boolean isUniformGrid () {
+        return (flags & SeriesFile.FLAG_UNIFORM_GRID) != 0;
+    }
+
+    public long getCount () {
+        return count;
+    }
+
+    public double getXMin () {
+        return xMin;
+    }
+
+    public double getXMax () {
+        return xMax;
+    }
+
+    public double getX (long _i) throws IOException {
+        return xs.getDouble (_i);
+    }
+
+    public double getY (long _i) throws IOException {
+        return ys.getDouble (_i);
+    }
+
+    /**
+     * @return Является ли значение в точке конечным числом.
+     */
+    public boolean isValid (long _i) throws IOException {
+        if (_i < 0 || _i >= count) {
+            throw new IndexOutOfBoundsException ("SeriesFile: Индекс " + _i + " вне файла из " + count + " точек.");
+        }
+        return (validity.getLong (_i >>> 6) & (1L << _i)) != 0;
+    }
+
+    /**
+     * Скопировать точки в массивы.
+     *
+     * @param _from   Номер первой точки.
+     * @param _xs     Массив для значений x.
+     * @param _ys     Массив для значений функции.
+     * @param _offset Индекс в массивах, куда записать первую точку.
+     * @param _length Число точек.
+     */
+    public void read (long _from, double[] _xs, double[] _ys, int _offset, int _length) throws IOException {
+        xs.get (_from, _xs, _offset, _length);
+        ys.get (_from, _ys, _offset, _length);
+    }
+
+    /**
+     * @return Значения x точек [from, from + length) без копирования.
+     */
+    public DoubleBuffer sliceXs (long _from, int _length) throws IOException {
+        return xs.slice (_from, _length);
+    }
+
+    /**
+     * @return Значения функции в точках [from, from + length) без копирования.
+     */
+    public DoubleBuffer sliceYs (long _from, int _length) throws IOException {
+        return ys.slice (_from, _length);
+    }
+
+    /**
+     * Передать все точки получателю кусками по {@link SeriesFile#CHUNK_SIZE} - например, чтобы выгрузить
+     * файл в CSV через {@link CsvSeriesWriter}. Получатель не закрывается.
+     *
+     * @param _sink Получатель точек.
+     */
+    public void copyTo (SeriesSink _sink) throws IOException {
+        double[] chunkXs = new double[(int) Math.min (SeriesFile.CHUNK_SIZE, Math.max (1, count))];
+        double[] chunkYs = new double[chunkXs.length];
+        for (long done = 0; done < count; done += chunkXs.length) {
+            int length = (int) Math.min (chunkXs.length, count - done);
+            read (done, chunkXs, chunkYs, 0, length);
+            _sink.write (chunkXs, chunkYs, 0, length);
+        }
+    }
+
+    @Override
+    public void close () throws IOException {
+        file.close ();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static ByteBuffer read (FileChannel _channel, long _position, int _length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate (_length).order (ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining ()) {
+            if (_channel.read (buffer, _position + buffer.position ()) < 0) {
+                throw new IOException ("SeriesFile: Неожиданный конец файла.");
+            }
+        }
+        buffer.flip ();
+        return buffer;
+    }
+}
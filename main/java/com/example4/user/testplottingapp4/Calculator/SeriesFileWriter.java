@@ -0,0 +1,133 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Потоковая запись графика в файл формата {@link SeriesFile}.
+ * <p>
+ * Размер файла задается сразу по числу точек, а столбцы отображаются в память окнами: точки копируются
+ * кусками прямо в отображенные участки, без промежуточного буфера на весь график. Точки записываются
+ * по порядку, их число должно совпасть с заявленным.
+ */
+public class SeriesFileWriter implements SeriesSink {
+    private final RandomAccessFile file;
+    private final FileChannel      channel;
+    private final long             count;
+    private final MappedColumn     xs;
+    private final MappedColumn     ys;
+    private final MappedColumn     validity;
+
+    /**
+     * Сколько точек уже записано.
+     */
+    private long written;
+
+    /**
+     * Незаконченное слово маски корректности.
+     */
+    private long word;
+
+    /**
+     * @param _file       Файл. Перезаписывается.
+     * @param _expression Выражение, по которому построен график.
+     * @param _xMin       Начало области определения.
+     * @param _xMax       Конец области определения.
+     * @param _count      Число точек.
+     * @param _flags      Флаги, например {@link SeriesFile#FLAG_UNIFORM_GRID}.
+     * @throws IOException Ошибка создания файла.
+     */
+    public SeriesFileWriter (File _file, String _expression, double _xMin, double _xMax, long _count, int _flags) throws IOException {
+        this (_file, _expression, _xMin, _xMax, _count, _flags, SeriesFile.WINDOW_BYTES);
+    }
+
+    /**
+     * @param _windowBytes Размер окна отображения в байтах.
+     */
+    SeriesFileWriter (File _file, String _expression, double _xMin, double _xMax, long _count, int _flags,
+                      int _windowBytes) throws IOException {
+        if (_count < 0) {
+            throw new IllegalArgumentException ("SeriesFile: Отрицательное число точек: " + _count + ".");
+        }
+
+        byte[] expression = _expression.getBytes (SeriesFile.UTF_8);
+        long   data       = SeriesFile.dataOffset (expression.length);
+
+        this.file = new RandomAccessFile (_file, "rw");
+        this.channel = file.getChannel ();
+        this.count = _count;
+        try {
+            file.setLength (0);
+            file.setLength (data + 16 * _count + 8 * SeriesFile.validityWords (_count));
+
+            ByteBuffer header = ByteBuffer.allocate ((int) data).order (ByteOrder.LITTLE_ENDIAN);
+            header.putInt (SeriesFile.MAGIC).putInt (SeriesFile.VERSION).putInt (_flags).putInt (expression.length)
+                    .putLong (_count).putDouble (_xMin).putDouble (_xMax).put (expression);
+            header.rewind ();
+            while (header.hasRemaining ()) {
+                channel.write (header, header.position ());
+            }
+        } catch (IOException e) {
+            file.close ();
+            throw e;
+        }
+
+        FileChannel.MapMode mode = FileChannel.MapMode.READ_WRITE;
+        this.xs = new MappedColumn (channel, mode, data, _count, _windowBytes);
+        this.ys = new MappedColumn (channel, mode, data + 8 * _count, _count, _windowBytes);
+        this.validity = new MappedColumn (channel, mode, data + 16 * _count, SeriesFile.validityWords (_count), _windowBytes);
+    }
+
+    @Override
+    public void write (double[] _xs, double[] _ys, int _offset, int _length) throws IOException {
+        if (written + _length > count) {
+            throw new IOException ("SeriesFile: Точек больше заявленного числа " + count + ".");
+        }
+
+        xs.put (written, _xs, _offset, _length);
+        ys.put (written, _ys, _offset, _length);
+        for (int i = _offset, end = _offset + _length; i < end; i++, written++) {
+            // y - y == 0 только для конечных y: для NaN и бесконечностей получается NaN.
+            double y = _ys[i];
+            word |= (y - y == 0 ? 1L : 0L) << written;
+            if ((written & 63) == 63) {
+                validity.putLong (written >>> 6, word);
+                word = 0;
+            }
+        }
+    }
+
+    /**
+     * @return Сколько точек уже записано.
+     */
+    public long getWritten () {
+        return written;
+    }
+
+    /**
+     * Дописать маску, сбросить данные на диск и закрыть файл.
+     *
+     * @throws IOException Если записано меньше точек, чем заявлено, или при ошибке записи.
+     */
+    @Override
+    public void close () throws IOException {
+        try {
+            if ((written & 63) != 0) {
+                validity.putLong (written >>> 6, word);
+            }
+            xs.force ();
+            ys.force ();
+            validity.force ();
+        } finally {
+            file.close ();
+        }
+
+        if (written != count) {
+            throw new IOException ("SeriesFile: Записано " + written + " точек из " + count + ".");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Получатель точек графика, которые поступают кусками по возрастанию номера -
+ * например, двоичный файл {@link SeriesFileWriter} или текст {@link CsvSeriesWriter}.
+ */
+public interface SeriesSink extends Closeable {
+    /**
+     * Дописать очередные точки.
+     *
+     * @param _xs     Значения x.
+     * @param _ys     Значения функции. Могут быть равны NaN или бесконечности.
+     * @param _offset Индекс первой точки в массивах.
+     * @param _length Число точек.
+     * @throws IOException Ошибка записи.
+     */
+    void write (double[] _xs, double[] _ys, int _offset, int _length) throws IOException;
+}
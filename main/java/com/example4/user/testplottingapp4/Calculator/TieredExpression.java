@@ -0,0 +1,153 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Выражение с многоуровневым исполнением.
+ * <p>
+ * Сначала выражение вычисляется интерпретатором {@link Interpreter}: это не требует подготовки и выгодно для
+ * выражений, которые вычисляются несколько раз. После заданного числа вычислений выражение переводится
+ * на следующий уровень - сгенерированный класс JVM ({@link BytecodeCompiler}), а если загрузка классов
+ * недоступна (Android), то дерево MethodHandle ({@link MethodHandleCompiler}). Если недоступно и то и другое
+ * или выражение не помещается в их ограничения, выражение остается в интерпретаторе.
+ * <p>
+ * Все уровни дают побитово одинаковый результат. Счетчик вычислений не синхронизирован: при вычислении
+ * из нескольких потоков перевод может случиться чуть позже порога, но выполняется ровно один раз.
+ */
+public final class TieredExpression implements DoubleUnaryOperator {
+    /**
+     * Число вычислений, после которого выражение компилируется, по умолчанию.
+     */
+    public static final int DEFAULT_THRESHOLD = 10000;
+
+    /**
+     * Уровень исполнения.
+     */
+    public enum Tier {
+        INTERPRETER,
+        METHOD_HANDLE,
+        BYTECODE
+    }
+
+    private final CompiledExpression expression;
+    private final int                threshold;
+
+    /**
+     * Скомпилированная реализация. null - выражение пока интерпретируется.
+     */
+    private volatile DoubleUnaryOperator compiled;
+    private volatile Tier                tier = Tier.INTERPRETER;
+
+    /**
+     * Число вычислений в интерпретаторе - приблизительное при вычислении из нескольких потоков.
+     */
+    private long             evaluations;
+    private volatile boolean promoted;
+
+    /**
+     * @param _expression Скомпилированное выражение.
+     */
+    public TieredExpression (CompiledExpression _expression) {
+        this (_expression, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param _expression Скомпилированное выражение.
+     * @param _threshold  Число вычислений, после которого выражение компилируется. 0 - компилировать сразу.
+     */
+    public TieredExpression (CompiledExpression _expression, int _threshold) {
+        this.expression = _expression;
+        this.threshold = Math.max (0, _threshold);
+        if (this.threshold == 0) {
+            promote ();
+        }
+    }
+
+    /**
+     * Вычислить выражение.
+     *
+     * @param _x Значение переменной "x".
+     * @return Результат. Может быть равен NaN или бесконечности.
+     */
+    @Override
+    public double applyAsDouble (double _x) {
+        DoubleUnaryOperator current = compiled;
+        if (null != current) {
+            return current.applyAsDouble (_x);
+        }
+
+        if (!promoted && ++evaluations >= threshold) {
+            promote ();
+        }
+        return expression.evaluate (_x);
+    }
+
+    /**
+     * Вычислить выражение для части массива значений x.
+     *
+     * @see CompiledExpression#evalBatch(double[], int, int, double[], int)
+     */
+    public void evalBatch (double[] _xs, int _offset, int _length, double[] _out, int _outOffset) {
+        DoubleUnaryOperator current = compiled;
+        if (null == current) {
+            evaluations += _length;
+            if (!promoted && evaluations >= threshold) {
+                promote ();
+            }
+            expression.evalBatch (_xs, _offset, _length, _out, _outOffset);
+            return;
+        }
+
+        for (int i = 0; i < _length; i++) {
+            _out[_outOffset + i] = current.applyAsDouble (_xs[_offset + i]);
+        }
+    }
+
+    /**
+     * @return Текущий уровень исполнения.
+     */
+    public Tier getTier () {
+        return tier;
+    }
+
+    public CompiledExpression getExpression () {
+        return expression;
+    }
+
+    public int getThreshold () {
+        return threshold;
+    }
+
+    @Override
+    public String toString () {
+        return expression.toString ();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Перевести выражение на следующий уровень. Выполняется один раз.
+     */
+    private synchronized void promote () {
+        if (promoted) {
+            return;
+        }
+        promoted = true;
+
+        // Компиляторы поддерживают только переменную "x".
+        if (expression.getVariableCount () > 1) {
+            return;
+        }
+
+        DoubleUnaryOperator next     = BytecodeCompiler.compile (expression);
+        Tier                nextTier = Tier.BYTECODE;
+        if (null == next) {
+            next = MethodHandleCompiler.compile (expression);
+            nextTier = Tier.METHOD_HANDLE;
+        }
+        if (null != next) {
+            tier = nextTier;
+            compiled = next;
+        }
+    }
+}
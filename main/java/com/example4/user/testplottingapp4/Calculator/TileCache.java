@@ -0,0 +1,288 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш вычисленных значений функции, разбитых на плитки.
+ * <p>
+ * Ось x делится на плитки по {@link #SAMPLES_PER_TILE} точек. На уровне детализации lod расстояние между точками
+ * равно 2^lod, точки плитки t - это x = (t * SAMPLES_PER_TILE + j) * 2^lod. Такие x представимы точно и не зависят
+ * от видимой области, поэтому плитка, вычисленная для одной области, подходит для любой другой на том же уровне.
+ * <p>
+ * Для запрошенной области выбирается уровень, на котором в область попадает не меньше заданного числа точек,
+ * и вычисляются только недостающие плитки - при сдвиге графика на 10% ширины это примерно 10% работы.
+ * Кэш ограничен объемом памяти, при превышении вытесняются плитки, к которым дольше всего не обращались.
+ */
+public class TileCache {
+    /**
+     * Число точек в плитке.
+     */
+    public static final int SAMPLES_PER_TILE = 256;
+
+    /**
+     * Объем памяти под значения по умолчанию, в байтах.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 8L * 1024 * 1024;
+
+    /**
+     * Объем памяти одной плитки: значения y и заголовок массива.
+     */
+    private static final long TILE_BYTES = 8L * SAMPLES_PER_TILE + 16;
+
+    /**
+     * Результат запроса: точки области по возрастанию x.
+     */
+    public static class Samples {
+        private final double[] xs;
+        private final double[] ys;
+        private final int      count;
+        private final int      level;
+        private final int      tilesComputed;
+        private final int      tilesReused;
+
+        Samples (double[] _xs, double[] _ys, int _count, int _level, int _tilesComputed, int _tilesReused) {
+            this.xs = _xs;
+            this.ys = _ys;
+            this.count = _count;
+            this.level = _level;
+            this.tilesComputed = _tilesComputed;
+            this.tilesReused = _tilesReused;
+        }
+
+        /**
+         * @return Значения x. Используются первые {@link #getCount()} элементов.
+         */
+        public double[] getXs () {
+            return xs;
+        }
+
+        /**
+         * @return Значения функции. Могут быть равны NaN или бесконечности.
+         */
+        public double[] getYs () {
+            return ys;
+        }
+
+        public int getCount () {
+            return count;
+        }
+
+        /**
+         * @return Уровень детализации: расстояние между точками равно 2^level.
+         */
+        public int getLevel () {
+            return level;
+        }
+
+        /**
+         * @return Сколько плиток пришлось вычислить.
+         */
+        public int getTilesComputed () {
+            return tilesComputed;
+        }
+
+        /**
+         * @return Сколько плиток взято из кэша.
+         */
+        public int getTilesReused () {
+            return tilesReused;
+        }
+    }
+
+    /**
+     * Плитки в порядке обращения - от давних к недавним.
+     */
+    private final LinkedHashMap<Key, double[]> tiles = new LinkedHashMap<> (64, 0.75f, true);
+
+    private final long maxTiles;
+
+    // Счетчики.
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long evaluations;
+
+    public TileCache () {
+        this (DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param _memoryBudget Объем памяти под значения, в байтах.
+     */
+    public TileCache (long _memoryBudget) {
+        this.maxTiles = Math.max (1, _memoryBudget / TILE_BYTES);
+    }
+
+    /**
+     * Уровень детализации, на котором в отрезок попадает не меньше заданного числа точек.
+     *
+     * @param _xMin     Начало отрезка.
+     * @param _xMax     Конец отрезка.
+     * @param _minCount Минимальное число точек.
+     * @return Уровень детализации lod: расстояние между точками 2^lod не больше (xMax - xMin) / minCount.
+     */
+    public static int levelFor (double _xMin, double _xMax, int _minCount) {
+        double spacing = (_xMax - _xMin) / Math.max (1, _minCount);
+        if (!(spacing > 0) || Double.isInfinite (spacing)) {
+            throw new IllegalArgumentException ("TileCache: Некорректная область: [" + _xMin + ", " + _xMax + "].");
+        }
+
+        int level = Math.getExponent (spacing);
+        return Math.scalb (1.0, level) > spacing ? level - 1 : level;
+    }
+
+    /**
+     * Получить значения функции на отрезке [xMin, xMax], вычислив недостающие плитки.
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало отрезка.
+     * @param _xMax     Конец отрезка.
+     * @param _minCount Сколько точек минимум должно попасть в отрезок. Точек будет не больше чем вдвое больше.
+     * @return Точки отрезка.
+     */
+    public synchronized Samples sample (CompiledExpression _function, double _xMin, double _xMax, int _minCount) {
+        int    level     = levelFor (_xMin, _xMax, _minCount);
+        double tileWidth = Math.scalb ((double) SAMPLES_PER_TILE, level);
+        long   first     = (long) Math.floor (_xMin / tileWidth);
+        long   last      = (long) Math.floor (_xMax / tileWidth);
+        int    tileCount = (int) (last - first + 1);
+
+        // Сначала собираем плитки из кэша, недостающие вычисляем одним пакетом.
+        double[][]      found   = new double[tileCount][];
+        ArrayList<Long> missing = new ArrayList<> ();
+        for (int i = 0; i < tileCount; i++) {
+            found[i] = tiles.get (new Key (_function.getSource (), level, first + i));
+            if (null == found[i]) {
+                missing.add (first + i);
+            }
+        }
+        hits += tileCount - missing.size ();
+        misses += missing.size ();
+
+        if (!missing.isEmpty ()) {
+            double[] xs = new double[missing.size () * SAMPLES_PER_TILE];
+            double[] ys = new double[xs.length];
+            for (int m = 0; m < missing.size (); m++) {
+                for (int j = 0; j < SAMPLES_PER_TILE; j++) {
+                    xs[m * SAMPLES_PER_TILE + j] = sampleX (missing.get (m), j, level);
+                }
+            }
+            _function.evalBatch (xs, ys);
+            evaluations += xs.length;
+
+            for (int m = 0; m < missing.size (); m++) {
+                double[] tile = new double[SAMPLES_PER_TILE];
+                System.arraycopy (ys, m * SAMPLES_PER_TILE, tile, 0, SAMPLES_PER_TILE);
+                found[(int) (missing.get (m) - first)] = tile;
+                tiles.put (new Key (_function.getSource (), level, missing.get (m)), tile);
+            }
+            evict ();
+        }
+
+        // Вырезаем точки, попавшие в отрезок.
+        double[] xs    = new double[tileCount * SAMPLES_PER_TILE];
+        double[] ys    = new double[xs.length];
+        int      count = 0;
+        for (int i = 0; i < tileCount; i++) {
+            for (int j = 0; j < SAMPLES_PER_TILE; j++) {
+                double x = sampleX (first + i, j, level);
+                if (x >= _xMin && x <= _xMax) {
+                    xs[count] = x;
+                    ys[count++] = found[i][j];
+                }
+            }
+        }
+
+        return new Samples (xs, ys, count, level, missing.size (), tileCount - missing.size ());
+    }
+
+    /**
+     * Удалить все плитки. Счетчики не сбрасываются.
+     */
+    public synchronized void clear () {
+        tiles.clear ();
+    }
+
+    public synchronized long getHitCount () {
+        return hits;
+    }
+
+    public synchronized long getMissCount () {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount () {
+        return evictions;
+    }
+
+    /**
+     * @return Сколько раз вычислялась функция.
+     */
+    public synchronized long getEvaluationCount () {
+        return evaluations;
+    }
+
+    /**
+     * @return Число плиток в кэше.
+     */
+    public synchronized int getSize () {
+        return tiles.size ();
+    }
+
+    /**
+     * @return Примерный объем памяти, занятый плитками, в байтах.
+     */
+    public synchronized long getMemoryUsage () {
+        return tiles.size () * TILE_BYTES;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Точка j плитки _tile на уровне _level. Номер точки меньше 2^53, поэтому x вычисляется точно.
+     */
+    static double sampleX (long _tile, int _j, int _level) {
+        return Math.scalb ((double) (_tile * SAMPLES_PER_TILE + _j), _level);
+    }
+
+    private void evict () {
+        Iterator<Map.Entry<Key, double[]>> iterator = tiles.entrySet ().iterator ();
+        while (tiles.size () > maxTiles && iterator.hasNext ()) {
+            iterator.next ();
+            iterator.remove ();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Ключ плитки: выражение, уровень детализации и номер плитки.
+     */
+    private static class Key {
+        private final String expression;
+        private final int    level;
+        private final long   index;
+
+        Key (String _expression, int _level, long _index) {
+            this.expression = _expression;
+            this.level = _level;
+            this.index = _index;
+        }
+
+        @Override
+        public boolean equals (Object _o) {
+            if (!(_o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) _o;
+            return other.level == level && other.index == index && other.expression.equals (expression);
+        }
+
+        @Override
+        public int hashCode () {
+            return (expression.hashCode () * 31 + level) * 31 + (int) (index ^ (index >>> 32));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+/**
+ * Лексема выражения, полученная из {@link Lexer}.
+ * Числа хранятся уже разобранными в double, операторы - в виде {@link Operator}.
+ */
+public final class Token {
+    /**
+     * Тип лексемы.
+     */
+    public enum Type {
+        NUMBER,
+        VARIABLE,
+        OPERATOR,
+        LEFT_BRACKET,
+        RIGHT_BRACKET
+    }
+
+    public static final Token LEFT_BRACKET  = new Token (Type.LEFT_BRACKET, "(", 0, null);
+    public static final Token RIGHT_BRACKET = new Token (Type.RIGHT_BRACKET, ")", 0, null);
+
+    private final Type     type;
+    private final String   text;
+    private final double   value;
+    private final Operator operator;
+
+    private Token (Type _type, String _text, double _value, Operator _operator) {
+        this.type = _type;
+        this.text = _text;
+        this.value = _value;
+        this.operator = _operator;
+    }
+
+    /**
+     * @param _text  Число в том виде, в котором оно записано в выражении.
+     * @param _value Значение числа.
+     */
+    public static Token number (String _text, double _value) {
+        return new Token (Type.NUMBER, _text, _value, null);
+    }
+
+    /**
+     * @param _text Имя переменной в том виде, в котором оно записано в выражении.
+     */
+    public static Token variable (String _text) {
+        return new Token (Type.VARIABLE, _text, 0, null);
+    }
+
+    public static Token operator (Operator _operator) {
+        return new Token (Type.OPERATOR, _operator.getSymbol (), 0, _operator);
+    }
+
+    public Type getType () {
+        return type;
+    }
+
+    /**
+     * @return Текст лексемы в системном виде.
+     */
+    public String getText () {
+        return text;
+    }
+
+    /**
+     * @return Значение числа. Только для {@link Type#NUMBER}.
+     */
+    public double getValue () {
+        return value;
+    }
+
+    /**
+     * @return Оператор. Только для {@link Type#OPERATOR}, для остальных - null.
+     */
+    public Operator getOperator () {
+        return operator;
+    }
+
+    @Override
+    public String toString () {
+        return text;
+    }
+}
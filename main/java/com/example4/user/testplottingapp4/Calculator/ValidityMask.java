@@ -0,0 +1,148 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import java.util.Arrays;
+
+/**
+ * Битовая маска корректных точек: бит i установлен, если значение в точке i - конечное число.
+ * <p>
+ * Занимает один бит на точку, поэтому для миллиона точек это 125 КБ вместо массива boolean в 1 МБ.
+ * Маска заполняется одним проходом по значениям, без исключений.
+ */
+public final class ValidityMask {
+    private final long[] words;
+    private final int    size;
+
+    /**
+     * @param _size Число точек. Изначально все точки некорректны.
+     */
+    public ValidityMask (int _size) {
+        this.words = new long[(_size + 63) >>> 6];
+        this.size = _size;
+    }
+
+    /**
+     * Маска поверх готовых слов без копирования - например, битов {@link SampleBuffer}.
+     * Биты за пределами _size должны быть сброшены.
+     *
+     * @param _words Слова маски, не меньше (_size + 63) / 64.
+     * @param _size  Число точек.
+     */
+    ValidityMask (long[] _words, int _size) {
+        this.words = _words;
+        this.size = _size;
+    }
+
+    /**
+     * Построить маску по значениям.
+     *
+     * @param _ys    Значения функции.
+     * @param _from  Индекс первой точки.
+     * @param _count Число точек.
+     * @return Маска, где точка i соответствует значению _ys[_from + i].
+     */
+    public static ValidityMask of (double[] _ys, int _from, int _count) {
+        ValidityMask mask = new ValidityMask (_count);
+        for (int w = 0; w < mask.words.length; w++) {
+            long word = 0;
+            int  base = _from + (w << 6);
+            int  bits = Math.min (64, _count - (w << 6));
+            for (int b = 0; b < bits; b++) {
+                // y - y == 0 только для конечных y: для NaN и бесконечностей получается NaN.
+                double y = _ys[base + b];
+                word |= (y - y == 0 ? 1L : 0L) << b;
+            }
+            mask.words[w] = word;
+        }
+        return mask;
+    }
+
+    public int getSize () {
+        return size;
+    }
+
+    public boolean isValid (int _i) {
+        return (words[_i >>> 6] & (1L << _i)) != 0;
+    }
+
+    public void set (int _i, boolean _valid) {
+        if (_valid) {
+            words[_i >>> 6] |= 1L << _i;
+        } else {
+            words[_i >>> 6] &= ~(1L << _i);
+        }
+    }
+
+    /**
+     * @return Число корректных точек.
+     */
+    public int countValid () {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount (word);
+        }
+        return count;
+    }
+
+    /**
+     * @return Все ли точки корректны.
+     */
+    public boolean isAllValid () {
+        return countValid () == size;
+    }
+
+    /**
+     * @return Индекс первой корректной точки не раньше _from или size, если таких нет.
+     */
+    public int nextValid (int _from) {
+        return next (_from, 0);
+    }
+
+    /**
+     * @return Индекс первой некорректной точки не раньше _from или size, если таких нет.
+     */
+    public int nextInvalid (int _from) {
+        return next (_from, -1L);
+    }
+
+    /**
+     * @return Слова маски. Массив не копируется.
+     */
+    long[] getWords () {
+        return words;
+    }
+
+    @Override
+    public boolean equals (Object _o) {
+        return _o instanceof ValidityMask && ((ValidityMask) _o).size == size && Arrays.equals (((ValidityMask) _o).words, words);
+    }
+
+    @Override
+    public int hashCode () {
+        return 31 * size + Arrays.hashCode (words);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Найти первый бит не раньше _from, отличный от фона.
+     *
+     * @param _background 0 - ищем установленный бит, -1 - сброшенный.
+     */
+    private int next (int _from, long _background) {
+        if (_from >= size) {
+            return size;
+        }
+
+        int  w    = _from >>> 6;
+        long word = (words[w] ^ _background) & (-1L << _from);
+        while (true) {
+            if (word != 0) {
+                return Math.min (size, (w << 6) + Long.numberOfTrailingZeros (word));
+            }
+            if (++w == words.length) {
+                return size;
+            }
+            word = words[w] ^ _background;
+        }
+    }
+}
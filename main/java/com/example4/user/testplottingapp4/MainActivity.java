@@ -9,25 +9,71 @@ import android.view.inputmethod.InputMethodManager;
 import android.widget.Button;
 import android.widget.EditText;
 
+import com.example4.user.testplottingapp4.Calculator.AdaptiveSampler;
 import com.example4.user.testplottingapp4.Calculator.Calculator;
+import com.example4.user.testplottingapp4.Calculator.CancellationToken;
+import com.example4.user.testplottingapp4.Calculator.ChebyshevProxy;
+import com.example4.user.testplottingapp4.Calculator.CompiledExpression;
+import com.example4.user.testplottingapp4.Calculator.Interval;
+import com.example4.user.testplottingapp4.Calculator.IntervalAnalyzer;
+import com.example4.user.testplottingapp4.Calculator.ProgressiveSampler;
+import com.example4.user.testplottingapp4.Calculator.SamplingEngine;
+import com.example4.user.testplottingapp4.Calculator.TileCache;
 import com.jjoe64.graphview.GraphView;
 import com.jjoe64.graphview.Viewport;
-import com.jjoe64.graphview.series.DataPoint;
 import com.jjoe64.graphview.series.DataPointInterface;
-import com.jjoe64.graphview.series.LineGraphSeries;
 import com.jjoe64.graphview.series.OnDataPointTapListener;
 import com.jjoe64.graphview.series.Series;
 
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class MainActivity extends AppCompatActivity {
 
     public static final String FUNCTION_X_SYMBOL   = "x";
     public static       int    POINTS_RADIUS       = 10;
     public static final int    DOTS_COUNT_MIN      = 10;
-    public static final int    DOTS_COUNT_MAX      = 1000;
+    public static final int    DOTS_COUNT_MAX      = 1000000;
+    public static final int    GRAPH_POINTS_MAX    = 2000;
     public static final double DEFINITION_AREA_MIN = -100000;
     public static final double DEFINITION_AREA_MAX = 100000;
+    public static final long   SAMPLING_TIMEOUT_MS = 10000;
+
+    /**
+     * Какая доля области определения должна быть покрыта чебышёвским приближением, чтобы пересчитывать
+     * видимую область по нему, а не по кэшу плиток.
+     */
+    public static final double PROXY_MIN_COVERAGE = 0.9;
+
+    /**
+     * Во сколько раз больше точек, чем рисуется, вычисляется по приближению - прореживание сохранит пики.
+     */
+    public static final int PROXY_OVERSAMPLING = 4;
+
+    /**
+     * Фоновое постепенное вычисление графика. Новый график отменяет построение предыдущего.
+     */
+    protected final ProgressiveSampler progressiveSampler = new ProgressiveSampler ();
+
+    /**
+     * Кэш плиток для пересчета видимой области при сдвиге и масштабировании.
+     */
+    protected final TileCache tileCache = new TileCache ();
+
+    /**
+     * Чебышёвское приближение текущего графика или null, пока оно строится или если не годится.
+     * Читается и заменяется в UI-потоке.
+     */
+    protected ChebyshevProxy proxy;
+
+    /**
+     * Признак отмены фонового построения приближения для текущего графика.
+     */
+    protected CancellationToken proxyToken;
+
+    // Точки видимой области, вычисленные по приближению. Переиспользуются между сдвигами.
+    protected final double[] proxyXs = new double[GRAPH_POINTS_MAX * PROXY_OVERSAMPLING];
+    protected final double[] proxyYs = new double[GRAPH_POINTS_MAX * PROXY_OVERSAMPLING];
 
     @Override
     protected void onCreate (Bundle savedInstanceState) {
@@ -74,62 +120,187 @@ public class MainActivity extends AppCompatActivity {
 
         //-------------------------------
         // Получим числа из полей ввода и переведем в нужные типы данных.
-        // На всей области определения не должно быть некорректных операций. Например, деления на ноль и т.п.
-        // Иначе будет выброшено исключение и график не будет построен.
+        // Там, где функция не определена (деление на ноль и т.п.), график прерывается.
         String functionText = editTextFunction.getText ().toString ();
         double xMin         = Double.valueOf (editTextDefinitionAreaFrom.getText ().toString ());
         double xMax         = Double.valueOf (editTextDefinitionAreaTo.getText ().toString ());
         int    countDots    = Integer.valueOf (editTextDotsCount.getText ().toString ());
 
-        //-------------------------------
-        // Получим шаг цикла.
-        double xDelta = (xMax - xMin) / countDots;
-
         // Set manual bounds
         graph.getViewport ().setXAxisBoundsManual (true);
         graph.getViewport ().setMinX (xMin);
         graph.getViewport ().setMaxX (xMax);
 
-        // Заполняем серию точек.
-        LineGraphSeries<DataPoint> seriesDots = new LineGraphSeries<> ();
+        // Разбираем функцию один раз.
+        final CompiledExpression function;
         try {
-            for (double i = xMin; i < xMax; i += xDelta) {
-                DataPoint point = new DataPoint (i, Calculator.calculateNormal (functionText.replace (FUNCTION_X_SYMBOL, String.valueOf (i))));
-                seriesDots.appendData (point, true, countDots);
-            }
-        } catch (Calculator.CalculatorNaNException e) {
-            // Исключение в случае недопустимых математических операций.
-            showErrorAlert (String.format (getResources ().getString (R.string.nan_error_message), e.getMessage ()));
-            return;
+            function = Calculator.compileCached (functionText);
         } catch (Calculator.CalculatorErrorException e) {
             // Исключение в случае других непредвиденных ошибок класса калькулятора.
             showErrorAlert (e.getMessage ());
             return;
         }
 
-        // Добавляем слушатель нажатий на точки.
-        seriesDots.setOnDataPointTapListener (new OnDataPointTapListener () {
+        // График рисуется непрерывными участками: точки, где функция не определена, и асимптоты пропускаются.
+        final SegmentedPlot plot = new SegmentedPlot (graph, POINTS_RADIUS, new OnDataPointTapListener () {
             @Override
             public void onTap (Series series, DataPointInterface dataPoint) {
-                showInfoAlert (String.format (getResources ().getString (R.string.point_info_text).toString (), dataPoint.getX (), dataPoint.getY ()));
+                // Производная - точная, автоматическим дифференцированием.
+                showInfoAlert (String.format (getResources ().getString (R.string.point_info_text).toString (), dataPoint.getX (), dataPoint.getY (),
+                        function.evalDerivative (dataPoint.getX ())));
             }
         });
 
-        // Настраиваем серию и добавляем на график.
-        seriesDots.setDrawDataPoints (true);
-        seriesDots.setDataPointsRadius (POINTS_RADIUS);
-        graph.addSeries (seriesDots);
+        // Вычисляем график в фоне: сначала грубо, затем с уточнениями. Рисовать больше точек, чем пикселей
+        // на экране, незачем - адаптер прореживает каждый проход с сохранением экстремумов.
+        CancellationToken samplingToken = CancellationToken.withTimeout (SAMPLING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        progressiveSampler.submit (function, xMin, xMax, countDots, samplingToken,
+                new ProgressiveSeriesAdapter (progressiveSampler, samplingToken, plot, GRAPH_POINTS_MAX, new ProgressiveSeriesAdapter.Callback () {
+                    @Override
+                    public void onError (Throwable _error) {
+                        showErrorAlert (String.format (getResources ().getString (R.string.unknown_exception_error_message),
+                                _error.getClass ().toString (), _error.getMessage ()));
+                    }
+                }));
 
         // Задаем настройки графика.
         graph.getViewport ().setXAxisBoundsStatus (Viewport.AxisBoundsStatus.FIX);// Режим автомасштабирования графика - очень важно.
         graph.getViewport ().setYAxisBoundsStatus (Viewport.AxisBoundsStatus.FIX);
+
+        // Границы по y - по интервальной оценке, без вычисления точек. Участки с полюсами в оценку не входят.
+        Interval yBounds = IntervalAnalyzer.bounds (function, xMin, xMax, IntervalAnalyzer.DEFAULT_PIECES);
+        if (yBounds.isBounded () && yBounds.getWidth () > 0) {
+            graph.getViewport ().setYAxisBoundsManual (true);
+            graph.getViewport ().setMinY (yBounds.getLo ());
+            graph.getViewport ().setMaxY (yBounds.getHi ());
+        } else {
+            // Оценки нет - границы по данным, а не от прошлого графика.
+            graph.getViewport ().setYAxisBoundsManual (false);
+        }
         graph.getViewport ().setScalable (true); // enables horizontal zooming and scrolling
+
+        // Чебышёвское приближение на всей области определения: при сдвиге и масштабировании оно вычисляется
+        // в разы быстрее выражения. Строится один раз на график в фоне, пока его нет - пересчет по плиткам.
+        buildProxy (function, xMin, xMax);
+
+        // При сдвиге и масштабировании пересчитываем видимую область по приближению, а если оно не годится -
+        // только новые плитки. Незавершенное фоновое построение всей области больше не нужно.
+        graph.getViewport ().setOnXAxisBoundsChangedListener (new Viewport.OnXAxisBoundsChangedListener () {
+            @Override
+            public void onXAxisBoundsChanged (double _minX, double _maxX, Reason _reason) {
+                progressiveSampler.cancel ();
+                updateVisibleSeries (plot, function, proxy, _minX, _maxX);
+            }
+        });
+    }
+
+    /**
+     * Построить чебышёвское приближение в фоновом потоке после вычисления графика и передать его в UI-поток.
+     * Построение прошлого графика отменяется. Если приближение не покроет {@link #PROXY_MIN_COVERAGE}
+     * области, построение прекращается досрочно, и приближения у графика нет.
+     *
+     * @param _function Функция.
+     * @param _xMin     Начало области определения.
+     * @param _xMax     Конец области определения.
+     */
+    protected void buildProxy (final CompiledExpression _function, final double _xMin, final double _xMax) {
+        if (null != proxyToken) {
+            proxyToken.cancel ();
+        }
+        proxy = null;
+        if (!(_xMin < _xMax)) {
+            proxyToken = null;
+            return;
+        }
+
+        final CancellationToken token = new CancellationToken ();
+        proxyToken = token;
+        progressiveSampler.execute (new Runnable () {
+            @Override
+            public void run () {
+                if (token.isCancelled ()) {
+                    return;
+                }
+                final ChebyshevProxy built = ChebyshevProxy.build (_function, _xMin, _xMax, ChebyshevProxy.DEFAULT_TOLERANCE,
+                        PROXY_MIN_COVERAGE);
+                if (null == built) {
+                    return;
+                }
+                runOnUiThread (new Runnable () {
+                    @Override
+                    public void run () {
+                        if (!token.isCancelled ()) {
+                            proxy = built;
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Перестроить график для видимой области. Если чебышёвское приближение покрывает почти всю область
+     * определения с погрешностью меньше пикселя, точки вычисляются по нему. Иначе значения берутся из кэша
+     * плиток, вычисляются только недостающие.
+     *
+     * @param _plot     График.
+     * @param _function Функция.
+     * @param _proxy    Приближение функции или null.
+     * @param _xMin     Начало видимой области.
+     * @param _xMax     Конец видимой области.
+     */
+    protected void updateVisibleSeries (SegmentedPlot _plot, CompiledExpression _function, ChebyshevProxy _proxy,
+                                        double _xMin, double _xMax) {
+        if (!(_xMax > _xMin)) {
+            return;
+        }
+
+        if (isProxyAccurate (_proxy)) {
+            int    count = proxyXs.length;
+            double delta = (_xMax - _xMin) / count;
+            for (int i = 0; i < count; i++) {
+                proxyXs[i] = SamplingEngine.gridX (_xMin, delta, i);
+            }
+            _proxy.evalBatch (proxyXs, 0, count, proxyYs, 0);
+            _plot.update (proxyXs, proxyYs, count, GRAPH_POINTS_MAX);
+            return;
+        }
+
+        TileCache.Samples samples = tileCache.sample (_function, _xMin, _xMax, GRAPH_POINTS_MAX);
+        _plot.update (samples.getXs (), samples.getYs (), samples.getCount (), GRAPH_POINTS_MAX);
+    }
+
+    @Override
+    protected void onDestroy () {
+        progressiveSampler.cancel ();
+        if (null != proxyToken) {
+            proxyToken.cancel ();
+        }
+        super.onDestroy ();
     }
 
     //----------------------------------------------------------------------------------------------
     // Вспомгательные методы.
     //----------------------------------------------------------------------------------------------
 
+    /**
+     * Годится ли приближение для рисования: покрывает почти всю область определения, а его погрешность
+     * меньше пикселя по высоте текущей видимой области.
+     *
+     * @param _proxy Приближение или null.
+     * @return boolean Можно ли рисовать по приближению?
+     */
+    protected boolean isProxyAccurate (ChebyshevProxy _proxy) {
+        if (null == _proxy || _proxy.getCoverage () < PROXY_MIN_COVERAGE) {
+            return false;
+        }
+
+        GraphView graph = (GraphView) findViewById (R.id.graphMain);
+        double    pixel = AdaptiveSampler.pixelTolerance (graph.getViewport ().getMinY (false), graph.getViewport ().getMaxY (false),
+                graph.getHeight ());
+        return _proxy.getErrorEstimate () < pixel;
+    }
+
     /**
      * Проверить поля на корректность, выполнить валидацию данных
      *
@@ -0,0 +1,79 @@
+package com.example4.user.testplottingapp4;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example4.user.testplottingapp4.Calculator.CancellationToken;
+import com.example4.user.testplottingapp4.Calculator.ProgressiveSampler;
+import com.example4.user.testplottingapp4.Calculator.SampleBuffer;
+
+/**
+ * Передача результатов {@link ProgressiveSampler} на график.
+ * <p>
+ * Проходы разбиваются на участки и прореживаются в потоке вычисления, а в UI-поток передается только готовый
+ * буфер точек. Результаты и ошибки запроса, замененного новым, не показываются.
+ */
+public class ProgressiveSeriesAdapter implements ProgressiveSampler.Listener {
+    /**
+     * Реакция на ошибки текущего запроса. Вызывается в UI-потоке.
+     */
+    public interface Callback {
+        /**
+         * @param _error Непредвиденная ошибка при вычислении.
+         */
+        void onError (Throwable _error);
+    }
+
+    private final ProgressiveSampler sampler;
+    private final CancellationToken  token;
+    private final SegmentedPlot      plot;
+    private final int                maxPoints;
+    private final Callback           callback;
+    private final Handler            handler = new Handler (Looper.getMainLooper ());
+
+    /**
+     * @param _sampler   Сэмплер - чтобы отличать текущий запрос от замененных.
+     * @param _token     Признак отмены запроса, с которым адаптер передается в
+     *                   {@link ProgressiveSampler#submit}. Нужен для {@link #onFinished}: у ошибки нет прохода.
+     * @param _plot      График.
+     * @param _maxPoints Сколько точек максимум рисовать.
+     * @param _callback  Реакция на ошибки.
+     */
+    public ProgressiveSeriesAdapter (ProgressiveSampler _sampler, CancellationToken _token, SegmentedPlot _plot, int _maxPoints,
+                                     Callback _callback) {
+        this.sampler = _sampler;
+        this.token = _token;
+        this.plot = _plot;
+        this.maxPoints = _maxPoints;
+        this.callback = _callback;
+    }
+
+    @Override
+    public void onPass (final ProgressiveSampler.Pass _pass) {
+        final SampleBuffer.View points = SegmentedPlot.build (_pass.getXs (), _pass.getYs (), _pass.getCount (), maxPoints);
+
+        handler.post (new Runnable () {
+            @Override
+            public void run () {
+                if (sampler.isCurrent (_pass.getToken ())) {
+                    plot.show (points);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onFinished (ProgressiveSampler.Outcome _outcome, final Throwable _error) {
+        if (null == _error) {
+            return;
+        }
+        handler.post (new Runnable () {
+            @Override
+            public void run () {
+                if (sampler.isCurrent (token)) {
+                    callback.onError (_error);
+                }
+            }
+        });
+    }
+}
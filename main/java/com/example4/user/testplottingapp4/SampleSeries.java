@@ -0,0 +1,302 @@
+package com.example4.user.testplottingapp4;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.example4.user.testplottingapp4.Calculator.SampleBuffer;
+import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.Viewport;
+import com.jjoe64.graphview.series.DataPoint;
+import com.jjoe64.graphview.series.DataPointInterface;
+import com.jjoe64.graphview.series.LineGraphSeries;
+import com.jjoe64.graphview.series.OnDataPointTapListener;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Серия GraphView поверх участка {@link SampleBuffer} без объекта {@link DataPoint} на точку.
+ * <p>
+ * График читает точки через итератор, который каждый раз возвращает один из двух переиспользуемых объектов,
+ * поэтому отрисовка не выделяет память на точки. Нарисованные точки для поиска нажатой запоминаются
+ * в переиспользуемых массивах, а {@link DataPoint} создается только для найденной точки при нажатии.
+ * Данные заменяются целиком методом {@link #setView} - одним вызовом вместо добавления точек по одной.
+ * Точки участка должны идти по возрастанию x.
+ * <p>
+ * Некорректные точки (NaN, бесконечность) - разрывы графика: линия между точками по разные стороны от них
+ * не рисуется. Поэтому все непрерывные участки графика помещаются в одну серию. Линии рисуются одним вызовом
+ * {@link Canvas#drawLines(float[], int, int, Paint)} из переиспользуемого массива.
+ */
+public class SampleSeries extends LineGraphSeries<DataPointInterface> {
+    /**
+     * Наибольшее расстояние в пикселях от нажатия до точки - как в BaseSeries.
+     */
+    private static final float TAP_RADIUS_PX = 120;
+
+    private SampleBuffer.View view;
+
+    /**
+     * Задан ли слушатель нажатий - только тогда нарисованные точки запоминаются.
+     */
+    private boolean tappable;
+
+    /**
+     * Нарисованные в последнем кадре точки: экранные координаты и значения. Используются первые drawnCount.
+     */
+    private float[]  drawnScreenXs = new float[0];
+    private float[]  drawnScreenYs = new float[0];
+    private double[] drawnXs       = new double[0];
+    private double[] drawnYs       = new double[0];
+    private int      drawnCount;
+
+    /**
+     * Переиспользуемые при отрисовке объекты: концы отрезков линии, кисти и точка для
+     * {@link #registerDataPoint}.
+     */
+    private       float[]      lines      = new float[0];
+    private final Paint        linePaint  = new Paint (Paint.ANTI_ALIAS_FLAG);
+    private final Paint        pointPaint = new Paint (Paint.ANTI_ALIAS_FLAG);
+    private final MutablePoint drawnPoint = new MutablePoint ();
+
+    /**
+     * @param _view Точки серии.
+     */
+    public SampleSeries (SampleBuffer.View _view) {
+        this.view = _view;
+    }
+
+    /**
+     * Заменить точки серии. График нужно перерисовать отдельно, например через
+     * {@link com.jjoe64.graphview.GraphView#onDataChanged(boolean, boolean)}, - один раз на все серии.
+     * Вызывается в UI-потоке.
+     *
+     * @param _view Новые точки серии.
+     */
+    public void setView (SampleBuffer.View _view) {
+        this.view = _view;
+    }
+
+    public SampleBuffer.View getView () {
+        return view;
+    }
+
+    @Override
+    public Iterator<DataPointInterface> getValues (double _from, double _until) {
+        // Как и в BaseSeries, захватываем по одной точке за краями, чтобы линия доходила до границы графика.
+        final SampleBuffer.View view  = this.view;
+        final int               start = Math.max (0, view.indexOfX (_from) - 1);
+        final int               end   = Math.min (view.getSize (), view.indexOfX (_until) + 1);
+
+        // Некорректные точки пропускаются: график считает по значениям границы осей.
+        return new Iterator<DataPointInterface> () {
+            private final MutablePoint[] points = {new MutablePoint (), new MutablePoint ()};
+            private int                  i      = skipInvalid (view, start, end);
+
+            @Override
+            public boolean hasNext () {
+                return i < end;
+            }
+
+            @Override
+            public DataPointInterface next () {
+                if (i >= end) {
+                    throw new NoSuchElementException ();
+                }
+                // Два объекта по очереди: предыдущая точка остается верной, пока график читает следующую.
+                MutablePoint point = points[i & 1];
+                point.x = view.getX (i);
+                point.y = view.getY (i);
+                i = skipInvalid (view, i + 1, end);
+                return point;
+            }
+
+            @Override
+            public void remove () {
+                throw new UnsupportedOperationException ();
+            }
+        };
+    }
+
+    /**
+     * Нарисовать линию между соседними корректными точками и сами точки. В отличие от LineGraphSeries
+     * не соединяет точки через разрыв. Рисуется в масштабе основной оси y.
+     */
+    @Override
+    public void draw (GraphView _graphView, Canvas _canvas, boolean _isSecondScale) {
+        resetDataPoints ();
+
+        final SampleBuffer.View view     = this.view;
+        Viewport                viewport = _graphView.getViewport ();
+        double                  minX     = viewport.getMinX (false);
+        double                  maxX     = viewport.getMaxX (false);
+        double                  minY     = viewport.getMinY (false);
+        double                  maxY     = viewport.getMaxY (false);
+        if (view.isEmpty () || !(minX < maxX) || !(minY < maxY)) {
+            return;
+        }
+
+        float  left   = _graphView.getGraphContentLeft ();
+        float  top    = _graphView.getGraphContentTop ();
+        float  width  = _graphView.getGraphContentWidth ();
+        float  height = _graphView.getGraphContentHeight ();
+        double scaleX = width / (maxX - minX);
+        double scaleY = height / (maxY - minY);
+        int    start  = Math.max (0, view.indexOfX (minX) - 1);
+        int    end    = Math.min (view.getSize (), view.indexOfX (maxX) + 1);
+
+        if (lines.length < 4 * (end - start)) {
+            lines = new float[4 * (end - start)];
+        }
+        int   count = 0;
+        float prevX = 0;
+        float prevY = 0;
+        for (int i = start; i < end; i++) {
+            if (!view.isValid (i)) {
+                continue;
+            }
+            // Точки далеко за краем ограничиваем, чтобы координаты поместились во float; лишнее обрезает clipRect.
+            float x = (float) (left + (view.getX (i) - minX) * scaleX);
+            float y = (float) (top + height - clamp ((view.getY (i) - minY) * scaleY, -height, 2.0 * height));
+            if (i > start && view.isValid (i - 1)) {
+                lines[count++] = prevX;
+                lines[count++] = prevY;
+                lines[count++] = x;
+                lines[count++] = y;
+            }
+            prevX = x;
+            prevY = y;
+        }
+
+        linePaint.setStyle (Paint.Style.STROKE);
+        linePaint.setColor (getColor ());
+        linePaint.setStrokeWidth (getThickness ());
+        pointPaint.setStyle (Paint.Style.FILL);
+        pointPaint.setColor (getColor ());
+
+        _canvas.save ();
+        _canvas.clipRect (left, top, left + width, top + height);
+        _canvas.drawLines (lines, 0, count, linePaint);
+        for (int i = start; i < end; i++) {
+            double valueX = view.getX (i);
+            double valueY = view.getY (i);
+            if (!view.isValid (i) || valueX < minX || valueX > maxX || valueY < minY || valueY > maxY) {
+                continue;
+            }
+            float x = (float) (left + (valueX - minX) * scaleX);
+            float y = (float) (top + height - (valueY - minY) * scaleY);
+            if (isDrawDataPoints ()) {
+                _canvas.drawCircle (x, y, getDataPointsRadius (), pointPaint);
+            }
+            drawnPoint.x = valueX;
+            drawnPoint.y = valueY;
+            registerDataPoint (x, y, drawnPoint);
+        }
+        _canvas.restore ();
+    }
+
+    @Override
+    public double getLowestValueX () {
+        return view.isEmpty () ? 0 : view.getMinX ();
+    }
+
+    @Override
+    public double getHighestValueX () {
+        return view.isEmpty () ? 0 : view.getMaxX ();
+    }
+
+    @Override
+    public double getLowestValueY () {
+        return view.isEmpty () ? 0 : view.getMinY ();
+    }
+
+    @Override
+    public double getHighestValueY () {
+        return view.isEmpty () ? 0 : view.getMaxY ();
+    }
+
+    @Override
+    public boolean isEmpty () {
+        return view.isEmpty ();
+    }
+
+    @Override
+    public void setOnDataPointTapListener (OnDataPointTapListener _listener) {
+        super.setOnDataPointTapListener (_listener);
+        this.tappable = null != _listener;
+    }
+
+    @Override
+    protected void resetDataPoints () {
+        drawnCount = 0;
+    }
+
+    @Override
+    protected void registerDataPoint (float _x, float _y, DataPointInterface _dataPoint) {
+        // Объект итератора переиспользуется, поэтому запоминаем значения, а не сам объект.
+        if (!tappable) {
+            return;
+        }
+        if (drawnCount == drawnXs.length) {
+            int capacity = Math.max (64, 2 * drawnCount);
+            drawnScreenXs = Arrays.copyOf (drawnScreenXs, capacity);
+            drawnScreenYs = Arrays.copyOf (drawnScreenYs, capacity);
+            drawnXs = Arrays.copyOf (drawnXs, capacity);
+            drawnYs = Arrays.copyOf (drawnYs, capacity);
+        }
+        drawnScreenXs[drawnCount] = _x;
+        drawnScreenYs[drawnCount] = _y;
+        drawnXs[drawnCount] = _dataPoint.getX ();
+        drawnYs[drawnCount] = _dataPoint.getY ();
+        ++drawnCount;
+    }
+
+    @Override
+    protected DataPointInterface findDataPoint (float _x, float _y) {
+        int   nearest  = -1;
+        float distance = TAP_RADIUS_PX;
+        for (int i = 0; i < drawnCount; i++) {
+            float d = (float) Math.hypot (drawnScreenXs[i] - _x, drawnScreenYs[i] - _y);
+            if (d < distance) {
+                distance = d;
+                nearest = i;
+            }
+        }
+        return nearest < 0 ? null : new DataPoint (drawnXs[nearest], drawnYs[nearest]);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return Индекс первой корректной точки на [_from, _end) или _end.
+     */
+    private static int skipInvalid (SampleBuffer.View _view, int _from, int _end) {
+        int i = _from;
+        while (i < _end && !_view.isValid (i)) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static double clamp (double _value, double _min, double _max) {
+        return Math.max (_min, Math.min (_max, _value));
+    }
+
+    /**
+     * Переиспользуемая точка итератора.
+     */
+    private static class MutablePoint implements DataPointInterface {
+        private double x;
+        private double y;
+
+        @Override
+        public double getX () {
+            return x;
+        }
+
+        @Override
+        public double getY () {
+            return y;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example4.user.testplottingapp4;
+
+import com.example4.user.testplottingapp4.Calculator.SampleBuffer;
+import com.example4.user.testplottingapp4.Calculator.Segmenter;
+import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.series.OnDataPointTapListener;
+
+/**
+ * График функции из непрерывных участков в одной серии.
+ * <p>
+ * Точки, где функция не определена, и асимптоты не рисуются: кривая обходит их, а не соединяет ветви
+ * вертикальной линией. Разбиение и прореживание выполняются в {@link #build(double[], double[], int, int)}
+ * в любом потоке ({@link Segmenter#decimate}), а в UI-потоке только заменяются точки серии.
+ * <p>
+ * Все участки лежат в одном {@link SampleBuffer} и разделены некорректной точкой; серия {@link SampleSeries}
+ * читает их без объекта на точку и не соединяет линией точки по разные стороны разрыва. Поэтому число серий
+ * и точек не зависит от числа участков. Перестроения в UI-потоке ({@link #update}) переиспользуют
+ * собственный буфер.
+ */
+public class SegmentedPlot {
+    private final GraphView    graph;
+    private final SampleSeries series;
+
+    /**
+     * Буфер для перестроений в UI-потоке.
+     */
+    private final SampleBuffer buffer = new SampleBuffer ();
+
+    /**
+     * Добавлена ли серия на график.
+     */
+    private boolean attached;
+
+    /**
+     * @param _graph        График.
+     * @param _pointsRadius Радиус точек.
+     * @param _tapListener  Слушатель нажатий на точки.
+     */
+    public SegmentedPlot (GraphView _graph, int _pointsRadius, OnDataPointTapListener _tapListener) {
+        this.graph = _graph;
+        this.series = new SampleSeries (new SampleBuffer ().view ());
+        series.setDrawDataPoints (true);
+        series.setDataPointsRadius (_pointsRadius);
+        series.setOnDataPointTapListener (_tapListener);
+    }
+
+    /**
+     * Разбить точки на непрерывные участки и проредить их в новый буфер. Можно вызывать в любом потоке.
+     *
+     * @param _xs        Значения x по возрастанию.
+     * @param _ys        Значения функции. Могут быть равны NaN или бесконечности.
+     * @param _count     Число точек.
+     * @param _maxPoints Сколько точек всего оставить, включая разрывы.
+     * @return Точки всех участков с разрывами между ними.
+     */
+    public static SampleBuffer.View build (double[] _xs, double[] _ys, int _count, int _maxPoints) {
+        return build (_xs, _ys, _count, _maxPoints, new SampleBuffer (Math.min (_count + 1, _maxPoints)));
+    }
+
+    /**
+     * Разбить точки на непрерывные участки и проредить их в переданный буфер.
+     *
+     * @param _buffer Буфер для точек. Очищается; представления, полученные из него раньше, становятся
+     *                недействительными.
+     * @see #build(double[], double[], int, int)
+     */
+    public static SampleBuffer.View build (double[] _xs, double[] _ys, int _count, int _maxPoints, SampleBuffer _buffer) {
+        Segmenter.decimate (_xs, _ys, _count, _maxPoints, _buffer);
+        return _buffer.view ();
+    }
+
+    /**
+     * Перестроить участки в собственном буфере графика и показать их. Вызывается в UI-потоке.
+     *
+     * @see #build(double[], double[], int, int)
+     */
+    public void update (double[] _xs, double[] _ys, int _count, int _maxPoints) {
+        show (build (_xs, _ys, _count, _maxPoints, buffer));
+    }
+
+    /**
+     * Показать точки на графике. Вызывается в UI-потоке.
+     *
+     * @param _points Точки из {@link #build(double[], double[], int, int)}.
+     */
+    public void show (SampleBuffer.View _points) {
+        series.setView (_points);
+        if (!attached) {
+            attached = true;
+            graph.addSeries (series);
+        } else {
+            graph.onDataChanged (true, false);
+        }
+    }
+}
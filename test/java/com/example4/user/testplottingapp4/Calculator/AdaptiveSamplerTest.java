@@ -0,0 +1,127 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка адаптивного вычисления.
+ */
+public class AdaptiveSamplerTest {
+    @Test
+    public void sample_keepsLinePoints () throws Exception {
+        AdaptiveSampler.Result result = new AdaptiveSampler ().sample (Calculator.compile ("2 * x + 1"), -10, 10, 1E-3);
+
+        // Двух проходов хватает: середины лежат на прямой, и середины половин - тоже.
+        assertTrue (result.getCount () <= 4 * AdaptiveSampler.DEFAULT_INITIAL_POINTS + 1);
+        assertOrdered (result, -10, 10);
+    }
+
+    @Test
+    public void sample_refinesNearCurvature () throws Exception {
+        CompiledExpression     function = Calculator.compile ("1 / (1 + (x * 100) ^ 2)");
+        AdaptiveSampler.Result result   = new AdaptiveSampler ().sample (function, -1, 1, 1E-4);
+
+        assertOrdered (result, -1, 1);
+        assertTrue (count (result, -0.05, 0.05) > 10 * count (result, 0.5, 0.6));
+
+        // Между соседними точками график отличается от ломаной не больше чем на несколько допусков.
+        double[] xs = result.getXs ();
+        double[] ys = result.getYs ();
+        for (int i = 0; i < result.getCount () - 1; i++) {
+            double x = 0.5 * (xs[i] + xs[i + 1]);
+            assertEquals ("at " + x, 0.5 * (ys[i] + ys[i + 1]), function.evaluate (x), 1E-2);
+        }
+    }
+
+    @Test
+    public void sample_refinesAroundInflectionInTheMiddle () throws Exception {
+        // Середина единственного интервала - точка перегиба, она лежит ровно на прямой между концами.
+        CompiledExpression     function = Calculator.compile ("x ^ 3");
+        AdaptiveSampler.Result result   = new AdaptiveSampler (1, 16, 1000).sample (function, -1, 1, 1E-3);
+
+        assertOrdered (result, -1, 1);
+        double[] xs = result.getXs ();
+        double[] ys = result.getYs ();
+        for (int i = 0; i < result.getCount () - 1; i++) {
+            for (double t = 0.25; t < 1; t += 0.25) {
+                double x = xs[i] + t * (xs[i + 1] - xs[i]);
+                assertEquals ("at " + x, ys[i] + t * (ys[i + 1] - ys[i]), function.evaluate (x), 2E-3);
+            }
+        }
+    }
+
+    @Test
+    public void sample_refinesTowardsPole () throws Exception {
+        AdaptiveSampler        sampler = new AdaptiveSampler (64, 16, 20000);
+        AdaptiveSampler.Result result  = sampler.sample (Calculator.compile ("tan(x)"), 0, 3, 1E-3);
+
+        // Интервал у полюса делится до наибольшей глубины.
+        double nearest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < result.getCount (); i++) {
+            nearest = Math.min (nearest, Math.abs (result.getXs ()[i] - Math.PI / 2));
+        }
+        assertTrue ("nearest " + nearest, nearest <= 3.0 / 64 / (1 << 15));
+        assertOrdered (result, 0, 3);
+    }
+
+    @Test
+    public void sample_respectsBudget () throws Exception {
+        AdaptiveSampler        sampler = new AdaptiveSampler (64, 30, 1000);
+        AdaptiveSampler.Result result  = sampler.sample (Calculator.compile ("sin(1 / x)"), 1E-3, 1, 1E-6);
+
+        assertTrue (result.getEvaluations () <= 1000);
+        assertEquals (result.getEvaluations (), result.getCount ());
+        assertOrdered (result, 1E-3, 1);
+    }
+
+    @Test
+    public void sample_addsPointsAsToleranceShrinks () throws Exception {
+        CompiledExpression function = Calculator.compile ("sin(x) * x");
+        AdaptiveSampler    sampler  = new AdaptiveSampler ();
+
+        int coarse = sampler.sample (function, -20, 20, 1E-1).getCount ();
+        int medium = sampler.sample (function, -20, 20, 1E-3).getCount ();
+        int fine   = sampler.sample (function, -20, 20, 1E-5).getCount ();
+        assertTrue (coarse + " " + medium, coarse < medium);
+        assertTrue (medium + " " + fine, medium < fine);
+    }
+
+    @Test
+    public void sample_skipsIntervalsNarrowerThanTolerance () throws Exception {
+        // Интервальная оценка константы уже любого допуска: не вычисляется ни одной середины.
+        AdaptiveSampler.Result result = new AdaptiveSampler (16, 16, 1000).sample (Calculator.compile ("x * 0 + 3"), 0, 1, 1E-9);
+
+        assertEquals (17, result.getCount ());
+        assertEquals (17, result.getEvaluations ());
+    }
+
+    @Test
+    public void deviation_treatsNonFiniteValues () {
+        assertEquals (0.5, AdaptiveSampler.deviation (0, 1.5, 2), 0);
+        assertEquals (Double.POSITIVE_INFINITY, AdaptiveSampler.deviation (0, Double.NaN, 2), 0);
+        assertEquals (Double.POSITIVE_INFINITY, AdaptiveSampler.deviation (Double.POSITIVE_INFINITY, 1, 2), 0);
+        assertEquals (0, AdaptiveSampler.deviation (Double.NaN, Double.NaN, Double.NEGATIVE_INFINITY), 0);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static void assertOrdered (AdaptiveSampler.Result _result, double _xMin, double _xMax) {
+        double[] xs = _result.getXs ();
+        assertEquals (_xMin, xs[0], 0);
+        assertEquals (_xMax, xs[_result.getCount () - 1], 0);
+        for (int i = 1; i < _result.getCount (); i++) {
+            assertTrue (xs[i - 1] < xs[i]);
+        }
+    }
+
+    private static int count (AdaptiveSampler.Result _result, double _from, double _to) {
+        int count = 0;
+        for (int i = 0; i < _result.getCount (); i++) {
+            if (_result.getXs ()[i] >= _from && _result.getXs ()[i] <= _to) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка метрик калькулятора.
+ */
+public class CalculatorMetricsTest {
+    @After
+    public void tearDown () {
+        Calculator.setListener (null);
+    }
+
+    @Test
+    public void compile_reportsEveryStage () throws Exception {
+        CalculatorMetrics metrics = new CalculatorMetrics ();
+        Calculator.setListener (metrics);
+
+        Calculator.compile ("2*x+sin(x)");
+
+        for (CalculatorListener.Stage stage : new CalculatorListener.Stage[]{CalculatorListener.Stage.TOKENIZE,
+                CalculatorListener.Stage.TO_RPN, CalculatorListener.Stage.OPTIMIZE, CalculatorListener.Stage.CODEGEN}) {
+            assertEquals (stage.toString (), 1, metrics.getCount (stage));
+            assertTrue (metrics.getPercentileNanos (stage, 0.5) >= metrics.getTotalNanos (stage));
+        }
+        assertEquals (0, metrics.getCount (CalculatorListener.Stage.EVAL));
+    }
+
+    @Test
+    public void evalBatch_countsPointsAndInvalidResults () throws Exception {
+        CompiledExpression expression = Calculator.compile ("1/x");
+        CalculatorMetrics  metrics    = new CalculatorMetrics ();
+        Calculator.setListener (metrics);
+
+        expression.evalBatch (new double[]{-1, 0, 1, 2}, new double[4]);
+        expression.evalRange (-1, 1, 10, new double[10]);
+
+        assertEquals (2, metrics.getCount (CalculatorListener.Stage.EVAL));
+        assertEquals (14, metrics.getPointCount ());
+        assertEquals (2, metrics.getInvalidPointCount ());
+        assertTrue (metrics.getPointsPerSecond () > 0);
+    }
+
+    @Test
+    public void cache_reportsHitRate () throws Exception {
+        CalculatorMetrics metrics = new CalculatorMetrics ();
+        ExpressionCache   cache   = new ExpressionCache ();
+        Calculator.setListener (metrics);
+
+        cache.get ("x^2");
+        cache.get ("x^2");
+        cache.get ("x ^ 2");
+        cache.get ("x^3");
+
+        assertEquals (2, metrics.getCacheHitCount ());
+        assertEquals (2, metrics.getCacheMissCount ());
+        assertEquals (0.5, metrics.getCacheHitRate (), 0);
+    }
+
+    @Test
+    public void trace_receivesIntermediateForms () throws Exception {
+        final List<String> forms = new ArrayList<> ();
+        Calculator.setListener (new CalculatorMetrics () {
+            @Override
+            public boolean isTraceEnabled () {
+                return true;
+            }
+
+            @Override
+            public void onTrace (Stage _stage, String _form) {
+                forms.add (_stage + ": " + _form.trim ());
+            }
+        });
+
+        assertEquals ("2 x * 1 +", Calculator.convertInfixToRPN ("2*x+1").trim ());
+        assertEquals (2, forms.size ());
+        assertEquals ("TOKENIZE: 2 * x + 1", forms.get (0));
+        assertEquals ("TO_RPN: 2 x * 1 +", forms.get (1));
+    }
+
+    @Test
+    public void trace_handlesDeepFormulas () throws Exception {
+        final List<String> forms = new ArrayList<> ();
+        Calculator.setListener (new CalculatorMetrics () {
+            @Override
+            public boolean isTraceEnabled () {
+                return true;
+            }
+
+            @Override
+            public void onTrace (Stage _stage, String _form) {
+                forms.add (_form);
+            }
+        });
+
+        // x + x*1 + x*2 + ... - дерево глубиной в число слагаемых.
+        StringBuilder formula = new StringBuilder ("x");
+        for (int k = 1; k < 5000; k++) {
+            formula.append (" + x*").append (k);
+        }
+        CompiledExpression compiled = Calculator.compile (formula.toString ());
+
+        assertEquals (3, forms.size ());
+        assertTrue (forms.get (2).contains ("(((x + x) + (x * 2)) + (x * 3))"));
+        assertTrue (forms.get (2).endsWith ("..."));
+        assertEquals (ExpressionNode.MAX_TEXT_LENGTH + 3, forms.get (2).length ());
+        assertEquals (forms.get (2), compiled.toOptimizedString ());
+    }
+
+    @Test
+    public void disabledListener_reportsNothing () throws Exception {
+        CalculatorMetrics metrics = new CalculatorMetrics ();
+        Calculator.setListener (metrics);
+        Calculator.setListener (null);
+
+        Calculator.compile ("x + 1").evalRange (0, 1, 100, new double[100]);
+
+        assertEquals (0, metrics.getCount (CalculatorListener.Stage.TOKENIZE));
+        assertEquals (0, metrics.getPointCount ());
+    }
+
+    @Test
+    public void percentile_isUpperBoundOfBucket () {
+        CalculatorMetrics metrics = new CalculatorMetrics ();
+        for (int i = 0; i < 99; i++) {
+            metrics.onStage (CalculatorListener.Stage.EVAL, 100);
+        }
+        metrics.onStage (CalculatorListener.Stage.EVAL, 5000);
+
+        assertEquals (127, metrics.getPercentileNanos (CalculatorListener.Stage.EVAL, 0.5));
+        assertEquals (127, metrics.getPercentileNanos (CalculatorListener.Stage.EVAL, 0.99));
+        assertEquals (8191, metrics.getPercentileNanos (CalculatorListener.Stage.EVAL, 1));
+
+        metrics.reset ();
+        assertEquals (0, metrics.getPercentileNanos (CalculatorListener.Stage.EVAL, 0.5));
+    }
+}
@@ -0,0 +1,191 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка кусочного чебышёвского приближения.
+ */
+public class ChebyshevProxyTest {
+    @Test
+    public void clenshaw_sumsChebyshevSeries () {
+        // 1 + 2 T1(t) + 3 T2(t) = 1 + 2t + 3 (2t^2 - 1).
+        double[] c = {1, 2, 3};
+        for (double t = -1; t <= 1; t += 0.25) {
+            assertEquals (1 + 2 * t + 3 * (2 * t * t - 1), ChebyshevProxy.clenshaw (c, t), 1E-15);
+        }
+    }
+
+    @Test
+    public void coefficients_interpolateAndDifferentiatePolynomial () {
+        int      n      = 8;
+        double[] values = new double[n + 1];
+        for (int j = 0; j <= n; j++) {
+            double t = Math.cos (Math.PI * j / n);
+            values[j] = t * t * t - t;
+        }
+
+        double[] c = ChebyshevProxy.coefficients (values, n);
+        // t^3 - t = T3 / 4 - T1 / 4.
+        assertEquals (-0.25, c[1], 1E-15);
+        assertEquals (0.25, c[3], 1E-15);
+        for (int k : new int[] {0, 2, 4, 5, 6, 7, 8}) {
+            assertEquals (0, c[k], 1E-15);
+        }
+
+        // На отрезке длиной 2 производная по x совпадает с производной по t: 3t^2 - 1.
+        double[] d = ChebyshevProxy.differentiate (c, 2);
+        for (double t = -1; t <= 1; t += 0.25) {
+            assertEquals (3 * t * t - 1, ChebyshevProxy.clenshaw (d, t), 1E-14);
+        }
+    }
+
+    @Test
+    public void build_approximatesSmoothFunctionWithinEstimate () throws Exception {
+        CompiledExpression function = Calculator.compile ("sin(x) * ln(x ^ 2 + 1) + cos(3 * x)");
+        ChebyshevProxy     proxy    = ChebyshevProxy.build (function, -10, 10);
+
+        assertEquals (0, proxy.getDirectPieceCount ());
+        assertEquals (1.0, proxy.getCoverage (), 0);
+        assertTrue (proxy.getMaxDegree () <= ChebyshevProxy.MAX_DEGREE);
+        assertTrue (proxy.getErrorEstimate () < 1E-11);
+
+        int      n      = 10000;
+        double[] direct = new double[n];
+        double[] approx = new double[n];
+        function.evalRange (-10, 10, n, direct);
+        proxy.evalRange (-10, 10, n, approx);
+        for (int i = 0; i < n; i++) {
+            assertEquals (direct[i], approx[i], 1E-11);
+            assertEquals (approx[i], proxy.evalRaw (-10 + i * (20.0 / n)), 1E-14);
+        }
+        assertEquals (function.evalRaw (10), proxy.evalRaw (10), 1E-11);
+    }
+
+    @Test
+    public void evalBatch_matchesDirectOutsideDomainAndInAnyOrder () throws Exception {
+        CompiledExpression function = Calculator.compile ("ln(ln(x ^ 2 + 2) ^ 1.5 + 1) ^ (0.5 + ln(x ^ 2 + 3))");
+        ChebyshevProxy     proxy    = ChebyshevProxy.build (function, -2, 3);
+
+        double[] xs  = {2.5, -1, 7, -2, 3, -5, 0.1, 0.1, Double.NaN};
+        double[] out = new double[xs.length + 1];
+        proxy.evalBatch (xs, 0, xs.length, out, 1);
+        for (int i = 0; i < xs.length; i++) {
+            double expected = function.evalRaw (xs[i]);
+            if (Double.isNaN (expected)) {
+                assertTrue (Double.isNaN (out[i + 1]));
+            } else {
+                assertEquals (expected, out[i + 1], 1E-12 * Math.max (1, Math.abs (expected)));
+            }
+        }
+    }
+
+    @Test
+    public void build_fallsBackToDirectEvaluationNearPoles () throws Exception {
+        CompiledExpression function = Calculator.compile ("1 / x + tan(x)");
+        ChebyshevProxy     proxy    = ChebyshevProxy.build (function, -3, 3);
+
+        // Полюса 0 и +-pi/2 вычисляются выражением, остальное - приближением.
+        assertTrue (proxy.getDirectPieceCount () >= 3);
+        assertTrue (proxy.getCoverage () > 0.99);
+
+        int      n      = 60001;
+        double[] direct = new double[n];
+        double[] approx = new double[n];
+        function.evalRange (-3, 3, n, direct);
+        proxy.evalRange (-3, 3, n, approx);
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN (direct[i]) || Double.isInfinite (direct[i])) {
+                assertEquals (direct[i], approx[i], 0);
+            } else {
+                assertEquals (direct[i], approx[i], 1E-7 * Math.max (1, Math.abs (direct[i])));
+            }
+        }
+    }
+
+    @Test
+    public void build_capsPieceCount () throws Exception {
+        // Десятки тысяч полюсов: после MAX_PIECES кусков остаток вычисляется выражением одним куском.
+        for (String source : new String[] {"tan(x)", "ctg(x)", "sin(x * 1000)"}) {
+            CompiledExpression function = Calculator.compile (source);
+            ChebyshevProxy     proxy    = ChebyshevProxy.build (function, -100000, 100000);
+            assertTrue (source + ": " + proxy, proxy.getPieceCount () <= ChebyshevProxy.MAX_PIECES);
+
+            for (double x = -100000; x < 100000; x += 9999.37) {
+                double expected = function.evalRaw (x);
+                assertEquals (expected, proxy.evalRaw (x), 1E-7 * Math.max (1, Math.abs (expected)));
+            }
+        }
+    }
+
+    @Test
+    public void build_stopsWhenCoverageIsUnreachable () throws Exception {
+        // Периодов больше, чем кусков: нужная доля недостижима, построение прекращается.
+        for (String source : new String[] {"tan(x)", "sin(x * 1000)", "sin(x)"}) {
+            assertNull (source, ChebyshevProxy.build (Calculator.compile (source), -100000, 100000,
+                    ChebyshevProxy.DEFAULT_TOLERANCE, 0.9));
+        }
+
+        ChebyshevProxy proxy = ChebyshevProxy.build (Calculator.compile ("1 / x + tan(x)"), -3, 3,
+                ChebyshevProxy.DEFAULT_TOLERANCE, 0.9);
+        assertNotNull (proxy);
+        assertTrue (proxy.getCoverage () >= 0.9);
+    }
+
+    @Test
+    public void build_leavesUndefinedPartsToExpression () throws Exception {
+        CompiledExpression function = Calculator.compile ("ln(x)");
+        ChebyshevProxy     proxy    = ChebyshevProxy.build (function, -1, 4);
+
+        assertTrue (Double.isNaN (proxy.evalRaw (-0.5)));
+        assertEquals (Math.log (3.5), proxy.evalRaw (3.5), 1E-13);
+        assertEquals (Math.log (0.01), proxy.evalRaw (0.01), 1E-11);
+        assertTrue (proxy.getDirectPieceCount () > 0);
+    }
+
+    @Test
+    public void evalDerivative_matchesExpressionDerivative () throws Exception {
+        CompiledExpression function = Calculator.compile ("sin(x) * cos(2 * x)");
+        ChebyshevProxy     proxy    = ChebyshevProxy.build (function, -4, 4);
+
+        double[] xs     = new double[801];
+        double[] values = new double[xs.length];
+        double[] slopes = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = -4 + i * 0.01;
+        }
+        proxy.evalBatchDerivatives (xs, 0, xs.length, values, slopes, 0);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals (function.evalDerivative (xs[i]), slopes[i], 1E-9);
+            assertEquals (slopes[i], proxy.evalDerivative (xs[i]), 1E-14);
+        }
+    }
+
+    @Test
+    public void analyze_findsRootsAndExtremaThroughProxy () throws Exception {
+        ChebyshevProxy          proxy  = ChebyshevProxy.build (Calculator.compile ("sin(x)"), -10, 10);
+        FunctionAnalyzer.Result result = new FunctionAnalyzer ().analyze (proxy, 1000, 1E-12);
+
+        List<FunctionAnalyzer.Feature> roots = result.getRoots ();
+        assertEquals (7, roots.size ());
+        for (int i = 0; i < roots.size (); i++) {
+            assertEquals ((i - 3) * Math.PI, roots.get (i).getX (), 1E-11);
+        }
+
+        List<FunctionAnalyzer.Feature> extrema = result.getExtrema ();
+        assertEquals (6, extrema.size ());
+        for (int i = 0; i < extrema.size (); i++) {
+            double x = -2.5 * Math.PI + i * Math.PI;
+            assertEquals (x, extrema.get (i).getX (), 1E-7);
+            assertEquals (Math.sin (x), extrema.get (i).getY (), 1E-13);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_rejectsEmptyDomain () throws Exception {
+        ChebyshevProxy.build (Calculator.compile ("x"), 1, 1);
+    }
+}
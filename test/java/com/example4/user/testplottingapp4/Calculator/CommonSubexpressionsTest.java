@@ -0,0 +1,100 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка вычисления общих подвыражений один раз.
+ */
+public class CommonSubexpressionsTest {
+    private static final String[] FUNCTIONS = {
+            "(sin(x))^2 + (cos(x))^2 + sin(x)*cos(x)",
+            "(x^2 + 1) / (x^2 - 1)",
+            "ln(x) * ln(x) - ln(x)",
+            "sin(x - 1) + tan(sin(x - 1)) + (x - 1)",
+            "x + x * x",
+            "-sin(x) / -sin(x)",
+    };
+
+    private static final double[] XS = {
+            0.0, -0.0, 0.5, -1, 1, 3.75, 1E-300, 1E300, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    private static CompiledExpression compile (String _exp, boolean _share) throws Calculator.CalculatorErrorException {
+        Token[]        tokens = Lexer.tokenize (_exp);
+        ExpressionNode tree   = Optimizer.optimize (ExpressionNode.fromRPN (Calculator.convertTokensToRPN (tokens), _exp));
+        return new CompiledExpression (_exp, tree, _share);
+    }
+
+    @Test
+    public void shared_isBitIdenticalToUnshared () throws Exception {
+        double[] shared   = new double[XS.length];
+        double[] unshared = new double[XS.length];
+
+        for (String function : FUNCTIONS) {
+            CompiledExpression with    = compile (function, true);
+            CompiledExpression without = compile (function, false);
+            with.evalBatch (XS, shared);
+            without.evalBatch (XS, unshared);
+
+            for (int i = 0; i < XS.length; i++) {
+                assertEquals (function + " at " + XS[i], Double.doubleToLongBits (without.evaluate (XS[i])),
+                        Double.doubleToLongBits (with.evaluate (XS[i])));
+                assertEquals (function + " batch at " + XS[i], Double.doubleToLongBits (unshared[i]),
+                        Double.doubleToLongBits (shared[i]));
+            }
+        }
+    }
+
+    @Test
+    public void shared_reportsEliminatedNodes () throws Exception {
+        // sin(x) и cos(x) вычисляются по одному разу вместо двух.
+        CompiledExpression trig = compile ("(sin(x))^2 + (cos(x))^2 + sin(x)*cos(x)", true);
+        assertEquals (2, trig.getTemporaryCount ());
+        assertEquals (2, trig.getEliminatedNodeCount ());
+
+        // Вложенное общее подвыражение (x - 1) не требует отдельной ячейки.
+        CompiledExpression nested = compile ("sin(x - 1) + tan(sin(x - 1))", true);
+        assertEquals (1, nested.getTemporaryCount ());
+
+        CompiledExpression plain = compile ("x + x * x", true);
+        assertEquals (0, plain.getTemporaryCount ());
+        assertEquals (0, plain.getEliminatedNodeCount ());
+        assertEquals (0, compile ("(sin(x))^2 + (cos(x))^2", false).getEliminatedNodeCount ());
+    }
+
+    @Test
+    public void compile_handlesDeepFormulas () throws Exception {
+        // x + x*2 + ... + x*n - дерево глубиной в число слагаемых.
+        int           terms   = 100000;
+        StringBuilder formula = new StringBuilder ("x");
+        for (int k = 2; k <= terms; k++) {
+            formula.append (" + x*").append (k);
+        }
+
+        CompiledExpression compiled = Calculator.compile (formula.toString ());
+        // Слагаемые - целые числа меньше 2^53, поэтому сумма точная.
+        assertEquals ((double) terms * (terms + 1) / 2, compiled.evaluate (1), 0);
+        assertEquals (2 * ((double) terms * (terms + 1) / 2), compiled.evalRaw (2), 0);
+    }
+
+    @Test
+    public void compile_nestedSquaresStayLinear () throws Exception {
+        // Квадрат остается степенью: 24 вложенных квадрата - линейный код без временных ячеек.
+        StringBuilder formula = new StringBuilder ("x");
+        for (int level = 0; level < 24; level++) {
+            formula.insert (0, "(").append (" + 1) ^ 2");
+        }
+
+        CompiledExpression compiled = Calculator.compile (formula.toString ());
+        assertEquals (0, compiled.getTemporaryCount ());
+        assertTrue (compiled.getCode ().length < 24 * 16);
+
+        double expected = 0.5;
+        for (int level = 0; level < 24; level++) {
+            expected = Math.pow (expected + 1, 2);
+        }
+        assertEquals (Double.doubleToLongBits (expected), Double.doubleToLongBits (compiled.evalRaw (0.5)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка скомпилированных выражений на совпадение со строковым вычислением.
+ */
+public class CompiledExpressionTest {
+    private static final String[] FUNCTIONS = {
+            "1.1 ^ x + sin x",
+            "x * x - 3 * x + 2",
+            "(x - 1) / (x + 2)",
+            "-x + 2 ^ -x",
+            "sin(cos(x)) * ln(x ^ 2 + 1)",
+            "2 * -x - 1E-3",
+    };
+
+    @Test
+    public void eval_matchesCalculateNormal () throws Exception {
+        for (String function : FUNCTIONS) {
+            CompiledExpression compiled = Calculator.compile (function);
+            for (double x = -5.25; x < 5; x += 0.5) {
+                double expected = Calculator.calculateNormal (function.replace ("x", "(" + x + ")"));
+                assertEquals (function + " at " + x, expected, compiled.eval (x), 0.0);
+            }
+        }
+    }
+
+    @Test(expected = Calculator.CalculatorNaNException.class)
+    public void eval_throwsOnNaN () throws Exception {
+        Calculator.compile ("ln(x)").eval (-1);
+    }
+
+    @Test(expected = Calculator.CalculatorErrorException.class)
+    public void compile_rejectsMissingOperand () throws Exception {
+        Calculator.compile ("x * ");
+    }
+
+    @Test
+    public void eval_doesNotAllocate () throws Exception {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean ();
+        long                            id   = Thread.currentThread ().getId ();
+
+        CompiledExpression compiled = Calculator.compile ("sin(cos(x)) * ln(x ^ 2 + 1) - 2 * -x / (x + 3)");
+        double             sum      = 0;
+
+        // Прогрев, чтобы выделение стека потока и компиляция JIT остались позади.
+        for (int i = 0; i < 200000; i++) {
+            sum += compiled.eval (i * 1E-3);
+        }
+
+        long before = bean.getThreadAllocatedBytes (id);
+        for (int i = 0; i < 1000000; i++) {
+            sum += compiled.eval (i * 1E-3);
+        }
+        long allocated = bean.getThreadAllocatedBytes (id) - before;
+
+        assertFalse (Double.isNaN (sum));
+        assertTrue ("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void evalBatch_isBitIdenticalToScalar () throws Exception {
+        String[] functions = Arrays.copyOf (FUNCTIONS, FUNCTIONS.length + 2);
+        functions[FUNCTIONS.length] = "ln(x) + 1 / x";
+        functions[FUNCTIONS.length + 1] = "tan(x) ^ 0.5";
+
+        int      n   = 1000;
+        double[] xs  = new double[n];
+        double[] out = new double[n];
+        for (String function : functions) {
+            CompiledExpression compiled = Calculator.compile (function);
+
+            compiled.evalRange (-10, 10, n, out);
+            for (int i = 0; i < n; i++) {
+                xs[i] = -10 + i * (20.0 / n);
+                assertEquals (function + " at " + xs[i],
+                        Double.doubleToLongBits (compiled.evaluate (xs[i])), Double.doubleToLongBits (out[i]));
+            }
+
+            Arrays.fill (out, 0);
+            compiled.evalBatch (xs, out);
+            for (int i = 0; i < n; i++) {
+                assertEquals (function + " at " + xs[i],
+                        Double.doubleToLongBits (compiled.evaluate (xs[i])), Double.doubleToLongBits (out[i]));
+            }
+        }
+    }
+}
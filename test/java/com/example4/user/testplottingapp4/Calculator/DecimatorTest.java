@@ -0,0 +1,100 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка прореживания графика.
+ */
+public class DecimatorTest {
+    private static final int N = 100000;
+
+    private static double[][] sample (String _function) throws Exception {
+        double[] xs = new double[N];
+        double[] ys = new double[N];
+        new SamplingEngine ().sample (Calculator.compile (_function), -10, 10, N, xs, ys);
+        return new double[][]{xs, ys};
+    }
+
+    @Test
+    public void minMax_keepsExtremesAndOrder () throws Exception {
+        double[][] data = sample ("sin(x) + 5 / (1 + (x - 3.3) ^ 2 * 100000)");
+
+        Decimator decimator = Decimator.decimate (Decimator.Mode.MIN_MAX, data[0], data[1], 0, N, 2000);
+        assertTrue (decimator.getCount () <= 2000);
+        assertOrdered (decimator);
+        assertEquals (max (data[1], N), max (decimator.getYs (), decimator.getCount ()), 0.0);
+        assertEquals (-max (negate (data[1]), N), -max (negate (decimator.getYs ()), decimator.getCount ()), 0.0);
+    }
+
+    @Test
+    public void lttb_keepsEndpoints () throws Exception {
+        double[][] data = sample ("x * sin(x)");
+
+        Decimator decimator = Decimator.decimate (Decimator.Mode.LTTB, data[0], data[1], 0, N, 1000);
+        assertTrue (decimator.getCount () <= 1000);
+        assertOrdered (decimator);
+        assertEquals (data[0][0], decimator.getXs ()[0], 0.0);
+        assertEquals (data[0][N - 1], decimator.getXs ()[decimator.getCount () - 1], 0.0);
+    }
+
+    @Test
+    public void bothModes_keepDiscontinuities () throws Exception {
+        double[][] data = sample ("ln(x)");
+
+        for (Decimator.Mode mode : Decimator.Mode.values ()) {
+            Decimator decimator = Decimator.decimate (mode, data[0], data[1], 0, N, 500);
+            assertOrdered (decimator);
+            assertTrue (Double.isNaN (decimator.getYs ()[0]));
+            assertFalse (Double.isNaN (decimator.getYs ()[decimator.getCount () - 1]));
+        }
+    }
+
+    @Test
+    public void minMax_emitsBucketPointsInOrder () {
+        // Одна корзина из 8 точек: максимум, затем первая некорректная точка, затем минимум.
+        double[] xs = {0, 1, 2, 3, 4, 5, 6, 7};
+        double[] ys = {1, 5, 2, Double.NaN, Double.POSITIVE_INFINITY, -3, -3, 0};
+
+        Decimator decimator = new Decimator (Decimator.Mode.MIN_MAX, 8 * 3, 6);
+        for (int k = 0; k < 3; k++) {
+            for (int i = 0; i < xs.length; i++) {
+                decimator.add (xs[i] + 10 * k, ys[i]);
+            }
+        }
+        decimator.finish ();
+
+        assertEquals (9, decimator.getCount ());
+        for (int k = 0; k < 3; k++) {
+            assertEquals (1 + 10 * k, decimator.getXs ()[3 * k], 0);
+            assertEquals (3 + 10 * k, decimator.getXs ()[3 * k + 1], 0);
+            assertTrue (Double.isNaN (decimator.getYs ()[3 * k + 1]));
+            assertEquals (5 + 10 * k, decimator.getXs ()[3 * k + 2], 0);
+        }
+    }
+
+    private static void assertOrdered (Decimator _decimator) {
+        for (int i = 1; i < _decimator.getCount (); i++) {
+            assertTrue (_decimator.getXs ()[i - 1] < _decimator.getXs ()[i]);
+        }
+    }
+
+    private static double max (double[] _values, int _count) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < _count; i++) {
+            if (!Double.isNaN (_values[i])) {
+                max = Math.max (max, _values[i]);
+            }
+        }
+        return max;
+    }
+
+    private static double[] negate (double[] _values) {
+        double[] result = new double[_values.length];
+        for (int i = 0; i < _values.length; i++) {
+            result[i] = -_values[i];
+        }
+        return result;
+    }
+}
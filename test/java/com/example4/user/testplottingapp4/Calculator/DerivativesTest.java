@@ -0,0 +1,69 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка автоматического дифференцирования.
+ */
+public class DerivativesTest {
+    private static void assertDerivatives (String _function, double _x, double _first, double _second) throws Exception {
+        CompiledExpression.Derivatives derivatives = Calculator.compile (_function).evalDerivatives (_x);
+        double                         tolerance   = 1E-12 * Math.max (1, Math.abs (_first));
+        assertEquals (_function + "' при x = " + _x, _first, derivatives.getFirst (), tolerance);
+        assertEquals (_function + "'' при x = " + _x, _second, derivatives.getSecond (), 1E-12 * Math.max (1, Math.abs (_second)));
+    }
+
+    @Test
+    public void evalDerivatives_matchesAnalyticDerivatives () throws Exception {
+        double x = 0.7;
+        assertDerivatives ("x ^ 3 - 2 * x", x, 3 * x * x - 2, 6 * x);
+        assertDerivatives ("sin(x) * cos(x)", x, Math.cos (2 * x), -2 * Math.sin (2 * x));
+        assertDerivatives ("1 / x", x, -1 / (x * x), 2 / (x * x * x));
+        assertDerivatives ("tan(x)", x, 1 / Math.pow (Math.cos (x), 2), 2 * Math.tan (x) / Math.pow (Math.cos (x), 2));
+        assertDerivatives ("ctg(x)", x, -1 / Math.pow (Math.sin (x), 2), 2 * Math.cos (x) / Math.pow (Math.sin (x), 3));
+        assertDerivatives ("ln(x)", x, 1 / x, -1 / (x * x));
+        assertDerivatives ("2 ^ x", x, Math.pow (2, x) * Math.log (2), Math.pow (2, x) * Math.log (2) * Math.log (2));
+        assertDerivatives ("x ^ x", x, Math.pow (x, x) * (Math.log (x) + 1),
+                Math.pow (x, x) * (Math.pow (Math.log (x) + 1, 2) + 1 / x));
+        assertDerivatives ("-(x ^ 0.5)", x, -0.5 / Math.sqrt (x), 0.25 / Math.pow (x, 1.5));
+    }
+
+    @Test
+    public void evalDerivatives_isFiniteAtZeroForIntegerPowers () throws Exception {
+        assertDerivatives ("x ^ 2", 0, 0, 2);
+        assertDerivatives ("x ^ 1 + x ^ 3", 0, 1, 0);
+    }
+
+    @Test
+    public void evalDerivatives_handlesSharedSubexpressions () throws Exception {
+        double x = 1.3;
+        // sin(x) хранится во временной ячейке и загружается повторно.
+        assertDerivatives ("(sin(x))^2 + sin(x)", x, Math.sin (2 * x) + Math.cos (x), 2 * Math.cos (2 * x) - Math.sin (x));
+    }
+
+    @Test
+    public void evalBatchDerivatives_matchesPointwise () throws Exception {
+        CompiledExpression function = Calculator.compile ("x ^ 3 * sin(x) / (1 + x ^ 2) + ln(x ^ 2 + 1) - x ^ x");
+        int                n        = 1000;
+        double[]           xs       = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = 0.01 + i * 0.01;
+        }
+        double[] values      = new double[n];
+        double[] derivatives = new double[n];
+        function.evalBatchDerivatives (xs, 0, n, values, derivatives, 0);
+
+        for (int i = 0; i < n; i++) {
+            CompiledExpression.Derivatives expected = function.evalDerivatives (xs[i]);
+            assertEquals (Double.doubleToLongBits (function.evalRaw (xs[i])), Double.doubleToLongBits (values[i]));
+            assertEquals (expected.getFirst (), derivatives[i], 1E-12 * Math.max (1, Math.abs (expected.getFirst ())));
+
+            // Центральная разность согласуется с точной производной.
+            double h       = 1E-6;
+            double central = (function.evalRaw (xs[i] + h) - function.evalRaw (xs[i] - h)) / (2 * h);
+            assertEquals (central, derivatives[i], 1E-4 * Math.max (1, Math.abs (central)));
+        }
+    }
+}
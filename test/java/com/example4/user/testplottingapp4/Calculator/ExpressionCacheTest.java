@@ -0,0 +1,136 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка кэша скомпилированных выражений.
+ */
+public class ExpressionCacheTest {
+    @Test
+    public void get_reusesProgramForSameSystemView () throws Exception {
+        ExpressionCache cache = new ExpressionCache ();
+
+        CompiledExpression first = cache.get ("2*x+sin(x)");
+        assertSame (first, cache.get ("2*x+sin(x)"));
+        assertSame (first, cache.get ("2 * x + sin ( x )"));
+        assertEquals (1, cache.getMissCount ());
+        assertEquals (2, cache.getHitCount ());
+        assertEquals (1, cache.getSize ());
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsed () throws Exception {
+        ExpressionCache cache = new ExpressionCache (2, false);
+
+        CompiledExpression a = cache.get ("x + 1");
+        cache.get ("x + 2");
+        cache.get ("x + 1");
+        cache.get ("x + 3");
+
+        assertEquals (2, cache.getSize ());
+        assertEquals (1, cache.getEvictionCount ());
+        assertSame (a, cache.get ("x + 1"));
+        long misses = cache.getMissCount ();
+        cache.get ("x + 2");
+        assertEquals (misses + 1, cache.getMissCount ());
+    }
+
+    @Test
+    public void get_weighsByProgramSize () throws Exception {
+        ExpressionCache cache = new ExpressionCache (20, true);
+
+        cache.get ("sin(x) + cos(x) * ln(x) - tan(x)");
+        cache.get ("x");
+        assertTrue (cache.getWeight () <= 20);
+        cache.get ("x * x * x * x * x * x * x * x * x");
+        assertTrue (cache.getWeight () <= 20 || cache.getSize () == 1);
+        assertTrue (cache.getEvictionCount () > 0);
+    }
+
+    @Test
+    public void get_capsSourceTextsPerEntry () throws Exception {
+        ExpressionCache    cache = new ExpressionCache ();
+        CompiledExpression first = cache.get ("x+1");
+
+        // Одно выражение с разным числом пробелов - одна запись и не больше MAX_ALIASES текстов.
+        for (int spaces = 1; spaces < 1000; spaces++) {
+            char[] padding = new char[spaces];
+            Arrays.fill (padding, ' ');
+            assertSame (first, cache.get ("x+" + new String (padding) + "1"));
+        }
+        assertEquals (1, cache.getSize ());
+        assertEquals (1, cache.getMissCount ());
+        assertEquals (ExpressionCache.MAX_ALIASES, cache.getAliasCount ());
+
+        cache.clear ();
+        assertEquals (0, cache.getAliasCount ());
+    }
+
+    @Test(expected = Calculator.CalculatorErrorException.class)
+    public void get_doesNotCacheErrors () throws Exception {
+        ExpressionCache cache = new ExpressionCache ();
+        try {
+            cache.get ("x +* 1");
+        } finally {
+            assertEquals (0, cache.getSize ());
+        }
+    }
+
+    @Test
+    public void compileCached_rejectsYLikeCompile () throws Exception {
+        // Функция двух переменных в общем кэше не должна проходить как функция x с y = 0 - ни при промахе, ни при попадании.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                Calculator.compileCached ("x + y*100");
+                fail ("y accepted on attempt " + attempt);
+            } catch (Calculator.CalculatorErrorException e) {
+                assertTrue (e.getMessage ().contains ("\"y\""));
+            }
+            Calculator.getExpressionCache ().get ("x + y*100");
+        }
+
+        assertEquals (2, Calculator.compile2D ("x + y*100").getVariableCount ());
+        assertEquals (7.0, Calculator.compileCached ("x + 5").evalRaw (2), 0);
+    }
+
+    @Test
+    public void get_isSafeFromManyThreads () throws Exception {
+        final ExpressionCache cache    = new ExpressionCache (8, false);
+        ExecutorService       executor = Executors.newFixedThreadPool (8);
+        try {
+            List<Future<Double>> results = new ArrayList<> ();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                results.add (executor.submit (new Callable<Double> () {
+                    @Override
+                    public Double call () throws Exception {
+                        double sum = 0;
+                        for (int i = 0; i < 2000; i++) {
+                            sum += cache.get ("x * " + ((i + thread) % 12)).evaluate (2);
+                        }
+                        return sum;
+                    }
+                }));
+            }
+
+            for (Future<Double> result : results) {
+                assertTrue (result.get () > 0);
+            }
+        } finally {
+            executor.shutdown ();
+        }
+
+        assertEquals (8 * 2000, cache.getHitCount () + cache.getMissCount ());
+        assertTrue (cache.getSize () <= 8);
+    }
+}
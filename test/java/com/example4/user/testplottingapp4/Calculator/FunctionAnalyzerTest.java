@@ -0,0 +1,86 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка поиска нулей, экстремумов и пересечений.
+ */
+public class FunctionAnalyzerTest {
+    private final FunctionAnalyzer analyzer = new FunctionAnalyzer ();
+
+    @Test
+    public void brent_convergesFast () {
+        int[]  evaluations = new int[1];
+        double root        = FunctionAnalyzer.brent (new DoubleUnaryOperator () {
+            @Override
+            public double applyAsDouble (double _x) {
+                return _x * _x * _x - 2;
+            }
+        }, 0, 2, -2, 6, 1E-14, evaluations);
+
+        assertEquals (Math.cbrt (2), root, 1E-14);
+        assertTrue (evaluations[0] < 20);
+    }
+
+    @Test
+    public void analyze_findsRootsAndExtremaOfSine () throws Exception {
+        FunctionAnalyzer.Result result = analyzer.analyze (Calculator.compile ("sin(x)"), -10, 10, 1000, 1E-12);
+
+        List<FunctionAnalyzer.Feature> roots = result.getRoots ();
+        assertEquals (7, roots.size ());
+        for (int i = 0; i < roots.size (); i++) {
+            assertEquals ((i - 3) * Math.PI, roots.get (i).getX (), 1E-11);
+            assertTrue (roots.get (i).getEvaluations () <= 12);
+        }
+
+        List<FunctionAnalyzer.Feature> extrema = result.getExtrema ();
+        assertEquals (6, extrema.size ());
+        for (int i = 0; i < extrema.size (); i++) {
+            double x = -2.5 * Math.PI + i * Math.PI;
+            assertEquals (x, extrema.get (i).getX (), 1E-11);
+            assertEquals (Math.sin (x) > 0 ? FunctionAnalyzer.Kind.MAXIMUM : FunctionAnalyzer.Kind.MINIMUM, extrema.get (i).getKind ());
+        }
+        assertEquals (1001, result.getSampleEvaluations ());
+    }
+
+    @Test
+    public void analyze_rejectsPoles () throws Exception {
+        // Знак tan меняется и в нулях, и на полюсах; полюса - не корни.
+        FunctionAnalyzer.Result tan = analyzer.analyze (Calculator.compile ("tan(x)"), -5, 5, 1000, 1E-12);
+        assertEquals (3, tan.getRoots ().size ());
+        assertTrue (tan.getExtrema ().isEmpty ());
+
+        FunctionAnalyzer.Result hyperbola = analyzer.analyze (Calculator.compile ("1 / x"), -1, 2, 999, 1E-12);
+        assertTrue (hyperbola.getRoots ().isEmpty ());
+
+        // Производная 1/x^2 меняет знак на полюсе - это не максимум.
+        assertTrue (analyzer.analyze (Calculator.compile ("1 / x ^ 2"), -1, 2, 999, 1E-12).getExtrema ().isEmpty ());
+    }
+
+    @Test
+    public void analyze_handlesThousandsOfBrackets () throws Exception {
+        FunctionAnalyzer.Result result = analyzer.analyze (Calculator.compile ("sin(100 * x)"), 0.005, 100, 200000, 1E-12);
+        assertEquals (3183, result.getRoots ().size ());
+        for (FunctionAnalyzer.Feature root : result.getRoots ()) {
+            double k = root.getX () * 100 / Math.PI;
+            assertEquals (Math.rint (k), k, 1E-8);
+        }
+    }
+
+    @Test
+    public void findIntersections_ofLineAndParabola () throws Exception {
+        List<FunctionAnalyzer.Feature> points = analyzer.findIntersections (Calculator.compile ("x ^ 2"), Calculator.compile ("x + 1"),
+                -5, 5, 100, 1E-12);
+
+        assertEquals (2, points.size ());
+        assertEquals ((1 - Math.sqrt (5)) / 2, points.get (0).getX (), 1E-12);
+        assertEquals ((1 + Math.sqrt (5)) / 2, points.get (1).getX (), 1E-12);
+        assertEquals (points.get (1).getX () + 1, points.get (1).getY (), 1E-11);
+        assertEquals (FunctionAnalyzer.Kind.INTERSECTION, points.get (0).getKind ());
+    }
+}
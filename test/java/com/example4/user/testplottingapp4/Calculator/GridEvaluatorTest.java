@@ -0,0 +1,86 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка функций двух переменных, вычисления на сетке и линий уровня.
+ */
+public class GridEvaluatorTest {
+    @Test
+    public void compile2D_evaluatesBothVariables () throws Exception {
+        CompiledExpression function = Calculator.compile2D ("x ^ 2 + Y * sin(x) - y / x");
+
+        assertEquals (2, function.getVariableCount ());
+        assertEquals (4 + 3 * Math.sin (2) - 1.5, function.evalRaw (2, 3), 1E-15);
+        assertEquals (1, Calculator.compile2D ("x + 1").getVariableCount ());
+    }
+
+    @Test(expected = Calculator.CalculatorErrorException.class)
+    public void compile_rejectsSecondVariable () throws Exception {
+        Calculator.compile ("x + y");
+    }
+
+    @Test
+    public void evaluate_matchesPointwise () throws Exception {
+        CompiledExpression function = Calculator.compile2D ("sin(x) * cos(y) + x * y / (1 + (sin(x))^2)");
+        int                nx       = 301;
+        int                ny       = 257;
+        double[]           values   = new double[nx * ny];
+        new GridEvaluator ().evaluate (function, -3, 4, nx, -2, 5, ny, values);
+
+        double[] xs = GridEvaluator.nodes (-3, 4, nx);
+        double[] ys = GridEvaluator.nodes (-2, 5, ny);
+        assertEquals (4, xs[nx - 1], 0);
+        assertEquals (5, ys[ny - 1], 0);
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                assertEquals (Double.doubleToLongBits (function.evalRaw (xs[i], ys[j])), Double.doubleToLongBits (values[j * nx + i]));
+            }
+        }
+    }
+
+    @Test
+    public void extract_tracesUnitCircle () throws Exception {
+        int      n      = 401;
+        double[] values = new double[n * n];
+        new GridEvaluator ().evaluate (Calculator.compile2D ("x ^ 2 + y ^ 2 - 1"), -2, 2, n, -2, 2, n, values);
+
+        MarchingSquares.Contour contour     = new MarchingSquares ().extract (values, n, n, -2, 2, -2, 2, 0);
+        double[]                coordinates = contour.getCoordinates ();
+        double                  length      = 0;
+        assertTrue (contour.getSegmentCount () > 100);
+        for (int k = 0; k < contour.getSegmentCount (); k++) {
+            double x1 = coordinates[4 * k];
+            double y1 = coordinates[4 * k + 1];
+            double x2 = coordinates[4 * k + 2];
+            double y2 = coordinates[4 * k + 3];
+            assertEquals (1, Math.hypot (x1, y1), 1E-4);
+            assertEquals (1, Math.hypot (x2, y2), 1E-4);
+            length += Math.hypot (x2 - x1, y2 - y1);
+        }
+        assertEquals (2 * Math.PI, length, 1E-3);
+    }
+
+    @Test
+    public void extract_skipsUndefinedCellsAndIsDeterministic () throws Exception {
+        int                nx       = 200;
+        int                ny       = 300;
+        double[]           values   = new double[nx * ny];
+        CompiledExpression function = Calculator.compile2D ("ln(x) - y");
+        new GridEvaluator ().evaluate (function, -1, 3, nx, -3, 2, ny, values);
+
+        MarchingSquares.Contour parallel   = new MarchingSquares ().extract (values, nx, ny, -1, 3, -3, 2, 0);
+        MarchingSquares.Contour sequential = new MarchingSquares (new ForkJoinPool (1))
+                .extract (values, nx, ny, -1, 3, -3, 2, 0);
+        assertArrayEquals (sequential.getCoordinates (), parallel.getCoordinates (), 0);
+
+        double[] coordinates = parallel.getCoordinates ();
+        for (int k = 0; k < coordinates.length; k += 2) {
+            assertTrue (coordinates[k] > 0);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка интервальной оценки выражений.
+ */
+public class IntervalTest {
+    private static final String[] FUNCTIONS = {
+            "x ^ 2 - 3 * x + 1", "sin(x) * cos(x)", "1 / x", "tan(x)", "ctg(x)", "ln(x)", "x ^ 0.5", "x ^ (-1.5)",
+            "x ^ 3 - x ^ (-2)", "(sin(x))^2 + sin(x)", "ln(x ^ 2 + 1) / (x - 1)", "2 ^ x", "x ^ x", "-(cos(3 * x))",
+    };
+
+    /**
+     * Все конечные значения в точках отрезка лежат в оценке, а недопустимые значения отмечены флагом.
+     */
+    @Test
+    public void enclosure_containsAllPointValues () throws Exception {
+        Random random = new Random (15);
+        for (String text : FUNCTIONS) {
+            CompiledExpression function = Calculator.compile (text);
+            for (int trial = 0; trial < 200; trial++) {
+                double   a         = (random.nextDouble () - 0.5) * 20;
+                double   b         = a + random.nextDouble () * (trial % 2 == 0 ? 0.01 : 5);
+                Interval enclosure = function.evalInterval (a, b);
+
+                for (int i = 0; i <= 50; i++) {
+                    double x = i == 50 ? b : a + (b - a) * i / 50;
+                    double y = function.evalRaw (x);
+                    if (Double.isNaN (y) || Double.isInfinite (y)) {
+                        assertTrue (text + " на " + a + ".." + b, enclosure.mayBeInvalid ());
+                    } else {
+                        assertTrue (text + " при x = " + x + ": " + y + " вне " + enclosure, enclosure.contains (y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void trigonometry_extremaAndPoles () throws Exception {
+        Interval sin = Calculator.compile ("sin(x)").evalInterval (0, 2);
+        assertEquals (1, sin.getHi (), 0);
+        assertEquals (0, sin.getLo (), 1E-15);
+        assertFalse (sin.mayBeInvalid ());
+
+        Interval tan = Calculator.compile ("tan(x)").evalInterval (1, 2);
+        assertTrue (tan.mayBeInvalid ());
+        assertFalse (tan.isBounded ());
+
+        Interval tanSafe = Calculator.compile ("tan(x)").evalInterval (-1, 1);
+        assertFalse (tanSafe.mayBeInvalid ());
+        assertEquals (Math.tan (1), tanSafe.getHi (), 1E-15);
+
+        assertTrue (Calculator.compile ("ctg(x)").evalInterval (-0.1, 0.1).mayBeInvalid ());
+        assertFalse (Calculator.compile ("ctg(x)").evalInterval (0.1, 3).mayBeInvalid ());
+    }
+
+    @Test
+    public void square_staysNonNegative () throws Exception {
+        Interval square = Calculator.compile ("x ^ 2").evalInterval (-1, 1);
+        // Границы округляются наружу, но нижняя не уходит ниже нуля.
+        assertEquals (0, square.getLo (), 0);
+        assertEquals (1, square.getHi (), 1E-12);
+
+        Interval bell = Calculator.compile ("1 / (x ^ 2 + 1)").evalInterval (-1, 1);
+        assertFalse (bell.mayBeInvalid ());
+        assertTrue (bell.getLo () >= 0.5 - 1E-12 && bell.getHi () <= 1 + 1E-12);
+    }
+
+    @Test
+    public void productOfSameValue_isSquare () throws Exception {
+        // Одна и та же переменная и одно общее подвыражение (временная ячейка).
+        Interval square = Calculator.compile ("x * x").evalInterval (-1, 1);
+        assertEquals (0, square.getLo (), 0);
+        assertEquals (1, square.getHi (), 1E-12);
+
+        Interval shared = Calculator.compile ("(sin(x) - 0.5) * (sin(x) - 0.5)").evalInterval (-4, 4);
+        assertEquals (0, shared.getLo (), 0);
+        assertEquals (2.25, shared.getHi (), 1E-12);
+
+        Interval bell = Calculator.compile ("1 / (x * x + 1)").evalInterval (-1, 1);
+        assertFalse (bell.mayBeInvalid ());
+        assertTrue (bell.getLo () >= 0.5 - 1E-12 && bell.getHi () <= 1 + 1E-12);
+
+        // Разные значения - обычное произведение.
+        assertEquals (-1, Calculator.compile ("x * sin(x)").evalInterval (-1, 1).getLo (), 0.2);
+        assertEquals (-2, Calculator.compile ("x * (x + 1) * x").evalInterval (-1, 1).getLo (), 1E-12);
+    }
+
+    @Test
+    public void domain_lnAndFractionalPower () throws Exception {
+        assertTrue (Calculator.compile ("ln(x)").evalInterval (-2, -1).isEmpty ());
+        assertTrue (Calculator.compile ("ln(x)").evalInterval (-1, 1).mayBeInvalid ());
+        assertFalse (Calculator.compile ("ln(x)").evalInterval (1, 2).mayBeInvalid ());
+
+        Interval root = Calculator.compile ("x ^ 0.5").evalInterval (-4, 4);
+        assertTrue (root.mayBeInvalid ());
+        assertEquals (0, root.getLo (), 0);
+        assertEquals (2, root.getHi (), 1E-15);
+
+        // Целая степень определена и для отрицательных чисел.
+        Interval cube = Calculator.compile ("x ^ 3").evalInterval (-2, 1);
+        assertFalse (cube.mayBeInvalid ());
+        assertEquals (-8, cube.getLo (), 1E-14);
+        assertEquals (1, cube.getHi (), 1E-14);
+    }
+
+    @Test
+    public void findSuspects_locatesPoles () throws Exception {
+        List<Interval> suspects = IntervalAnalyzer.findSuspects (Calculator.compile ("tan(x)"), -5, 5, 1E-6);
+        assertEquals (4, suspects.size ());
+        for (int i = 0; i < 4; i++) {
+            double pole = Math.PI / 2 + (i - 2) * Math.PI;
+            assertTrue (suspects.get (i).contains (pole));
+            assertTrue (suspects.get (i).getWidth () < 1E-5);
+        }
+
+        assertTrue (IntervalAnalyzer.findSuspects (Calculator.compile ("sin(x) * x"), -5, 5, 1E-6).isEmpty ());
+    }
+
+    @Test
+    public void bounds_skipPolesAndEncloseValues () throws Exception {
+        Interval sin = IntervalAnalyzer.bounds (Calculator.compile ("sin(x)"), -10, 10, IntervalAnalyzer.DEFAULT_PIECES);
+        assertFalse (sin.mayBeInvalid ());
+        assertEquals (-1, sin.getLo (), 0);
+        assertEquals (1, sin.getHi (), 0);
+
+        Interval hyperbola = IntervalAnalyzer.bounds (Calculator.compile ("1 / x"), -1, 1, 64);
+        assertTrue (hyperbola.mayBeInvalid ());
+        assertTrue (hyperbola.isBounded ());
+    }
+
+    @Test
+    public void adaptiveSampler_skipsFlatIntervals () throws Exception {
+        CompiledExpression     function = Calculator.compile ("0.001 * sin(x)");
+        AdaptiveSampler.Result result   = new AdaptiveSampler ().sample (function, -10, 10, 0.01);
+        assertEquals (AdaptiveSampler.DEFAULT_INITIAL_POINTS + 1, result.getEvaluations ());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка лексического анализатора.
+ */
+public class LexerTest {
+    private static String systemView (String _exp) throws Calculator.CalculatorErrorException {
+        return Lexer.join (Arrays.asList (Lexer.tokenize (_exp)));
+    }
+
+    @Test
+    public void tokenize_separatesOperatorsAndOperands () throws Exception {
+        assertEquals ("1.1 ^ x + sin x", systemView ("1.1^x+sinx"));
+        assertEquals ("( x + 1 ) * ln ( x )", systemView ("(x+1)*ln(x)"));
+    }
+
+    @Test
+    public void tokenize_detectsUnaryMinus () throws Exception {
+        assertEquals ("± x - 2", systemView ("-x-2"));
+        assertEquals ("2 * ± 3 ^ ± x", systemView ("2*-3^-x"));
+        assertEquals ("( ± 1 ) - ± 1", systemView ("(-1)--1"));
+    }
+
+    @Test
+    public void tokenize_parsesExponent () throws Exception {
+        Token[] tokens = Lexer.tokenize ("1 E - 5 - 2E3");
+        assertEquals (3, tokens.length);
+        assertEquals (1E-5, tokens[0].getValue (), 0.0);
+        assertEquals (Operator.MINUS, tokens[1].getOperator ());
+        assertEquals (2E3, tokens[2].getValue (), 0.0);
+    }
+
+    @Test
+    public void tokenize_writesNumbersCanonically () throws Exception {
+        assertEquals ("0.5 + 1", systemView (".5+1"));
+        assertEquals ("7 * 1E5 - 1.50E-3 + 2 + 0", systemView ("007.*1E05-1.50E-003+2E-0+000"));
+        assertEquals (1.5E-3, Lexer.tokenize ("1.50E-003")[0].getValue (), 0.0);
+
+        // Системный вид и ОПН из лексем проходят проверку чисел при вычислении.
+        String[] expressions = {".5+1", "1E05 * x", "00.25E-02 - .0", "2. ^ 3E0"};
+        double[] expected    = {1.5, 1E5, 0.0025, 8};
+        for (int i = 0; i < expressions.length; i++) {
+            String rpn = Calculator.convertInfixToRPN (Calculator.formatExpToSystemView (expressions[i]).replace ("x", "1"));
+            assertEquals (expressions[i], expected[i], Calculator.calculateReversePolishNotation (rpn), 1E-15);
+        }
+    }
+
+    @Test(expected = Calculator.CalculatorErrorException.class)
+    public void tokenize_rejectsUnknownSymbols () throws Exception {
+        Lexer.tokenize ("2 # x");
+    }
+
+    @Test
+    public void calculateNormal_matchesPreviousBehaviour () throws Exception {
+        assertEquals (-8.0, Calculator.calculateNormal ("-2^3"), 0.0);
+        assertEquals (3.0, Calculator.calculateNormal ("1 - -2"), 0.0);
+        assertEquals (0.5, Calculator.calculateNormal ("2 ^ -1"), 0.0);
+        assertEquals (14.0, Calculator.calculateNormal ("2 + 3 * 4"), 0.0);
+        assertEquals (1 - Math.sin (1), Calculator.calculateNormal ("1 + -sin(1)"), 0.0);
+    }
+}
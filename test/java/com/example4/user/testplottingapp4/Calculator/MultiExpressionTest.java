@@ -0,0 +1,85 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка вычисления нескольких выражений одной программой.
+ */
+public class MultiExpressionTest {
+    private static final String[] FAMILY = {"sin(x)", "sin(x) + (sin(x))^2", "cos(x) * sin(x)", "sin(x)", "x/(x-1)", "5"};
+
+    @Test
+    public void evalRange_matchesSeparateExpressions () throws Exception {
+        MultiExpression multi = Calculator.compileAll (FAMILY);
+        int             n     = 1000;
+        double[][]      out   = new double[FAMILY.length][n];
+        multi.evalRange (-3, 3, n, out);
+
+        double[] expected = new double[n];
+        for (int s = 0; s < FAMILY.length; s++) {
+            Calculator.compile (FAMILY[s]).evalRange (-3, 3, n, expected);
+            for (int i = 0; i < n; i++) {
+                assertEquals (FAMILY[s] + " at " + i, Double.doubleToLongBits (expected[i]), Double.doubleToLongBits (out[s][i]));
+            }
+        }
+    }
+
+    @Test
+    public void evalRaw_returnsEverySeries () throws Exception {
+        MultiExpression multi = Calculator.compileAll (FAMILY);
+        double[]        out   = new double[FAMILY.length];
+        multi.evalRaw (1, out);
+
+        assertEquals (Math.sin (1), out[0], 0);
+        assertEquals (Math.cos (1) * Math.sin (1), out[2], 0);
+        assertEquals (out[0], out[3], 0);
+        assertTrue (Double.isInfinite (out[4]));
+        assertEquals (5, out[5], 0);
+    }
+
+    @Test
+    public void compile_sharesSubexpressionsAcrossFormulas () throws Exception {
+        MultiExpression multi = Calculator.compileAll ("sin(x)", "sin(x) + 1", "2 * sin(x)");
+
+        // sin(x) вычисляется один раз на все три серии.
+        int sines = 0;
+        int[] code = multi.getCode ();
+        for (int pc = 0; pc < code.length; ) {
+            int opcode = code[pc++];
+            if (opcode == Interpreter.SIN) {
+                ++sines;
+            } else if (opcode == Interpreter.CONST || opcode == Interpreter.VAR || opcode == Interpreter.STORE
+                    || opcode == Interpreter.LOAD) {
+                ++pc;
+            }
+        }
+        assertEquals (1, sines);
+        assertEquals (2, multi.getEliminatedNodeCount ());
+        assertEquals (3, multi.getSeriesCount ());
+    }
+
+    @Test
+    public void sample_buildsGridOnceForAllSeries () throws Exception {
+        MultiExpression multi = Calculator.compileAll ("x^2", "x^2 + x", "ln(x)");
+        int             n     = 50000;
+        double[]        xs    = new double[n];
+        double[][]      ys    = new double[3][n];
+        new SamplingEngine (new ForkJoinPool (4)).sample (multi, -2, 2, n, xs, ys);
+
+        double[] expectedXs = new double[n];
+        double[] expectedYs = new double[n];
+        new SamplingEngine ().sample (Calculator.compile ("ln(x)"), -2, 2, n, expectedXs, expectedYs);
+        assertArrayEquals (expectedXs, xs, 0);
+        assertArrayEquals (expectedYs, ys[2], 0);
+        assertEquals (xs[n - 1] * xs[n - 1] + xs[n - 1], ys[1][n - 1], 1E-12);
+    }
+
+    @Test(expected = Calculator.CalculatorErrorException.class)
+    public void compileAll_rejectsTwoVariables () throws Exception {
+        Calculator.compileAll ("x", "x + y");
+    }
+}
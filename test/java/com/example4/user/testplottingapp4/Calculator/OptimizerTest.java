@@ -0,0 +1,101 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка оптимизатора дерева выражения.
+ */
+public class OptimizerTest {
+    private static final double[] SPECIAL_XS = {
+            0.0, -0.0, 1, -1, 2.5, -7.25, 1E-300, 1E300, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    private static ExpressionNode parse (String _exp) throws Calculator.CalculatorErrorException {
+        Token[] tokens = Lexer.tokenize (_exp);
+        return ExpressionNode.fromRPN (Calculator.convertTokensToRPN (tokens), _exp);
+    }
+
+    @Test
+    public void optimize_foldsConstantsAndIdentities () throws Exception {
+        assertEquals ("((((6.28318 * x) + 0) + (0 * (x ^ 2))) + 0)",
+                Optimizer.optimize (parse ("2*3.14159*x + sin(0) + (5-5)*x^2 + ln(1)")).toString ());
+        assertEquals ("x", Optimizer.optimize (parse ("--x ^ 1 * 1 / 1 - 0")).toString ());
+        assertEquals ("(x - sin(x))", Optimizer.optimize (parse ("x + -sin(x)")).toString ());
+        assertEquals ("(-3)", Optimizer.optimize (parse ("-3")).toString ());
+        // Квадрат остается степенью - иначе интервальная оценка теряет неотрицательность.
+        assertEquals ("((x - 1) ^ 2)", Optimizer.optimize (parse ("(x - 1) ^ 2 ^ 1")).toString ());
+    }
+
+    @Test
+    public void optimize_keepsResultsBitIdentical () throws Exception {
+        String[] functions = {
+                "2*3.14159*x + sin(0) + (5-5)*x^2 + ln(1)",
+                "x + 0", "0 + x", "x * 0", "x - 0", "0 - x", "x ^ 0", "x ^ 1", "x ^ 2", "(x - 1) ^ 2 ^ 1",
+                "--x", "x - -x", "x + -x", "1 * x / 1", "-(-2) * x", "ln(-1) + x", "1 / (x * 1 - 0)",
+        };
+
+        for (String function : functions) {
+            ExpressionNode original  = parse (function);
+            ExpressionNode optimized = Optimizer.optimize (original);
+            for (double x : SPECIAL_XS) {
+                assertEquals (function + " at " + x,
+                        Double.doubleToLongBits (original.evaluate (x)), Double.doubleToLongBits (optimized.evaluate (x)));
+            }
+        }
+    }
+
+    @Test
+    public void optimize_handlesDeepTreesWithoutRecursion () {
+        // x + x*1 + x*2 + ... - дерево глубиной в число слагаемых.
+        int            terms = 100000;
+        ExpressionNode tree  = new ExpressionNode.Variable (0);
+        for (int k = 1; k < terms; k++) {
+            ExpressionNode term = new ExpressionNode.Binary (Operator.MULTIPLY, new ExpressionNode.Variable (0), new ExpressionNode.Constant (k));
+            tree = new ExpressionNode.Binary (Operator.PLUS, tree, term);
+        }
+
+        // По четыре узла на слагаемое (+, *, x, k), кроме x*1, которое сворачивается в x.
+        final int[] nodes = new int[1];
+        ExpressionNode.walk (Optimizer.optimize (tree), new ExpressionNode.Visitor () {
+            @Override
+            public boolean enter (ExpressionNode _node) {
+                return true;
+            }
+
+            @Override
+            public void leave (ExpressionNode _node) {
+                ++nodes[0];
+            }
+        });
+        assertEquals (1 + 4 * (terms - 1) - 2, nodes[0]);
+    }
+
+    @Test
+    public void toString_capsTextOfSharedOperands () {
+        // 24 вложенных квадрата a * a с общим операндом: в тексте 2^24 копий x.
+        ExpressionNode tree = new ExpressionNode.Variable (0);
+        for (int level = 0; level < 24; level++) {
+            ExpressionNode inner = new ExpressionNode.Binary (Operator.PLUS, tree, new ExpressionNode.Constant (1));
+            tree = new ExpressionNode.Binary (Operator.MULTIPLY, inner, inner);
+        }
+
+        String text = tree.toString ();
+        assertEquals (ExpressionNode.MAX_TEXT_LENGTH + 3, text.length ());
+        assertTrue (text.startsWith ("(((((((") && text.endsWith ("..."));
+        assertEquals ("sin(-x)", new ExpressionNode.Unary (Operator.SIN,
+                new ExpressionNode.Unary (Operator.NEGATE, new ExpressionNode.Variable (0))).toString ());
+        assertEquals ("ln(2)", ExpressionNode.render (new ExpressionNode.Unary (Operator.LN, new ExpressionNode.Constant (2)), 5));
+        assertEquals ("ln(2...", ExpressionNode.render (new ExpressionNode.Unary (Operator.LN, new ExpressionNode.Constant (2)), 4));
+    }
+
+    @Test
+    public void compile_printsOptimizedForm () throws Exception {
+        CompiledExpression compiled = Calculator.compile ("x ^ 2 + 2 * 3");
+        assertEquals ("((x ^ 2) + 6)", compiled.toOptimizedString ());
+        assertEquals (Arrays.asList ("x", "^", "2", "+", "2", "*", "3"), Arrays.asList (compiled.getSource ().split (" ")));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка постепенного вычисления.
+ */
+public class ProgressiveSamplerTest {
+    /**
+     * Исполнитель, который копит задачи до явного запуска.
+     */
+    private static class ManualExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<> ();
+
+        @Override
+        public void execute (Runnable _task) {
+            tasks.add (_task);
+        }
+
+        void runAll () {
+            for (Runnable task : tasks) {
+                task.run ();
+            }
+            tasks.clear ();
+        }
+    }
+
+    /**
+     * Слушатель, запоминающий проходы.
+     */
+    private static class Recorder implements ProgressiveSampler.Listener {
+        private final List<ProgressiveSampler.Pass> passes = new ArrayList<> ();
+        private ProgressiveSampler.Outcome          outcome;
+
+        @Override
+        public void onPass (ProgressiveSampler.Pass _pass) {
+            passes.add (_pass);
+        }
+
+        @Override
+        public void onFinished (ProgressiveSampler.Outcome _outcome, Throwable _error) {
+            assertNull (outcome);
+            outcome = _outcome;
+        }
+    }
+
+    @Test
+    public void submit_refinesToSameGridAsSamplingEngine () throws Exception {
+        CompiledExpression function = Calculator.compile ("sin(x) / x + ln(x)");
+        ManualExecutor     executor = new ManualExecutor ();
+        ProgressiveSampler sampler  = new ProgressiveSampler (executor, 100);
+        Recorder           recorder = new Recorder ();
+        int                n        = 10007;
+
+        sampler.submit (function, -5, 5, n, new CancellationToken (), recorder);
+        executor.runAll ();
+
+        assertEquals (ProgressiveSampler.Outcome.COMPLETED, recorder.outcome);
+        assertTrue (recorder.passes.get (0).getCount () <= 100);
+        for (int p = 1; p < recorder.passes.size (); p++) {
+            assertTrue (recorder.passes.get (p).getCount () > recorder.passes.get (p - 1).getCount ());
+        }
+
+        ProgressiveSampler.Pass last = recorder.passes.get (recorder.passes.size () - 1);
+        assertTrue (last.isLast ());
+        assertEquals (n, last.getCount ());
+
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        new SamplingEngine ().sample (function, -5, 5, n, xs, ys);
+        for (int i = 0; i < n; i++) {
+            assertEquals (Double.doubleToLongBits (xs[i]), Double.doubleToLongBits (last.getXs ()[i]));
+            assertEquals (Double.doubleToLongBits (ys[i]), Double.doubleToLongBits (last.getYs ()[i]));
+        }
+
+        // Каждый проход - подмножество окончательной сетки по возрастанию x.
+        ProgressiveSampler.Pass coarse = recorder.passes.get (0);
+        for (int k = 1; k < coarse.getCount (); k++) {
+            assertTrue (coarse.getXs ()[k] > coarse.getXs ()[k - 1]);
+        }
+    }
+
+    @Test
+    public void submit_cancelsSupersededRequest () throws Exception {
+        CompiledExpression function = Calculator.compile ("x");
+        ManualExecutor     executor = new ManualExecutor ();
+        ProgressiveSampler sampler  = new ProgressiveSampler (executor, 100);
+        Recorder           old      = new Recorder ();
+        Recorder           fresh    = new Recorder ();
+
+        CancellationToken oldToken = sampler.submit (function, 0, 1, 100000, new CancellationToken (), old);
+        sampler.submit (function, 0, 2, 1000, new CancellationToken (), fresh);
+        assertTrue (oldToken.isCancelled ());
+        assertFalse (sampler.isCurrent (oldToken));
+        executor.runAll ();
+
+        assertEquals (ProgressiveSampler.Outcome.CANCELLED, old.outcome);
+        assertTrue (old.passes.isEmpty ());
+        assertEquals (ProgressiveSampler.Outcome.COMPLETED, fresh.outcome);
+    }
+
+    @Test
+    public void submit_stopsRefiningAtDeadline () throws Exception {
+        ManualExecutor     executor = new ManualExecutor ();
+        ProgressiveSampler sampler  = new ProgressiveSampler (executor, 100);
+        Recorder           recorder = new Recorder ();
+
+        sampler.submit (Calculator.compile ("x"), 0, 1, 1000000, CancellationToken.withTimeout (0, TimeUnit.NANOSECONDS), recorder);
+        executor.runAll ();
+
+        // Грубый проход выполняется всегда.
+        assertEquals (ProgressiveSampler.Outcome.DEADLINE_EXCEEDED, recorder.outcome);
+        assertEquals (1, recorder.passes.size ());
+        assertTrue (recorder.passes.get (0).getCount () <= 100);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка буфера точек графика.
+ */
+public class SampleBufferTest {
+    @Test
+    public void add_growsAndTracksValidity () {
+        SampleBuffer buffer = new SampleBuffer (2);
+        for (int i = 0; i < 200; i++) {
+            buffer.add (i, i % 3 == 0 ? Double.NaN : i);
+        }
+
+        assertEquals (200, buffer.getSize ());
+        assertTrue (buffer.getCapacity () >= 200);
+        assertEquals (151, buffer.getY (151), 0);
+        assertFalse (buffer.isValid (150));
+        assertTrue (buffer.isValid (151));
+        assertEquals (133, buffer.getValidity ().countValid ());
+        assertEquals (1, buffer.getValidity ().nextValid (0));
+        assertEquals (3, buffer.getValidity ().nextInvalid (1));
+    }
+
+    @Test
+    public void addAll_copiesRange () {
+        SampleBuffer buffer = new SampleBuffer ();
+        buffer.addAll (new double[]{0, 1, 2, 3}, new double[]{5, Double.POSITIVE_INFINITY, 7, 8}, 1, 3);
+
+        assertEquals (3, buffer.getSize ());
+        assertEquals (1, buffer.getX (0), 0);
+        assertFalse (buffer.isValid (0));
+        assertTrue (buffer.isValid (2));
+        assertEquals (8, buffer.getY (2), 0);
+    }
+
+    @Test
+    public void clear_keepsArraysAndResetsValidity () {
+        SampleBuffer buffer = new SampleBuffer (128);
+        for (int i = 0; i < 100; i++) {
+            buffer.add (i, i);
+        }
+        double[] xs = buffer.getXs ();
+
+        buffer.clear ();
+        buffer.add (1, Double.NaN);
+
+        assertSame (xs, buffer.getXs ());
+        assertEquals (1, buffer.getSize ());
+        assertEquals (0, buffer.getValidity ().countValid ());
+    }
+
+    @Test
+    public void sample_matchesEvalRange () throws Exception {
+        CompiledExpression function = Calculator.compile ("1/x");
+        SampleBuffer       buffer   = new SampleBuffer (16);
+        buffer.sample (function, -1, 1, 1000);
+
+        double[] expected = new double[1000];
+        function.evalRange (-1, 1, 1000, expected);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals (expected[i], buffer.getY (i), 0);
+            assertEquals (-1 + i * (2.0 / 1000), buffer.getX (i), 0);
+        }
+        assertFalse (buffer.isValid (500));
+        assertEquals (999, buffer.getValidity ().countValid ());
+    }
+
+    @Test
+    public void view_isWindowWithoutCopy () {
+        SampleBuffer buffer = new SampleBuffer ();
+        for (int i = 0; i < 10; i++) {
+            buffer.add (i, i == 6 ? Double.NaN : 10 - i);
+        }
+
+        SampleBuffer.View view = buffer.view (4, 9);
+        assertEquals (5, view.getSize ());
+        assertEquals (4, view.getX (0), 0);
+        assertFalse (view.isValid (2));
+        assertEquals (2, view.getMinY (), 0);
+        assertEquals (6, view.getMaxY (), 0);
+        assertEquals (4, view.getMinX (), 0);
+        assertEquals (8, view.getMaxX (), 0);
+        assertEquals (0, view.indexOfX (-1));
+        assertEquals (2, view.indexOfX (5.5));
+        assertEquals (5, view.indexOfX (100));
+
+        assertTrue (buffer.view (3, 3).isEmpty ());
+        assertTrue (Double.isNaN (buffer.view (3, 3).getMinY ()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void view_rejectsRangeOutsideBuffer () {
+        SampleBuffer buffer = new SampleBuffer ();
+        buffer.add (0, 0);
+        buffer.view (0, 2);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка параллельного вычисления на сетке.
+ */
+public class SamplingEngineTest {
+    @Test
+    public void sample_matchesSequentialGrid () throws Exception {
+        CompiledExpression function = Calculator.compile ("sin(x) * x ^ 2 - ln(x)");
+        int                n        = 300001;
+        double[]           expected = new double[n];
+        function.evalRange (-50, 50, n, expected);
+
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        new SamplingEngine ().sample (function, -50, 50, n, xs, ys);
+        assertGrid (expected, xs, ys);
+
+        ExecutorService executor = Executors.newFixedThreadPool (3);
+        try {
+            double[] xs2 = new double[n];
+            double[] ys2 = new double[n];
+            new SamplingEngine (executor, 3).sample (function, -50, 50, n, xs2, ys2);
+            assertGrid (expected, xs2, ys2);
+        } finally {
+            executor.shutdown ();
+        }
+    }
+
+    private static void assertGrid (double[] _expected, double[] _xs, double[] _ys) {
+        double delta = 100.0 / _expected.length;
+        for (int i = 0; i < _expected.length; i++) {
+            assertEquals (-50 + i * delta, _xs[i], 0.0);
+            assertEquals (Double.doubleToLongBits (_expected[i]), Double.doubleToLongBits (_ys[i]));
+        }
+    }
+}
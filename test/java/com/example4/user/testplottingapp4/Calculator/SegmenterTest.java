@@ -0,0 +1,114 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка маски корректных точек и разбиения графика на участки.
+ */
+public class SegmenterTest {
+    private static Segmenter.Segments split (String _function, double _xMin, double _xMax, int _n) throws Exception {
+        double[] ys = new double[_n];
+        Calculator.compile (_function).evalRange (_xMin, _xMax, _n, ys);
+        return Segmenter.split (ys, _n);
+    }
+
+    @Test
+    public void mask_marksFiniteValues () {
+        double[] ys = new double[130];
+        ys[3] = Double.NaN;
+        ys[64] = Double.POSITIVE_INFINITY;
+        ys[129] = Double.NEGATIVE_INFINITY;
+        ys[70] = -0.0;
+
+        ValidityMask mask = ValidityMask.of (ys, 0, ys.length);
+        assertEquals (127, mask.countValid ());
+        assertFalse (mask.isValid (3));
+        assertTrue (mask.isValid (70));
+        assertEquals (3, mask.nextInvalid (0));
+        assertEquals (64, mask.nextInvalid (4));
+        assertEquals (129, mask.nextInvalid (65));
+        assertEquals (65, mask.nextValid (64));
+        assertEquals (130, mask.nextValid (129));
+    }
+
+    @Test
+    public void split_cutsAtInvalidPointsAndPoles () throws Exception {
+        // Полюс между точками сетки - разрыв по смене знака.
+        assertEquals (2, split ("1 / x", -10, 10, 1001).getCount ());
+        // Полюс точно в узле сетки - разрыв по бесконечности.
+        assertEquals (2, split ("1 / x", -10, 10, 1000).getCount ());
+        // ln(x) определен только при x > 0.
+        Segmenter.Segments ln = split ("ln(x)", -10, 10, 1000);
+        assertEquals (1, ln.getCount ());
+        assertEquals (501, ln.getStart (0));
+        // Полюса tan(x) на [-5, 5]: +-pi/2 и +-3pi/2.
+        assertEquals (5, split ("tan(x)", -5, 5, 2000).getCount ());
+    }
+
+    @Test
+    public void split_keepsContinuousCurvesWhole () throws Exception {
+        assertEquals (1, split ("sin(x)", -10, 10, 1000).getCount ());
+        assertEquals (1, split ("x ^ 3 - x", -2, 2, 1000).getCount ());
+        assertEquals (1, split ("-x", -1, 1, 7).getCount ());
+        assertEquals (0, split ("ln(-1) * x", -1, 1, 100).getCount ());
+    }
+
+    @Test
+    public void split_ignoresAliasedOscillation () throws Exception {
+        // Шаг 0.002 против периода 0.006: смен знака много, а полюсов нет.
+        assertEquals (1, split ("sin(x * 1000)", -1000, 1000, 1000000).getCount ());
+    }
+
+    @Test
+    public void decimate_keepsPointBudgetAcrossSegments () throws Exception {
+        String[] functions = {"sin(x * 1000)", "tan(x)", "ctg(x)", "1 / x", "ln(x) * sin(x)"};
+        for (String function : functions) {
+            SampleBuffer buffer = decimate (function, -100000, 100000, 1000000, 2000);
+            assertTrue (function + ": " + buffer.getSize (), buffer.getSize () <= 2000);
+            assertOrdered (buffer);
+        }
+    }
+
+    @Test
+    public void decimate_keepsGapsAtPoles () throws Exception {
+        // Полюса tan(x) на [-5, 5]: +-pi/2 и +-3pi/2 - четыре некорректные точки между участками.
+        SampleBuffer buffer = decimate ("tan(x)", -5, 5, 100000, 2000);
+        assertEquals (4, buffer.getSize () - buffer.getValidity ().countValid ());
+        assertOrdered (buffer);
+
+        int gap = 0;
+        for (int i = 0; i < buffer.getSize (); i++) {
+            if (!buffer.isValid (i)) {
+                assertEquals (-Math.PI * 3 / 2 + gap * Math.PI, buffer.getX (i), 1E-3);
+                ++gap;
+            }
+        }
+    }
+
+    @Test
+    public void decimate_passesSmallInputThrough () throws Exception {
+        SampleBuffer buffer = decimate ("1 / x", -10, 10, 1001, 2000);
+        assertEquals (1002, buffer.getSize ());
+        assertEquals (1001, buffer.getValidity ().countValid ());
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static SampleBuffer decimate (String _function, double _xMin, double _xMax, int _n, int _maxPoints) throws Exception {
+        double[] xs = new double[_n];
+        double[] ys = new double[_n];
+        new SamplingEngine ().sample (Calculator.compile (_function), _xMin, _xMax, _n, xs, ys);
+
+        SampleBuffer buffer = new SampleBuffer ();
+        Segmenter.decimate (xs, ys, _n, _maxPoints, buffer);
+        return buffer;
+    }
+
+    private static void assertOrdered (SampleBuffer _buffer) {
+        for (int i = 1; i < _buffer.getSize (); i++) {
+            assertTrue (_buffer.getX (i - 1) <= _buffer.getX (i));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.DoubleBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка двоичного формата графиков и выгрузки в CSV.
+ */
+public class SeriesFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder ();
+
+    @Test
+    public void roundTrip_preservesHeaderValuesAndValidity () throws Exception {
+        CompiledExpression function = Calculator.compile ("1/x");
+        File               file     = folder.newFile ("series.bin");
+        int                n        = 10001;
+
+        // Маленькое окно - чтобы запись и чтение пересекали границы окон.
+        try (SeriesFileWriter writer = new SeriesFileWriter (file, "1/x", -1, 1, n, SeriesFile.FLAG_UNIFORM_GRID, 4096)) {
+            SeriesFile.sample (function, -1, 1, n, writer);
+        }
+
+        double[] expected = new double[n];
+        double[] xs       = new double[n];
+        double[] ys       = new double[n];
+        new SamplingEngine ().sample (function, -1, 1, n, xs, expected);
+
+        try (SeriesFileReader reader = new SeriesFileReader (file, 4096)) {
+            assertEquals ("1/x", reader.getExpression ());
+            assertEquals (n, reader.getCount ());
+            assertEquals (-1, reader.getXMin (), 0);
+            assertEquals (1, reader.getXMax (), 0);
+            assertTrue (reader.isUniformGrid ());
+
+            double[] readXs = new double[n];
+            reader.read (0, readXs, ys, 0, n);
+            assertArrayEquals (xs, readXs, 0);
+            assertArrayEquals (expected, ys, 0);
+
+            ValidityMask mask = ValidityMask.of (expected, 0, n);
+            for (int i = 0; i < n; i++) {
+                assertEquals ("point " + i, mask.isValid (i), reader.isValid (i));
+            }
+            assertEquals (expected[7777], reader.getY (7777), 0);
+            assertEquals (xs[123], reader.getX (123), 0);
+        }
+    }
+
+    @Test
+    public void slice_mapsRangeWithoutCopy () throws Exception {
+        File file = folder.newFile ("slice.bin");
+        try (SeriesFileWriter writer = new SeriesFileWriter (file, "x^2", 0, 100, 100, SeriesFile.FLAG_UNIFORM_GRID)) {
+            SeriesFile.sample (Calculator.compile ("x^2"), 0, 100, 100, writer);
+        }
+
+        try (SeriesFileReader reader = new SeriesFileReader (file)) {
+            DoubleBuffer ys = reader.sliceYs (40, 10);
+            assertEquals (10, ys.remaining ());
+            assertEquals (1600, ys.get (0), 0);
+            assertEquals (49 * 49, ys.get (9), 0);
+            assertEquals (45, reader.sliceXs (45, 1).get (0), 0);
+        }
+    }
+
+    @Test
+    public void csv_isBuiltOnSameStream () throws Exception {
+        File file = folder.newFile ("csv.bin");
+        try (SeriesFileWriter writer = new SeriesFileWriter (file, "ln(x)", 0, 2, 4, SeriesFile.FLAG_UNIFORM_GRID)) {
+            SeriesFile.sample (Calculator.compile ("ln(x)"), 0, 2, 4, writer);
+        }
+
+        StringWriter text = new StringWriter ();
+        try (SeriesFileReader reader = new SeriesFileReader (file);
+             CsvSeriesWriter csv = new CsvSeriesWriter (text)) {
+            reader.copyTo (csv);
+        }
+        assertEquals ("x,y\n0.0,-Infinity\n0.5," + Math.log (0.5) + "\n1.0,0.0\n1.5," + Math.log (1.5) + "\n", text.toString ());
+    }
+
+    @Test
+    public void close_rejectsMissingPoints () throws Exception {
+        File             file   = folder.newFile ("short.bin");
+        SeriesFileWriter writer = new SeriesFileWriter (file, "x", 0, 1, 10, 0);
+        writer.write (new double[]{0, 1}, new double[]{0, 1}, 0, 2);
+        try {
+            writer.close ();
+            fail ();
+        } catch (IOException e) {
+            assertTrue (e.getMessage ().contains ("2"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void reader_rejectsForeignFile () throws Exception {
+        File file = folder.newFile ("foreign.bin");
+        try (FileOutputStream out = new FileOutputStream (file)) {
+            out.write (new byte[64]);
+        }
+        new SeriesFileReader (file).close ();
+    }
+}
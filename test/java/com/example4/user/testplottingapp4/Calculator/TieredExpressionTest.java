@@ -0,0 +1,98 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка уровней исполнения: интерпретатор, сгенерированный класс и дерево MethodHandle.
+ */
+public class TieredExpressionTest {
+    private static final String[] FUNCTIONS = {
+            "x", "-7.5", "2*3.14159*x + sin(0) + (5-5)*x^2 + ln(1)",
+            "(sin(x))^2 + (cos(x))^2 + sin(x)*cos(x)", "(x^2 + 1) / (x^2 - 1)",
+            "tan(x) - ctg(x)", "-ln(x) ^ 0.5", "2 ^ -x / -(x - 1)", "ln(-1) + x", "1E-3 * x ^ 3 - x",
+    };
+
+    private static final double[] XS = {
+            0.0, -0.0, 0.5, -1, 1, 3.75, -123.456, 1E-300, 1E300, Math.PI / 2,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    @Test
+    public void compiledTiers_areBitIdenticalToInterpreter () throws Exception {
+        for (String function : FUNCTIONS) {
+            CompiledExpression  expression = Calculator.compile (function);
+            DoubleUnaryOperator bytecode   = BytecodeCompiler.compile (expression);
+            DoubleUnaryOperator handles    = MethodHandleCompiler.compile (expression);
+            assertNotNull (function, bytecode);
+            assertNotNull (function, handles);
+
+            for (double x : XS) {
+                long expected = Double.doubleToLongBits (expression.evaluate (x));
+                assertEquals (function + " bytecode at " + x, expected, Double.doubleToLongBits (bytecode.applyAsDouble (x)));
+                assertEquals (function + " handles at " + x, expected, Double.doubleToLongBits (handles.applyAsDouble (x)));
+            }
+        }
+    }
+
+    @Test
+    public void tiered_promotesAfterThreshold () throws Exception {
+        TieredExpression tiered = new TieredExpression (Calculator.compile ("(sin(x))^2 + x"), 100);
+        double[]         xs     = new double[60];
+        double[]         ys     = new double[60];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i - 30.5;
+        }
+
+        for (int i = 0; i < 99; i++) {
+            tiered.applyAsDouble (i);
+        }
+        assertEquals (TieredExpression.Tier.INTERPRETER, tiered.getTier ());
+        tiered.applyAsDouble (0);
+        assertEquals (TieredExpression.Tier.BYTECODE, tiered.getTier ());
+
+        tiered.evalBatch (xs, 0, xs.length, ys, 0);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals (Double.doubleToLongBits (tiered.getExpression ().evaluate (xs[i])), Double.doubleToLongBits (ys[i]));
+        }
+    }
+
+    @Test
+    public void methodHandles_computeSharedSubexpressionsOnce () throws Exception {
+        // 24 вложенных квадрата a * a с общим операндом: без временных ячеек дерево MethodHandle
+        // вычисляло бы 2^24 листьев.
+        ExpressionNode tree = new ExpressionNode.Variable (0);
+        for (int i = 0; i < 24; i++) {
+            ExpressionNode inner = new ExpressionNode.Binary (Operator.PLUS,
+                    new ExpressionNode.Binary (Operator.MULTIPLY, tree, new ExpressionNode.Constant (0.5)), new ExpressionNode.Constant (0.25));
+            tree = new ExpressionNode.Binary (Operator.MULTIPLY, inner, inner);
+        }
+        CompiledExpression  expression = new CompiledExpression ("squares", tree);
+        DoubleUnaryOperator handles    = MethodHandleCompiler.compile (expression);
+        assertEquals (24, expression.getTemporaryCount ());
+        assertNotNull (handles);
+
+        long start = System.nanoTime ();
+        for (double x : XS) {
+            assertEquals ("at " + x, Double.doubleToLongBits (expression.evaluate (x)), Double.doubleToLongBits (handles.applyAsDouble (x)));
+        }
+        assertTrue ((System.nanoTime () - start) / 1000000 < 1000);
+    }
+
+    @Test
+    public void tiered_staysInInterpreterBeyondCompilerLimits () throws Exception {
+        StringBuilder function = new StringBuilder ("x");
+        for (int i = 2; i <= 100000; i++) {
+            function.append (" + x*").append (i);
+        }
+        CompiledExpression expression = Calculator.compile (function.toString ());
+
+        assertNull (MethodHandleCompiler.compile (expression));
+        TieredExpression tiered = new TieredExpression (expression, 0);
+        assertEquals (TieredExpression.Tier.INTERPRETER, tiered.getTier ());
+        assertEquals (100000.0 * 100001 / 2, tiered.applyAsDouble (1), 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example4.user.testplottingapp4.Calculator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка кэша плиток.
+ */
+public class TileCacheTest {
+    @Test
+    public void sample_matchesDirectEvaluation () throws Exception {
+        CompiledExpression function = Calculator.compile ("sin(x) * x - ln(x)");
+        TileCache.Samples  samples  = new TileCache ().sample (function, -3.3, 7.1, 1000);
+
+        assertTrue (samples.getCount () >= 1000 && samples.getCount () <= 2001);
+        double spacing = Math.scalb (1.0, samples.getLevel ());
+        for (int i = 0; i < samples.getCount (); i++) {
+            double x = samples.getXs ()[i];
+            assertTrue (x >= -3.3 && x <= 7.1);
+            if (i > 0) {
+                assertEquals (spacing, x - samples.getXs ()[i - 1], 0);
+            }
+            assertEquals (Double.doubleToLongBits (function.evaluate (x)), Double.doubleToLongBits (samples.getYs ()[i]));
+        }
+    }
+
+    @Test
+    public void sample_panComputesOnlyExposedTiles () throws Exception {
+        CompiledExpression function = Calculator.compile ("x ^ 3 - 2 * x");
+        TileCache          cache    = new TileCache ();
+
+        cache.sample (function, 0, 100, 2000);
+        long full = cache.getEvaluationCount ();
+
+        TileCache.Samples panned = cache.sample (function, 10, 110, 2000);
+        long              pan    = cache.getEvaluationCount () - full;
+        assertTrue ("pan cost " + pan + " of " + full, pan <= 0.2 * full);
+        assertTrue (panned.getTilesReused () > 0);
+
+        // Возврат к прежней области ничего не вычисляет.
+        cache.sample (function, 0, 100, 2000);
+        assertEquals (full + pan, cache.getEvaluationCount ());
+    }
+
+    @Test
+    public void sample_respectsMemoryBudget () throws Exception {
+        CompiledExpression function = Calculator.compile ("x");
+        TileCache          cache    = new TileCache (10 * (8 * TileCache.SAMPLES_PER_TILE + 16));
+
+        for (int i = 0; i < 20; i++) {
+            cache.sample (function, i * 1000, i * 1000 + 100, 1000);
+        }
+        assertTrue (cache.getSize () <= 10);
+        assertTrue (cache.getEvictionCount () > 0);
+    }
+
+    @Test
+    public void levelFor_givesAtLeastRequestedDensity () {
+        assertEquals (-4, TileCache.levelFor (0, 1, 10));
+        assertEquals (0, TileCache.levelFor (0, 1000, 1000));
+        assertEquals (-1, TileCache.levelFor (0, 1000, 1001));
+    }
+}
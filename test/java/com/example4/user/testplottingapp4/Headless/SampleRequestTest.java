@@ -0,0 +1,67 @@
+package com.example4.user.testplottingapp4.Headless;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка разбора запросов.
+ */
+public class SampleRequestTest {
+    @Test
+    public void parse_readsFields () {
+        SampleRequest request = SampleRequest.parse (" sin(x) ; -10; 10.5 ;1000 ");
+
+        assertEquals ("sin(x)", request.getExpression ());
+        assertEquals (-10, request.getXMin (), 0);
+        assertEquals (10.5, request.getXMax (), 0);
+        assertEquals (1000, request.getCount ());
+        assertEquals ("sin(x); -10.0; 10.5; 1000", request.toString ());
+    }
+
+    @Test
+    public void parse_roundTripsToString () {
+        SampleRequest request = SampleRequest.parse ("x ^ 2; -1; 1; 7");
+        assertEquals (request.toString (), SampleRequest.parse (request.toString ()).toString ());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsMissingFields () {
+        SampleRequest.parse ("sin(x); -10; 10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsExtraFields () {
+        SampleRequest.parse ("sin(x); -10; 10; 100;");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsNonNumbers () {
+        SampleRequest.parse ("sin(x); a; 10; 100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsEmptyExpression () {
+        SampleRequest.parse (" ; -10; 10; 100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsEmptyDomain () {
+        SampleRequest.parse ("sin(x); 10; 10; 100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsInfiniteDomain () {
+        SampleRequest.parse ("sin(x); -Infinity; 10; 100");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsTooManyPoints () {
+        SampleRequest.parse ("sin(x); -10; 10; " + (SampleRequest.MAX_POINTS + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_rejectsMissingParameter () {
+        SampleRequest.of ("sin(x)", "-10", null, "100");
+    }
+}
@@ -0,0 +1,151 @@
+package com.example4.user.testplottingapp4.Headless;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка пакетного режима.
+ */
+public class SamplingCliTest {
+    @Test
+    public void run_writesResultsInInputOrder () throws Exception {
+        // Первые запросы долгие, последние короткие: короткие успевают раньше, но выводятся после.
+        List<String> lines = new ArrayList<> ();
+        for (int i = 0; i < 12; i++) {
+            int n = i < 4 ? 200000 : 1 + i;
+            lines.add ((i % 5 == 3 ? "x + y" : "sin(x) * " + i) + "; -10; 10; " + n);
+        }
+
+        String       output = run (join (lines), 4, 60000);
+        List<String> heads  = new ArrayList<> ();
+        for (String line : output.split ("\n")) {
+            if (line.startsWith ("# ")) {
+                heads.add (line);
+            }
+        }
+
+        // Ошибка компиляции выводится после строки запроса.
+        List<String> expected = new ArrayList<> ();
+        for (int i = 0; i < lines.size (); i++) {
+            expected.add ("# " + SampleRequest.parse (lines.get (i)));
+            if (i % 5 == 3) {
+                expected.add (heads.get (expected.size ()));
+                assertTrue (heads.get (expected.size () - 1).startsWith ("# ERROR: "));
+            }
+        }
+        assertEquals (expected, heads);
+    }
+
+    @Test
+    public void run_writesEveryPointOfEveryRequest () throws Exception {
+        String output = run ("x; 0; 1; 50000\n\n2 * x; 0; 1; 30000\n", 2, 60000);
+        String[] parts = output.split ("# ");
+
+        assertEquals (3, parts.length);
+        assertEquals (50000 + 2, parts[1].split ("\n").length);
+        assertEquals (30000 + 2, parts[2].split ("\n").length);
+        assertTrue (parts[1].startsWith ("x; 0.0; 1.0; 50000\nx,y\n"));
+        assertTrue (parts[2].endsWith ("\n"));
+    }
+
+    @Test
+    public void run_streamsHeadRequestWithoutBuffering () throws Exception {
+        final int[] maxWrite = new int[1];
+        Writer out = new Writer () {
+            @Override
+            public void write (char[] _chars, int _offset, int _length) {
+                maxWrite[0] = Math.max (maxWrite[0], _length);
+            }
+
+            @Override
+            public void flush () {
+            }
+
+            @Override
+            public void close () {
+            }
+        };
+
+        try (SamplingService service = new SamplingService (2, 60000, 1000)) {
+            SamplingCli.run (new BufferedReader (new StringReader ("sin(x); -10; 10; 1000000\ncos(x); -10; 10; 1000000\n")), out, service);
+        }
+
+        // Весь вывод запроса заняли бы десятки мегабайт.
+        assertTrue ("Наибольшая запись: " + maxWrite[0], maxWrite[0] <= 2 * SamplingCli.BUFFER_CHARS);
+    }
+
+    @Test
+    public void run_reportsDeadline () throws Exception {
+        String output = run ("sin(x) ^ cos(x); -10; 10; 10000000\n", 1, 1);
+
+        assertTrue (output.startsWith ("# sin(x) ^ cos(x); -10.0; 10.0; 10000000\nx,y\n"));
+        assertTrue (output.endsWith ("\n# DEADLINE_EXCEEDED\n"));
+    }
+
+    @Test(timeout = 10000)
+    public void run_abortsWhenOutputStalls () throws Exception {
+        // Вывод, который ничего не принимает, пока поток не прерван.
+        Writer out = new Writer () {
+            @Override
+            public synchronized void write (char[] _chars, int _offset, int _length) throws IOException {
+                try {
+                    wait ();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException ();
+                }
+            }
+
+            @Override
+            public void flush () {
+            }
+
+            @Override
+            public void close () {
+            }
+        };
+
+        try (SamplingService service = new SamplingService (2, 100, 1000)) {
+            long start = System.nanoTime ();
+            try {
+                SamplingCli.run (new BufferedReader (new StringReader ("x; 0; 1; 10\nx; 0; 1; 10\nx; 0; 1; 10\n")), out, service);
+                fail ();
+            } catch (IOException e) {
+                assertTrue (e.getMessage (), e.getMessage ().startsWith ("SamplingCli: "));
+            }
+            assertTrue ((System.nanoTime () - start) / 1000000 >= 100 + SamplingService.WRITE_GRACE_MS);
+
+            // Места отмененных запросов освобождены.
+            for (int i = 0; i < service.getMaxConcurrent (); i++) {
+                assertTrue (service.tryAcquire ());
+            }
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static String run (String _input, int _maxConcurrent, long _timeLimitMs) throws Exception {
+        StringWriter out = new StringWriter ();
+        try (SamplingService service = new SamplingService (_maxConcurrent, _timeLimitMs, 1000)) {
+            SamplingCli.run (new BufferedReader (new StringReader (_input)), out, service);
+        }
+        return out.toString ();
+    }
+
+    private static String join (List<String> _lines) {
+        StringBuilder result = new StringBuilder ();
+        for (String line : _lines) {
+            result.append (line).append ('\n');
+        }
+        return result.toString ();
+    }
+}
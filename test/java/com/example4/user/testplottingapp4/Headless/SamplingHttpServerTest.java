@@ -0,0 +1,208 @@
+package com.example4.user.testplottingapp4.Headless;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Проверка HTTP-сервера на локальном порту.
+ */
+public class SamplingHttpServerTest {
+    private SamplingService    service;
+    private SamplingHttpServer server;
+
+    @After
+    public void tearDown () {
+        if (null != server) {
+            server.stop (0);
+        }
+    }
+
+    @Test
+    public void get_returnsCsv () throws Exception {
+        start (4, 10000, 1000);
+
+        Response response = get ("expr=x%2B1&from=0&to=1&n=4");
+        assertEquals (200, response.status);
+        assertEquals ("x,y\n0.0,1.0\n0.25,1.25\n0.5,1.5\n0.75,1.75\n", response.body);
+    }
+
+    @Test
+    public void get_rejectsBadRequest () throws Exception {
+        start (4, 10000, 1000);
+
+        assertEquals (400, get ("expr=sin(x&from=0&to=1&n=4").status);
+        assertEquals (400, get ("expr=x&from=1&to=0&n=4").status);
+        assertEquals (400, get ("expr=x&from=0&to=1").status);
+    }
+
+    @Test
+    public void post_returnsBatchInOrder () throws Exception {
+        start (4, 10000, 1000);
+
+        Response response = post ("x; 0; 1; 2\n\n2 * x; 0; 1; 2\n");
+        assertEquals (200, response.status);
+        assertEquals ("# x; 0.0; 1.0; 2\nx,y\n0.0,0.0\n0.5,0.5\n# 2 * x; 0.0; 1.0; 2\nx,y\n0.0,0.0\n0.5,1.0\n", response.body);
+    }
+
+    @Test
+    public void get_returns503WhenOverloaded () throws Exception {
+        start (1, 10000, 50);
+
+        // Единственное место занято - запрос ждет 50 мс и отклоняется.
+        service.acquire ();
+        try {
+            Response response = get ("expr=x&from=0&to=1&n=4");
+            assertEquals (503, response.status);
+            assertEquals ("1", response.retryAfter);
+        } finally {
+            service.release ();
+        }
+
+        assertEquals (200, get ("expr=x&from=0&to=1&n=4").status);
+    }
+
+    @Test
+    public void get_endsWithDeadlineExceeded () throws Exception {
+        start (1, 1, 1000);
+
+        Response response = get ("expr=sin(x)%5Ecos(x)&from=-10&to=10&n=10000000");
+        assertEquals (200, response.status);
+        assertTrue (response.body.startsWith ("x,y\n"));
+        assertTrue (response.body.endsWith ("\n# DEADLINE_EXCEEDED\n"));
+    }
+
+    @Test
+    public void get_servesConcurrentClients () throws Exception {
+        start (8, 10000, 60000);
+
+        // Клиентов больше, чем мест: лишние ждут места, и все получают полный ответ.
+        ExecutorService       clients = Executors.newFixedThreadPool (64);
+        List<Future<Response>> results = new ArrayList<> ();
+        try {
+            for (int i = 0; i < 256; i++) {
+                final int n = 1000 + i;
+                results.add (clients.submit (new Callable<Response> () {
+                    @Override
+                    public Response call () throws Exception {
+                        return get ("expr=sin(x)&from=-10&to=10&n=" + n);
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size (); i++) {
+                Response response = results.get (i).get ();
+                assertEquals (200, response.status);
+                assertEquals (1000 + i + 1, response.body.split ("\n").length);
+            }
+        } finally {
+            clients.shutdownNow ();
+        }
+    }
+
+    @Test
+    public void post_rejectsOversizedBatch () throws Exception {
+        start (4, 10000, 1000);
+
+        StringBuilder batch = new StringBuilder ();
+        for (int i = 0; i <= SamplingHttpServer.MAX_BATCH_SIZE; i++) {
+            batch.append ("x; 0; 1; 2\n");
+        }
+        assertEquals (413, post (batch.toString ()).status);
+
+        StringBuilder body = new StringBuilder ("x; 0; 1; 2\n");
+        while (body.length () <= SamplingHttpServer.MAX_BODY_BYTES) {
+            body.append ("                \n");
+        }
+        assertEquals (413, post (body.toString ()).status);
+        assertEquals (200, post ("x; 0; 1; 2\n").status);
+    }
+
+    @Test(timeout = 30000)
+    public void get_releasesPlaceOfStalledClient () throws Exception {
+        start (1, 500, 10000);
+
+        // Клиент с маленьким окном приема не читает ответ: сервер блокируется записью.
+        Socket stalled = new Socket ();
+        try {
+            stalled.setReceiveBufferSize (1024);
+            stalled.connect (new InetSocketAddress (InetAddress.getLoopbackAddress (), server.getPort ()));
+            stalled.getOutputStream ().write ("GET /sample?expr=x&from=0&to=1&n=10000000 HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes ("UTF-8"));
+            Thread.sleep (100);
+
+            // Место освобождается сторожем, а не через 10 секунд ожидания.
+            long start = System.nanoTime ();
+            assertEquals (200, get ("expr=x&from=0&to=1&n=4").status);
+            assertTrue ((System.nanoTime () - start) / 1000000 < 500 + SamplingService.WRITE_GRACE_MS + 2000);
+        } finally {
+            stalled.close ();
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private void start (int _maxConcurrent, long _timeLimitMs, long _waitMs) throws IOException {
+        service = new SamplingService (_maxConcurrent, _timeLimitMs, _waitMs);
+        server = new SamplingHttpServer (new InetSocketAddress (InetAddress.getLoopbackAddress (), 0), service);
+        server.start ();
+    }
+
+    private Response get (String _query) throws IOException {
+        return send ((HttpURLConnection) new URL ("http://localhost:" + server.getPort () + "/sample?" + _query).openConnection ());
+    }
+
+    private Response post (String _body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL ("http://localhost:" + server.getPort () + "/sample").openConnection ();
+        connection.setRequestMethod ("POST");
+        connection.setDoOutput (true);
+        OutputStream out = connection.getOutputStream ();
+        out.write (_body.getBytes ("UTF-8"));
+        out.close ();
+        return send (connection);
+    }
+
+    private static Response send (HttpURLConnection _connection) throws IOException {
+        try {
+            int         status = _connection.getResponseCode ();
+            InputStream in     = status < 400 ? _connection.getInputStream () : _connection.getErrorStream ();
+
+            ByteArrayOutputStream body   = new ByteArrayOutputStream ();
+            byte[]                buffer = new byte[1 << 14];
+            for (int read; (read = in.read (buffer)) > 0; ) {
+                body.write (buffer, 0, read);
+            }
+            in.close ();
+            return new Response (status, body.toString ("UTF-8"), _connection.getHeaderField ("Retry-After"));
+        } finally {
+            _connection.disconnect ();
+        }
+    }
+
+    private static class Response {
+        private final int    status;
+        private final String body;
+        private final String retryAfter;
+
+        Response (int _status, String _body, String _retryAfter) {
+            this.status = _status;
+            this.body = _body;
+            this.retryAfter = _retryAfter;
+        }
+    }
+}